@@ -0,0 +1,172 @@
+package com.trivialware;
+
+/**
+ * Detetor de movimentos fisicamente impossíveis. Cada par de eventos consecutivos de uma pessoa é comparado com a
+ * distância mínima na rede entre as duas localizações: caso a pessoa não tivesse tempo para percorrer essa distância à
+ * velocidade máxima considerada (ou não exista caminho entre as localizações), a transição é assinalada como anómala,
+ * indicando tipicamente um cartão clonado, partilhado ou um leitor com o relógio errado.
+ * <p>
+ * A verificação é feita em fluxo, à medida que os eventos são adicionados à Universidade ({@link MovementListener}),
+ * com custo constante por evento: as distâncias são lidas da matriz de distâncias pré-calculada, caso exista, ou de
+ * linhas da mesma calculadas a pedido (uma execução do algoritmo de Dijkstra por localização de origem) e guardadas
+ * para as transições seguintes. As distâncias são sempre as da rede original: os bloqueios condicionam apenas os
+ * percursos sugeridos, e uma pessoa que registou um movimento numa localização bloqueada (ou a partir dela) esteve
+ * fisicamente lá, pelo que a distância com bloqueios (maior ou infinita) assinalaria transições possíveis.
+ */
+public class AnomalyDetector implements MovementListener {
+    /**
+     * Velocidade máxima considerada por omissão, em metros por segundo (corrida ligeira)
+     */
+    public static final double DEFAULT_MAXIMUM_SPEED = 3;
+    /**
+     * Tolerância por omissão, em segundos, para diferenças entre os relógios dos leitores
+     */
+    public static final double DEFAULT_TOLERANCE = 2;
+    private final CampusGraph graph;
+    private final double maximumSpeed;
+    private final double tolerance;
+    private DistanceMatrix distanceMatrix;
+    private final double[][] distanceRows;
+    private final int[] predecessors;
+    private final UnorderedListADT<Anomaly> anomalies;
+
+    /**
+     * Cria um detetor com a velocidade máxima e tolerância por omissão
+     *
+     * @param graph Representação compacta da rede da Universidade
+     */
+    public AnomalyDetector(CampusGraph graph) {
+        this(graph, DEFAULT_MAXIMUM_SPEED, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Cria um detetor
+     *
+     * @param graph        Representação compacta da rede da Universidade
+     * @param maximumSpeed Velocidade máxima a que uma pessoa se pode deslocar, em metros por segundo
+     * @param tolerance    Número de segundos de tolerância em cada transição
+     */
+    public AnomalyDetector(CampusGraph graph, double maximumSpeed, double tolerance) {
+        if (maximumSpeed <= 0 || tolerance < 0) {
+            throw new IllegalArgumentException("A velocidade máxima tem de ser positiva e a tolerância não negativa");
+        }
+        this.graph = graph;
+        this.maximumSpeed = maximumSpeed;
+        this.tolerance = tolerance;
+        this.distanceRows = new double[graph.size()][];
+        this.predecessors = new int[graph.size()];
+        this.anomalies = new ArrayList<>();
+    }
+
+    /**
+     * Define a matriz de distâncias pré-calculada a usar enquanto a rede não tiver bloqueios
+     *
+     * @param distanceMatrix Matriz de distâncias, ou null para usar apenas as distâncias calculadas a pedido
+     */
+    public void setDistanceMatrix(DistanceMatrix distanceMatrix) {
+        this.distanceMatrix = distanceMatrix;
+    }
+
+    @Override
+    public void eventAdded(Event previousEvent, Event event) {
+        if (previousEvent == null || previousEvent.getLocation().equals(event.getLocation())) {
+            return;
+        }
+        double distance = getDistance(previousEvent.getLocation(), event.getLocation());
+        if (Double.isNaN(distance)) {
+            return;
+        }
+        double availableTime = event.getStartTime().toSecondOfDay() - previousEvent.getStartTime().toSecondOfDay();
+        double requiredTime = distance == Double.POSITIVE_INFINITY ? distance : distance / maximumSpeed;
+        if (requiredTime > availableTime + tolerance) {
+            anomalies.addLast(new Anomaly(previousEvent, event, distance, availableTime, requiredTime));
+        }
+    }
+
+    /*
+    Distância mínima entre duas localizações, infinita caso não exista caminho ou NaN caso alguma não pertença à rede
+     */
+    private double getDistance(Location origin, Location destination) {
+        int from = graph.indexOf(origin), to = graph.indexOf(destination);
+        if (from == -1 || to == -1) {
+            return Double.NaN;
+        }
+        //A matriz é calculada sobre a rede original, sem bloqueios
+        if (distanceMatrix != null) {
+            double distance = distanceMatrix.getDistance(origin, destination);
+            return distance == Double.MAX_VALUE ? Double.POSITIVE_INFINITY : distance;
+        }
+        if (distanceRows[from] == null) {
+            distanceRows[from] = new double[graph.size()];
+            graph.unblockedShortestPaths(from, distanceRows[from], predecessors);
+        }
+        return distanceRows[from][to];
+    }
+
+    /**
+     * @return Transições anómalas detetadas, pela ordem em que os eventos foram adicionados
+     */
+    public ListADT<Anomaly> getAnomalies() {
+        return anomalies;
+    }
+
+    /**
+     * Transição impossível entre dois eventos consecutivos de uma pessoa
+     */
+    public static class Anomaly {
+        private final Event from;
+        private final Event to;
+        private final double distance;
+        private final double availableTime;
+        private final double requiredTime;
+
+        Anomaly(Event from, Event to, double distance, double availableTime, double requiredTime) {
+            this.from = from;
+            this.to = to;
+            this.distance = distance;
+            this.availableTime = availableTime;
+            this.requiredTime = requiredTime;
+        }
+
+        public String getPersonId() {
+            return to.getPersonId();
+        }
+
+        /**
+         * @return Evento anterior da pessoa
+         */
+        public Event getFrom() {
+            return from;
+        }
+
+        /**
+         * @return Evento que originou a anomalia
+         */
+        public Event getTo() {
+            return to;
+        }
+
+        /**
+         * @return Distância mínima entre as duas localizações em metros, ou {@link Double#POSITIVE_INFINITY} caso não
+         * exista caminho entre elas
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return Segundos decorridos entre os dois eventos
+         */
+        public double getAvailableTime() {
+            return availableTime;
+        }
+
+        /**
+         * @return Segundos mínimos necessários para percorrer a distância, ou {@link Double#POSITIVE_INFINITY} caso não
+         * exista caminho
+         */
+        public double getRequiredTime() {
+            return requiredTime;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.trivialware;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.HashMap;
+
+/**
+ * Ficheiro binário de movimentos, alternativo ao ficheiro JSON de movimentos, só de acréscimo (append-only) e com
+ * registos de tamanho fixo. Cada movimento ocupa 8 bytes, em vez de cerca de 70 bytes de texto JSON: o número da pessoa
+ * ({@code int}) e, num segundo {@code int}, o número da localização (15 bits superiores) e o segundo do dia (17 bits
+ * inferiores). Os números das pessoas e das localizações são as posições dos seus identificadores num dicionário
+ * guardado num ficheiro auxiliar ({@link #getDictionaryFileName(String)}), pelo que cada identificador é guardado uma
+ * única vez.
+ * <p>
+ * O ficheiro é lido e escrito através de {@link FileChannel#map}: a leitura percorre diretamente a memória mapeada do
+ * ficheiro, sem cópias para buffers intermédios nem interpretação de texto, e cada escrita mapeia apenas a região
+ * acrescentada no fim do ficheiro. O dicionário é sempre escrito antes dos registos que o usam, e um registo incompleto
+ * no fim do ficheiro (escrita interrompida) é ignorado.
+ */
+public class BinaryMovementFile implements AutoCloseable {
+    //"UTMV" em ASCII
+    private static final int MAGIC = 0x55544D56;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 8;
+    private static final int SECOND_BITS = 17;
+    private static final int SECOND_MASK = (1 << SECOND_BITS) - 1;
+    private static final int MAXIMUM_LOCATIONS = 1 << (Integer.SIZE - SECOND_BITS - 1);
+    //Número de registos mapeados de cada vez na leitura, para não exceder o limite de 2GB de cada mapeamento
+    private static final int RECORDS_PER_MAPPING = 1 << 26;
+
+    private final Path dictionaryPath;
+    private final FileChannel channel;
+    private final UnorderedListADT<String> personIds;
+    private final HashMap<String, Integer> personOrdinals;
+    private final UnorderedListADT<String> locationIds;
+    private final HashMap<String, Integer> locationOrdinals;
+    private long numberOfRecords;
+
+    /**
+     * Abre o ficheiro no caminho indicado, criando-o (e ao dicionário) caso não exista
+     *
+     * @param fileName Caminho do ficheiro de movimentos binário
+     * @throws IOException Caso não seja possível abrir o ficheiro ou este não seja um ficheiro de movimentos válido
+     */
+    public BinaryMovementFile(String fileName) throws IOException {
+        this.dictionaryPath = Paths.get(getDictionaryFileName(fileName));
+        this.personIds = new ArrayList<>();
+        this.personOrdinals = new HashMap<>();
+        this.locationIds = new ArrayList<>();
+        this.locationOrdinals = new HashMap<>();
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                header.force();
+                writeDictionary();
+            }
+            else {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Invalid Binary Movements File: " + fileName);
+                }
+                readDictionary();
+            }
+            this.numberOfRecords = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Obtém o caminho do ficheiro do dicionário de identificadores associado a um ficheiro de movimentos binário
+     *
+     * @param fileName Caminho do ficheiro de movimentos binário
+     * @return Caminho do ficheiro do dicionário
+     */
+    public static String getDictionaryFileName(String fileName) {
+        return fileName + ".ids";
+    }
+
+    private void readDictionary() throws IOException {
+        if (!Files.exists(dictionaryPath)) {
+            throw new IOException("Missing Binary Movements Dictionary: " + dictionaryPath);
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(dictionaryPath)))) {
+            readIds(input, personIds, personOrdinals);
+            readIds(input, locationIds, locationOrdinals);
+        }
+    }
+
+    private static void readIds(DataInputStream input, UnorderedListADT<String> ids, HashMap<String, Integer> ordinals)
+            throws IOException {
+        int count = input.readInt();
+        String id;
+        for (int i = 0; i < count; i++) {
+            id = input.readUTF();
+            ordinals.put(id, ids.size());
+            ids.addLast(id);
+        }
+    }
+
+    /*
+    O dicionário é escrito num ficheiro temporário e movido para o lugar do anterior, nunca ficando incompleto
+     */
+    private void writeDictionary() throws IOException {
+        Path temporaryPath = Paths.get(dictionaryPath + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryPath)))) {
+            output.writeInt(personIds.size());
+            for (String id : personIds) {
+                output.writeUTF(id);
+            }
+            output.writeInt(locationIds.size());
+            for (String id : locationIds) {
+                output.writeUTF(id);
+            }
+        }
+        Files.move(temporaryPath, dictionaryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int getOrdinal(String id, UnorderedListADT<String> ids, HashMap<String, Integer> ordinals) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            ordinals.put(id, ordinal);
+            ids.addLast(id);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Acrescenta movimentos ao fim do ficheiro, forçando a sua escrita em disco
+     *
+     * @param events Movimentos a acrescentar
+     * @throws IOException Caso não seja possível escrever no ficheiro ou existam demasiadas localizações
+     */
+    public void append(ListADT<Event> events) throws IOException {
+        if (events.isEmpty()) {
+            return;
+        }
+        int numberOfPeople = personIds.size(), numberOfLocations = locationIds.size();
+        int[] records = new int[events.size() * 2];
+        int position = 0, locationOrdinal;
+        for (Event event : events) {
+            locationOrdinal = getOrdinal(event.getLocation().getId(), locationIds, locationOrdinals);
+            if (locationOrdinal >= MAXIMUM_LOCATIONS) {
+                throw new IOException("Too Many Locations for Binary Movements File");
+            }
+            records[position++] = getOrdinal(event.getPersonId(), personIds, personOrdinals);
+            records[position++] = (locationOrdinal << SECOND_BITS) | event.getStartTime().toSecondOfDay();
+        }
+        if (personIds.size() != numberOfPeople || locationIds.size() != numberOfLocations) {
+            writeDictionary();
+        }
+        //Um registo incompleto de uma escrita interrompida é reescrito
+        long start = HEADER_SIZE + numberOfRecords * RECORD_SIZE;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, (long) records.length * 4);
+        buffer.asIntBuffer().put(records);
+        buffer.force();
+        numberOfRecords += events.size();
+    }
+
+    /**
+     * @return Número de movimentos no ficheiro
+     */
+    public long size() {
+        return numberOfRecords;
+    }
+
+    /**
+     * Lê todos os movimentos do ficheiro, pela ordem em que foram acrescentados
+     *
+     * @param people    Pessoas conhecidas, a associar aos movimentos (os movimentos de pessoas desconhecidas ficam com
+     *                  a pessoa a null, tal como na importação JSON)
+     * @param locations Localizações do mapa
+     * @return Lista com todos os movimentos
+     * @throws IOException Caso um movimento refira uma localização que não existe no mapa ou o ficheiro esteja corrompido
+     */
+    public UnorderedListADT<Event> readAll(ListADT<Person> people, ListADT<Location> locations) throws IOException {
+        if (numberOfRecords > Integer.MAX_VALUE) {
+            throw new IOException("Too Many Movements: " + numberOfRecords);
+        }
+        //Cada identificador é resolvido uma única vez, sendo os objetos partilhados por todos os eventos
+        HashMap<String, Person> peopleById = new HashMap<>(people.size() * 2);
+        for (Person person : people) {
+            peopleById.put(person.getId(), person);
+        }
+        HashMap<String, Location> locationsById = new HashMap<>(locations.size() * 2);
+        for (Location location : locations) {
+            locationsById.put(location.getId(), location);
+        }
+        String[] personIdsByOrdinal = new String[personIds.size()];
+        Person[] peopleByOrdinal = new Person[personIds.size()];
+        for (int i = 0; i < personIdsByOrdinal.length; i++) {
+            personIdsByOrdinal[i] = personIds.get(i);
+            peopleByOrdinal[i] = peopleById.get(personIdsByOrdinal[i]);
+        }
+        Location[] locationsByOrdinal = new Location[locationIds.size()];
+        for (int i = 0; i < locationsByOrdinal.length; i++) {
+            locationsByOrdinal[i] = locationsById.get(locationIds.get(i));
+        }
+        UnorderedListADT<Event> events = new ArrayList<>((int) numberOfRecords);
+        long first = 0;
+        int count, personOrdinal, locationOrdinal, second;
+        MappedByteBuffer buffer;
+        while (first < numberOfRecords) {
+            count = (int) Math.min(RECORDS_PER_MAPPING, numberOfRecords - first);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE,
+                    (long) count * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                personOrdinal = buffer.getInt();
+                second = buffer.getInt();
+                locationOrdinal = second >>> SECOND_BITS;
+                second &= SECOND_MASK;
+                if (personOrdinal < 0 || personOrdinal >= personIdsByOrdinal.length ||
+                        locationOrdinal >= locationsByOrdinal.length || second >= 24 * 60 * 60) {
+                    throw new IOException("Corrupted Movement Record: " + (first + i));
+                }
+                if (locationsByOrdinal[locationOrdinal] == null) {
+                    throw new IOException("Invalid Location Found: " + locationIds.get(locationOrdinal));
+                }
+                events.addLast(new Event(peopleByOrdinal[personOrdinal], personIdsByOrdinal[personOrdinal],
+                        locationsByOrdinal[locationOrdinal], LocalTime.ofSecondOfDay(second)));
+            }
+            first += count;
+        }
+        return events;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,386 @@
+package com.trivialware;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Representação compacta da rede de localizações da Universidade, usada pelos algoritmos que percorrem a
+ * rede muitas vezes seguidas (por exemplo, o planeamento de evacuações). Cada localização recebe um índice entre 0 e
+ * {@code n-1}, e as ligações de cada localização são guardadas de forma contígua em arrays de tipos primitivos
+ * (formato CSR): as ligações da localização {@code v} ocupam as posições {@code getFirstEdge(v)} a
+ * {@code getLastEdge(v) - 1}. Assim, percorrer os vizinhos de uma localização não implica pesquisas lineares nem a
+ * criação de listas, ao contrário de {@link UndirectedNetworkADT#getNeighbours(Object)}.
+ * <p>
+ * Como cada ligação da rede é não dirigida, é guardada duas vezes (uma em cada sentido).
+ * <p>
+ * A estrutura da rede não muda depois de construída, mas ligações e localizações podem ser bloqueadas temporariamente
+ * (por exemplo, um corredor obstruído numa emergência), sendo ignoradas pelos algoritmos de caminhos mínimos até serem
+ * desbloqueadas. A rede original ({@link University#getNetwork()}) não é alterada, para que o desbloqueio reponha a
+ * distância original da ligação.
+ */
+public class CampusGraph {
+    /**
+     * Função de custo de uma ligação, usada para pesar as ligações de forma diferente da distância (por exemplo,
+     * somando o tempo de espera numa localização congestionada)
+     */
+    public interface EdgeCost {
+        /**
+         * @param edge   Posição da ligação
+         * @param target Índice da localização de destino da ligação
+         * @return Custo de percorrer a ligação, ou {@link Double#POSITIVE_INFINITY} caso não possa ser percorrida
+         */
+        double cost(int edge, int target);
+    }
+
+    private final Location[] locations;
+    private final HashMap<String, Integer> indexById;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final double[] edgeWeights;
+    private final boolean[] blockedEdges;
+    private final boolean[] blockedLocations;
+    private int numberOfBlocked;
+
+    /**
+     * Constrói a representação compacta da rede
+     *
+     * @param locations Lista das localizações (vértices da rede)
+     * @param network   Rede das localizações, cujo peso das arestas é a distância entre as localizações
+     */
+    public CampusGraph(ListADT<Location> locations, UndirectedNetworkADT<Location> network) {
+        int n = locations.size();
+        this.locations = new Location[n];
+        this.indexById = new HashMap<>(n * 2);
+        int currentIndex = 0;
+        for (Location location : locations) {
+            this.locations[currentIndex] = location;
+            indexById.put(location.getId(), currentIndex++);
+        }
+        this.edgeOffsets = new int[n + 1];
+        int[] targets = new int[Math.max(16, n * 4)];
+        double[] weights = new double[targets.length];
+        int numberOfEdges = 0;
+        Integer neighbourIndex;
+        for (int i = 0; i < n; i++) {
+            edgeOffsets[i] = numberOfEdges;
+            for (Location neighbour : network.getNeighbours(this.locations[i])) {
+                neighbourIndex = indexById.get(neighbour.getId());
+                if (neighbourIndex == null) {
+                    continue;
+                }
+                if (numberOfEdges == targets.length) {
+                    targets = Arrays.copyOf(targets, targets.length * 2);
+                    weights = Arrays.copyOf(weights, weights.length * 2);
+                }
+                targets[numberOfEdges] = neighbourIndex;
+                weights[numberOfEdges++] = network.getEdgeWeight(this.locations[i], neighbour);
+            }
+        }
+        edgeOffsets[n] = numberOfEdges;
+        this.edgeTargets = Arrays.copyOf(targets, numberOfEdges);
+        this.edgeWeights = Arrays.copyOf(weights, numberOfEdges);
+        this.blockedEdges = new boolean[numberOfEdges];
+        this.blockedLocations = new boolean[n];
+    }
+
+    /**
+     * @return Número de localizações
+     */
+    public int size() {
+        return locations.length;
+    }
+
+    /**
+     * Obtém o índice interno de uma localização
+     *
+     * @param location Localização
+     * @return Índice da localização, ou -1 caso a localização não exista
+     */
+    public int indexOf(Location location) {
+        return location == null ? -1 : indexOf(location.getId());
+    }
+
+    /**
+     * Obtém o índice interno de uma localização a partir do seu identificador
+     *
+     * @param locationId Identificador único da localização
+     * @return Índice da localização, ou -1 caso a localização não exista
+     */
+    public int indexOf(String locationId) {
+        Integer index = indexById.get(locationId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index Índice interno da localização
+     * @return Localização correspondente ao índice
+     */
+    public Location getLocation(int index) {
+        return locations[index];
+    }
+
+    /**
+     * @param vertex Índice da localização
+     * @return Posição da primeira ligação da localização
+     */
+    public int getFirstEdge(int vertex) {
+        return edgeOffsets[vertex];
+    }
+
+    /**
+     * @param vertex Índice da localização
+     * @return Posição a seguir à última ligação da localização
+     */
+    public int getLastEdge(int vertex) {
+        return edgeOffsets[vertex + 1];
+    }
+
+    /**
+     * @param edge Posição da ligação
+     * @return Índice da localização de destino da ligação
+     */
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    /**
+     * @param edge Posição da ligação
+     * @return Distância da ligação
+     */
+    public double getEdgeWeight(int edge) {
+        return edgeWeights[edge];
+    }
+
+    /**
+     * Obtém a posição da ligação entre duas localizações
+     *
+     * @param from Índice da localização de origem
+     * @param to   Índice da localização de destino
+     * @return Posição da ligação, ou -1 caso as localizações não estejam ligadas
+     */
+    public int getEdge(int from, int to) {
+        for (int edge = edgeOffsets[from]; edge < edgeOffsets[from + 1]; edge++) {
+            if (edgeTargets[edge] == to) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bloqueia ou desbloqueia a ligação entre duas localizações (nos dois sentidos)
+     *
+     * @param from    Índice de uma das localizações
+     * @param to      Índice da outra localização
+     * @param blocked Verdadeiro para bloquear, falso para desbloquear
+     * @return Verdadeiro caso a ligação exista e o seu estado tenha mudado
+     */
+    public boolean setEdgeBlocked(int from, int to, boolean blocked) {
+        int edge = getEdge(from, to), reverseEdge = getEdge(to, from);
+        if (edge == -1 || blockedEdges[edge] == blocked) {
+            return false;
+        }
+        blockedEdges[edge] = blocked;
+        if (reverseEdge != -1) {
+            blockedEdges[reverseEdge] = blocked;
+        }
+        numberOfBlocked += blocked ? 1 : -1;
+        return true;
+    }
+
+    /**
+     * Bloqueia ou desbloqueia uma localização, impedindo que seja atravessada
+     *
+     * @param location Índice da localização
+     * @param blocked  Verdadeiro para bloquear, falso para desbloquear
+     * @return Verdadeiro caso o estado da localização tenha mudado
+     */
+    public boolean setLocationBlocked(int location, boolean blocked) {
+        if (blockedLocations[location] == blocked) {
+            return false;
+        }
+        blockedLocations[location] = blocked;
+        numberOfBlocked += blocked ? 1 : -1;
+        return true;
+    }
+
+    /**
+     * @param edge Posição da ligação
+     * @return Verdadeiro caso a ligação esteja bloqueada
+     */
+    public boolean isEdgeBlocked(int edge) {
+        return blockedEdges[edge];
+    }
+
+    /**
+     * @param location Índice da localização
+     * @return Verdadeiro caso a localização esteja bloqueada
+     */
+    public boolean isLocationBlocked(int location) {
+        return blockedLocations[location];
+    }
+
+    /**
+     * @return Verdadeiro caso exista alguma ligação ou localização bloqueada
+     */
+    public boolean hasBlocked() {
+        return numberOfBlocked > 0;
+    }
+
+    /**
+     * Obtém a distância da ligação entre duas localizações
+     *
+     * @param from Índice da localização de origem
+     * @param to   Índice da localização de destino
+     * @return Distância da ligação, ou -1 caso as localizações não estejam ligadas
+     */
+    public double getEdgeWeight(int from, int to) {
+        int edge = getEdge(from, to);
+        return edge == -1 ? -1 : edgeWeights[edge];
+    }
+
+    /**
+     * Algoritmo de Dijkstra a partir de uma ou mais origens, com uma fila de prioridade sobre arrays de tipos
+     * primitivos. Caso sejam indicados destinos, a pesquisa termina quando o primeiro destino é alcançado (o mais
+     * próximo de qualquer origem). As ligações e localizações bloqueadas são ignoradas.
+     *
+     * @param sources      Índices das localizações de origem
+     * @param targets      Destinos ({@code targets[v]} verdadeiro caso {@code v} seja destino), ou null para calcular
+     *                     as distâncias a todas as localizações
+     * @param cost         Custo de cada ligação, ou null para usar a distância da ligação
+     * @param distances    Array de tamanho {@link #size()} onde ficam as distâncias mínimas a partir das origens
+     *                     ({@link Double#POSITIVE_INFINITY} caso a localização não tenha sido alcançada)
+     * @param predecessors Array de tamanho {@link #size()} onde fica a localização anterior de cada localização no
+     *                     caminho mínimo (-1 nas origens e nas localizações não alcançadas)
+     * @return Índice do destino alcançado, ou -1 caso nenhum destino seja alcançável (ou não tenham sido indicados)
+     */
+    public int shortestPaths(int[] sources, boolean[] targets, EdgeCost cost, double[] distances, int[] predecessors) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessors, -1);
+        for (int source : sources) {
+            if (!blockedLocations[source]) {
+                distances[source] = 0;
+            }
+        }
+        return propagate(sources, sources.length, targets, cost, distances, predecessors);
+    }
+
+    /**
+     * Continua o algoritmo de Dijkstra a partir de localizações cuja distância já se encontra definida em
+     * {@code distances}, propagando essas distâncias às restantes localizações sempre que resultem num caminho mais
+     * curto. Permite reparar caminhos mínimos já calculados depois de uma alteração na rede, processando apenas as
+     * localizações afetadas em vez de recalcular todos os caminhos.
+     *
+     * @param seeds           Índices das localizações a partir das quais a propagação começa
+     * @param numberOfSeeds   Número de posições de {@code seeds} a considerar
+     * @param targets         Destinos onde a propagação termina, ou null para propagar a toda a rede
+     * @param cost            Custo de cada ligação, ou null para usar a distância da ligação
+     * @param distances       Distâncias atuais de cada localização, atualizadas pela propagação
+     * @param predecessors    Localização anterior de cada localização no caminho mínimo, atualizada pela propagação
+     * @return Índice do destino alcançado, ou -1 caso nenhum destino seja alcançável (ou não tenham sido indicados)
+     */
+    public int propagate(int[] seeds, int numberOfSeeds, boolean[] targets, EdgeCost cost, double[] distances,
+                         int[] predecessors) {
+        return propagate(seeds, numberOfSeeds, targets, cost, distances, predecessors, false);
+    }
+
+    /**
+     * Algoritmo de Dijkstra a partir de uma localização sobre a rede original, atravessando também as ligações e
+     * localizações bloqueadas. Os bloqueios apenas condicionam os percursos a sugerir, pelo que esta é a distância
+     * física mínima entre as localizações (por exemplo, para avaliar se uma pessoa podia ter feito um movimento).
+     *
+     * @param source       Índice da localização de origem
+     * @param distances    Array de tamanho {@link #size()} onde ficam as distâncias mínimas a partir da origem
+     *                     ({@link Double#POSITIVE_INFINITY} caso a localização não tenha sido alcançada)
+     * @param predecessors Array de tamanho {@link #size()} onde fica a localização anterior de cada localização no
+     *                     caminho mínimo (-1 na origem e nas localizações não alcançadas)
+     */
+    public void unblockedShortestPaths(int source, double[] distances, int[] predecessors) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessors, -1);
+        distances[source] = 0;
+        propagate(new int[]{source}, 1, null, null, distances, predecessors, true);
+    }
+
+    private int propagate(int[] seeds, int numberOfSeeds, boolean[] targets, EdgeCost cost, double[] distances,
+                          int[] predecessors, boolean ignoreBlocked) {
+        //Fila de prioridade com remoção preguiçosa: uma localização pode estar várias vezes na fila
+        double[] heapKeys = new double[Math.max(4, numberOfSeeds + edgeTargets.length)];
+        int[] heapValues = new int[heapKeys.length];
+        int heapSize = 0;
+        for (int i = 0; i < numberOfSeeds; i++) {
+            if (distances[seeds[i]] != Double.POSITIVE_INFINITY && (ignoreBlocked || !blockedLocations[seeds[i]])) {
+                heapSize = heapPush(heapKeys, heapValues, heapSize, distances[seeds[i]], seeds[i]);
+            }
+        }
+        boolean[] visited = new boolean[locations.length];
+        int vertex, target;
+        double key, candidate, edgeCost;
+        while (heapSize > 0) {
+            key = heapKeys[0];
+            vertex = heapValues[0];
+            heapSize = heapPop(heapKeys, heapValues, heapSize);
+            if (visited[vertex] || key > distances[vertex]) {
+                continue;
+            }
+            visited[vertex] = true;
+            if (targets != null && targets[vertex]) {
+                return vertex;
+            }
+            for (int edge = edgeOffsets[vertex]; edge < edgeOffsets[vertex + 1]; edge++) {
+                target = edgeTargets[edge];
+                if (visited[target] || (!ignoreBlocked && (blockedEdges[edge] || blockedLocations[target]))) {
+                    continue;
+                }
+                edgeCost = cost == null ? edgeWeights[edge] : cost.cost(edge, target);
+                candidate = key + edgeCost;
+                if (candidate < distances[target]) {
+                    distances[target] = candidate;
+                    predecessors[target] = vertex;
+                    if (heapSize == heapKeys.length) {
+                        heapKeys = Arrays.copyOf(heapKeys, heapKeys.length * 2);
+                        heapValues = Arrays.copyOf(heapValues, heapValues.length * 2);
+                    }
+                    heapSize = heapPush(heapKeys, heapValues, heapSize, candidate, target);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int heapPush(double[] keys, int[] values, int size, double key, int value) {
+        int current = size, parent;
+        while (current > 0) {
+            parent = (current - 1) / 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[current] = keys[parent];
+            values[current] = values[parent];
+            current = parent;
+        }
+        keys[current] = key;
+        values[current] = value;
+        return size + 1;
+    }
+
+    private static int heapPop(double[] keys, int[] values, int size) {
+        size--;
+        double key = keys[size];
+        int value = values[size], current = 0, child;
+        while ((child = 2 * current + 1) < size) {
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[current] = keys[child];
+            values[current] = values[child];
+            current = child;
+        }
+        keys[current] = key;
+        values[current] = value;
+        return size;
+    }
+}
@@ -0,0 +1,265 @@
+package com.trivialware;
+
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache dos resultados das consultas de contactos de uma pessoa num intervalo temporal
+ * ({@link University#getOverlappingEventsOfPersonInTimeFrame(String, LocalTime, LocalTime)}), com capacidade limitada
+ * e descarte do resultado menos recentemente usado (LRU).
+ * <p>
+ * Os contactos de uma pessoa só podem mudar quando é adicionado um evento da própria pessoa ou um evento numa das
+ * localizações que a pessoa visitou no intervalo (o novo evento pode sobrepor-se aos da pessoa, e a hora de fim do evento
+ * anterior do seu autor é encurtada, pelo que a localização desse evento anterior também é afetada). Cada resultado
+ * guardado é indexado pelo identificador da pessoa e pelas localizações visitadas, e quando um evento é adicionado
+ * ({@link MovementListener}) são descartados apenas os resultados afetados, mantendo-se os restantes.
+ * <p>
+ * Os eventos guardados referem a pessoa associada no momento da consulta, pelo que cada resultado é também indexado
+ * pelas pessoas dos contactos, sendo descartado quando uma delas é adicionada, removida ou alterada
+ * ({@link #invalidatePerson(String)}). A cache guarda e devolve cópias das listas, pelo que alterar uma lista devolvida
+ * não afeta os resultados guardados.
+ */
+public class ContactCache implements MovementListener {
+    /**
+     * Número máximo de resultados guardados por omissão
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private int capacity;
+    //Por ordem de acesso, sendo o primeiro o menos recentemente usado
+    private final LinkedHashMap<Key, Entry> entries;
+    private final HashMap<String, HashSet<Key>> keysByPerson;
+    private final HashMap<String, HashSet<Key>> keysByLocation;
+
+    /**
+     * Cria uma cache vazia com a capacidade por omissão
+     */
+    public ContactCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Cria uma cache vazia
+     *
+     * @param capacity Número máximo de resultados guardados (0 desativa a cache)
+     */
+    public ContactCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacidade inválida: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.keysByPerson = new HashMap<>();
+        this.keysByLocation = new HashMap<>();
+    }
+
+    /**
+     * @return Número máximo de resultados guardados
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Altera a capacidade da cache, descartando os resultados menos recentemente usados que excedam a nova capacidade
+     *
+     * @param capacity Número máximo de resultados guardados (0 desativa a cache)
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacidade inválida: " + capacity);
+        }
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * @return Número de resultados guardados
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Obtém um resultado guardado, marcando-o como o mais recentemente usado
+     *
+     * @param personId Identificador da pessoa
+     * @param start    Hora de início do intervalo
+     * @param end      Hora de fim do intervalo
+     * @return Cópia dos contactos guardados, ou null caso a consulta não esteja na cache
+     */
+    public ListADT<Event> get(String personId, LocalTime start, LocalTime end) {
+        Entry entry = entries.get(new Key(personId, start, end));
+        return entry == null ? null : copy(entry.contacts);
+    }
+
+    /**
+     * Guarda o resultado de uma consulta
+     *
+     * @param personId     Identificador da pessoa
+     * @param start        Hora de início do intervalo
+     * @param end          Hora de fim do intervalo
+     * @param personEvents Eventos da pessoa no intervalo, que definem as localizações visitadas
+     * @param contacts     Contactos da pessoa no intervalo (é guardada uma cópia)
+     */
+    public void put(String personId, LocalTime start, LocalTime end, ListADT<Event> personEvents,
+                    ListADT<Event> contacts) {
+        if (capacity == 0) {
+            return;
+        }
+        Key key = new Key(personId, start, end);
+        remove(key);
+        HashSet<String> locationIds = new HashSet<>();
+        for (Event event : personEvents) {
+            locationIds.add(event.getLocation().getId());
+        }
+        HashSet<String> personIds = new HashSet<>();
+        personIds.add(personId);
+        for (Event event : contacts) {
+            personIds.add(event.getPersonId());
+        }
+        entries.put(key, new Entry(personIds, locationIds, copy(contacts)));
+        for (String id : personIds) {
+            keysByPerson.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+        }
+        for (String locationId : locationIds) {
+            keysByLocation.computeIfAbsent(locationId, id -> new HashSet<>()).add(key);
+        }
+        evict();
+    }
+
+    /**
+     * Descarta todos os resultados guardados
+     */
+    public void clear() {
+        entries.clear();
+        keysByPerson.clear();
+        keysByLocation.clear();
+    }
+
+    /**
+     * Descarta os resultados que envolvem uma pessoa, seja a pessoa consultada ou a pessoa de algum dos contactos,
+     * quando a pessoa associada aos seus eventos muda (pessoa adicionada, removida ou alterada)
+     *
+     * @param personId Identificador da pessoa
+     */
+    public void invalidatePerson(String personId) {
+        invalidate(keysByPerson.get(personId));
+    }
+
+    @Override
+    public void eventAdded(Event previousEvent, Event event) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        invalidate(keysByPerson.get(event.getPersonId()));
+        invalidate(keysByLocation.get(event.getLocation().getId()));
+        if (previousEvent != null) {
+            invalidate(keysByLocation.get(previousEvent.getLocation().getId()));
+        }
+    }
+
+    private void invalidate(HashSet<Key> keys) {
+        if (keys == null) {
+            return;
+        }
+        //A remoção altera o próprio conjunto, pelo que as chaves são copiadas primeiro
+        for (Key key : keys.toArray(new Key[0])) {
+            remove(key);
+        }
+    }
+
+    private void evict() {
+        //A consulta de uma entrada altera a ordem de acesso, pelo que a entrada é obtida diretamente do iterador
+        Iterator<Map.Entry<Key, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+        Map.Entry<Key, Entry> eldest;
+        while (entries.size() > capacity) {
+            eldest = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            unindex(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unindex(key, entry);
+        }
+    }
+
+    private static ListADT<Event> copy(ListADT<Event> events) {
+        UnorderedListADT<Event> copy = new ArrayList<>(events.size() + 1);
+        for (Event event : events) {
+            copy.addLast(event);
+        }
+        return copy;
+    }
+
+    private void unindex(Key key, Entry entry) {
+        for (String personId : entry.personIds) {
+            removeFromIndex(keysByPerson, personId, key);
+        }
+        for (String locationId : entry.locationIds) {
+            removeFromIndex(keysByLocation, locationId, key);
+        }
+    }
+
+    private static void removeFromIndex(HashMap<String, HashSet<Key>> index, String id, Key key) {
+        HashSet<Key> keys = index.get(id);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            index.remove(id);
+        }
+    }
+
+    /**
+     * Consulta guardada: pessoa e intervalo temporal
+     */
+    private static final class Key {
+        private final String personId;
+        private final LocalTime start;
+        private final LocalTime end;
+
+        Key(String personId, LocalTime start, LocalTime end) {
+            this.personId = personId;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return personId.equals(other.personId) && start.equals(other.start) && end.equals(other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(personId, start, end);
+        }
+    }
+
+    /**
+     * Resultado guardado, pessoas envolvidas (a consultada e as dos contactos) e localizações visitadas pela pessoa no
+     * intervalo
+     */
+    private static final class Entry {
+        private final HashSet<String> personIds;
+        private final HashSet<String> locationIds;
+        private final ListADT<Event> contacts;
+
+        Entry(HashSet<String> personIds, HashSet<String> locationIds, ListADT<Event> contacts) {
+            this.personIds = personIds;
+            this.locationIds = locationIds;
+            this.contacts = contacts;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.trivialware;
+
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Motor de contactos recentes: mantém, para uma janela deslizante das últimas horas, os eventos (intervalos de
+ * presença) de cada localização que ainda intersetam a janela, permitindo obter os contactos recentes de uma pessoa sem
+ * percorrer todos os eventos do dia.
+ * <p>
+ * A janela termina no instante mais recente conhecido, que avança com os eventos recebidos ({@link MovementListener})
+ * ou explicitamente ({@link #advanceTo(LocalTime)}). Os eventos em curso estão sempre na janela; um evento termina
+ * quando chega o evento seguinte da mesma pessoa, e como os eventos chegam por ordem cronológica, os eventos terminados
+ * ficam numa fila ordenada pela hora de fim. Sempre que a janela avança, os eventos no início dessa fila que já
+ * terminaram antes do início da janela são descartados das localizações e das pessoas, pelo que cada evento é
+ * adicionado e descartado uma única vez. Uma consulta percorre apenas os eventos da pessoa na janela e os eventos
+ * presentes nas mesmas localizações.
+ */
+public class ContactWindow implements MovementListener {
+    /**
+     * Duração da janela por omissão, em horas
+     */
+    public static final int DEFAULT_WINDOW_HOURS = 2;
+    private final CampusGraph graph;
+    private final int windowSeconds;
+    //Eventos de cada localização (pelo índice no grafo compacto) que intersetam a janela
+    private final Set<Event>[] activeByLocation;
+    //Eventos de cada pessoa que intersetam a janela, por ordem cronológica
+    private final HashMap<String, ArrayDeque<Event>> activeByPerson;
+    //Eventos terminados ainda na janela, por ordem da hora de fim
+    private final ArrayDeque<Event> endedEvents;
+    private int now;
+
+    /**
+     * Cria o motor sem eventos
+     *
+     * @param graph       Representação compacta da rede da Universidade, que define o índice de cada localização
+     * @param windowHours Duração da janela em horas
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ContactWindow(CampusGraph graph, int windowHours) {
+        if (windowHours <= 0 || windowHours > 24) {
+            throw new IllegalArgumentException("Duração de janela inválida: " + windowHours);
+        }
+        this.graph = graph;
+        this.windowSeconds = windowHours * 60 * 60;
+        this.activeByLocation = new Set[graph.size()];
+        for (int i = 0; i < activeByLocation.length; i++) {
+            //Os eventos são comparados por identidade, visto que Event redefine equals sem redefinir hashCode
+            activeByLocation[i] = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        this.activeByPerson = new HashMap<>();
+        this.endedEvents = new ArrayDeque<>();
+    }
+
+    /**
+     * @return Duração da janela em horas
+     */
+    public int getWindowHours() {
+        return windowSeconds / (60 * 60);
+    }
+
+    /**
+     * @return Instante de início da janela
+     */
+    public LocalTime getStart() {
+        return LocalTime.ofSecondOfDay(Math.max(0, now - windowSeconds));
+    }
+
+    /**
+     * @return Instante de fim da janela (o instante mais recente conhecido)
+     */
+    public LocalTime getEnd() {
+        return LocalTime.ofSecondOfDay(now);
+    }
+
+    @Override
+    public void eventAdded(Event previousEvent, Event event) {
+        int location = graph.indexOf(event.getLocation());
+        if (location != -1) {
+            activeByLocation[location].add(event);
+            activeByPerson.computeIfAbsent(event.getPersonId(), personId -> new ArrayDeque<>()).addLast(event);
+        }
+        if (previousEvent != null && graph.indexOf(previousEvent.getLocation()) != -1) {
+            endedEvents.addLast(previousEvent);
+        }
+        advanceTo(event.getStartTime());
+    }
+
+    /**
+     * Avança o fim da janela até um instante, descartando os eventos que terminaram antes do novo início da janela.
+     * Um instante anterior ao fim atual da janela não tem efeito.
+     *
+     * @param time Novo fim da janela
+     */
+    public void advanceTo(LocalTime time) {
+        now = Math.max(now, time.toSecondOfDay());
+        int start = now - windowSeconds;
+        Event expired;
+        ArrayDeque<Event> personEvents;
+        while (!endedEvents.isEmpty() && endedEvents.peekFirst().getEndTime().toSecondOfDay() < start) {
+            expired = endedEvents.pollFirst();
+            activeByLocation[graph.indexOf(expired.getLocation())].remove(expired);
+            personEvents = activeByPerson.get(expired.getPersonId());
+            //Os eventos de cada pessoa terminam pela ordem em que começaram, sendo o descartado o primeiro
+            if (personEvents.peekFirst() == expired) {
+                personEvents.pollFirst();
+            }
+            else {
+                personEvents.removeFirstOccurrence(expired);
+            }
+            if (personEvents.isEmpty()) {
+                activeByPerson.remove(expired.getPersonId());
+            }
+        }
+    }
+
+    /**
+     * Obtém os contactos de uma pessoa na janela: os eventos de outras pessoas na janela que se sobrepõem (mesma
+     * localização e horas sobrepostas) a um evento da pessoa na janela, tal como em
+     * {@link University#getOverlappingEventsOfPersonInTimeFrame(String, LocalTime, LocalTime)} para o intervalo da
+     * janela, mas sem repetições.
+     *
+     * @param personId Identificador da pessoa
+     * @return Lista dos eventos de contacto (vazia caso a pessoa não tenha eventos na janela)
+     */
+    public ListADT<Event> getContacts(String personId) {
+        return getContacts(personId, getStart(), getEnd());
+    }
+
+    /**
+     * Verifica se a janela contém todos os eventos que intersetam um intervalo temporal, ou seja, se o intervalo
+     * começa no início da janela ou depois (os eventos posteriores ao fim da janela ainda não foram recebidos)
+     *
+     * @param start Hora de início do intervalo temporal
+     * @return true se os contactos no intervalo podem ser obtidos a partir da janela, false caso contrário
+     */
+    public boolean covers(LocalTime start) {
+        return start.toSecondOfDay() >= now - windowSeconds;
+    }
+
+    /**
+     * Obtém os contactos de uma pessoa num intervalo temporal contido na janela, tal como em
+     * {@link University#getOverlappingEventsOfPersonInTimeFrame(String, LocalTime, LocalTime)}, mas sem repetições e
+     * percorrendo apenas os eventos na janela
+     *
+     * @param personId Identificador da pessoa
+     * @param start    Hora de início do intervalo temporal (inclusive)
+     * @param end      Hora de fim do intervalo temporal (inclusive)
+     * @return Lista dos eventos de contacto (vazia caso a pessoa não tenha eventos no intervalo)
+     * @throws IllegalArgumentException Caso o intervalo comece antes do início da janela ({@link #covers(LocalTime)})
+     */
+    public ListADT<Event> getContacts(String personId, LocalTime start, LocalTime end) {
+        if (!covers(start)) {
+            throw new IllegalArgumentException("Intervalo fora da janela de contactos: " + start);
+        }
+        ArrayDeque<Event> personEvents = activeByPerson.get(personId);
+        UnorderedListADT<Event> contacts = new ArrayList<>();
+        if (personEvents == null) {
+            return contacts;
+        }
+        /*
+        Um evento recebido fora de ordem (anterior ao fim da janela) pode terminar antes de outros já na fila, ficando
+        na janela mais tempo do que o necessário, pelo que a hora de fim é sempre confirmada
+         */
+        Set<Event> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Event personEvent : personEvents) {
+            if (!intersects(personEvent, start, end)) {
+                continue;
+            }
+            for (Event event : activeByLocation[graph.indexOf(personEvent.getLocation())]) {
+                if (intersects(event, start, end) && personEvent.overlaps(event) && found.add(event)) {
+                    contacts.addLast(event);
+                }
+            }
+        }
+        return contacts;
+    }
+
+    private static boolean intersects(Event event, LocalTime start, LocalTime end) {
+        return start.compareTo(event.getEndTime()) <= 0 && end.compareTo(event.getStartTime()) >= 0;
+    }
+
+    /**
+     * Obtém os identificadores das pessoas com eventos na janela, cujos contactos recentes podem ser consultados
+     *
+     * @return Lista dos identificadores
+     */
+    public ListADT<String> getPersonIds() {
+        UnorderedListADT<String> personIds = new ArrayList<>(activeByPerson.size() + 1);
+        for (String personId : activeByPerson.keySet()) {
+            personIds.addLast(personId);
+        }
+        return personIds;
+    }
+}
@@ -0,0 +1,511 @@
+package com.trivialware;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Arquivo comprimido de um dia fechado de movimentos, em formato colunar, para guardar os dias terminados (raramente
+ * consultados) num ficheiro por dia, que pode ser carregado ou consultado sem ler os restantes dias.
+ * <p>
+ * Os eventos são guardados por ordem cronológica ({@link EventSorts#CHRONOLOGICAL_ORDER}) em blocos de
+ * {@link #BLOCK_SIZE} eventos. Cada bloco guarda as suas colunas seguidas e comprimidas com DEFLATE: as horas de início
+ * como diferenças (delta) em segundos para o evento anterior, os números da pessoa e da localização nos dicionários de
+ * identificadores do ficheiro, e a duração de cada evento (zero para os eventos que ainda decorriam), todos como
+ * inteiros de tamanho variável (varint). Como as horas de início estão ordenadas, as diferenças são quase sempre de
+ * um só byte.
+ * <p>
+ * O diretório no início do ficheiro tem os dicionários e, para cada bloco, o seu mapa de zona: a menor hora de início,
+ * a maior hora de fim e o conjunto das localizações presentes. Uma consulta por localização e intervalo temporal
+ * ({@link #scan(String, LocalTime, LocalTime, ListADT, ListADT)}) descomprime apenas os blocos cujo mapa de zona
+ * interseta a consulta, saltando os restantes sem os ler do disco.
+ */
+public class DayArchive implements AutoCloseable {
+    /**
+     * Número de eventos por bloco
+     */
+    public static final int BLOCK_SIZE = 4096;
+    //"UTDA" em ASCII
+    private static final int MAGIC = 0x55544441;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    //Maior hora de fim de um bloco com eventos que ainda decorriam, posterior a qualquer segundo do dia
+    private static final int OPEN_END = SECONDS_PER_DAY;
+
+    private final FileChannel channel;
+    private final long dataStart;
+    private final int numberOfEvents;
+    private final String[] personIds;
+    private final String[] locationIds;
+    private final HashMap<String, Integer> locationOrdinals;
+    private final Block[] blocks;
+    private int blocksRead;
+
+    /**
+     * Abre um arquivo de um dia, lendo apenas o seu diretório
+     *
+     * @param fileName Caminho do ficheiro do arquivo
+     * @throws IOException Caso não seja possível abrir o ficheiro ou este não seja um arquivo válido
+     */
+    public DayArchive(String fileName) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Invalid Day Archive: " + fileName);
+            }
+            ByteBuffer directory = ByteBuffer.allocate(header.getInt(8));
+            readFully(directory, HEADER_SIZE);
+            this.dataStart = HEADER_SIZE + directory.capacity();
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(directory.array()));
+            this.numberOfEvents = input.readInt();
+            this.personIds = readIds(input);
+            this.locationIds = readIds(input);
+            this.locationOrdinals = new HashMap<>(locationIds.length * 2);
+            for (int i = 0; i < locationIds.length; i++) {
+                locationOrdinals.put(locationIds[i], i);
+            }
+            this.blocks = new Block[input.readInt()];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = new Block(input, locationIds.length);
+            }
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated Day Archive");
+            }
+        }
+    }
+
+    private static String[] readIds(DataInputStream input) throws IOException {
+        String[] ids = new String[input.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = input.readUTF();
+        }
+        return ids;
+    }
+
+    private static void writeIds(DataOutputStream output, ListADT<String> ids) throws IOException {
+        output.writeInt(ids.size());
+        for (String id : ids) {
+            output.writeUTF(id);
+        }
+    }
+
+    private static int getOrdinal(String id, UnorderedListADT<String> ids, HashMap<String, Integer> ordinals) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            ordinals.put(id, ordinal);
+            ids.addLast(id);
+        }
+        return ordinal;
+    }
+
+    private static int getEndSecond(Event event) {
+        return event.getEndTime().equals(LocalTime.MAX) ? OffHeapEventStore.OPEN : event.getEndTime().toSecondOfDay();
+    }
+
+    /**
+     * Escreve o arquivo de um dia, substituindo o ficheiro caso já exista. O ficheiro é escrito num ficheiro temporário
+     * e movido para o lugar do anterior, nunca ficando incompleto.
+     *
+     * @param fileName Caminho do ficheiro do arquivo
+     * @param events   Eventos do dia, com as horas de fim já definidas (por qualquer ordem)
+     * @return Número de eventos arquivados
+     * @throws IOException Caso não seja possível escrever o ficheiro
+     */
+    public static int write(String fileName, ListADT<Event> events) throws IOException {
+        Event[] sortedEvents = new Event[events.size()];
+        int position = 0;
+        for (Event event : events) {
+            sortedEvents[position++] = event;
+        }
+        EventSorts.sort(sortedEvents);
+        UnorderedListADT<String> personIds = new ArrayList<>(), locationIds = new ArrayList<>();
+        HashMap<String, Integer> personOrdinals = new HashMap<>(), locationOrdinals = new HashMap<>();
+        int[] starts = new int[sortedEvents.length], ends = new int[sortedEvents.length];
+        int[] persons = new int[sortedEvents.length], locations = new int[sortedEvents.length];
+        for (int i = 0; i < sortedEvents.length; i++) {
+            starts[i] = sortedEvents[i].getStartTime().toSecondOfDay();
+            ends[i] = getEndSecond(sortedEvents[i]);
+            persons[i] = getOrdinal(sortedEvents[i].getPersonId(), personIds, personOrdinals);
+            locations[i] = getOrdinal(sortedEvents[i].getLocation().getId(), locationIds, locationOrdinals);
+        }
+        return write(fileName, starts, ends, persons, locations, personIds, locationIds);
+    }
+
+    /**
+     * Escreve o arquivo de um dia a partir das colunas dos eventos, já pela ordem cronológica (por exemplo, a partir dos
+     * registos de um {@link OffHeapEventStore}, sem criar os eventos)
+     *
+     * @param fileName    Caminho do ficheiro do arquivo
+     * @param starts      Segundo de início de cada evento
+     * @param ends        Segundo de fim de cada evento ({@link OffHeapEventStore#OPEN} caso ainda decorra)
+     * @param persons     Número da pessoa de cada evento no dicionário das pessoas
+     * @param locations   Número da localização de cada evento no dicionário das localizações
+     * @param personIds   Dicionário dos identificadores das pessoas
+     * @param locationIds Dicionário dos identificadores das localizações
+     * @return Número de eventos arquivados
+     * @throws IOException Caso não seja possível escrever o ficheiro
+     */
+    static int write(String fileName, int[] starts, int[] ends, int[] persons, int[] locations,
+                     ListADT<String> personIds, ListADT<String> locationIds) throws IOException {
+        int numberOfEvents = starts.length;
+        int numberOfBlocks = (numberOfEvents + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        byte[][] compressedBlocks = new byte[numberOfBlocks][];
+        ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        DataOutputStream directory = new DataOutputStream(directoryBytes);
+        directory.writeInt(numberOfEvents);
+        writeIds(directory, personIds);
+        writeIds(directory, locationIds);
+        directory.writeInt(numberOfBlocks);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        long offset = 0;
+        try {
+            for (int block = 0; block < numberOfBlocks; block++) {
+                int from = block * BLOCK_SIZE, to = Math.min(numberOfEvents, from + BLOCK_SIZE);
+                Block zoneMap = new Block(locationIds.size());
+                ByteArrayOutputStream columns = new ByteArrayOutputStream((to - from) * 6);
+                int previousStart = starts[from], start, end;
+                zoneMap.minStart = previousStart;
+                for (int i = from; i < to; i++) {
+                    writeVarint(columns, starts[i] - previousStart);
+                    previousStart = starts[i];
+                }
+                for (int i = from; i < to; i++) {
+                    writeVarint(columns, persons[i]);
+                }
+                for (int i = from; i < to; i++) {
+                    writeVarint(columns, locations[i]);
+                    zoneMap.locations[locations[i] >>> 6] |= 1L << locations[i];
+                }
+                for (int i = from; i < to; i++) {
+                    start = starts[i];
+                    end = ends[i] == OffHeapEventStore.OPEN ? OPEN_END : ends[i];
+                    zoneMap.maxEnd = Math.max(zoneMap.maxEnd, end);
+                    //Duração em zigzag (um evento terminado no mesmo segundo em que começou o seguinte termina antes
+                    //de começar), somada de 1 para reservar o 0 para os eventos que ainda decorriam
+                    writeVarint(columns, end == OPEN_END ? 0 : zigzag(end - start) + 1);
+                }
+                compressedBlocks[block] = compress(deflater, columns.toByteArray());
+                zoneMap.offset = offset;
+                zoneMap.compressedLength = compressedBlocks[block].length;
+                zoneMap.count = to - from;
+                zoneMap.write(directory);
+                offset += compressedBlocks[block].length;
+            }
+        }
+        finally {
+            deflater.end();
+        }
+        directory.flush();
+        Path path = Paths.get(fileName);
+        Path temporaryPath = Paths.get(fileName + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryPath)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(directoryBytes.size());
+            directoryBytes.writeTo(output);
+            for (byte[] compressedBlock : compressedBlocks) {
+                output.write(compressedBlock);
+            }
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return numberOfEvents;
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0, shift = 0;
+        byte current;
+        do {
+            current = data[position[0]++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return Número de eventos arquivados
+     */
+    public int size() {
+        return numberOfEvents;
+    }
+
+    /**
+     * @return Número de blocos do arquivo
+     */
+    public int getNumberOfBlocks() {
+        return blocks.length;
+    }
+
+    /**
+     * @return Número de blocos lidos e descomprimidos desde a abertura do arquivo
+     */
+    public int getBlocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * Lê todos os movimentos do arquivo por ordem cronológica, tal como seriam importados do ficheiro de movimentos
+     * (sem horas de fim, que são recalculadas pela Universidade ao adicioná-los)
+     *
+     * @param people    Pessoas conhecidas, a associar aos movimentos (os movimentos de pessoas desconhecidas ficam com
+     *                  a pessoa a null)
+     * @param locations Localizações do mapa
+     * @return Lista com todos os movimentos do dia
+     * @throws IOException Caso um movimento refira uma localização que não existe no mapa ou o ficheiro esteja
+     *                     corrompido
+     */
+    public UnorderedListADT<Event> readAll(ListADT<Person> people, ListADT<Location> locations) throws IOException {
+        return scan(-1, 0, SECONDS_PER_DAY, false, people, locations);
+    }
+
+    /**
+     * Obtém os eventos arquivados que decorreram, mesmo que parcialmente, num intervalo temporal, opcionalmente apenas
+     * numa localização, descomprimindo apenas os blocos cujo mapa de zona interseta a consulta
+     *
+     * @param locationId Identificador da localização, ou null para todas as localizações
+     * @param start      Hora de início do intervalo temporal (inclusive)
+     * @param end        Hora de fim do intervalo temporal (inclusive)
+     * @param people     Pessoas conhecidas, a associar aos eventos
+     * @param locations  Localizações do mapa
+     * @return Lista dos eventos no intervalo, por ordem cronológica
+     * @throws IOException Caso um evento refira uma localização que não existe no mapa ou o ficheiro esteja corrompido
+     */
+    public UnorderedListADT<Event> scan(String locationId, LocalTime start, LocalTime end, ListADT<Person> people,
+                                        ListADT<Location> locations) throws IOException {
+        int locationOrdinal = -1;
+        if (locationId != null) {
+            Integer ordinal = locationOrdinals.get(locationId);
+            if (ordinal == null) {
+                return new ArrayList<>();
+            }
+            locationOrdinal = ordinal;
+        }
+        //A hora de fim da consulta é arredondada para baixo e a de início para cima, tal como nas comparações de LocalTime
+        return scan(locationOrdinal, start.toSecondOfDay() + (start.getNano() > 0 ? 1 : 0), end.toSecondOfDay(), true,
+                people, locations);
+    }
+
+    private UnorderedListADT<Event> scan(int locationOrdinal, int startSecond, int endSecond, boolean endTimes,
+                                         ListADT<Person> people, ListADT<Location> locations) throws IOException {
+        UnorderedListADT<Event> events = new ArrayList<>();
+        //Os identificadores só são resolvidos se algum bloco for lido
+        Person[] peopleByOrdinal = null;
+        Location[] locationsByOrdinal = null;
+        for (Block block : blocks) {
+            if (block.minStart > endSecond || block.maxEnd < startSecond ||
+                    (locationOrdinal != -1 && (block.locations[locationOrdinal >>> 6] & (1L << locationOrdinal)) == 0)) {
+                continue;
+            }
+            if (peopleByOrdinal == null) {
+                peopleByOrdinal = resolvePeople(people);
+                locationsByOrdinal = resolveLocations(locations);
+            }
+            readBlock(block, locationOrdinal, startSecond, endSecond, endTimes, peopleByOrdinal, locationsByOrdinal,
+                    events);
+        }
+        return events;
+    }
+
+    private void readBlock(Block block, int locationOrdinal, int startSecond, int endSecond, boolean endTimes,
+                           Person[] peopleByOrdinal, Location[] locationsByOrdinal, UnorderedListADT<Event> events)
+            throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength);
+        readFully(compressed, dataStart + block.offset);
+        Inflater inflater = new Inflater();
+        byte[] data = new byte[block.count * 4 * 5];
+        int length = 0, inflated;
+        try {
+            inflater.setInput(compressed.array());
+            while (!inflater.finished()) {
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                inflated = inflater.inflate(data, length, data.length - length);
+                //Um bloco truncado ou corrompido esgota os dados comprimidos sem terminar
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated Day Archive Block");
+                }
+                length += inflated;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupted Day Archive Block", e);
+        }
+        finally {
+            inflater.end();
+        }
+        blocksRead++;
+        int count = block.count;
+        int[] starts = new int[count], persons = new int[count], locations = new int[count];
+        int[] position = {0};
+        try {
+            int previous = block.minStart;
+            for (int i = 0; i < count; i++) {
+                previous += readVarint(data, position);
+                starts[i] = previous;
+            }
+            for (int i = 0; i < count; i++) {
+                persons[i] = readVarint(data, position);
+            }
+            for (int i = 0; i < count; i++) {
+                locations[i] = readVarint(data, position);
+            }
+            int duration, end;
+            Event event;
+            for (int i = 0; i < count; i++) {
+                duration = readVarint(data, position);
+                end = duration == 0 ? OPEN_END : starts[i] + unzigzag(duration - 1);
+                if (starts[i] > endSecond || end < startSecond ||
+                        (locationOrdinal != -1 && locations[i] != locationOrdinal)) {
+                    continue;
+                }
+                if (persons[i] >= personIds.length || locations[i] >= locationIds.length ||
+                        starts[i] >= SECONDS_PER_DAY || end < 0 || end > OPEN_END) {
+                    throw new IOException("Corrupted Day Archive Block");
+                }
+                if (locationsByOrdinal[locations[i]] == null) {
+                    throw new IOException("Invalid Location Found: " + locationIds[locations[i]]);
+                }
+                event = new Event(peopleByOrdinal[persons[i]], personIds[persons[i]], locationsByOrdinal[locations[i]],
+                        LocalTime.ofSecondOfDay(starts[i]));
+                if (endTimes && end != OPEN_END) {
+                    event.setEndTime(LocalTime.ofSecondOfDay(end));
+                }
+                events.addLast(event);
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupted Day Archive Block", e);
+        }
+        if (position[0] != length) {
+            throw new IOException("Corrupted Day Archive Block");
+        }
+    }
+
+    private Person[] resolvePeople(ListADT<Person> people) {
+        HashMap<String, Person> peopleById = new HashMap<>(people.size() * 2);
+        for (Person person : people) {
+            peopleById.put(person.getId(), person);
+        }
+        Person[] peopleByOrdinal = new Person[personIds.length];
+        for (int i = 0; i < personIds.length; i++) {
+            peopleByOrdinal[i] = peopleById.get(personIds[i]);
+        }
+        return peopleByOrdinal;
+    }
+
+    private Location[] resolveLocations(ListADT<Location> locations) {
+        HashMap<String, Location> locationsById = new HashMap<>(locations.size() * 2);
+        for (Location location : locations) {
+            locationsById.put(location.getId(), location);
+        }
+        Location[] locationsByOrdinal = new Location[locationIds.length];
+        for (int i = 0; i < locationIds.length; i++) {
+            locationsByOrdinal[i] = locationsById.get(locationIds[i]);
+        }
+        return locationsByOrdinal;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Entrada do diretório de um bloco: posição no ficheiro e mapa de zona
+     */
+    private static class Block {
+        private long offset;
+        private int compressedLength;
+        private int count;
+        private int minStart;
+        private int maxEnd;
+        //Conjunto (bitmap) dos números das localizações presentes no bloco
+        private final long[] locations;
+
+        Block(int numberOfLocations) {
+            this.locations = new long[(numberOfLocations + 63) / 64];
+        }
+
+        Block(DataInputStream input, int numberOfLocations) throws IOException {
+            this(numberOfLocations);
+            offset = input.readLong();
+            compressedLength = input.readInt();
+            count = input.readInt();
+            minStart = input.readInt();
+            maxEnd = input.readInt();
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = input.readLong();
+            }
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeLong(offset);
+            output.writeInt(compressedLength);
+            output.writeInt(count);
+            output.writeInt(minStart);
+            output.writeInt(maxEnd);
+            for (long word : locations) {
+                output.writeLong(word);
+            }
+        }
+    }
+}
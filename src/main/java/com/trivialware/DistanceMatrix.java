@@ -0,0 +1,182 @@
+package com.trivialware;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Tabela pré-calculada das distâncias mínimas entre todos os pares de localizações da rede da Universidade.
+ * Os mapas das universidades têm tipicamente algumas centenas de localizações, portanto é possível guardar todas as
+ * distâncias numa matriz e responder a cada consulta de distância em O(1), em vez de executar o algoritmo de Dijkstra
+ * na rede em cada consulta.
+ * <p>
+ * A matriz é calculada com o algoritmo de Floyd-Warshall sobre um array contíguo de {@code double} (a linha {@code i}
+ * ocupa as posições {@code i*n} a {@code i*n+n-1}), sendo as linhas de cada iteração processadas em paralelo (a linha e
+ * a coluna da localização intermédia não mudam durante essa iteração). Para reconstruir os caminhos é guardada uma
+ * matriz com a próxima localização a visitar em cada caminho mínimo.
+ */
+public class DistanceMatrix {
+    //Número mínimo de localizações a partir do qual compensa processar as linhas em paralelo
+    private static final int PARALLEL_THRESHOLD = 128;
+    private final Location[] locations;
+    private final HashMap<String, Integer> indexById;
+    private final double[] distances;
+    private final int[] nextHops;
+
+    /**
+     * Calcula a matriz de distâncias mínimas entre todas as localizações da rede.
+     *
+     * @param locations Lista das localizações (vértices da rede)
+     * @param network   Rede das localizações, cujo peso das arestas é a distância entre as localizações
+     */
+    public DistanceMatrix(ListADT<Location> locations, UndirectedNetworkADT<Location> network) {
+        int n = locations.size();
+        this.locations = new Location[n];
+        this.indexById = new HashMap<>(n * 2);
+        int currentIndex = 0;
+        for (Location location : locations) {
+            this.locations[currentIndex] = location;
+            indexById.put(location.getId(), currentIndex++);
+        }
+        this.distances = new double[n * n];
+        this.nextHops = new int[n * n];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(nextHops, -1);
+        double weight;
+        Integer neighbourIndex;
+        for (int i = 0; i < n; i++) {
+            distances[i * n + i] = 0;
+            nextHops[i * n + i] = i;
+            for (Location neighbour : network.getNeighbours(this.locations[i])) {
+                neighbourIndex = indexById.get(neighbour.getId());
+                weight = network.getEdgeWeight(this.locations[i], neighbour);
+                if (neighbourIndex != null && weight >= 0 && weight < distances[i * n + neighbourIndex]) {
+                    distances[i * n + neighbourIndex] = weight;
+                    nextHops[i * n + neighbourIndex] = neighbourIndex;
+                }
+            }
+        }
+        floydWarshall(n);
+    }
+
+    private void floydWarshall(int n) {
+        for (int k = 0; k < n; k++) {
+            int intermediate = k;
+            IntStream rows = IntStream.range(0, n);
+            if (n >= PARALLEL_THRESHOLD) {
+                rows = rows.parallel();
+            }
+            rows.forEach(i -> relaxRow(n, intermediate, i));
+        }
+    }
+
+    private void relaxRow(int n, int k, int i) {
+        double throughIntermediate = distances[i * n + k];
+        if (throughIntermediate == Double.POSITIVE_INFINITY || i == k) {
+            return;
+        }
+        int rowOffset = i * n, intermediateOffset = k * n, nextHop = nextHops[i * n + k];
+        double candidate;
+        for (int j = 0; j < n; j++) {
+            candidate = throughIntermediate + distances[intermediateOffset + j];
+            if (candidate < distances[rowOffset + j]) {
+                distances[rowOffset + j] = candidate;
+                nextHops[rowOffset + j] = nextHop;
+            }
+        }
+    }
+
+    /**
+     * Obtém o índice interno de uma localização na matriz
+     *
+     * @param location Localização
+     * @return Índice da localização, ou -1 caso a localização não exista na matriz
+     */
+    public int indexOf(Location location) {
+        if (location == null) {
+            return -1;
+        }
+        Integer index = indexById.get(location.getId());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return Número de localizações na matriz
+     */
+    public int size() {
+        return locations.length;
+    }
+
+    /**
+     * Obtém a localização correspondente a um índice interno da matriz
+     *
+     * @param index Índice da localização
+     * @return Localização correspondente ao índice
+     */
+    public Location getLocation(int index) {
+        return locations[index];
+    }
+
+    /**
+     * Obtém a distância mínima entre duas localizações em O(1)
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @return Distância mínima entre as duas localizações, ou {@link Double#MAX_VALUE} caso não exista caminho entre as
+     * mesmas (ou alguma delas não exista na matriz)
+     */
+    public double getDistance(Location origin, Location destination) {
+        int from = indexOf(origin), to = indexOf(destination);
+        if (from == -1 || to == -1) {
+            return Double.MAX_VALUE;
+        }
+        return getDistance(from, to);
+    }
+
+    /**
+     * Obtém a distância mínima entre duas localizações a partir dos seus índices internos
+     *
+     * @param from Índice da localização de origem
+     * @param to   Índice da localização de destino
+     * @return Distância mínima entre as duas localizações, ou {@link Double#MAX_VALUE} caso não exista caminho
+     */
+    public double getDistance(int from, int to) {
+        double distance = distances[from * locations.length + to];
+        return distance == Double.POSITIVE_INFINITY ? Double.MAX_VALUE : distance;
+    }
+
+    /**
+     * Reconstrói o caminho mínimo entre duas localizações, com o mesmo contrato de
+     * {@link DirectedNetworkADT#getCheapestPath(Object, Object, StackADT)}: o caminho é colocado numa pilha com a
+     * origem no topo e o destino no fundo.
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @param path        Pilha onde será colocado o caminho
+     * @return Distância do caminho, -1 caso as localizações não existam ou sejam iguais, ou {@link Double#MAX_VALUE}
+     * caso não exista caminho (sendo colocado apenas o destino na pilha)
+     */
+    public double getPath(Location origin, Location destination, StackADT<Location> path) {
+        int from = indexOf(origin), to = indexOf(destination);
+        if (from == -1 || to == -1 || from == to) {
+            return -1;
+        }
+        int n = locations.length;
+        if (nextHops[from * n + to] == -1) {
+            path.push(destination);
+            return Double.MAX_VALUE;
+        }
+        //A matriz de próximos saltos dá o caminho da origem para o destino, e a pilha precisa dele pela ordem inversa
+        int[] hops = new int[n];
+        int numberOfHops = 0, current = from;
+        hops[numberOfHops++] = current;
+        while (current != to) {
+            current = nextHops[current * n + to];
+            hops[numberOfHops++] = current;
+        }
+        for (int i = numberOfHops - 1; i >= 0; i--) {
+            path.push(locations[hops[i]]);
+        }
+        return distances[from * n + to];
+    }
+}
@@ -0,0 +1,100 @@
+package com.trivialware;
+
+/**
+ * Estatísticas do tempo de permanência das pessoas em cada localização, separadas pelo papel da pessoa. São atualizadas
+ * em fluxo ({@link MovementListener}): sempre que um evento é adicionado, a hora de fim do evento anterior da mesma
+ * pessoa fica definida e a duração desse evento é adicionada ao resumo ({@link QuantileSketch}) da sua localização e
+ * papel, bem como ao resumo da localização para todas as pessoas. Os eventos em curso não são contados.
+ * <p>
+ * Cada consulta lê apenas um resumo, de tamanho independente do número de eventos, pelo que tem custo constante.
+ * O papel considerado é o da pessoa no momento em que o evento terminou; pessoas desconhecidas (ou sem papel) são
+ * contadas num resumo à parte.
+ */
+public class DwellTimeStatistics implements MovementListener {
+    /**
+     * Erro relativo máximo por omissão das estimativas dos quantis
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    private static final Person.Role[] ROLES = Person.Role.values();
+    //Posições adicionais por localização: pessoas desconhecidas e todas as pessoas
+    private static final int UNKNOWN = ROLES.length;
+    private static final int ALL = ROLES.length + 1;
+    private final CampusGraph graph;
+    private final double relativeAccuracy;
+    private final QuantileSketch[][] sketches;
+
+    /**
+     * Cria as estatísticas vazias com a precisão por omissão
+     *
+     * @param graph Representação compacta da rede da Universidade, que define o índice de cada localização
+     */
+    public DwellTimeStatistics(CampusGraph graph) {
+        this(graph, DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Cria as estatísticas vazias
+     *
+     * @param graph            Representação compacta da rede da Universidade, que define o índice de cada localização
+     * @param relativeAccuracy Erro relativo máximo das estimativas dos quantis
+     */
+    public DwellTimeStatistics(CampusGraph graph, double relativeAccuracy) {
+        this.graph = graph;
+        this.relativeAccuracy = relativeAccuracy;
+        this.sketches = new QuantileSketch[graph.size()][ALL + 1];
+    }
+
+    @Override
+    public void eventAdded(Event previousEvent, Event event) {
+        if (previousEvent == null) {
+            return;
+        }
+        int location = graph.indexOf(previousEvent.getLocation());
+        if (location == -1) {
+            return;
+        }
+        //A hora de fim é o segundo anterior ao evento seguinte, sendo este segundo ainda contado na permanência
+        int dwellTime = Math.max(0, event.getStartTime().toSecondOfDay() -
+                previousEvent.getStartTime().toSecondOfDay());
+        Person person = previousEvent.getPerson();
+        getOrCreate(location, person == null || person.getRole() == null ? UNKNOWN : person.getRole().ordinal())
+                .add(dwellTime);
+        getOrCreate(location, ALL).add(dwellTime);
+    }
+
+    private QuantileSketch getOrCreate(int location, int role) {
+        if (sketches[location][role] == null) {
+            sketches[location][role] = new QuantileSketch(relativeAccuracy);
+        }
+        return sketches[location][role];
+    }
+
+    private QuantileSketch copyOf(Location location, int role) {
+        int index = graph.indexOf(location);
+        if (index == -1 || sketches[index][role] == null) {
+            return new QuantileSketch(relativeAccuracy);
+        }
+        return new QuantileSketch(sketches[index][role]);
+    }
+
+    /**
+     * Obtém o resumo dos tempos de permanência (em segundos) numa localização das pessoas com um dado papel
+     *
+     * @param location Localização
+     * @param role     Papel das pessoas, ou null para as pessoas desconhecidas ou sem papel
+     * @return Cópia do resumo (vazio caso não existam permanências terminadas)
+     */
+    public QuantileSketch getSketch(Location location, Person.Role role) {
+        return copyOf(location, role == null ? UNKNOWN : role.ordinal());
+    }
+
+    /**
+     * Obtém o resumo dos tempos de permanência (em segundos) numa localização de todas as pessoas
+     *
+     * @param location Localização
+     * @return Cópia do resumo (vazio caso não existam permanências terminadas)
+     */
+    public QuantileSketch getSketch(Location location) {
+        return copyOf(location, ALL);
+    }
+}
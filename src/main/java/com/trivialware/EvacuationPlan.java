@@ -0,0 +1,125 @@
+package com.trivialware;
+
+import java.util.HashMap;
+
+/**
+ * Resultado do planeamento de uma evacuação ({@link EvacuationPlanner}): o percurso atribuído a cada pessoa presente
+ * na Universidade, a estimativa do tempo que cada uma demora a sair e a estimativa do tempo total da evacuação.
+ */
+public class EvacuationPlan {
+    private final UnorderedListADT<Route> routes;
+    private final HashMap<String, Route> routesByPerson;
+    private final UnorderedListADT<Route> unreachable;
+    private double totalTime;
+    private int passes;
+
+    EvacuationPlan() {
+        this.routes = new ArrayList<>();
+        this.routesByPerson = new HashMap<>();
+        this.unreachable = new ArrayList<>();
+    }
+
+    void addRoute(Route route) {
+        if (route.getPath() == null) {
+            unreachable.addLast(route);
+        }
+        else {
+            routes.addLast(route);
+            totalTime = Math.max(totalTime, route.getTime());
+        }
+        routesByPerson.put(route.getPersonId(), route);
+    }
+
+    void setPasses(int passes) {
+        this.passes = passes;
+    }
+
+    /**
+     * @return Percursos de todas as pessoas que conseguem sair, pela ordem em que foram planeados
+     */
+    public ListADT<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * @return Pessoas para as quais não existe percurso até uma saída (com o percurso a null)
+     */
+    public ListADT<Route> getUnreachable() {
+        return unreachable;
+    }
+
+    /**
+     * Obtém o percurso atribuído a uma pessoa
+     *
+     * @param personId Identificador único da pessoa
+     * @return Percurso da pessoa, ou null caso a pessoa não esteja presente na Universidade
+     */
+    public Route getRoute(String personId) {
+        return routesByPerson.get(personId);
+    }
+
+    /**
+     * @return Estimativa do tempo total da evacuação em segundos (tempo de saída da última pessoa)
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return Número de iterações de reencaminhamento realizadas até o plano estabilizar
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * Percurso de evacuação de uma pessoa
+     */
+    public static class Route {
+        private final String personId;
+        private final Person person;
+        private final ListADT<Location> path;
+        private final double distance;
+        private final double time;
+
+        Route(String personId, Person person, ListADT<Location> path, double distance, double time) {
+            this.personId = personId;
+            this.person = person;
+            this.path = path;
+            this.distance = distance;
+            this.time = time;
+        }
+
+        public String getPersonId() {
+            return personId;
+        }
+
+        /**
+         * @return Pessoa, ou null caso seja uma pessoa desconhecida
+         */
+        public Person getPerson() {
+            return person;
+        }
+
+        /**
+         * @return Localizações a percorrer, da localização atual até à saída, ou null caso não exista percurso
+         */
+        public ListADT<Location> getPath() {
+            return path;
+        }
+
+        /**
+         * @return Distância total do percurso em metros
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return Estimativa do tempo de saída em segundos, incluindo as esperas nas localizações congestionadas
+         */
+        public double getTime() {
+            return time;
+        }
+    }
+}
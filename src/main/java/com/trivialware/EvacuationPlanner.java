@@ -0,0 +1,293 @@
+package com.trivialware;
+
+import java.util.Arrays;
+
+/**
+ * Planeamento de evacuações que tem em conta a capacidade máxima das localizações. A simulação de emergência do menu
+ * encaminha cada pessoa de forma independente pelo caminho mais curto, o que leva a que toda a gente seja enviada pelo
+ * mesmo corredor. Este planeador trata a capacidade máxima de cada localização como um limite de fluxo: uma localização
+ * com capacidade {@code c} deixa passar no máximo {@code c} pessoas a cada {@code crossingTime} segundos, pelo que a
+ * partir daí cada grupo de {@code c} pessoas adicionais espera mais {@code crossingTime} segundos para a atravessar.
+ * <p>
+ * O encaminhamento é iterativo e sensível ao congestionamento: as pessoas de cada localização são encaminhadas em grupos
+ * pelo caminho de menor tempo (tempo a andar mais o tempo de espera nas localizações com a carga atual), sendo a carga
+ * do percurso escolhido somada às localizações atravessadas. Nas iterações seguintes cada grupo é retirado e
+ * reencaminhado com a carga dos restantes, até nenhum percurso mudar ou ser atingido o número máximo de iterações.
+ * No final, o tempo de cada pessoa é calculado simulando as filas de cada localização pela ordem de chegada das pessoas
+ * aos percursos do plano, e o tempo total da evacuação é o tempo da última pessoa a sair.
+ * <p>
+ * Cada grupo sai pela saída de emergência que lhe for mais rápida, podendo grupos da mesma localização sair por saídas
+ * diferentes. O grafo compacto é construído uma única vez, e cada chamada a {@link #plan() plan} usa a localização atual das
+ * pessoas, para que o plano possa ser recalculado durante uma emergência. Tal como as restantes consultas, deve ser
+ * chamado com o monitor da Universidade adquirido caso existam outras threads a alterá-la.
+ */
+public class EvacuationPlanner {
+    /**
+     * Velocidade de marcha por omissão, em metros por segundo
+     */
+    public static final double DEFAULT_WALKING_SPEED = 1.4;
+    /**
+     * Tempo por omissão que um grupo com a capacidade máxima de uma localização demora a atravessá-la, em segundos
+     */
+    public static final double DEFAULT_CROSSING_TIME = 5;
+    /**
+     * Número máximo de pessoas da mesma localização encaminhadas em conjunto, por omissão
+     */
+    public static final int DEFAULT_GROUP_SIZE = 10;
+    /**
+     * Número máximo de iterações de reencaminhamento, por omissão
+     */
+    public static final int DEFAULT_MAXIMUM_PASSES = 4;
+    private final University university;
+    private final CampusGraph graph;
+    private final boolean[] exits;
+    private final int[] capacities;
+    private final double walkingSpeed;
+    private final double crossingTime;
+    private final int groupSize;
+    private final int maximumPasses;
+
+    /**
+     * Cria um planeador de evacuações com os parâmetros por omissão
+     *
+     * @param university Universidade a evacuar
+     */
+    public EvacuationPlanner(University university) {
+        this(university, DEFAULT_WALKING_SPEED, DEFAULT_CROSSING_TIME, DEFAULT_GROUP_SIZE, DEFAULT_MAXIMUM_PASSES);
+    }
+
+    /**
+     * Cria um planeador de evacuações
+     *
+     * @param university    Universidade a evacuar
+     * @param walkingSpeed  Velocidade de marcha em metros por segundo
+     * @param crossingTime  Tempo em segundos que um grupo com a capacidade máxima de uma localização demora a
+     *                      atravessá-la
+     * @param groupSize     Número máximo de pessoas da mesma localização encaminhadas em conjunto
+     * @param maximumPasses Número máximo de iterações de reencaminhamento
+     */
+    public EvacuationPlanner(University university, double walkingSpeed, double crossingTime, int groupSize,
+                             int maximumPasses) {
+        if (walkingSpeed <= 0 || crossingTime < 0 || groupSize < 1 || maximumPasses < 1) {
+            throw new IllegalArgumentException("Parâmetros de evacuação inválidos");
+        }
+        this.university = university;
+        this.graph = university.getCampusGraph();
+        this.walkingSpeed = walkingSpeed;
+        this.crossingTime = crossingTime;
+        this.groupSize = groupSize;
+        this.maximumPasses = maximumPasses;
+        int n = graph.size();
+        this.exits = new boolean[n];
+        this.capacities = new int[n];
+        Location location;
+        for (int i = 0; i < n; i++) {
+            location = graph.getLocation(i);
+            exits[i] = location.isEmergencyExit();
+            capacities[i] = Math.max(1, location.getMaximumCapacity());
+        }
+    }
+
+    /**
+     * Calcula o plano de evacuação de todas as pessoas presentes na Universidade (incluindo pessoas desconhecidas)
+     *
+     * @return Plano de evacuação
+     */
+    public EvacuationPlan plan() {
+        int n = graph.size();
+        /*
+        As pessoas são agrupadas pela sua localização atual, ficando os eventos ordenados por localização, e cada
+        localização é dividida em grupos de no máximo groupSize pessoas (o grupo g ocupa as posições groupStarts[g] a
+        groupStarts[g] + groupSizes[g] - 1 do array de eventos).
+         */
+        ListADT<Event> currentEvents = university.getCurrentEvents();
+        int[] peopleByOrigin = new int[n + 1];
+        int origin;
+        for (Event event : currentEvents) {
+            origin = graph.indexOf(event.getLocation());
+            peopleByOrigin[origin + 1]++;
+        }
+        int[] originOffsets = new int[n + 2];
+        int numberOfGroups = 0;
+        for (int i = 0; i <= n; i++) {
+            originOffsets[i + 1] = originOffsets[i] + peopleByOrigin[i];
+            numberOfGroups += (peopleByOrigin[i] + groupSize - 1) / groupSize;
+        }
+        Event[] people = new Event[currentEvents.size()];
+        int[] nextPosition = Arrays.copyOf(originOffsets, n + 1);
+        for (Event event : currentEvents) {
+            people[nextPosition[graph.indexOf(event.getLocation()) + 1]++] = event;
+        }
+        int[] groupOrigins = new int[numberOfGroups], groupStarts = new int[numberOfGroups];
+        int[] groupSizes = new int[numberOfGroups];
+        int currentGroup = 0;
+        for (int i = 0; i <= n; i++) {
+            for (int start = originOffsets[i]; start < originOffsets[i + 1]; start += groupSize) {
+                groupOrigins[currentGroup] = i - 1;
+                groupStarts[currentGroup] = start;
+                groupSizes[currentGroup++] = Math.min(groupSize, originOffsets[i + 1] - start);
+            }
+        }
+        int[][] groupPaths = new int[numberOfGroups][];
+        int[] loads = new int[n];
+        double[] distances = new double[n];
+        int[] predecessors = new int[n];
+        int passes = 0, changedGroups = 1;
+        int[] path;
+        while (passes < maximumPasses && changedGroups > 0) {
+            passes++;
+            changedGroups = 0;
+            for (int g = 0; g < numberOfGroups; g++) {
+                if (groupOrigins[g] == -1) {
+                    continue;
+                }
+                updateLoads(loads, groupPaths[g], -groupSizes[g]);
+                path = route(groupOrigins[g], loads, distances, predecessors);
+                if (!Arrays.equals(path, groupPaths[g])) {
+                    changedGroups++;
+                }
+                groupPaths[g] = path;
+                updateLoads(loads, path, groupSizes[g]);
+            }
+        }
+        return buildPlan(people, groupStarts, groupSizes, groupPaths, passes);
+    }
+
+    /*
+    Encaminha um grupo da localização de origem até à saída de menor tempo, considerando a carga atual das localizações
+     */
+    private int[] route(int origin, int[] loads, double[] distances, int[] predecessors) {
+        int exit = graph.shortestPaths(new int[]{origin}, exits,
+                (edge, target) -> graph.getEdgeWeight(edge) / walkingSpeed + waitingTime(target, loads[target]),
+                distances, predecessors);
+        if (exit == -1) {
+            return null;
+        }
+        int length = 0;
+        for (int current = exit; current != -1; current = predecessors[current]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int current = exit; current != -1; current = predecessors[current]) {
+            path[--length] = current;
+        }
+        return path;
+    }
+
+    private double waitingTime(int location, int load) {
+        return (double) (load / capacities[location]) * crossingTime;
+    }
+
+    /*
+    A localização de origem não conta para a carga, visto que as pessoas já se encontram nela
+     */
+    private static void updateLoads(int[] loads, int[] path, int amount) {
+        if (path == null) {
+            return;
+        }
+        for (int i = 1; i < path.length; i++) {
+            loads[path[i]] += amount;
+        }
+    }
+
+    private EvacuationPlan buildPlan(Event[] people, int[] groupStarts, int[] groupSizes, int[][] groupPaths,
+                                     int passes) {
+        EvacuationPlan plan = new EvacuationPlan();
+        plan.setPasses(passes);
+        double[] times = simulate(groupStarts, groupSizes, groupPaths, people.length);
+        int[] path;
+        double distance;
+        Event event;
+        UnorderedListADT<Location> locationPath;
+        for (int g = 0; g < groupPaths.length; g++) {
+            path = groupPaths[g];
+            distance = 0;
+            locationPath = null;
+            if (path != null) {
+                locationPath = new ArrayList<>(path.length);
+                locationPath.addLast(graph.getLocation(path[0]));
+                for (int i = 1; i < path.length; i++) {
+                    distance += graph.getEdgeWeight(path[i - 1], path[i]);
+                    locationPath.addLast(graph.getLocation(path[i]));
+                }
+            }
+            for (int p = groupStarts[g]; p < groupStarts[g] + groupSizes[g]; p++) {
+                event = people[p];
+                plan.addRoute(new EvacuationPlan.Route(event.getPersonId(), event.getPerson(), locationPath,
+                        path == null ? Double.MAX_VALUE : distance, times[p]));
+            }
+        }
+        return plan;
+    }
+
+    /*
+    Simulação por acontecimentos das filas de cada localização: as chegadas são processadas por ordem temporal, e cada
+    localização deixa passar no máximo a sua capacidade de pessoas por cada intervalo de crossingTime segundos. Devolve o
+    instante em que cada pessoa chega à saída.
+     */
+    private double[] simulate(int[] groupStarts, int[] groupSizes, int[][] groupPaths, int numberOfPeople) {
+        double[] times = new double[numberOfPeople];
+        double[] slotStarts = new double[graph.size()];
+        int[] slotUsage = new int[graph.size()];
+        ArrayHeap<Arrival> arrivals = new ArrayHeap<>(Math.max(1, numberOfPeople));
+        int[] path;
+        for (int g = 0; g < groupPaths.length; g++) {
+            path = groupPaths[g];
+            for (int p = groupStarts[g]; p < groupStarts[g] + groupSizes[g]; p++) {
+                if (path == null) {
+                    times[p] = Double.MAX_VALUE;
+                }
+                else if (path.length > 1) {
+                    arrivals.insert(new Arrival(graph.getEdgeWeight(path[0], path[1]) / walkingSpeed, p, path, 1));
+                }
+            }
+        }
+        Arrival arrival;
+        int location;
+        double departure;
+        while (!arrivals.isEmpty()) {
+            arrival = arrivals.deleteMinimum();
+            location = arrival.path[arrival.step];
+            departure = Math.max(arrival.time, slotStarts[location]);
+            if (departure > slotStarts[location]) {
+                slotStarts[location] = departure;
+                slotUsage[location] = 0;
+            }
+            if (++slotUsage[location] == capacities[location]) {
+                slotStarts[location] += crossingTime;
+                slotUsage[location] = 0;
+            }
+            if (arrival.step == arrival.path.length - 1) {
+                times[arrival.person] = departure;
+            }
+            else {
+                arrivals.insert(new Arrival(departure + graph.getEdgeWeight(location,
+                        arrival.path[arrival.step + 1]) / walkingSpeed, arrival.person, arrival.path, arrival.step + 1));
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Chegada de uma pessoa a uma localização do seu percurso, ordenada pelo instante de chegada
+     */
+    private static class Arrival implements Comparable<Arrival> {
+        private final double time;
+        private final int person;
+        private final int[] path;
+        private final int step;
+
+        Arrival(double time, int person, int[] path, int step) {
+            this.time = time;
+            this.person = person;
+            this.path = path;
+            this.step = step;
+        }
+
+        @Override
+        public int compareTo(Arrival o) {
+            int comparison = Double.compare(time, o.time);
+            return comparison != 0 ? comparison : Integer.compare(person, o.person);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.trivialware;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor TCP que recebe movimentos diretamente dos leitores de cartões, em vez de ser necessário gerar novamente o
+ * ficheiro de movimentos. Cada leitor abre uma ligação e envia um movimento por linha, em JSON, com o mesmo esquema
+ * usado no ficheiro de movimentos ({@code location_id}, {@code person_id} e {@code time}).
+ * <p>
+ * Cada ligação é atendida pela sua própria thread, que apenas interpreta as linhas e as coloca numa fila limitada.
+ * Uma única thread consumidora retira os movimentos da fila em lotes e adiciona-os à Universidade com o monitor da
+ * mesma adquirido, de modo a que o custo da sincronização seja dividido por todo o lote. Quando a fila está cheia, as
+ * threads das ligações ficam à espera e deixam de ler do socket, o que faz com que os leitores abrandem (contrapressão).
+ * Linhas inválidas (JSON inválido, campos em falta ou localização inexistente) e movimentos fora de ordem são
+ * descartados e contabilizados como rejeitados, tal como todos os movimentos de um lote cuja adição falhe (por exemplo,
+ * por uma falha de escrita no {@link MovementLog registo de movimentos}), continuando a thread consumidora a tratar os
+ * lotes seguintes.
+ */
+public class EventIngestionServer {
+    private final University university;
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<Movement> queue;
+    private final int batchSize;
+    private final AtomicLong acceptedEvents;
+    private final AtomicLong rejectedEvents;
+    //Ligações abertas e respetivas threads, para serem fechadas em stop()
+    private final ConcurrentHashMap<Socket, Thread> connections;
+    private volatile boolean running;
+    private volatile boolean consuming;
+    private Thread acceptorThread;
+    private Thread consumerThread;
+
+    /**
+     * Construtor do servidor de ingestão de movimentos. O servidor só começa a aceitar ligações após a chamada a
+     * {@link #start() start}.
+     *
+     * @param university    Universidade onde os movimentos recebidos serão adicionados
+     * @param address       Endereço e porta onde o servidor irá escutar (porta 0 para uma porta livre qualquer)
+     * @param queueCapacity Número máximo de movimentos recebidos à espera de serem adicionados
+     * @param batchSize     Número máximo de movimentos adicionados à Universidade de cada vez
+     * @throws IOException Caso não seja possível escutar no endereço indicado
+     */
+    public EventIngestionServer(University university, InetSocketAddress address, int queueCapacity, int batchSize)
+            throws IOException {
+        this.university = university;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.acceptedEvents = new AtomicLong();
+        this.rejectedEvents = new AtomicLong();
+        this.connections = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Começa a aceitar ligações de leitores e a adicionar os movimentos recebidos à Universidade
+     */
+    public void start() {
+        running = true;
+        consuming = true;
+        consumerThread = new Thread(this::consume, "ingestion-consumer");
+        consumerThread.start();
+        acceptorThread = new Thread(this::accept, "ingestion-acceptor");
+        acceptorThread.start();
+    }
+
+    /**
+     * Pára o servidor. Deixa de aceitar ligações e fecha as ligações dos leitores, e os movimentos que ainda estejam na
+     * fila são adicionados antes da thread consumidora terminar. Os movimentos recebidos a partir deste momento são
+     * descartados pelos leitores, pelo que nenhum movimento fica na fila sem ser adicionado ou contabilizado.
+     *
+     * @throws InterruptedException Caso a thread atual seja interrompida enquanto espera pelo fim das threads
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        try {
+            serverSocket.close();
+        }
+        catch (IOException ignored) {
+        }
+        acceptorThread.join();
+        //Depois do fim da thread que aceita as ligações, não são abertas novas ligações
+        for (Socket socket : connections.keySet()) {
+            try {
+                socket.close();
+            }
+            catch (IOException ignored) {
+            }
+        }
+        for (Thread connectionThread : connections.values()) {
+            connectionThread.join();
+        }
+        consuming = false;
+        consumerThread.join();
+    }
+
+    /**
+     * Obtém o endereço onde o servidor está a escutar, útil quando é usada a porta 0
+     *
+     * @return Endereço e porta do servidor
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * @return Número de movimentos adicionados à Universidade até ao momento
+     */
+    public long getAcceptedEvents() {
+        return acceptedEvents.get();
+    }
+
+    /**
+     * @return Número de movimentos descartados até ao momento
+     */
+    public long getRejectedEvents() {
+        return rejectedEvents.get();
+    }
+
+    private void accept() {
+        Thread connectionThread;
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionThread = new Thread(() -> handleConnection(socket), "ingestion-reader-" +
+                        socket.getRemoteSocketAddress());
+                connectionThread.setDaemon(true);
+                connections.put(socket, connectionThread);
+                connectionThread.start();
+            }
+            catch (SocketException e) {
+                //Socket fechado em stop()
+                return;
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket; BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            Movement movement;
+            while (running && (line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                movement = parseMovement(line);
+                if (movement == null) {
+                    rejectedEvents.incrementAndGet();
+                    continue;
+                }
+                //Com a fila cheia, a espera é repetida enquanto o servidor não for parado
+                while (!queue.offer(movement, 100, TimeUnit.MILLISECONDS)) {
+                    if (!running) {
+                        rejectedEvents.incrementAndGet();
+                        return;
+                    }
+                }
+            }
+        }
+        catch (IOException ignored) {
+            //Ligação fechada pelo leitor ou em stop()
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            connections.remove(socket);
+        }
+    }
+
+    private static Movement parseMovement(String line) {
+        try {
+            JSONObject eventJSON = new JSONObject(line);
+            String locationId = eventJSON.getString("location_id");
+            String personId = eventJSON.getString("person_id");
+            if (locationId.equals("") || personId.equals("")) {
+                return null;
+            }
+            return new Movement(personId, locationId, LocalTime.parse(eventJSON.getString("time")));
+        }
+        catch (JSONException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private void consume() {
+        Movement[] batch = new Movement[batchSize];
+        int batchLength;
+        Movement movement;
+        while (consuming || !queue.isEmpty()) {
+            try {
+                movement = queue.poll(100, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (movement == null) {
+                continue;
+            }
+            batch[0] = movement;
+            batchLength = 1;
+            while (batchLength < batchSize && (movement = queue.poll()) != null) {
+                batch[batchLength++] = movement;
+            }
+            try {
+                addBatch(batch, batchLength);
+            }
+            catch (RuntimeException e) {
+                //Sem esta captura a thread consumidora terminaria e os leitores ficariam bloqueados com a fila cheia
+                rejectedEvents.addAndGet(batchLength);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void addBatch(Movement[] batch, int batchLength) {
+        UnorderedListADT<Event> events = new ArrayList<>(batchLength);
+        Location location;
+        MovementLog movementLog;
+        int added;
+        synchronized (university) {
+            for (int i = 0; i < batchLength; i++) {
+                location = university.getLocationById(batch[i].locationId);
+                if (location != null) {
+                    events.addLast(new Event(university.getPersonById(batch[i].personId), batch[i].personId,
+                            location, batch[i].time));
+                }
+            }
+            added = university.addEvents(events);
+            movementLog = university.getMovementLog();
+        }
+        //O registo é persistido sem o monitor, para que as consultas e os lotes seguintes não esperem pela sincronização
+        if (movementLog != null) {
+            movementLog.sync();
+        }
+        acceptedEvents.addAndGet(added);
+        rejectedEvents.addAndGet(batchLength - added);
+    }
+
+    /**
+     * Movimento recebido de um leitor e ainda não resolvido em Localização e Pessoa do sistema
+     */
+    private static class Movement {
+        private final String personId;
+        private final String locationId;
+        private final LocalTime time;
+
+        Movement(String personId, String locationId, LocalTime time) {
+            this.personId = personId;
+            this.locationId = locationId;
+            this.time = time;
+        }
+    }
+}
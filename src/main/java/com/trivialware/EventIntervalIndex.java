@@ -0,0 +1,228 @@
+package com.trivialware;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Índice temporal dos eventos de uma localização, que permite saber quem esteve na localização num dado instante
+ * (consulta pontual) ou num dado intervalo temporal (consulta de intervalo) sem percorrer todos os eventos.
+ * <p>
+ * Os eventos terminados são guardados numa árvore de intervalos centrada: cada nó tem um instante central e guarda os
+ * eventos que o contêm, ordenados pela hora de início e, numa segunda cópia, pela hora de fim (decrescente), ficando os
+ * eventos que terminam antes do centro na subárvore esquerda e os que começam depois na direita. Cada consulta desce um
+ * único ramo (ou os dois, apenas onde o intervalo pedido contém o centro) e só percorre em cada nó os eventos que
+ * pertencem ao resultado, pelo que o seu custo é O(log n + k). A árvore é construída de uma só vez a partir dos eventos
+ * já ordenados pela hora de início.
+ * <p>
+ * Os eventos ainda em curso (cuja hora de fim pode mudar quando chegar o próximo evento da pessoa) e os eventos
+ * adicionados depois da construção são guardados numa lista à parte, percorrida em cada consulta. Quando esta lista
+ * cresce demasiado, a árvore é reconstruída com os eventos entretanto terminados, mantendo-se o custo amortizado baixo.
+ */
+public class EventIntervalIndex {
+    //Número mínimo de eventos recentes a partir do qual a árvore é reconstruída
+    private static final int MINIMUM_REBUILD_THRESHOLD = 256;
+    private Node root;
+    private int indexedEvents;
+    //Número de eventos em curso no momento da última construção, que ficaram na lista de eventos recentes
+    private int openEventsAtBuild;
+    private final UnorderedListADT<Event> recentEvents;
+
+    /**
+     * Constrói o índice a partir dos eventos de uma localização
+     *
+     * @param sortedEvents Eventos da localização, ordenados pela hora de início
+     * @param count        Número de posições de {@code sortedEvents} a considerar
+     */
+    public EventIntervalIndex(Event[] sortedEvents, int count) {
+        this.recentEvents = new ArrayList<>();
+        build(sortedEvents, count);
+    }
+
+    private void build(Event[] sortedEvents, int count) {
+        Event[] closedEvents = new Event[count];
+        int numberOfClosed = 0;
+        for (int i = 0; i < count; i++) {
+            if (sortedEvents[i].getEndTime().equals(LocalTime.MAX)) {
+                recentEvents.addLast(sortedEvents[i]);
+            }
+            else {
+                closedEvents[numberOfClosed++] = sortedEvents[i];
+            }
+        }
+        this.indexedEvents = numberOfClosed;
+        this.openEventsAtBuild = recentEvents.size();
+        this.root = buildNode(closedEvents, 0, numberOfClosed);
+    }
+
+    /*
+    No índice, o fim de um evento nunca é anterior ao seu início (dois eventos da mesma pessoa no mesmo segundo dão
+    origem a um evento com fim anterior ao início), o que garante que o evento central fica sempre no nó.
+     */
+    private static int startKey(Event event) {
+        return event.getStartTime().toSecondOfDay();
+    }
+
+    private static int endKey(Event event) {
+        return Math.max(startKey(event), event.getEndTime().toSecondOfDay());
+    }
+
+    private static Node buildNode(Event[] events, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int center = startKey(events[from + (to - from) / 2]);
+        int numberOfLeft = 0, numberOfRight = 0, numberOfCentered = 0;
+        for (int i = from; i < to; i++) {
+            if (endKey(events[i]) < center) {
+                numberOfLeft++;
+            }
+            else if (startKey(events[i]) > center) {
+                numberOfRight++;
+            }
+        }
+        //A ordem por hora de início é preservada em todas as partições
+        Event[] left = new Event[numberOfLeft], right = new Event[numberOfRight];
+        Event[] centered = new Event[to - from - numberOfLeft - numberOfRight];
+        numberOfLeft = 0;
+        numberOfRight = 0;
+        for (int i = from; i < to; i++) {
+            if (endKey(events[i]) < center) {
+                left[numberOfLeft++] = events[i];
+            }
+            else if (startKey(events[i]) > center) {
+                right[numberOfRight++] = events[i];
+            }
+            else {
+                centered[numberOfCentered++] = events[i];
+            }
+        }
+        Node node = new Node(center, centered);
+        node.left = buildNode(left, 0, numberOfLeft);
+        node.right = buildNode(right, 0, numberOfRight);
+        return node;
+    }
+
+    /**
+     * Adiciona um evento capturado depois da construção do índice
+     *
+     * @param event Evento da localização
+     */
+    public void add(Event event) {
+        recentEvents.addLast(event);
+        if (recentEvents.size() - openEventsAtBuild > Math.max(MINIMUM_REBUILD_THRESHOLD, indexedEvents / 4)) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        Event[] allEvents = new Event[indexedEvents + recentEvents.size()];
+        int count = collect(root, allEvents, 0);
+        for (Event event : recentEvents) {
+            allEvents[count++] = event;
+        }
+        recentEvents.clear();
+        //Ordenação estável por hora de início (os eventos recentes podem ter chegado fora de ordem)
+        Arrays.sort(allEvents, 0, count);
+        build(allEvents, count);
+    }
+
+    private static int collect(Node node, Event[] events, int count) {
+        if (node == null) {
+            return count;
+        }
+        for (Event event : node.byStart) {
+            events[count++] = event;
+        }
+        count = collect(node.left, events, count);
+        return collect(node.right, events, count);
+    }
+
+    /**
+     * @return Número total de eventos no índice
+     */
+    public int size() {
+        return indexedEvents + recentEvents.size();
+    }
+
+    /**
+     * Obtém os eventos que decorriam num dado instante
+     *
+     * @param time   Instante
+     * @param result Lista onde os eventos encontrados são adicionados
+     */
+    public void getEventsAt(LocalTime time, UnorderedListADT<Event> result) {
+        getEventsInTimeFrame(time, time, result);
+    }
+
+    /**
+     * Obtém os eventos que decorreram (mesmo que parcialmente) num dado intervalo temporal
+     *
+     * @param start  Hora de início do intervalo temporal (inclusive)
+     * @param end    Hora de fim do intervalo temporal (inclusive)
+     * @param result Lista onde os eventos encontrados são adicionados
+     */
+    public void getEventsInTimeFrame(LocalTime start, LocalTime end, UnorderedListADT<Event> result) {
+        int startKey = start.toSecondOfDay(), endKey = end.toSecondOfDay();
+        query(root, startKey, endKey, result);
+        for (Event event : recentEvents) {
+            if (startKey(event) <= endKey && endKey(event) >= startKey) {
+                result.addLast(event);
+            }
+        }
+    }
+
+    private static void query(Node node, int start, int end, UnorderedListADT<Event> result) {
+        while (node != null) {
+            if (end < node.center) {
+                //Os eventos do nó terminam depois do fim do intervalo, basta que comecem antes desse fim
+                for (int i = 0; i < node.byStart.length && node.startKeys[i] <= end; i++) {
+                    result.addLast(node.byStart[i]);
+                }
+                node = node.left;
+            }
+            else if (start > node.center) {
+                //Os eventos do nó começam antes do início do intervalo, basta que terminem depois desse início
+                for (int i = 0; i < node.byEnd.length && node.endKeys[i] >= start; i++) {
+                    result.addLast(node.byEnd[i]);
+                }
+                node = node.right;
+            }
+            else {
+                for (Event event : node.byStart) {
+                    result.addLast(event);
+                }
+                query(node.left, start, end, result);
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Nó da árvore de intervalos centrada
+     */
+    private static class Node {
+        private final int center;
+        private final Event[] byStart;
+        private final int[] startKeys;
+        private final Event[] byEnd;
+        private final int[] endKeys;
+        private Node left;
+        private Node right;
+
+        Node(int center, Event[] byStart) {
+            this.center = center;
+            this.byStart = byStart;
+            this.startKeys = new int[byStart.length];
+            for (int i = 0; i < byStart.length; i++) {
+                startKeys[i] = startKey(byStart[i]);
+            }
+            this.byEnd = Arrays.copyOf(byStart, byStart.length);
+            Arrays.sort(byEnd, Comparator.comparingInt(EventIntervalIndex::endKey).reversed());
+            this.endKeys = new int[byEnd.length];
+            for (int i = 0; i < byEnd.length; i++) {
+                endKeys[i] = endKey(byEnd[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.trivialware;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Ordenação cronológica de eventos, estável e determinística: os eventos são ordenados pela hora de início e, em caso
+ * de empate, pelo identificador da pessoa, mantendo-se a ordem original dos eventos da mesma pessoa no mesmo instante.
+ * Ao contrário da ordenação por heapsort, dois movimentos no mesmo segundo ficam sempre pela mesma ordem,
+ * independentemente da ordem em que foram lidos.
+ * <p>
+ * Como a hora de início tem no máximo 86400 valores distintos (segundos do dia), a ordenação é uma ordenação por
+ * contagem (radix sort de um só dígito) sobre o segundo do dia, em tempo linear: cada bloco de eventos conta, em
+ * paralelo, quantos eventos tem em cada segundo; as contagens de todos os blocos dão a posição final de cada (segundo,
+ * bloco); e cada bloco distribui, em paralelo e pela ordem original, os seus eventos pelas posições finais. Os grupos de
+ * eventos no mesmo segundo (tipicamente pequenos) são depois ordenados pelo identificador da pessoa.
+ */
+public class EventSorts {
+    /**
+     * Ordem cronológica dos eventos, com desempate pelo identificador da pessoa
+     */
+    public static final Comparator<Event> CHRONOLOGICAL_ORDER =
+            Comparator.comparing(Event::getStartTime).thenComparing(Event::getPersonId);
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    //Número mínimo de eventos por bloco, abaixo do qual o custo das contagens de cada bloco não compensa
+    private static final int MINIMUM_CHUNK_SIZE = 1 << 16;
+
+    private EventSorts() {
+    }
+
+    /**
+     * Ordena um array de eventos pela {@link #CHRONOLOGICAL_ORDER ordem cronológica}, de forma estável
+     *
+     * @param events Eventos a ordenar
+     */
+    public static void sort(Event[] events) {
+        int numberOfChunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                events.length / MINIMUM_CHUNK_SIZE));
+        sort(events, numberOfChunks);
+    }
+
+    /**
+     * Ordena um array de eventos pela {@link #CHRONOLOGICAL_ORDER ordem cronológica}, de forma estável, dividindo o
+     * trabalho num número fixo de blocos
+     *
+     * @param events         Eventos a ordenar
+     * @param numberOfChunks Número de blocos processados em paralelo
+     */
+    public static void sort(Event[] events, int numberOfChunks) {
+        int length = events.length;
+        if (length < 2) {
+            return;
+        }
+        int chunks = Math.max(1, Math.min(numberOfChunks, length));
+        int[] seconds = new int[length];
+        //Contagem de eventos de cada bloco por segundo, convertida depois na próxima posição livre
+        int[][] positions = new int[chunks][];
+        stream(chunks).forEach(chunk -> {
+            int[] counts = new int[SECONDS_PER_DAY];
+            for (int i = getChunkStart(length, chunks, chunk); i < getChunkStart(length, chunks, chunk + 1); i++) {
+                seconds[i] = events[i].getStartTime().toSecondOfDay();
+                counts[seconds[i]]++;
+            }
+            positions[chunk] = counts;
+        });
+        //Início do grupo de cada segundo no array ordenado
+        int[] secondStarts = new int[SECONDS_PER_DAY + 1];
+        int position = 0, count;
+        for (int second = 0; second < SECONDS_PER_DAY; second++) {
+            secondStarts[second] = position;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                count = positions[chunk][second];
+                positions[chunk][second] = position;
+                position += count;
+            }
+        }
+        secondStarts[SECONDS_PER_DAY] = position;
+        Event[] sorted = new Event[length];
+        stream(chunks).forEach(chunk -> {
+            int[] next = positions[chunk];
+            for (int i = getChunkStart(length, chunks, chunk); i < getChunkStart(length, chunks, chunk + 1); i++) {
+                sorted[next[seconds[i]]++] = events[i];
+            }
+        });
+        //Desempate dentro de cada segundo (incluindo frações de segundo, se existirem), por intervalos de segundos
+        stream(chunks).forEach(chunk -> {
+            int from, to;
+            for (int second = getChunkStart(SECONDS_PER_DAY, chunks, chunk);
+                 second < getChunkStart(SECONDS_PER_DAY, chunks, chunk + 1); second++) {
+                from = secondStarts[second];
+                to = secondStarts[second + 1];
+                if (to - from > 1) {
+                    Arrays.sort(sorted, from, to, CHRONOLOGICAL_ORDER);
+                }
+            }
+        });
+        System.arraycopy(sorted, 0, events, 0, length);
+    }
+
+    private static IntStream stream(int chunks) {
+        IntStream stream = IntStream.range(0, chunks);
+        return chunks > 1 ? stream.parallel() : stream;
+    }
+
+    private static int getChunkStart(int length, int chunks, int chunk) {
+        return (int) ((long) length * chunk / chunks);
+    }
+}
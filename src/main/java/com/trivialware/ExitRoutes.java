@@ -0,0 +1,291 @@
+package com.trivialware;
+
+import java.util.Arrays;
+
+/**
+ * Tabela com a saída de emergência mais próxima de cada localização e o respetivo caminho. É calculada com uma única
+ * execução do algoritmo de Dijkstra a partir de todas as saídas em simultâneo (várias origens): como as ligações da
+ * rede são não dirigidas, a distância mínima de qualquer saída até uma localização é a distância dessa localização à
+ * saída mais próxima, e a localização anterior no caminho mínimo é o próximo passo do percurso de evacuação.
+ * <p>
+ * Desta forma, o percurso de emergência de qualquer pessoa é obtido percorrendo a tabela, sem ser necessária uma
+ * pesquisa por cada saída e por cada pessoa.
+ * <p>
+ * Quando uma ligação ou localização é bloqueada ou desbloqueada, a árvore de caminhos mínimos é reparada de forma
+ * incremental: um bloqueio só afeta as localizações cujo percurso passava pelo elemento bloqueado (a subárvore abaixo
+ * dele), que são reencaminhadas a partir das localizações vizinhas não afetadas; um desbloqueio só pode encurtar
+ * percursos, sendo as novas distâncias propagadas a partir das extremidades do elemento desbloqueado.
+ */
+public class ExitRoutes {
+    private final CampusGraph graph;
+    private final boolean[] exits;
+    private final double[] distances;
+    //Próxima localização no percurso até à saída mais próxima (-1 nas saídas e nas localizações sem saída alcançável)
+    private final int[] nextSteps;
+    private final int[] nearestExits;
+
+    /**
+     * Calcula a saída mais próxima de cada localização da rede
+     *
+     * @param graph Representação compacta da rede da Universidade
+     */
+    public ExitRoutes(CampusGraph graph) {
+        this.graph = graph;
+        int n = graph.size(), numberOfExits = 0;
+        this.exits = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            exits[i] = graph.getLocation(i).isEmergencyExit();
+            if (exits[i]) {
+                numberOfExits++;
+            }
+        }
+        int[] sources = new int[numberOfExits];
+        numberOfExits = 0;
+        for (int i = 0; i < n; i++) {
+            if (exits[i]) {
+                sources[numberOfExits++] = i;
+            }
+        }
+        this.distances = new double[n];
+        this.nextSteps = new int[n];
+        this.nearestExits = new int[n];
+        graph.shortestPaths(sources, null, null, distances, nextSteps);
+        updateNearestExits();
+    }
+
+    /*
+    A saída mais próxima de cada localização é a saída mais próxima do seu próximo passo, sendo cada percurso
+    percorrido apenas até encontrar uma localização já resolvida
+     */
+    private void updateNearestExits() {
+        int n = graph.size(), length, current;
+        int[] chain = new int[n];
+        boolean[] resolved = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            length = 0;
+            current = i;
+            while (current != -1 && !resolved[current]) {
+                chain[length++] = current;
+                current = nextSteps[current];
+            }
+            int exit = current == -1 ? -1 : nearestExits[current];
+            for (int j = length - 1; j >= 0; j--) {
+                current = chain[j];
+                if (nextSteps[current] == -1) {
+                    exit = distances[current] == 0 && exits[current] ? current : -1;
+                }
+                nearestExits[current] = exit;
+                resolved[current] = true;
+            }
+        }
+    }
+
+    /**
+     * Repara os percursos depois de a ligação entre duas localizações ter sido bloqueada no grafo
+     *
+     * @param from Índice de uma das localizações
+     * @param to   Índice da outra localização
+     * @return Número de localizações cujo percurso mudou
+     */
+    public int edgeBlocked(int from, int to) {
+        if (nextSteps[from] == to) {
+            return repairSubtree(from);
+        }
+        if (nextSteps[to] == from) {
+            return repairSubtree(to);
+        }
+        //A ligação não fazia parte de nenhum percurso
+        return 0;
+    }
+
+    /**
+     * Repara os percursos depois de uma localização ter sido bloqueada no grafo
+     *
+     * @param location Índice da localização
+     * @return Número de localizações cujo percurso mudou
+     */
+    public int locationBlocked(int location) {
+        return repairSubtree(location);
+    }
+
+    /**
+     * Repara os percursos depois de a ligação entre duas localizações ter sido desbloqueada no grafo
+     *
+     * @param from Índice de uma das localizações
+     * @param to   Índice da outra localização
+     * @return Número de localizações cujo percurso mudou
+     */
+    public int edgeUnblocked(int from, int to) {
+        int[] previousNextSteps = Arrays.copyOf(nextSteps, nextSteps.length);
+        double weight = graph.getEdgeWeight(from, to);
+        int[] seeds = new int[2];
+        int numberOfSeeds = 0;
+        if (!graph.isLocationBlocked(from) && !graph.isLocationBlocked(to)) {
+            if (distances[from] + weight < distances[to]) {
+                distances[to] = distances[from] + weight;
+                nextSteps[to] = from;
+                seeds[numberOfSeeds++] = to;
+            }
+            else if (distances[to] + weight < distances[from]) {
+                distances[from] = distances[to] + weight;
+                nextSteps[from] = to;
+                seeds[numberOfSeeds++] = from;
+            }
+        }
+        graph.propagate(seeds, numberOfSeeds, null, null, distances, nextSteps);
+        return finishRepair(previousNextSteps);
+    }
+
+    /**
+     * Repara os percursos depois de uma localização ter sido desbloqueada no grafo
+     *
+     * @param location Índice da localização
+     * @return Número de localizações cujo percurso mudou
+     */
+    public int locationUnblocked(int location) {
+        int[] previousNextSteps = Arrays.copyOf(nextSteps, nextSteps.length);
+        setBestFromNeighbours(location, null);
+        graph.propagate(new int[]{location}, 1, null, null, distances, nextSteps);
+        return finishRepair(previousNextSteps);
+    }
+
+    /*
+    Invalida todas as localizações cujo percurso passa pela raiz indicada e reencaminha-as a partir das localizações
+    vizinhas cujo percurso não foi afetado
+     */
+    private int repairSubtree(int root) {
+        int n = graph.size();
+        int[] previousNextSteps = Arrays.copyOf(nextSteps, n);
+        //0 - por determinar, 1 - afetada, 2 - não afetada
+        byte[] states = new byte[n];
+        states[root] = 1;
+        int[] chain = new int[n], affected = new int[n];
+        int numberOfAffected = 0, length, current;
+        byte state;
+        for (int i = 0; i < n; i++) {
+            length = 0;
+            current = i;
+            while (current != -1 && states[current] == 0) {
+                chain[length++] = current;
+                current = nextSteps[current];
+            }
+            state = current == -1 ? 2 : states[current];
+            for (int j = 0; j < length; j++) {
+                states[chain[j]] = state;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (states[i] == 1) {
+                affected[numberOfAffected++] = i;
+                distances[i] = Double.POSITIVE_INFINITY;
+                nextSteps[i] = -1;
+            }
+        }
+        for (int i = 0; i < numberOfAffected; i++) {
+            setBestFromNeighbours(affected[i], states);
+        }
+        graph.propagate(affected, numberOfAffected, null, null, distances, nextSteps);
+        return finishRepair(previousNextSteps);
+    }
+
+    /*
+    Define a distância de uma localização a partir dos seus vizinhos (ignorando os afetados, caso indicados), ou 0
+    caso seja uma saída
+     */
+    private void setBestFromNeighbours(int location, byte[] states) {
+        if (graph.isLocationBlocked(location)) {
+            return;
+        }
+        if (exits[location]) {
+            distances[location] = 0;
+            nextSteps[location] = -1;
+            return;
+        }
+        int neighbour;
+        double candidate;
+        for (int edge = graph.getFirstEdge(location); edge < graph.getLastEdge(location); edge++) {
+            neighbour = graph.getEdgeTarget(edge);
+            if (graph.isEdgeBlocked(edge) || graph.isLocationBlocked(neighbour) ||
+                    (states != null && states[neighbour] == 1)) {
+                continue;
+            }
+            candidate = distances[neighbour] + graph.getEdgeWeight(edge);
+            if (candidate < distances[location]) {
+                distances[location] = candidate;
+                nextSteps[location] = neighbour;
+            }
+        }
+    }
+
+    private int finishRepair(int[] previousNextSteps) {
+        updateNearestExits();
+        int changed = 0;
+        for (int i = 0; i < nextSteps.length; i++) {
+            if (nextSteps[i] != previousNextSteps[i]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Obtém a saída de emergência mais próxima de uma localização
+     *
+     * @param location Localização
+     * @return Saída mais próxima (a própria localização caso seja uma saída), ou null caso não exista saída alcançável
+     */
+    public Location getNearestExit(Location location) {
+        int index = graph.indexOf(location);
+        if (index == -1 || nearestExits[index] == -1) {
+            return null;
+        }
+        return graph.getLocation(nearestExits[index]);
+    }
+
+    /**
+     * Obtém a distância de uma localização à saída de emergência mais próxima
+     *
+     * @param location Localização
+     * @return Distância até à saída mais próxima, ou {@link Double#MAX_VALUE} caso não exista saída alcançável
+     */
+    public double getDistance(Location location) {
+        int index = graph.indexOf(location);
+        if (index == -1 || distances[index] == Double.POSITIVE_INFINITY) {
+            return Double.MAX_VALUE;
+        }
+        return distances[index];
+    }
+
+    /**
+     * Obtém o percurso de uma localização até à saída de emergência mais próxima, com o mesmo contrato de
+     * {@link DirectedNetworkADT#getCheapestPath(Object, Object, StackADT)}: o caminho é colocado numa pilha com a
+     * origem no topo e a saída no fundo.
+     *
+     * @param location Localização de origem
+     * @param path     Pilha onde será colocado o caminho
+     * @return Distância do caminho, -1 caso a localização não exista ou seja uma saída, ou {@link Double#MAX_VALUE}
+     * caso não exista saída alcançável (ficando a pilha vazia)
+     */
+    public double getPath(Location location, StackADT<Location> path) {
+        int index = graph.indexOf(location);
+        if (index == -1 || exits[index]) {
+            return -1;
+        }
+        if (nearestExits[index] == -1) {
+            return Double.MAX_VALUE;
+        }
+        int length = 0;
+        for (int current = index; current != -1; current = nextSteps[current]) {
+            length++;
+        }
+        int[] steps = new int[length];
+        length = 0;
+        for (int current = index; current != -1; current = nextSteps[current]) {
+            steps[length++] = current;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            path.push(graph.getLocation(steps[i]));
+        }
+        return distances[index];
+    }
+}
@@ -1,18 +1,31 @@
 package com.trivialware;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.stream.IntStream;
 
 /**
  * Classe que contém todos os métodos estáticos auxiliares para lidar com ficheiros
  */
 
 public class FileHelper {
+    //Tamanho mínimo de cada bloco do ficheiro de movimentos processado em paralelo
+    private static final int MINIMUM_CHUNK_SIZE = 1 << 20;
 
     private static Location getLocationById(ListADT<Location> locations, String locationId) {
         for (Location location : locations) {
@@ -33,7 +46,8 @@ public class FileHelper {
     }
 
     /**
-     * Método para importar localizações do ficheiro JSON de localizações para uma Lista não ordenada de localizações
+     * Método para importar localizações do ficheiro JSON de localizações para uma Lista não ordenada de localizações.
+     * Cada localização pode ter o campo opcional {@code emergency_exit}, que a declara como saída de emergência.
      *
      * @param fileName Caminho do ficheiro de Localizações
      * @return Lista não ordenada de Localizações
@@ -55,13 +69,17 @@ public class FileHelper {
             name = locationJSON.getString("name");
             restrictedTo = Person.Role.fromString(locationJSON.getString("restricted_to"));
             maximumCapacity = locationJSON.getInt("maximum_capacity");
-            locations.addLast(new Location(id, name, maximumCapacity, restrictedTo));
+            locations.addLast(new Location(id, name, maximumCapacity, restrictedTo,
+                    locationJSON.optBoolean("emergency_exit", false)));
         }
         return locations;
     }
 
     /**
-     * Método para importar Pessoas do ficheiro JSON de Pessoas (caso exista) para uma Lista não ordenada de Pessoas
+     * Método para importar Pessoas do ficheiro JSON de Pessoas (caso exista) para uma Lista não ordenada de Pessoas.
+     * Caso exista um ficheiro de alterações incrementais associado (ver
+     * {@link #exportPeopleDelta(ListADT, ListADT, ListADT, String) exportPeopleDelta}), as alterações no mesmo são
+     * aplicadas pela ordem em que foram exportadas.
      *
      * @param fileName Caminho do ficheiro de Pessoas
      * @return Lista não ordenada de Pessoas
@@ -73,38 +91,192 @@ public class FileHelper {
         JSONArray peopleJSON = new JSONArray(tokener);
         JSONObject personJSON;
         UnorderedListADT<Person> people = new ArrayList<>(peopleJSON.length() * 2);
-        String id, name;
-        Person.Role role;
         for (int i = 0; i < peopleJSON.length(); i++) {
             personJSON = peopleJSON.getJSONObject(i);
-            id = personJSON.getString("id");
-            name = personJSON.getString("name");
-            role = Person.Role.fromString(personJSON.getString("role"));
-            people.addLast(new Person(id, role, name));
+            people.addLast(personFromJSON(personJSON));
+        }
+        Path deltaPath = Paths.get(getPeopleDeltaFileName(fileName));
+        if (Files.exists(deltaPath)) {
+            people = applyPeopleDelta(people, deltaPath);
         }
         return people;
     }
 
+    private static Person personFromJSON(JSONObject personJSON) {
+        String id = personJSON.getString("id");
+        String name = personJSON.getString("name");
+        Person.Role role = Person.Role.fromString(personJSON.getString("role"));
+        return new Person(id, role, name);
+    }
+
+    /*
+    As alterações são aplicadas sobre um mapa indexado pelo identificador para que cada alteração custe O(1), sendo que
+    o mapa preserva a ordem de inserção, mantendo a ordem das pessoas do ficheiro base.
+     */
+    private static UnorderedListADT<Person> applyPeopleDelta(UnorderedListADT<Person> people, Path deltaPath)
+            throws IOException {
+        LinkedHashMap<String, Person> peopleById = new LinkedHashMap<>(people.size() * 2);
+        for (Person person : people) {
+            peopleById.put(person.getId(), person);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(deltaPath, StandardCharsets.UTF_8)) {
+            String line;
+            JSONObject changeJSON;
+            Person person;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                changeJSON = new JSONObject(line);
+                switch (changeJSON.getString("op")) {
+                    case "add" -> {
+                        person = personFromJSON(changeJSON);
+                        peopleById.put(person.getId(), person);
+                    }
+                    case "remove" -> peopleById.remove(changeJSON.getString("id"));
+                    default -> throw new IOException("Invalid Change Found: " + changeJSON.getString("op"));
+                }
+            }
+        }
+        UnorderedListADT<Person> mergedPeople = new ArrayList<>(peopleById.size() * 2 + 1);
+        for (Person person : peopleById.values()) {
+            mergedPeople.addLast(person);
+        }
+        return mergedPeople;
+    }
+
+    /**
+     * Obtém o caminho do ficheiro de alterações incrementais associado a um ficheiro de pessoas
+     *
+     * @param fileName Caminho do ficheiro das pessoas
+     * @return Caminho do ficheiro de alterações incrementais das pessoas
+     */
+    public static String getPeopleDeltaFileName(String fileName) {
+        return fileName + ".delta";
+    }
+
     /**
-     * Método para exportar Pessoas do sistema para um Ficheiro JSON
+     * Método para exportar Pessoas do sistema para um Ficheiro JSON. Cada pessoa é escrita diretamente para o ficheiro
+     * através de um escritor com buffer, sem construir previamente o documento JSON completo em memória. Como o
+     * ficheiro passa a conter todas as pessoas do sistema, o ficheiro de alterações incrementais associado (se existir)
+     * é removido.
      *
-     * @param peopleList Lista não Ordenada com todos os Objetos de Pessoas do Sistema
+     * @param peopleList Lista com todos os Objetos de Pessoas do Sistema
      * @param fileName   Caminho do ficheiro das pessoas
      * @throws IOException Caso o ficheiro não exista
      */
-    public static void exportPeople(UnorderedListADT<Person> peopleList, String fileName) throws IOException {
-        JSONArray peopleJSON = new JSONArray();
-        JSONObject personJSON;
-        for (Person person : peopleList) {
-            personJSON = new JSONObject();
-            personJSON.put("id", person.getId());
-            personJSON.put("name", person.getName());
-            personJSON.put("role", person.getRole() == null ? "" : Person.Role.fromRole(person.getRole()));
-            peopleJSON.put(personJSON);
+    public static void exportPeople(ListADT<Person> peopleList, String fileName) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            writer.write('[');
+            String separator = "";
+            for (Person person : peopleList) {
+                writer.write(separator);
+                writer.newLine();
+                writeJSONObject(writer, 1, "id", person.getId(), "name", person.getName(),
+                        "role", person.getRole() == null ? "" : Person.Role.fromRole(person.getRole()));
+                separator = ",";
+            }
+            writer.newLine();
+            writer.write(']');
+        }
+        Files.deleteIfExists(Paths.get(getPeopleDeltaFileName(fileName)));
+    }
+
+    /**
+     * Método para exportar apenas as alterações às pessoas do sistema desde a última exportação. As pessoas adicionadas
+     * e removidas são acrescentadas (uma por linha) ao ficheiro de alterações incrementais associado ao ficheiro das
+     * pessoas, sem reescrever o ficheiro das pessoas. Quando o ficheiro de alterações ultrapassa metade do tamanho do
+     * ficheiro das pessoas, é feita a compactação: o ficheiro das pessoas é reescrito por completo com as pessoas atuais
+     * do sistema e o ficheiro de alterações é removido.
+     *
+     * @param added      Pessoas adicionadas desde a última exportação
+     * @param removed    Pessoas removidas desde a última exportação
+     * @param peopleList Lista com todas as Pessoas atuais do Sistema, usada na compactação
+     * @param fileName   Caminho do ficheiro das pessoas
+     * @return true se foi feita a compactação, false caso apenas tenham sido acrescentadas as alterações
+     * @throws IOException Caso não seja possível escrever os ficheiros
+     */
+    public static boolean exportPeopleDelta(ListADT<Person> added, ListADT<Person> removed, ListADT<Person> peopleList,
+                                            String fileName) throws IOException {
+        Path peoplePath = Paths.get(fileName);
+        if (!Files.exists(peoplePath)) {
+            exportPeople(peopleList, fileName);
+            return true;
+        }
+        Path deltaPath = Paths.get(getPeopleDeltaFileName(fileName));
+        try (BufferedWriter writer = Files.newBufferedWriter(deltaPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Person person : removed) {
+                writeJSONObject(writer, -1, "op", "remove", "id", person.getId());
+                writer.newLine();
+            }
+            for (Person person : added) {
+                writeJSONObject(writer, -1, "op", "add", "id", person.getId(), "name", person.getName(),
+                        "role", person.getRole() == null ? "" : Person.Role.fromRole(person.getRole()));
+                writer.newLine();
+            }
+        }
+        if (Files.size(deltaPath) > Files.size(peoplePath) / 2) {
+            exportPeople(peopleList, fileName);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Escreve um objeto JSON de campos textuais diretamente para um escritor.
+     *
+     * @param writer        Escritor de destino
+     * @param level         Nível de indentação (4 espaços por nível) do objeto, ou -1 para escrever o objeto numa linha
+     * @param keysAndValues Pares chave, valor do objeto
+     * @throws IOException Caso ocorra um erro de escrita
+     */
+    private static void writeJSONObject(Writer writer, int level, String... keysAndValues) throws IOException {
+        String indentation = level < 0 ? "" : "    ".repeat(level);
+        writer.write(indentation);
+        writer.write('{');
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            if (i > 0) {
+                writer.write(level < 0 ? ", " : ",");
+            }
+            if (level >= 0) {
+                writer.write(System.lineSeparator());
+                writer.write(indentation);
+                writer.write("    ");
+            }
+            writer.write(JSONObject.quote(keysAndValues[i]));
+            writer.write(": ");
+            writer.write(JSONObject.quote(keysAndValues[i + 1]));
         }
-        try (OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(fileName), StandardCharsets.UTF_8)) {
-            writer.write(peopleJSON.toString(4));
+        if (level >= 0) {
+            writer.write(System.lineSeparator());
+            writer.write(indentation);
+        }
+        writer.write('}');
+    }
+
+    /**
+     * Método para exportar os Eventos do sistema para um Ficheiro JSON, no mesmo formato que é lido por
+     * {@link #importEvents(ListADT, ListADT, String) importEvents}. Tal como na exportação de pessoas, cada evento é
+     * escrito diretamente para o ficheiro.
+     *
+     * @param eventList Lista com todos os Eventos do Sistema
+     * @param fileName  Caminho do ficheiro dos movimentos
+     * @throws IOException Caso o ficheiro não exista
+     */
+    public static void exportEvents(Iterable<Event> eventList, String fileName) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            writer.write('[');
+            String separator = "";
+            for (Event event : eventList) {
+                writer.write(separator);
+                writer.newLine();
+                writeJSONObject(writer, 1, "location_id", event.getLocation().getId(), "person_id",
+                        event.getPersonId(), "time", event.getStartTime().toString());
+                separator = ",";
+            }
+            writer.newLine();
+            writer.write(']');
         }
     }
 
@@ -192,5 +364,284 @@ public class FileHelper {
         return events;
     }
 
+    /**
+     * Importa todos os movimentos de um ficheiro de movimentos binário ({@link BinaryMovementFile}), equivalente a
+     * {@link #importEvents(ListADT, ListADT, String) importEvents} para o ficheiro JSON. Os registos são lidos
+     * diretamente do ficheiro mapeado em memória, sendo cada identificador de pessoa e de localização resolvido uma
+     * única vez.
+     *
+     * @param people    Lista das pessoas conhecidas
+     * @param locations Lista das localizações do mapa
+     * @param fileName  Caminho do ficheiro de movimentos binário
+     * @return Lista com todos os Movimentos ocorridos no ficheiro
+     * @throws IOException Caso o ficheiro não exista, esteja corrompido ou refira uma localização inexistente
+     */
+    public static UnorderedListADT<Event> importBinaryEvents(ListADT<Person> people, ListADT<Location> locations,
+                                                             String fileName) throws IOException {
+        if (!Files.exists(Paths.get(fileName))) {
+            throw new FileNotFoundException(fileName);
+        }
+        try (BinaryMovementFile movementFile = new BinaryMovementFile(fileName)) {
+            return movementFile.readAll(people, locations);
+        }
+    }
+
+    /**
+     * Importa todos os movimentos de um dia arquivado ({@link DayArchive}), lendo apenas o arquivo desse dia. Os
+     * movimentos já estão ordenados cronologicamente ({@link EventSorts#CHRONOLOGICAL_ORDER}), podendo ser passados ao
+     * construtor da Universidade sem nova ordenação.
+     *
+     * @param people    Lista das pessoas conhecidas
+     * @param locations Lista das localizações do mapa
+     * @param fileName  Caminho do ficheiro do arquivo do dia
+     * @return Lista com todos os Movimentos do dia arquivado
+     * @throws IOException Caso o ficheiro não exista, esteja corrompido ou refira uma localização inexistente
+     */
+    public static UnorderedListADT<Event> importArchivedDay(ListADT<Person> people, ListADT<Location> locations,
+                                                            String fileName) throws IOException {
+        if (!Files.exists(Paths.get(fileName))) {
+            throw new FileNotFoundException(fileName);
+        }
+        try (DayArchive archive = new DayArchive(fileName)) {
+            return archive.readAll(people, locations);
+        }
+    }
+
+    /**
+     * Converte um ficheiro de movimentos JSON num ficheiro de movimentos binário ({@link BinaryMovementFile}),
+     * substituindo o ficheiro binário (e o respetivo dicionário) caso já exista. Os movimentos mantêm a ordem do
+     * ficheiro JSON.
+     *
+     * @param locations      Lista das localizações do mapa
+     * @param jsonFileName   Caminho do ficheiro de movimentos JSON
+     * @param binaryFileName Caminho do ficheiro de movimentos binário a criar
+     * @return Número de movimentos convertidos
+     * @throws IOException Caso não seja possível ler o ficheiro JSON ou escrever o ficheiro binário
+     */
+    public static int convertEventsToBinary(ListADT<Location> locations, String jsonFileName, String binaryFileName)
+            throws IOException {
+        UnorderedListADT<Event> events = importEvents(new ArrayList<>(), locations, jsonFileName);
+        Files.deleteIfExists(Paths.get(binaryFileName));
+        Files.deleteIfExists(Paths.get(BinaryMovementFile.getDictionaryFileName(binaryFileName)));
+        try (BinaryMovementFile movementFile = new BinaryMovementFile(binaryFileName)) {
+            movementFile.append(events);
+        }
+        return events.size();
+    }
+
+    /**
+     * Importa todos os movimentos do ficheiro de movimentos JSON em paralelo, devolvendo-os já ordenados
+     * cronologicamente ({@link EventSorts#CHRONOLOGICAL_ORDER}, mantendo a ordem do ficheiro entre movimentos da mesma
+     * pessoa com a mesma hora), prontos a serem passados ao construtor da Universidade sem nova ordenação.
+     * <p>
+     * O ficheiro é mapeado em memória e dividido em blocos com aproximadamente o mesmo número de bytes, alinhados com
+     * o início de um movimento. Cada bloco é interpretado e ordenado numa thread separada, e as sequências ordenadas de
+     * todos os blocos são depois juntadas com uma fusão de k vias. O número de blocos depende do tamanho do ficheiro e
+     * do número de processadores.
+     *
+     * @param people    Lista das pessoas conhecidas
+     * @param locations Lista das localizações do mapa
+     * @param fileName  Nome do ficheiro que contém os movimentos
+     * @return Lista com todos os Movimentos ocorridos no ficheiro, ordenados cronologicamente
+     * @throws IOException Caso o ficheiro não exista, um movimento tenha identificadores vazios ou uma localização
+     *                     inexistente
+     */
+    public static UnorderedListADT<Event> importEventsSorted(ListADT<Person> people, ListADT<Location> locations,
+                                                            String fileName) throws IOException {
+        long fileSize = Files.size(Paths.get(fileName));
+        int numberOfChunks = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4L,
+                fileSize / MINIMUM_CHUNK_SIZE));
+        return importEventsSorted(people, locations, fileName, numberOfChunks);
+    }
+
+    /**
+     * Importa todos os movimentos do ficheiro de movimentos JSON em paralelo, dividindo-o no número de blocos indicado
+     * (ver {@link #importEventsSorted(ListADT, ListADT, String)}).
+     *
+     * @param people         Lista das pessoas conhecidas
+     * @param locations      Lista das localizações do mapa
+     * @param fileName       Nome do ficheiro que contém os movimentos
+     * @param numberOfChunks Número de blocos em que o ficheiro é dividido
+     * @return Lista com todos os Movimentos ocorridos no ficheiro, ordenados cronologicamente
+     * @throws IOException Caso o ficheiro não exista, um movimento tenha identificadores vazios ou uma localização
+     *                     inexistente
+     */
+    public static UnorderedListADT<Event> importEventsSorted(ListADT<Person> people, ListADT<Location> locations,
+                                                            String fileName, int numberOfChunks) throws IOException {
+        HashMap<String, Person> peopleById = new HashMap<>(people.size() * 2);
+        for (Person person : people) {
+            peopleById.put(person.getId(), person);
+        }
+        HashMap<String, Location> locationsById = new HashMap<>(locations.size() * 2);
+        for (Location location : locations) {
+            locationsById.put(location.getId(), location);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Movements File Too Large: " + fileName);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int[] boundaries = getChunkBoundaries(buffer, numberOfChunks);
+            Event[][] runs;
+            try {
+                runs = parseChunks(buffer, boundaries, peopleById, locationsById);
+            }
+            catch (JSONException e) {
+                /*
+                Um limite pode ter ficado dentro do texto de um identificador com a sequência que separa os movimentos,
+                sendo nesse caso o ficheiro interpretado como um único bloco
+                 */
+                runs = parseChunks(buffer, new int[]{boundaries[0], boundaries[boundaries.length - 1]}, peopleById,
+                        locationsById);
+            }
+            return mergeRuns(runs);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+    Posições de início de cada bloco (a primeira é a seguir ao '[' e a última a posição do ']' final). Cada limite
+    interior é a posição de um '{' precedido de '}' e ',' (ignorando espaços), ou seja, o início de um movimento.
+     */
+    private static int[] getChunkBoundaries(MappedByteBuffer buffer, int numberOfChunks) throws IOException {
+        int start = 0, end = buffer.limit() - 1;
+        while (start <= end && buffer.get(start) != '[') {
+            start++;
+        }
+        while (end > start && buffer.get(end) != ']') {
+            end--;
+        }
+        if (start >= end) {
+            throw new JSONException("A JSONArray text must start with '[' and end with ']'");
+        }
+        start++;
+        int[] boundaries = new int[numberOfChunks + 1];
+        int numberOfBoundaries = 0;
+        boundaries[numberOfBoundaries++] = start;
+        int position, candidate;
+        for (int chunk = 1; chunk < numberOfChunks; chunk++) {
+            position = Math.max(start + (int) ((long) (end - start) * chunk / numberOfChunks),
+                    boundaries[numberOfBoundaries - 1] + 1);
+            candidate = -1;
+            for (; position < end && candidate == -1; position++) {
+                if (buffer.get(position) == '}') {
+                    candidate = getNextRecordStart(buffer, position + 1, end);
+                }
+            }
+            if (candidate == -1) {
+                break;
+            }
+            boundaries[numberOfBoundaries++] = candidate;
+        }
+        boundaries[numberOfBoundaries++] = end;
+        return Arrays.copyOf(boundaries, numberOfBoundaries);
+    }
+
+    private static int getNextRecordStart(MappedByteBuffer buffer, int position, int end) {
+        boolean separator = false;
+        byte current;
+        for (; position < end; position++) {
+            current = buffer.get(position);
+            if (current == ',' && !separator) {
+                separator = true;
+            }
+            else if (current == '{' && separator) {
+                return position;
+            }
+            else if (current != ' ' && current != '\t' && current != '\n' && current != '\r') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static Event[][] parseChunks(MappedByteBuffer buffer, int[] boundaries, HashMap<String, Person> peopleById,
+                                         HashMap<String, Location> locationsById) {
+        IntStream chunks = IntStream.range(0, boundaries.length - 1);
+        if (boundaries.length > 2) {
+            chunks = chunks.parallel();
+        }
+        return chunks.mapToObj(chunk -> parseChunk(buffer, boundaries[chunk], boundaries[chunk + 1], peopleById,
+                locationsById)).toArray(Event[][]::new);
+    }
+
+    /*
+    Interpreta os movimentos de um bloco e ordena-os (ordenação estável)
+     */
+    private static Event[] parseChunk(MappedByteBuffer buffer, int from, int to, HashMap<String, Person> peopleById,
+                                      HashMap<String, Location> locationsById) {
+        String text = StandardCharsets.UTF_8.decode(buffer.slice(from, to - from)).toString().strip();
+        //O separador entre este bloco e o seguinte fica no fim deste bloco
+        if (text.endsWith(",")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        JSONArray eventsJSON = new JSONArray(new JSONTokener("[" + text + "]"));
+        Event[] events = new Event[eventsJSON.length()];
+        JSONObject eventJSON;
+        String locationId, personId;
+        Location location;
+        for (int i = 0; i < events.length; i++) {
+            eventJSON = eventsJSON.getJSONObject(i);
+            locationId = eventJSON.getString("location_id");
+            personId = eventJSON.getString("person_id");
+            if (locationId.equals("") || personId.equals("")) {
+                throw new UncheckedIOException(new IOException("Empty Person or Location ID found"));
+            }
+            location = locationsById.get(locationId);
+            if (location == null) {
+                throw new UncheckedIOException(new IOException("Invalid Location Found: " + locationId));
+            }
+            events[i] = new Event(peopleById.get(personId), personId, location,
+                    LocalTime.parse(eventJSON.getString("time")));
+        }
+        Arrays.sort(events, EventSorts.CHRONOLOGICAL_ORDER);
+        return events;
+    }
+
+    /*
+    Fusão de k vias das sequências ordenadas pela ordem cronológica: em caso de empate (mesma pessoa no mesmo instante),
+    o movimento do bloco anterior sai primeiro, mantendo a ordem do ficheiro
+     */
+    private static UnorderedListADT<Event> mergeRuns(Event[][] runs) {
+        int total = 0;
+        ArrayHeap<RunHead> heads = new ArrayHeap<>(Math.max(1, runs.length));
+        for (int run = 0; run < runs.length; run++) {
+            total += runs[run].length;
+            if (runs[run].length > 0) {
+                heads.insert(new RunHead(runs[run], run));
+            }
+        }
+        UnorderedListADT<Event> events = new ArrayList<>(total);
+        RunHead head;
+        while (!heads.isEmpty()) {
+            head = heads.deleteMinimum();
+            events.addLast(head.events[head.position++]);
+            if (head.position < head.events.length) {
+                heads.insert(head);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Próximo movimento de uma sequência ordenada na fusão de k vias
+     */
+    private static class RunHead implements Comparable<RunHead> {
+        private final Event[] events;
+        private final int run;
+        private int position;
 
+        RunHead(Event[] events, int run) {
+            this.events = events;
+            this.run = run;
+        }
+
+        @Override
+        public int compareTo(RunHead other) {
+            int comparison = EventSorts.CHRONOLOGICAL_ORDER.compare(events[position], other.events[other.position]);
+            return comparison != 0 ? comparison : Integer.compare(run, other.run);
+        }
+    }
 }
@@ -0,0 +1,379 @@
+package com.trivialware;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Matriz origem-destino dos movimentos entre localizações, por intervalo de tempo: para cada intervalo (por exemplo,
+ * cada hora do dia) e cada par de localizações, o número de vezes que uma pessoa passou da primeira para a segunda.
+ * Cada passagem corresponde a dois eventos consecutivos da mesma pessoa em localizações diferentes, sendo contada no
+ * intervalo da hora de chegada à localização de destino.
+ * <p>
+ * A matriz é construída numa única passagem pelas linhas cronológicas das pessoas, processadas em paralelo por blocos,
+ * cada um com a sua tabela de contagens, que são depois juntadas. Como a maioria dos pares de localizações nunca tem
+ * movimentos, apenas os pares com movimentos são guardados: cada contagem tem uma chave (intervalo, origem, destino)
+ * codificada num {@code long}, e as chaves ficam ordenadas num array, pelo que os pares de cada intervalo são contíguos
+ * e cada consulta é uma pesquisa binária. Os totais do dia inteiro são guardados como um intervalo adicional.
+ * <p>
+ * Depois de construída, a matriz pode ser mantida atualizada como {@link MovementListener observador} dos movimentos:
+ * cada novo movimento é contado numa tabela de contagens pendentes, juntada aos arrays ordenados apenas na consulta
+ * seguinte, pelo que a matriz nunca é reconstruída a partir de todas as linhas cronológicas.
+ */
+public class FlowMatrix implements MovementListener {
+    //Número mínimo de linhas cronológicas a partir do qual compensa processá-las em paralelo
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int LOCATION_BITS = 21;
+    private static final long LOCATION_MASK = (1L << LOCATION_BITS) - 1;
+    private final CampusGraph graph;
+    private final int bucketSeconds;
+    private final int numberOfBuckets;
+    private long[] keys;
+    private int[] counts;
+    //Posição em keys onde começam os pares de cada intervalo (o último intervalo corresponde ao dia inteiro)
+    private final int[] bucketOffsets;
+    //Contagens dos movimentos recebidos depois da construção, ainda não juntadas aos arrays ordenados
+    private final CountTable pending;
+
+    /**
+     * Constrói a matriz a partir das linhas cronológicas das pessoas
+     *
+     * @param graph         Representação compacta da rede da Universidade, que define o índice de cada localização
+     * @param timelines     Eventos de cada pessoa, ordenados cronologicamente
+     * @param bucketMinutes Duração de cada intervalo em minutos
+     */
+    public FlowMatrix(CampusGraph graph, ListADT<UnorderedListADT<Event>> timelines, int bucketMinutes) {
+        if (bucketMinutes <= 0 || bucketMinutes > 24 * 60) {
+            throw new IllegalArgumentException("Duração de intervalo inválida: " + bucketMinutes);
+        }
+        this.graph = graph;
+        this.bucketSeconds = bucketMinutes * 60;
+        this.numberOfBuckets = (24 * 60 * 60 + bucketSeconds - 1) / bucketSeconds;
+        int numberOfTimelines = timelines.size();
+        int numberOfChunks = numberOfTimelines < PARALLEL_THRESHOLD ? 1 :
+                Math.min(numberOfTimelines, Runtime.getRuntime().availableProcessors() * 4);
+        IntStream chunks = IntStream.range(0, numberOfChunks);
+        if (numberOfChunks > 1) {
+            chunks = chunks.parallel();
+        }
+        CountTable[] partialCounts = chunks.mapToObj(chunk -> countChunk(timelines,
+                (int) ((long) numberOfTimelines * chunk / numberOfChunks),
+                (int) ((long) numberOfTimelines * (chunk + 1) / numberOfChunks))).toArray(CountTable[]::new);
+        CountTable total = partialCounts[0];
+        for (int i = 1; i < partialCounts.length; i++) {
+            total.addAll(partialCounts[i]);
+        }
+        this.keys = total.getKeys();
+        Arrays.sort(keys);
+        this.counts = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            counts[i] = total.get(keys[i]);
+        }
+        this.bucketOffsets = new int[numberOfBuckets + 2];
+        this.pending = new CountTable();
+        computeBucketOffsets();
+    }
+
+    private void computeBucketOffsets() {
+        int position = 0;
+        for (int bucket = 0; bucket <= numberOfBuckets; bucket++) {
+            bucketOffsets[bucket] = position;
+            while (position < keys.length && getBucket(keys[position]) == bucket) {
+                position++;
+            }
+        }
+        bucketOffsets[numberOfBuckets + 1] = keys.length;
+    }
+
+    /**
+     * Conta a passagem do evento anterior da pessoa para o novo evento, caso sejam em localizações diferentes
+     *
+     * @param previousEvent Evento anterior da mesma pessoa, ou null caso seja o primeiro evento da pessoa
+     * @param event         Evento adicionado
+     */
+    @Override
+    public void eventAdded(Event previousEvent, Event event) {
+        if (previousEvent != null) {
+            count(pending, previousEvent, event);
+        }
+    }
+
+    /*
+    Junta as contagens pendentes aos arrays ordenados, percorrendo ambos pela ordem das chaves
+     */
+    private void mergePending() {
+        if (pending.size == 0) {
+            return;
+        }
+        long[] pendingKeys = pending.getKeys();
+        Arrays.sort(pendingKeys);
+        long[] mergedKeys = new long[keys.length + pendingKeys.length];
+        int[] mergedCounts = new int[mergedKeys.length];
+        int i = 0, j = 0, size = 0;
+        while (i < keys.length || j < pendingKeys.length) {
+            if (j == pendingKeys.length || (i < keys.length && keys[i] < pendingKeys[j])) {
+                mergedKeys[size] = keys[i];
+                mergedCounts[size++] = counts[i++];
+            }
+            else if (i == keys.length || pendingKeys[j] < keys[i]) {
+                mergedKeys[size] = pendingKeys[j];
+                mergedCounts[size++] = pending.get(pendingKeys[j++]);
+            }
+            else {
+                mergedKeys[size] = keys[i];
+                mergedCounts[size++] = counts[i++] + pending.get(pendingKeys[j++]);
+            }
+        }
+        keys = Arrays.copyOf(mergedKeys, size);
+        counts = Arrays.copyOf(mergedCounts, size);
+        pending.clear();
+        computeBucketOffsets();
+    }
+
+    private CountTable countChunk(ListADT<UnorderedListADT<Event>> timelines, int from, int to) {
+        CountTable table = new CountTable();
+        UnorderedListADT<Event> timeline;
+        for (int i = from; i < to; i++) {
+            timeline = timelines.get(i);
+            for (int j = 1; j < timeline.size(); j++) {
+                count(table, timeline.get(j - 1), timeline.get(j));
+            }
+        }
+        return table;
+    }
+
+    private void count(CountTable table, Event previous, Event current) {
+        if (previous.getLocation().equals(current.getLocation())) {
+            return;
+        }
+        int origin = graph.indexOf(previous.getLocation());
+        int destination = graph.indexOf(current.getLocation());
+        if (origin == -1 || destination == -1) {
+            return;
+        }
+        int bucket = current.getStartTime().toSecondOfDay() / bucketSeconds;
+        table.increment(toKey(bucket, origin, destination));
+        table.increment(toKey(numberOfBuckets, origin, destination));
+    }
+
+    private static long toKey(int bucket, int origin, int destination) {
+        return ((long) bucket << (2 * LOCATION_BITS)) | ((long) origin << LOCATION_BITS) | destination;
+    }
+
+    private static int getBucket(long key) {
+        return (int) (key >>> (2 * LOCATION_BITS));
+    }
+
+    /**
+     * @return Número de intervalos em que o dia está dividido
+     */
+    public int getNumberOfBuckets() {
+        return numberOfBuckets;
+    }
+
+    /**
+     * Obtém o intervalo que contém uma dada hora
+     *
+     * @param time Hora
+     * @return Índice do intervalo
+     */
+    public int getBucket(LocalTime time) {
+        return time.toSecondOfDay() / bucketSeconds;
+    }
+
+    /**
+     * Obtém a hora de início de um intervalo
+     *
+     * @param bucket Índice do intervalo
+     * @return Hora de início do intervalo
+     */
+    public LocalTime getBucketStart(int bucket) {
+        return LocalTime.ofSecondOfDay((long) bucket * bucketSeconds);
+    }
+
+    /**
+     * Obtém o número de movimentos de uma localização para outra num intervalo
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @param bucket      Índice do intervalo
+     * @return Número de movimentos
+     */
+    public int getFlow(Location origin, Location destination, int bucket) {
+        mergePending();
+        int from = graph.indexOf(origin), to = graph.indexOf(destination);
+        if (from == -1 || to == -1 || bucket < 0 || bucket > numberOfBuckets) {
+            return 0;
+        }
+        int position = Arrays.binarySearch(keys, bucketOffsets[bucket], bucketOffsets[bucket + 1],
+                toKey(bucket, from, to));
+        return position < 0 ? 0 : counts[position];
+    }
+
+    /**
+     * Obtém o número de movimentos de uma localização para outra ao longo do dia
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @return Número de movimentos
+     */
+    public int getTotalFlow(Location origin, Location destination) {
+        return getFlow(origin, destination, numberOfBuckets);
+    }
+
+    /**
+     * Obtém todos os pares de localizações com movimentos num intervalo, ordenados pelo número de movimentos
+     * (decrescente)
+     *
+     * @param bucket Índice do intervalo
+     * @return Lista dos movimentos do intervalo
+     */
+    public ListADT<Flow> getFlows(int bucket) {
+        if (bucket < 0 || bucket >= numberOfBuckets) {
+            return new ArrayList<>(0);
+        }
+        return getFlowsOfBucket(bucket);
+    }
+
+    /**
+     * Obtém todos os pares de localizações com movimentos ao longo do dia, ordenados pelo número de movimentos
+     * (decrescente)
+     *
+     * @return Lista dos movimentos do dia
+     */
+    public ListADT<Flow> getTotalFlows() {
+        return getFlowsOfBucket(numberOfBuckets);
+    }
+
+    private ListADT<Flow> getFlowsOfBucket(int bucket) {
+        mergePending();
+        int from = bucketOffsets[bucket], to = bucketOffsets[bucket + 1];
+        Flow[] flows = new Flow[to - from];
+        for (int i = from; i < to; i++) {
+            flows[i - from] = new Flow(graph.getLocation((int) ((keys[i] >>> LOCATION_BITS) & LOCATION_MASK)),
+                    graph.getLocation((int) (keys[i] & LOCATION_MASK)), counts[i]);
+        }
+        Arrays.sort(flows, (first, second) -> Integer.compare(second.getCount(), first.getCount()));
+        UnorderedListADT<Flow> flowList = new ArrayList<>(flows.length);
+        for (Flow flow : flows) {
+            flowList.addLast(flow);
+        }
+        return flowList;
+    }
+
+    /**
+     * Número de movimentos de uma localização para outra
+     */
+    public static class Flow {
+        private final Location origin;
+        private final Location destination;
+        private final int count;
+
+        Flow(Location origin, Location destination, int count) {
+            this.origin = origin;
+            this.destination = destination;
+            this.count = count;
+        }
+
+        public Location getOrigin() {
+            return origin;
+        }
+
+        public Location getDestination() {
+            return destination;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Tabela de dispersão de endereçamento aberto (sondagem linear) de chaves {@code long} para contagens, sem objetos
+     * por entrada
+     */
+    private static class CountTable {
+        private static final long EMPTY = -1;
+        private long[] tableKeys;
+        private int[] tableCounts;
+        private int size;
+
+        CountTable() {
+            this.tableKeys = new long[64];
+            this.tableCounts = new int[64];
+            Arrays.fill(tableKeys, EMPTY);
+        }
+
+        private int slot(long key) {
+            int mask = tableKeys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (tableKeys[slot] != EMPTY && tableKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        void increment(long key) {
+            add(key, 1);
+        }
+
+        void add(long key, int amount) {
+            int slot = slot(key);
+            if (tableKeys[slot] == EMPTY) {
+                tableKeys[slot] = key;
+                size++;
+            }
+            tableCounts[slot] += amount;
+            if (size * 2 > tableKeys.length) {
+                grow();
+            }
+        }
+
+        void addAll(CountTable other) {
+            for (int i = 0; i < other.tableKeys.length; i++) {
+                if (other.tableKeys[i] != EMPTY) {
+                    add(other.tableKeys[i], other.tableCounts[i]);
+                }
+            }
+        }
+
+        int get(long key) {
+            return tableCounts[slot(key)];
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(tableKeys, EMPTY);
+                Arrays.fill(tableCounts, 0);
+                size = 0;
+            }
+        }
+
+        long[] getKeys() {
+            long[] keys = new long[size];
+            int position = 0;
+            for (long key : tableKeys) {
+                if (key != EMPTY) {
+                    keys[position++] = key;
+                }
+            }
+            return keys;
+        }
+
+        private void grow() {
+            long[] oldKeys = tableKeys;
+            int[] oldCounts = tableCounts;
+            tableKeys = new long[oldKeys.length * 2];
+            tableCounts = new int[oldKeys.length * 2];
+            Arrays.fill(tableKeys, EMPTY);
+            int slot;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    slot = slot(oldKeys[i]);
+                    tableKeys[slot] = oldKeys[i];
+                    tableCounts[slot] = oldCounts[i];
+                }
+            }
+        }
+    }
+}
@@ -6,8 +6,9 @@ package com.trivialware;
  * de recepção), portanto o caminho mais curto irá ser feito de um ponto X até a esse ponto de emergência, percorrendo o
  * subgrafo correspondente do edifício em que a localização se encontra (que faz parte do grafo mais amplo da universidade).
  * O ponto imediatamente antes do ponto de emergência num percurso será uma saída válida.
- * Alternativamente, poder-se-ia implementar a funcionalidade de emergências através de atribuir um bool is_exit
- * a localizações que sejam saídas, e posteriormente calcular o caminho mais curto da localização atual para essa localização.
+ * Em campus com vários edifícios, o mapa pode também declarar outras localizações como saídas de emergência (campo
+ * emergency_exit), sendo calculado o caminho mais curto da localização atual até à saída mais próxima, com o ponto de
+ * emergência central a continuar a ser considerado uma saída.
  * O que retorna um double e uma Queue. Cria-se uma classe para encapsular estes e considera-se o elemento de comparação
  * como o custo (distância total), e inserem-se objetos desta classe numa minHeap, retirando no final o menor. Este menor
  * será o menor caminho até à saída mais próxima (sendo que saídas que não se encontram no edifício irão ter uma distância
@@ -25,6 +26,7 @@ public class Location {
     private final int maximumCapacity;
     private int currentNumberPeople;
     private final Person.Role restrictedTo;
+    private final boolean emergencyExit;
 
     /**
      * Construtor para classe que representa a localização a adicionar, com o Identificador único de uma Localização
@@ -39,10 +41,25 @@ public class Location {
      * @param restrictedTo    Papel de utilizador a que a localização está restrita
      */
     public Location(String id, String name, int maximumCapacity, Person.Role restrictedTo) {
+        this(id, name, maximumCapacity, restrictedTo, false);
+    }
+
+    /**
+     * Construtor para classe que representa a localização a adicionar, indicando também se a mesma é uma saída de
+     * emergência.
+     *
+     * @param id              Identificador único da localização da universidade
+     * @param name            Nome da Localização na Universidade
+     * @param maximumCapacity Capacidade Máxima definida da localização
+     * @param restrictedTo    Papel de utilizador a que a localização está restrita
+     * @param emergencyExit   Se a localização é uma saída de emergência
+     */
+    public Location(String id, String name, int maximumCapacity, Person.Role restrictedTo, boolean emergencyExit) {
         this.id = id;
         this.name = name;
         this.maximumCapacity = maximumCapacity;
         this.restrictedTo = restrictedTo;
+        this.emergencyExit = emergencyExit;
     }
 
     public String getId() {
@@ -62,6 +79,35 @@ public class Location {
         return restrictedTo;
     }
 
+    /**
+     * Indica se uma pessoa com um dado papel pode aceder à localização. As localizações restritas a docentes não são
+     * acessíveis a alunos e funcionários, e as restritas a funcionários não são acessíveis a alunos e docentes; as
+     * restantes são acessíveis a todos.
+     *
+     * @param role Papel da pessoa
+     * @return Verdadeiro caso a pessoa possa aceder à localização
+     */
+    public boolean isAccessibleTo(Person.Role role) {
+        if (restrictedTo == null) {
+            return true;
+        }
+        return switch (restrictedTo) {
+            case TEACHER -> role != Person.Role.WORKER && role != Person.Role.STUDENT;
+            case WORKER -> role != Person.Role.TEACHER && role != Person.Role.STUDENT;
+            default -> true;
+        };
+    }
+
+    /**
+     * Indica se a localização é uma saída de emergência. O ponto de emergência central
+     * ({@link University#EMERGENCY_SPOT_ID}) é sempre uma saída.
+     *
+     * @return Verdadeiro caso a localização seja uma saída de emergência
+     */
+    public boolean isEmergencyExit() {
+        return emergencyExit || id.equals(University.EMERGENCY_SPOT_ID);
+    }
+
     @Override
     public String toString() {
         return String.format("%s (%s)", getName(), getId());
@@ -1,10 +1,14 @@
 package com.trivialware;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Ponto inicial de execução do programa, responsável por importar os dois ficheiros JSON de mapa da universidade
@@ -12,6 +16,32 @@ import java.util.Properties;
  * e as suas respetivas localizações. Adicionalmente, se o ficheiro de pessoas existir, uma lista de pessoas será
  * instanciada com as pessoas nos mesmos. Posteriormente, um objeto Universidade é criado com todas estas listas e
  * grafos, e o menu da universidade é invocado com este objeto Universidade criado.
+ * <p>
+ * Se o programa for invocado com o argumento {@code --server}, em vez do menu é iniciado o servidor HTTP de consultas
+ * ({@link UniversityServer}), cuja porta, número de threads e capacidade da fila de pedidos são definidos em
+ * {@code config.properties}, juntamente com o servidor de ingestão de movimentos dos leitores de cartões
+ * ({@link EventIngestionServer}).
+ * <p>
+ * Se estiver definido um ficheiro de registo de movimentos ({@code app.movement_log_file_name}), as alterações nele
+ * registadas são reaplicadas sobre os ficheiros importados antes de o menu ou os servidores serem iniciados, e todas as
+ * alterações seguintes são registadas no mesmo ({@link MovementLog}). As alterações são removidas do registo sempre que
+ * é guardado um snapshot que as reflete: no menu, ao exportar as pessoas (que exporta também os movimentos), e no modo
+ * servidor periodicamente, a cada {@code app.checkpoint_interval_minutes} minutos (0 desativa), sem parar a ingestão
+ * nem as consultas enquanto os ficheiros são escritos.
+ * <p>
+ * Com {@code app.distance_matrix_enabled}, as distâncias entre todas as localizações são pré-calculadas logo após a
+ * construção da rede ({@link DistanceMatrix}). O número máximo de consultas de contactos guardadas em cache é definido
+ * por {@code app.contact_cache_capacity} ({@link ContactCache}, 0 desativa a cache), e a duração da janela dos contactos
+ * recentes por {@code app.contact_window_hours} ({@link ContactWindow}).
+ * <p>
+ * Se estiver definido um ficheiro de movimentos binário ({@code app.movements_binary_file_name}), os movimentos são
+ * importados desse ficheiro ({@link BinaryMovementFile}) em vez do ficheiro JSON. Caso o ficheiro binário ainda não
+ * exista, é criado uma única vez a partir do ficheiro JSON; para voltar a convertê-lo basta apagá-lo. O ficheiro JSON
+ * é importado em paralelo e já ordenado cronologicamente
+ * ({@link FileHelper#importEventsSorted(ListADT, ListADT, String)}).
+ * <p>
+ * Com {@code app.off_heap_events}, o histórico de eventos é guardado fora da heap ({@link OffHeapEventStore}), para
+ * históricos muito grandes.
  */
 public class Main {
 
@@ -24,7 +54,11 @@ public class Main {
             String movementsFileName = prop.getProperty("app.movements_file_name");
             String mapFileName = prop.getProperty("app.map_file_name");
             String peopleFileName = prop.getProperty("app.people_file_name");
-            if (!Files.exists(Paths.get(movementsFileName)) || !Files.exists(Paths.get(mapFileName))) {
+            String movementsBinaryFileName = prop.getProperty("app.movements_binary_file_name", "");
+            boolean binaryMovements = !movementsBinaryFileName.isBlank();
+            if ((!Files.exists(Paths.get(movementsFileName)) &&
+                    !(binaryMovements && Files.exists(Paths.get(movementsBinaryFileName)))) ||
+                    !Files.exists(Paths.get(mapFileName))) {
                 System.out.println("Os ficheiros de Mapa ou Movimentos não existem, por favor, crie-os.");
                 return;
             }
@@ -36,10 +70,80 @@ public class Main {
                 people = new ArrayList<>();
             }
             UnorderedListADT<Location> locations = FileHelper.importLocations(mapFileName);
-            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations, movementsFileName);
+            UnorderedListADT<Event> events;
+            boolean eventsSorted = false;
+            if (binaryMovements) {
+                if (!Files.exists(Paths.get(movementsBinaryFileName))) {
+                    int converted = FileHelper.convertEventsToBinary(locations, movementsFileName,
+                            movementsBinaryFileName);
+                    System.out.printf("Foram convertidos %d movimentos para o ficheiro binário %s.%n", converted,
+                            movementsBinaryFileName);
+                }
+                events = FileHelper.importBinaryEvents(people, locations, movementsBinaryFileName);
+            }
+            else {
+                events = FileHelper.importEventsSorted(people, locations, movementsFileName);
+                eventsSorted = true;
+            }
             UndirectedNetworkADT<Location> network = FileHelper.buildNetwork(locations, mapFileName);
-            University university = new University(locations, events, people, network);
-            UniversityMenu menu = new UniversityMenu(university, peopleFileName);
+            University university = new University(locations, events, people, network, eventsSorted,
+                    Boolean.parseBoolean(prop.getProperty("app.off_heap_events", "false")));
+            if (Boolean.parseBoolean(prop.getProperty("app.distance_matrix_enabled", "false"))) {
+                university.setDistanceMatrix(new DistanceMatrix(locations, network));
+            }
+            university.getContactCache().setCapacity(Integer.parseInt(prop.getProperty("app.contact_cache_capacity",
+                    String.valueOf(ContactCache.DEFAULT_CAPACITY))));
+            university.setContactWindowHours(Integer.parseInt(prop.getProperty("app.contact_window_hours",
+                    String.valueOf(ContactWindow.DEFAULT_WINDOW_HOURS))));
+            university.getMetrics().setEnabled(Boolean.parseBoolean(prop.getProperty("app.metrics_enabled", "false")));
+            String movementLogFileName = prop.getProperty("app.movement_log_file_name");
+            if (movementLogFileName != null && !movementLogFileName.isBlank()) {
+                int replayed = MovementLog.replay(movementLogFileName, university);
+                if (replayed > 0) {
+                    System.out.printf("Foram reaplicadas %d alterações do registo de movimentos.%n", replayed);
+                }
+                university.setMovementLog(new MovementLog(movementLogFileName));
+            }
+            MovementLog movementLog = university.getMovementLog();
+            if (args.length > 0 && args[0].equals("--server")) {
+                int port = Integer.parseInt(prop.getProperty("app.http_port", "8080"));
+                int threads = Integer.parseInt(prop.getProperty("app.http_threads", "4"));
+                int queueCapacity = Integer.parseInt(prop.getProperty("app.http_queue_capacity", "256"));
+                UniversityServer server = new UniversityServer(university, new InetSocketAddress(port), threads,
+                        queueCapacity);
+                server.start();
+                System.out.printf("Servidor HTTP a escutar na porta %d.%n", server.getAddress().getPort());
+                int ingestionPort = Integer.parseInt(prop.getProperty("app.ingestion_port", "9090"));
+                int ingestionQueueCapacity = Integer.parseInt(prop.getProperty("app.ingestion_queue_capacity", "65536"));
+                int ingestionBatchSize = Integer.parseInt(prop.getProperty("app.ingestion_batch_size", "1024"));
+                EventIngestionServer ingestionServer = new EventIngestionServer(university,
+                        new InetSocketAddress(ingestionPort), ingestionQueueCapacity, ingestionBatchSize);
+                ingestionServer.start();
+                System.out.printf("Servidor de ingestão de movimentos a escutar na porta %d.%n",
+                        ingestionServer.getAddress().getPort());
+                int checkpointMinutes = Integer.parseInt(prop.getProperty("app.checkpoint_interval_minutes", "0"));
+                if (movementLog != null && checkpointMinutes > 0) {
+                    ScheduledExecutorService checkpointScheduler = Executors.newSingleThreadScheduledExecutor(
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "movement-log-checkpoint");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    checkpointScheduler.scheduleAtFixedRate(() -> {
+                        try {
+                            movementLog.checkpoint(university, peopleFileName, movementsFileName,
+                                    movementsBinaryFileName);
+                        }
+                        catch (IOException | RuntimeException e) {
+                            //Uma exceção não capturada cancelaria os snapshots seguintes sem qualquer mensagem
+                            e.printStackTrace();
+                        }
+                    }, checkpointMinutes, checkpointMinutes, TimeUnit.MINUTES);
+                }
+                return;
+            }
+            UniversityMenu menu = new UniversityMenu(university, peopleFileName, movementsFileName,
+                    movementsBinaryFileName);
             menu.mainMenu();
 
         }
@@ -0,0 +1,20 @@
+package com.trivialware;
+
+/**
+ * Observador dos movimentos registados na Universidade. É notificado por cada evento adicionado, tanto na construção
+ * (pela ordem cronológica) como na receção de novos eventos, permitindo manter análises atualizadas à medida que os
+ * movimentos chegam, sem percorrer novamente todos os eventos.
+ * <p>
+ * As notificações são feitas com o monitor do objeto Universidade adquirido, pelo que os observadores não precisam de
+ * sincronização própria, mas não devem bloquear.
+ */
+public interface MovementListener {
+    /**
+     * Chamado depois de um evento ter sido adicionado à linha cronológica da sua pessoa
+     *
+     * @param previousEvent Evento anterior da mesma pessoa, cuja hora de fim acabou de ser definida, ou null caso seja
+     *                      o primeiro evento da pessoa
+     * @param event         Evento adicionado (em curso)
+     */
+    void eventAdded(Event previousEvent, Event event);
+}
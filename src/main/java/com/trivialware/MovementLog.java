@@ -0,0 +1,554 @@
+package com.trivialware;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.zip.CRC32;
+
+/**
+ * Registo de escrita antecipada (write-ahead log) das alterações feitas à Universidade após a importação dos ficheiros
+ * JSON, nomeadamente movimentos adicionados em tempo de execução e pessoas adicionadas, removidas ou reimportadas.
+ * Cada alteração é escrita no fim do ficheiro antes de ser aplicada, de modo a que seja possível reconstruir o estado
+ * da Universidade após uma falha sem ter de reescrever os ficheiros JSON completos em cada alteração.
+ * <p>
+ * Cada registo tem o formato {@code [tamanho (int)][CRC32 do conteúdo (int)][conteúdo]}, sendo que o conteúdo começa
+ * pelo tipo de registo. No arranque, os registos são reaplicados sobre o estado importado dos ficheiros JSON (o último
+ * snapshot) até ser encontrado o fim do ficheiro ou um registo incompleto/corrompido (por exemplo, escrito apenas
+ * parcialmente no momento de uma falha), sendo o ficheiro truncado nesse ponto.
+ * <p>
+ * As escritas são agrupadas (group commit): as alterações colocam os seus registos num buffer partilhado, e uma thread
+ * dedicada escreve todo o buffer acumulado e força a sua escrita em disco com uma única sincronização, acordando de
+ * seguida todas as threads cujos registos ficaram persistidos. A espera é separada da escrita no buffer
+ * ({@link #awaitDurable(long)}), para que quem regista alterações com o monitor da Universidade adquirido (como o
+ * servidor de ingestão de movimentos) possa esperar depois de o libertar, sem bloquear as consultas durante a
+ * sincronização e permitindo que os registos escritos entretanto sejam persistidos em conjunto.
+ * <p>
+ * Uma substituição da lista de pessoas maior do que o tamanho máximo de um registo é dividida em vários registos, sendo
+ * aplicada apenas na reaplicação do último, pelo que uma substituição escrita apenas parcialmente é ignorada.
+ */
+public class MovementLog implements AutoCloseable {
+    private static final byte EVENT = 1;
+    private static final byte PERSON_ADD = 2;
+    private static final byte PERSON_REMOVE = 3;
+    private static final byte PEOPLE_RESET = 4;
+    //Parte de uma substituição da lista de pessoas, que continua no registo seguinte
+    private static final byte PEOPLE_RESET_PART = 5;
+    private static final int HEADER_SIZE = 8;
+    //Tamanho máximo de um registo, para distinguir um tamanho corrompido de um registo legítimo
+    static final int MAXIMUM_RECORD_SIZE = 64 * 1024 * 1024;
+    //Tamanho a partir do qual uma substituição da lista de pessoas continua num novo registo
+    static final int PEOPLE_RESET_PART_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private FileChannel channel;
+    private final Thread writerThread;
+    private ByteArrayOutputStream pending;
+    private long pendingSequence;
+    private long durableSequence;
+    //Número de bytes escritos no buffer desde o início do ficheiro, incluindo os que ainda estão no buffer
+    private long appendedBytes;
+    //Verdadeiro enquanto a thread de escrita escreve um lote fora do monitor
+    private boolean writing;
+    private IOException writeError;
+    private boolean closed;
+
+    /**
+     * Abre (ou cria) o registo no caminho indicado, posicionando as novas escritas no fim do ficheiro. Deve ser
+     * chamado apenas depois de {@link #replay(String, University) replay}, que remove registos incompletos do fim
+     * do ficheiro.
+     *
+     * @param fileName Caminho do ficheiro do registo
+     * @throws IOException Caso não seja possível abrir o ficheiro
+     */
+    public MovementLog(String fileName) throws IOException {
+        this.path = Paths.get(fileName);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.appendedBytes = channel.size();
+        this.pending = new ByteArrayOutputStream();
+        this.writerThread = new Thread(this::writeLoop, "movement-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Regista um lote de movimentos. O registo fica persistido em disco quando
+     * {@link #awaitDurable(long) awaitDurable} retornar para o número de sequência devolvido.
+     *
+     * @param events Movimentos a registar
+     * @return Número de sequência do registo
+     */
+    public long logEvents(ListADT<Event> events) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream(events.size() * 32);
+        for (Event event : events) {
+            writeRecord(records, encode(EVENT, event.getPersonId(), event.getLocation().getId(),
+                    event.getStartTime().toString()));
+        }
+        return append(records.toByteArray());
+    }
+
+    /**
+     * Regista a adição de uma pessoa, tal como {@link #logEvents(ListADT) logEvents}
+     *
+     * @param person Pessoa adicionada
+     * @return Número de sequência do registo
+     */
+    public long logAddPerson(Person person) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        writeRecord(records, encode(PERSON_ADD, person.getId(), roleToString(person.getRole()), person.getName()));
+        return append(records.toByteArray());
+    }
+
+    /**
+     * Regista a remoção de uma pessoa, tal como {@link #logEvents(ListADT) logEvents}
+     *
+     * @param person Pessoa removida
+     * @return Número de sequência do registo
+     */
+    public long logRemovePerson(Person person) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        writeRecord(records, encode(PERSON_REMOVE, person.getId()));
+        return append(records.toByteArray());
+    }
+
+    /**
+     * Regista a substituição da lista completa de pessoas (por exemplo, na importação de pessoas de ficheiro), tal
+     * como {@link #logEvents(ListADT) logEvents}. A lista é dividida em vários registos caso ultrapasse
+     * {@link #PEOPLE_RESET_PART_SIZE}, todos escritos de uma só vez.
+     *
+     * @param people Nova lista de pessoas do sistema
+     * @return Número de sequência do último registo
+     */
+    public long logPeopleReset(ListADT<Person> people) {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        UnorderedListADT<String> fields = new ArrayList<>();
+        int partSize = 0;
+        for (Person person : people) {
+            if (partSize >= PEOPLE_RESET_PART_SIZE) {
+                writeRecord(records, encode(PEOPLE_RESET_PART, toArray(fields)));
+                fields.clear();
+                partSize = 0;
+            }
+            fields.addLast(person.getId());
+            fields.addLast(roleToString(person.getRole()));
+            fields.addLast(person.getName());
+            //Cada campo ocupa no máximo 3 bytes por carácter e 2 bytes do tamanho
+            partSize += 3 * (person.getId().length() + person.getName().length()) + 16;
+        }
+        writeRecord(records, encode(PEOPLE_RESET, toArray(fields)));
+        return append(records.toByteArray());
+    }
+
+    private static String[] toArray(ListADT<String> fields) {
+        String[] array = new String[fields.size()];
+        int currentIndex = 0;
+        for (String field : fields) {
+            array[currentIndex++] = field;
+        }
+        return array;
+    }
+
+    /**
+     * Espera que o registo com o número de sequência indicado (e todos os anteriores) esteja persistido em disco.
+     * Não deve ser chamado com o monitor da Universidade adquirido, para não bloquear as restantes threads durante a
+     * sincronização.
+     *
+     * @param sequence Número de sequência devolvido por um dos métodos de registo
+     * @throws UncheckedIOException Caso ocorra um erro na escrita do ficheiro
+     */
+    public synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence && writeError == null) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durableSequence < sequence) {
+            throw new UncheckedIOException(writeError);
+        }
+    }
+
+    /**
+     * Espera que todos os registos escritos até ao momento estejam persistidos em disco, tal como
+     * {@link #awaitDurable(long) awaitDurable}
+     *
+     * @throws UncheckedIOException Caso ocorra um erro na escrita do ficheiro
+     */
+    public void sync() {
+        long sequence;
+        synchronized (this) {
+            sequence = pendingSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Cria um novo snapshot, exportando as pessoas e os movimentos atuais da Universidade para os ficheiros JSON,
+     * e remove do registo as alterações que passam a estar refletidas nesses ficheiros. O estado é copiado com o monitor
+     * da Universidade adquirido, mas os ficheiros são escritos sem o mesmo, pelo que a ingestão e as consultas não
+     * esperam pela exportação. As alterações feitas em simultâneo devem ser feitas com o mesmo monitor adquirido (como
+     * acontece no servidor de ingestão de movimentos), para que fiquem todas antes ou depois da cópia; as registadas
+     * depois da cópia continuam no registo.
+     * <p>
+     * Os ficheiros são primeiro escritos em ficheiros temporários e só depois substituem os originais, para que uma
+     * falha a meio não deixe um snapshot incompleto, e o registo é compactado da mesma forma. Uma falha depois de o
+     * snapshot substituir os ficheiros e antes da compactação faz com que as alterações já exportadas sejam reaplicadas
+     * no arranque, sendo os movimentos já existentes ignorados ({@link University#hasEvent(String, Location,
+     * LocalTime)}).
+     *
+     * @param university        Universidade cujo estado será exportado
+     * @param peopleFileName    Caminho do ficheiro das pessoas
+     * @param movementsFileName Caminho do ficheiro dos movimentos
+     * @throws IOException Caso não seja possível escrever os ficheiros
+     */
+    public void checkpoint(University university, String peopleFileName, String movementsFileName)
+            throws IOException {
+        checkpoint(university, peopleFileName, movementsFileName, null);
+    }
+
+    /**
+     * Cria um novo snapshot tal como {@link #checkpoint(University, String, String)}, quando os movimentos são
+     * importados de um ficheiro de movimentos binário ({@link BinaryMovementFile}) criado a partir do ficheiro JSON.
+     * Depois de o ficheiro JSON ser substituído, o ficheiro binário (e o respetivo dicionário) é apagado, sendo criado
+     * de novo a partir do snapshot no próximo arranque. Como o registo só é compactado depois disso, uma falha a meio
+     * deixa sempre um ficheiro de movimentos e um registo que, juntos, reconstroem o estado.
+     *
+     * @param university              Universidade cujo estado será exportado
+     * @param peopleFileName          Caminho do ficheiro das pessoas
+     * @param movementsFileName       Caminho do ficheiro dos movimentos
+     * @param movementsBinaryFileName Caminho do ficheiro de movimentos binário, ou null (ou vazio) caso não seja usado
+     * @throws IOException Caso não seja possível escrever os ficheiros
+     */
+    public void checkpoint(University university, String peopleFileName, String movementsFileName,
+                           String movementsBinaryFileName) throws IOException {
+        Path peopleTemporary = Paths.get(peopleFileName + ".tmp");
+        Path movementsTemporary = Paths.get(movementsFileName + ".tmp");
+        UnorderedListADT<Person> people;
+        Iterable<Event> events;
+        long snapshotSequence, snapshotBytes;
+        synchronized (university) {
+            people = new ArrayList<>(university.getPeople().size() + 1);
+            for (Person person : university.getPeople()) {
+                people.addLast(person);
+            }
+            //Apenas a pessoa, a localização e a hora de início dos eventos são exportadas, e estas não mudam
+            events = university.getEventsSnapshot();
+            //Com o registo ativo, as pessoas são sempre exportadas por completo
+            university.markPeopleExported();
+            synchronized (this) {
+                snapshotSequence = pendingSequence;
+                snapshotBytes = appendedBytes;
+            }
+        }
+        FileHelper.exportPeople(people, peopleTemporary.toString());
+        FileHelper.exportEvents(events, movementsTemporary.toString());
+        Files.move(peopleTemporary, Paths.get(peopleFileName), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(Paths.get(FileHelper.getPeopleDeltaFileName(peopleFileName)));
+        Files.move(movementsTemporary, Paths.get(movementsFileName), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        if (movementsBinaryFileName != null && !movementsBinaryFileName.isBlank()) {
+            Files.deleteIfExists(Paths.get(movementsBinaryFileName));
+            Files.deleteIfExists(Paths.get(BinaryMovementFile.getDictionaryFileName(movementsBinaryFileName)));
+        }
+        removeUntil(snapshotSequence, snapshotBytes);
+    }
+
+    /*
+    Remove do início do ficheiro os registos já refletidos no snapshot, mantendo os registados depois da cópia do
+    estado. O ficheiro só é alterado com a thread de escrita parada (com o monitor adquirido e sem um lote a meio), e os
+    registos mantidos são primeiro escritos num ficheiro temporário, para que uma falha a meio não os perca.
+     */
+    private synchronized void removeUntil(long snapshotSequence, long snapshotBytes) throws IOException {
+        boolean interrupted = false;
+        while ((durableSequence < snapshotSequence || writing) && writeError == null && !closed) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                //O registo não pode ser compactado antes de os registos do snapshot estarem escritos
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (writeError != null) {
+            throw new IOException("Erro na escrita do registo de movimentos", writeError);
+        }
+        if (closed) {
+            throw new IllegalStateException("Registo de movimentos fechado");
+        }
+        long size = channel.size();
+        if (size == snapshotBytes) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        }
+        else {
+            Path temporary = Paths.get(path + ".tmp");
+            try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = snapshotBytes;
+                while (position < size) {
+                    position += source.transferTo(position, size - position, target);
+                }
+                target.force(true);
+            }
+            channel.close();
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        appendedBytes -= snapshotBytes;
+    }
+
+    /**
+     * Fecha o registo, esperando que os registos pendentes sejam persistidos
+     *
+     * @throws IOException Caso ocorra um erro ao fechar o ficheiro
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writerThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private synchronized long append(byte[] records) {
+        if (closed) {
+            throw new IllegalStateException("Registo de movimentos fechado");
+        }
+        if (writeError != null) {
+            throw new UncheckedIOException(writeError);
+        }
+        pending.write(records, 0, records.length);
+        appendedBytes += records.length;
+        notifyAll();
+        return ++pendingSequence;
+    }
+
+    private void writeLoop() {
+        ByteArrayOutputStream batch;
+        long batchSequence;
+        FileChannel batchChannel;
+        while (true) {
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                batchSequence = pendingSequence;
+                batchChannel = channel;
+                pending = new ByteArrayOutputStream();
+                writing = true;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) {
+                    batchChannel.write(buffer);
+                }
+                batchChannel.force(false);
+                synchronized (this) {
+                    durableSequence = batchSequence;
+                    writing = false;
+                    notifyAll();
+                }
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    writeError = e;
+                    writing = false;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reaplica sobre a Universidade todas as alterações registadas no ficheiro do registo, pela ordem em que foram
+     * registadas. A Universidade deve ter sido construída a partir do último snapshot (os ficheiros JSON) e ainda não
+     * deve ter nenhum registo associado, para que as alterações reaplicadas não sejam registadas novamente. Caso seja
+     * encontrado um registo incompleto ou corrompido, a reaplicação termina e o ficheiro é truncado a partir desse
+     * registo.
+     *
+     * @param fileName   Caminho do ficheiro do registo
+     * @param university Universidade construída a partir do último snapshot
+     * @return Número de registos reaplicados
+     * @throws IOException Caso não seja possível ler o ficheiro
+     */
+    public static int replay(String fileName, University university) throws IOException {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int replayed = 0;
+        long validSize = 0;
+        //Pessoas das partes de uma substituição da lista de pessoas ainda sem o último registo
+        UnorderedListADT<Person> resetPeople = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            ByteBuffer payload;
+            int length, checksum;
+            CRC32 crc = new CRC32();
+            while (true) {
+                header.clear();
+                if (readFully(channel, header) < HEADER_SIZE) {
+                    break;
+                }
+                header.flip();
+                length = header.getInt();
+                checksum = header.getInt();
+                if (length <= 0 || length > MAXIMUM_RECORD_SIZE) {
+                    break;
+                }
+                payload = ByteBuffer.allocate(length);
+                if (readFully(channel, payload) < length) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload.array(), 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload.array(), university, resetPeople);
+                replayed++;
+                validSize += HEADER_SIZE + length;
+            }
+            if (validSize < channel.size()) {
+                channel.truncate(validSize);
+                channel.force(true);
+            }
+        }
+        return replayed;
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int total = 0, read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static void apply(byte[] payload, University university, UnorderedListADT<Person> resetPeople)
+            throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = input.readByte();
+        switch (type) {
+            case EVENT -> {
+                String personId = input.readUTF();
+                Location location = university.getLocationById(input.readUTF());
+                LocalTime time = LocalTime.parse(input.readUTF());
+                /*
+                Um movimento já existente está no snapshot (o snapshot foi escrito mas o registo não chegou a ser
+                compactado), e não deve ser duplicado.
+                 */
+                if (location != null && !university.hasEvent(personId, location, time)) {
+                    UnorderedListADT<Event> events = new ArrayList<>(1);
+                    events.addLast(new Event(university.getPersonById(personId), personId, location, time));
+                    university.addEvents(events);
+                }
+            }
+            case PERSON_ADD -> university.addPerson(readPerson(input));
+            case PERSON_REMOVE -> {
+                Person person = university.getPersonById(input.readUTF());
+                if (person != null) {
+                    university.removePerson(person);
+                }
+            }
+            case PEOPLE_RESET_PART, PEOPLE_RESET -> {
+                int numberOfPeople = input.readInt() / 3;
+                for (int i = 0; i < numberOfPeople; i++) {
+                    resetPeople.addLast(readPerson(input));
+                }
+                if (type == PEOPLE_RESET) {
+                    UnorderedListADT<Person> people = new ArrayList<>(resetPeople.size() + 1);
+                    for (Person person : resetPeople) {
+                        people.addLast(person);
+                    }
+                    resetPeople.clear();
+                    university.mergePeople(people);
+                }
+            }
+            default -> throw new IOException("Tipo de registo desconhecido: " + type);
+        }
+    }
+
+    private static Person readPerson(DataInputStream input) throws IOException {
+        String id = input.readUTF();
+        Person.Role role = Person.Role.fromString(input.readUTF());
+        return new Person(id, role, input.readUTF());
+    }
+
+    private static String roleToString(Person.Role role) {
+        return role == null ? "" : Person.Role.fromRole(role);
+    }
+
+    private static byte[] encode(byte type, String... fields) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(type);
+            if (type == PEOPLE_RESET || type == PEOPLE_RESET_PART) {
+                output.writeInt(fields.length);
+            }
+            for (String field : fields) {
+                output.writeUTF(field);
+            }
+        }
+        catch (IOException e) {
+            //Não acontece em memória
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(ByteArrayOutputStream records, byte[] payload) {
+        //Um registo maior seria tratado como corrompido na reaplicação, perdendo-se todos os seguintes
+        if (payload.length > MAXIMUM_RECORD_SIZE) {
+            throw new IllegalArgumentException("Registo demasiado grande: " + payload.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(payload.length);
+        header.putInt((int) crc.getValue());
+        records.write(header.array(), 0, HEADER_SIZE);
+        records.write(payload, 0, payload.length);
+    }
+}
@@ -0,0 +1,866 @@
+package com.trivialware;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Armazenamento de eventos fora da heap, para históricos muito grandes: em vez de um objeto {@link Event} (com a hora
+ * de início e de fim como objetos {@link LocalTime}) por movimento, cada evento é um registo de tamanho fixo de 12 bytes
+ * em buffers diretos ({@link ByteBuffer#allocateDirect(int)}), que o garbage collector não percorre nem copia, pelo que
+ * o tempo das suas pausas deixa de crescer com o número de eventos guardados.
+ * <p>
+ * Cada registo tem três inteiros: o número da pessoa; o número da localização (15 bits superiores) e o segundo de
+ * início (17 bits inferiores), tal como no {@link BinaryMovementFile ficheiro binário de movimentos}; e o segundo de fim
+ * ({@link #OPEN} enquanto o evento decorre). Na heap ficam apenas os dicionários de identificadores e índices de
+ * posições em arrays de inteiros (que o garbage collector não percorre): a linha cronológica de cada pessoa, ordenada
+ * pela hora de início, onde as consultas por instante ou intervalo são pesquisas binárias; e, para cada localização, as
+ * posições dos eventos que intersetam cada hora do dia e dos eventos em curso, pelo que as consultas de uma localização
+ * e dos contactos apenas percorrem as horas pedidas.
+ * <p>
+ * A adição segue as regras de {@link University#addEvents(ListADT)}: o evento anterior da pessoa termina um segundo
+ * antes do novo e um evento anterior ao evento atual da pessoa é rejeitado. As consultas têm os mesmos nomes e
+ * resultados que as consultas correspondentes da {@link University}, criando os objetos {@link Event} apenas para os
+ * eventos devolvidos, com as pessoas resolvidas no momento da consulta.
+ * <p>
+ * As operações que percorrem todo o histórico ({@link #replay(MovementListener)}, {@link #snapshot()} e
+ * {@link #archive(String)}) também criam os eventos um de cada vez, sem nunca manter o histórico na heap. As violações
+ * de acesso são indexadas pelas posições dos seus registos, por ordem cronológica, e avaliadas de novo quando as
+ * pessoas mudam ({@link #reindexViolations(Set)}).
+ */
+public class OffHeapEventStore {
+    private static final int FIELDS = 3;
+    private static final int RECORD_SIZE = FIELDS * Integer.BYTES;
+    private static final int PERSON = 0;
+    private static final int LOCATION_AND_START = 1;
+    private static final int END = 2;
+    //Número de registos de cada buffer (768KB), alocado quando o anterior fica cheio
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+    private static final int SECOND_BITS = 17;
+    private static final int SECOND_MASK = (1 << SECOND_BITS) - 1;
+    private static final int MAXIMUM_LOCATIONS = 1 << (Integer.SIZE - SECOND_BITS - 1);
+    private static final int SECONDS_PER_HOUR = 60 * 60;
+    private static final int HOURS_PER_DAY = 24;
+    private static final int SECONDS_PER_DAY = HOURS_PER_DAY * SECONDS_PER_HOUR;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    /**
+     * Segundo de fim de um evento que ainda decorre (hora de fim {@link LocalTime#MAX})
+     */
+    public static final int OPEN = -1;
+
+    private final Function<String, Person> people;
+    private final Location[] locationsByOrdinal;
+    private final HashMap<String, Integer> locationOrdinals;
+    private final UnorderedListADT<String> personIds;
+    private final HashMap<String, Integer> personOrdinals;
+    private ByteBuffer[] chunks;
+    //Posições dos eventos de cada pessoa (pelo seu número), por ordem cronológica
+    private Positions[] timelines;
+    //Posições dos eventos de cada localização que intersetam cada hora do dia (criadas quando necessárias)
+    private final Positions[][] hoursByLocation;
+    //Posições dos eventos em curso de cada localização, que estão apenas na hora de início até terminarem
+    private final Positions[] openByLocation;
+    /*
+    Lugar do evento em curso de cada pessoa (pelo seu número) na lista dos eventos em curso da sua localização. Cada
+    pessoa tem no máximo um evento em curso, pelo que ao terminá-lo a sua posição é removida diretamente, trocando-a
+    com a última da lista
+     */
+    private int[] openSlots;
+    //Posições dos eventos com violações de acesso, pela ordem cronológica (hora de início e identificador da pessoa)
+    private Positions violations;
+    private int size;
+
+    /**
+     * Cria um armazenamento vazio
+     *
+     * @param locations Localizações do mapa, as únicas aceites nos eventos
+     * @param people    Função que obtém a pessoa de um identificador (tipicamente {@link University#getPersonById}),
+     *                  aplicada a cada evento devolvido, devolvendo null para as pessoas desconhecidas
+     */
+    public OffHeapEventStore(ListADT<Location> locations, Function<String, Person> people) {
+        if (locations.size() > MAXIMUM_LOCATIONS) {
+            throw new IllegalArgumentException("Demasiadas localizações: " + locations.size());
+        }
+        this.people = people;
+        this.locationsByOrdinal = new Location[locations.size()];
+        this.locationOrdinals = new HashMap<>(locations.size() * 2);
+        for (Location location : locations) {
+            locationOrdinals.put(location.getId(), locationOrdinals.size());
+            locationsByOrdinal[locationOrdinals.size() - 1] = location;
+        }
+        this.personIds = new ArrayList<>();
+        this.personOrdinals = new HashMap<>();
+        this.chunks = new ByteBuffer[4];
+        this.timelines = new Positions[16];
+        this.openSlots = new int[16];
+        this.hoursByLocation = new Positions[locationsByOrdinal.length][HOURS_PER_DAY];
+        this.openByLocation = new Positions[locationsByOrdinal.length];
+        for (int i = 0; i < openByLocation.length; i++) {
+            openByLocation[i] = new Positions();
+        }
+        this.violations = new Positions();
+    }
+
+    /**
+     * @return Número de eventos guardados
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Número de bytes ocupados fora da heap pelos buffers alocados
+     */
+    public long getOffHeapBytes() {
+        return (long) ((size + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK) * RECORDS_PER_CHUNK * RECORD_SIZE;
+    }
+
+    private int get(int index, int field) {
+        return chunks[index / RECORDS_PER_CHUNK].getInt((index % RECORDS_PER_CHUNK) * RECORD_SIZE + field * Integer.BYTES);
+    }
+
+    private void set(int index, int field, int value) {
+        chunks[index / RECORDS_PER_CHUNK].putInt((index % RECORDS_PER_CHUNK) * RECORD_SIZE + field * Integer.BYTES,
+                value);
+    }
+
+    private int getStartSecond(int index) {
+        return get(index, LOCATION_AND_START) & SECOND_MASK;
+    }
+
+    private int getLocationOrdinal(int index) {
+        return get(index, LOCATION_AND_START) >>> SECOND_BITS;
+    }
+
+    /*
+    As horas são comparadas em nanossegundos do dia, tal como LocalTime, para que os limites dos intervalos (por exemplo
+    LocalTime.MAX) deem exatamente os mesmos resultados que as consultas da Universidade
+     */
+    private long getStartNanos(int index) {
+        return getStartSecond(index) * NANOS_PER_SECOND;
+    }
+
+    private long getEndNanos(int index) {
+        int end = get(index, END);
+        return end == OPEN ? LocalTime.MAX.toNanoOfDay() : end * NANOS_PER_SECOND;
+    }
+
+    private boolean isInTimeFrame(int index, long start, long end) {
+        return start <= getEndNanos(index) && end >= getStartNanos(index);
+    }
+
+    //Eventos terminados por outro evento da mesma pessoa no mesmo segundo, que nunca estiveram em curso
+    private boolean isZeroLength(int index) {
+        int end = get(index, END);
+        return end != OPEN && end < getStartSecond(index);
+    }
+
+    private Positions getHour(int location, int hour) {
+        if (hoursByLocation[location][hour] == null) {
+            hoursByLocation[location][hour] = new Positions();
+        }
+        return hoursByLocation[location][hour];
+    }
+
+    /**
+     * Adiciona um evento, com as mesmas regras que {@link University#addEvents(ListADT)}
+     *
+     * @param event Evento a adicionar (apenas o identificador da pessoa, a localização e a hora de início são guardados)
+     * @return Verdadeiro caso o evento tenha sido adicionado, falso caso seja anterior ao evento atual da pessoa
+     * @throws IllegalArgumentException Caso a localização não seja uma das localizações do mapa
+     */
+    public boolean add(Event event) {
+        return add(event.getPersonId(), event.getLocation().getId(), event.getStartTime().toSecondOfDay());
+    }
+
+    /**
+     * Adiciona um evento, com as mesmas regras que {@link University#addEvents(ListADT)}
+     *
+     * @param personId   Identificador da pessoa
+     * @param locationId Identificador da localização
+     * @param second     Segundo do dia da hora de início
+     * @return Verdadeiro caso o evento tenha sido adicionado, falso caso seja anterior ao evento atual da pessoa
+     * @throws IllegalArgumentException Caso a localização não seja uma das localizações do mapa
+     */
+    public boolean add(String personId, String locationId, int second) {
+        Integer locationOrdinal = locationOrdinals.get(locationId);
+        if (locationOrdinal == null) {
+            throw new IllegalArgumentException("Localização inválida: " + locationId);
+        }
+        if (second < 0 || second >= SECONDS_PER_DAY) {
+            throw new IllegalArgumentException("Segundo inválido: " + second);
+        }
+        Integer personOrdinal = personOrdinals.get(personId);
+        if (personOrdinal != null) {
+            int previous = timelines[personOrdinal].getLast();
+            if (second < getStartSecond(previous)) {
+                return false;
+            }
+            //Tal como LocalTime.minusSeconds(1), um evento no segundo 0 termina o anterior no último segundo do dia
+            close(previous, (second + SECONDS_PER_DAY - 1) % SECONDS_PER_DAY);
+        }
+        else {
+            personOrdinal = personIds.size();
+            personOrdinals.put(personId, personOrdinal);
+            personIds.addLast(personId);
+            if (personOrdinal == timelines.length) {
+                timelines = Arrays.copyOf(timelines, timelines.length * 2);
+                openSlots = Arrays.copyOf(openSlots, openSlots.length * 2);
+            }
+            timelines[personOrdinal] = new Positions();
+        }
+        if (size % RECORDS_PER_CHUNK == 0) {
+            if (size / RECORDS_PER_CHUNK == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            chunks[size / RECORDS_PER_CHUNK] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE);
+        }
+        int index = size++;
+        set(index, PERSON, personOrdinal);
+        set(index, LOCATION_AND_START, (locationOrdinal << SECOND_BITS) | second);
+        set(index, END, OPEN);
+        timelines[personOrdinal].add(index);
+        getHour(locationOrdinal, second / SECONDS_PER_HOUR).add(index);
+        openSlots[personOrdinal] = openByLocation[locationOrdinal].size();
+        openByLocation[locationOrdinal].add(index);
+        if (isAccessViolation(index, people.apply(personId))) {
+            addViolation(index);
+        }
+        return true;
+    }
+
+    private boolean isAccessViolation(int index, Person person) {
+        return person == null || !locationsByOrdinal[getLocationOrdinal(index)].isAccessibleTo(person.getRole());
+    }
+
+    //Ordem cronológica (EventSorts.CHRONOLOGICAL_ORDER) de dois registos
+    private int compareChronologically(int first, int second) {
+        int comparison = Integer.compare(getStartSecond(first), getStartSecond(second));
+        return comparison != 0 ? comparison :
+                personIds.get(get(first, PERSON)).compareTo(personIds.get(get(second, PERSON)));
+    }
+
+    /*
+    Tal como na Universidade, uma violação anterior à última é inserida na sua posição, deslocando as posteriores
+     */
+    private void addViolation(int index) {
+        int position = violations.size();
+        while (position > 0 && compareChronologically(violations.get(position - 1), index) > 0) {
+            position--;
+        }
+        violations.insert(position, index);
+    }
+
+    /*
+    Um evento terminado passa a estar em todas as horas que interseta (um evento sem duração fica apenas na hora de
+    início)
+     */
+    private void close(int index, int end) {
+        set(index, END, end);
+        int location = getLocationOrdinal(index);
+        int slot = openSlots[get(index, PERSON)];
+        Positions open = openByLocation[location];
+        open.removeAt(slot);
+        if (slot < open.size()) {
+            //O último evento em curso da localização passou para o lugar do evento terminado
+            openSlots[get(open.get(slot), PERSON)] = slot;
+        }
+        for (int hour = getStartSecond(index) / SECONDS_PER_HOUR + 1; hour <= end / SECONDS_PER_HOUR; hour++) {
+            getHour(location, hour).add(index);
+        }
+    }
+
+    /**
+     * Adiciona vários eventos, pela ordem em que foram capturados
+     *
+     * @param events Eventos a adicionar
+     * @return Número de eventos efetivamente adicionados
+     */
+    public int addEvents(ListADT<Event> events) {
+        int added = 0;
+        for (Event event : events) {
+            if (add(event)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Obtém um evento pela ordem de adição, criando o objeto correspondente
+     *
+     * @param index Posição do evento
+     * @return Evento na posição indicada
+     * @throws IndexOutOfBoundsException Caso a posição não exista
+     */
+    public Event get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Posição inválida: " + index);
+        }
+        String personId = personIds.get(get(index, PERSON));
+        Event event = new Event(people.apply(personId), personId, locationsByOrdinal[getLocationOrdinal(index)],
+                LocalTime.ofSecondOfDay(getStartSecond(index)));
+        int end = get(index, END);
+        if (end != OPEN) {
+            event.setEndTime(LocalTime.ofSecondOfDay(end));
+        }
+        return event;
+    }
+
+    private UnorderedListADT<Event> toEvents(Positions positions) {
+        UnorderedListADT<Event> eventList = new ArrayList<>(positions.size() + 1);
+        for (int i = 0; i < positions.size(); i++) {
+            eventList.addLast(get(positions.get(i)));
+        }
+        return eventList;
+    }
+
+    private Positions getTimeline(String personId) {
+        Integer personOrdinal = personOrdinals.get(personId);
+        return personOrdinal == null ? new Positions() : timelines[personOrdinal];
+    }
+
+    /*
+    Número de eventos da linha cronológica iniciados até um instante (a posição do primeiro iniciado depois dele)
+     */
+    private int countStartedUntil(Positions timeline, long nanos) {
+        int low = 0, high = timeline.size(), middle;
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (getStartNanos(timeline.get(middle)) <= nanos) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+    Posições dos eventos de uma pessoa no intervalo, por ordem cronológica. Os eventos iniciados até ao fim do intervalo
+    são um prefixo da linha cronológica, e como cada evento termina quando o seguinte começa, os que terminam depois do
+    início do intervalo são um sufixo desse prefixo, ambos encontrados por pesquisa binária. A exceção são os eventos
+    iniciados no segundo 0 e terminados por outro no mesmo segundo, que terminam no último segundo do dia (tal como
+    LocalTime.minusSeconds) e são verificados um a um.
+     */
+    private Positions getTimelineInTimeFrame(String personId, long start, long end) {
+        Positions timeline = getTimeline(personId);
+        Positions positions = new Positions();
+        int started = countStartedUntil(timeline, end), low = 0, high = started, middle;
+        while (low < started && getStartSecond(timeline.get(low)) == 0) {
+            if (isInTimeFrame(timeline.get(low), start, end)) {
+                positions.add(timeline.get(low));
+            }
+            low++;
+        }
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (getEndNanos(timeline.get(middle)) < start) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < started; i++) {
+            positions.add(timeline.get(i));
+        }
+        return positions;
+    }
+
+    /**
+     * Obtém todos os eventos de uma pessoa, tal como {@link University#getEventsOfPerson(String)}
+     *
+     * @param personId Identificador único da pessoa
+     * @return Lista dos eventos da pessoa, por ordem cronológica
+     */
+    public ListADT<Event> getEventsOfPerson(String personId) {
+        return toEvents(getTimeline(personId));
+    }
+
+    /**
+     * Obtém os eventos de uma pessoa num intervalo temporal, tal como
+     * {@link University#getEventsOfPersonInTimeFrame(String, LocalTime, LocalTime)}, por pesquisa binária na linha
+     * cronológica da pessoa
+     *
+     * @param personId Identificador único da pessoa
+     * @param start    Hora de início do intervalo temporal (inclusive)
+     * @param end      Hora de fim do intervalo temporal (inclusive)
+     * @return Lista dos eventos da pessoa no intervalo, por ordem cronológica
+     */
+    public ListADT<Event> getEventsOfPersonInTimeFrame(String personId, LocalTime start, LocalTime end) {
+        return toEvents(getTimelineInTimeFrame(personId, start.toNanoOfDay(), end.toNanoOfDay()));
+    }
+
+    /**
+     * Obtém o evento atual de uma pessoa, tal como {@link University#getCurrentEventByPerson(String)}
+     *
+     * @param personId Identificador único da pessoa
+     * @return O último evento da pessoa, ou null caso a pessoa não tenha eventos
+     */
+    public Event getCurrentEventByPerson(String personId) {
+        Positions timeline = getTimeline(personId);
+        return timeline.size() == 0 ? null : get(timeline.getLast());
+    }
+
+    /**
+     * Verifica se uma pessoa tem um evento numa localização com uma dada hora de início, tal como
+     * {@link University#hasEvent(String, Location, LocalTime)}
+     *
+     * @param personId   Identificador único da pessoa
+     * @param locationId Identificador único da localização
+     * @param second     Segundo do dia da hora de início
+     * @return Verdadeiro caso a pessoa tenha um evento igual
+     */
+    public boolean hasEvent(String personId, String locationId, int second) {
+        Integer locationOrdinal = locationOrdinals.get(locationId);
+        Positions timeline = getTimeline(personId);
+        if (locationOrdinal == null) {
+            return false;
+        }
+        for (int i = countStartedUntil(timeline, second * NANOS_PER_SECOND) - 1;
+             i >= 0 && getStartSecond(timeline.get(i)) == second; i--) {
+            if (getLocationOrdinal(timeline.get(i)) == locationOrdinal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtém a localização atual de uma pessoa, tal como {@link University#getCurrentLocationOfPerson(String)}
+     *
+     * @param personId Identificador único da pessoa
+     * @return Localização do último evento da pessoa, ou null caso a pessoa não tenha eventos
+     */
+    public Location getCurrentLocationOfPerson(String personId) {
+        Positions timeline = getTimeline(personId);
+        return timeline.size() == 0 ? null : locationsByOrdinal[getLocationOrdinal(timeline.getLast())];
+    }
+
+    /**
+     * Obtém a localização de uma pessoa num instante, tal como {@link University#getLocationOfPersonAt(String,
+     * LocalTime)}, por pesquisa binária na linha cronológica da pessoa
+     *
+     * @param personId Identificador único da pessoa
+     * @param time     Instante a consultar
+     * @return Localização da pessoa no instante, ou null caso a pessoa ainda não tivesse movimentos nesse instante
+     */
+    public Location getLocationOfPersonAt(String personId, LocalTime time) {
+        Positions timeline = getTimeline(personId);
+        int started = countStartedUntil(timeline, time.toNanoOfDay());
+        return started == 0 ? null : locationsByOrdinal[getLocationOrdinal(timeline.get(started - 1))];
+    }
+
+    /*
+    Posições dos eventos de uma localização que podem intersetar as horas de um intervalo (em segundos), por ordem de
+    adição. Um evento terminado está em todas as horas que interseta e só é considerado na primeira hora percorrida; um
+    evento em curso está apenas na hora de início, sendo os iniciados antes da primeira hora obtidos da lista de eventos
+    em curso.
+     */
+    private Positions getCandidates(int location, int startSecond, int endSecond) {
+        int firstHour = startSecond / SECONDS_PER_HOUR, lastHour = endSecond / SECONDS_PER_HOUR, index;
+        Positions candidates = new Positions(), hour;
+        for (int h = firstHour; h <= lastHour; h++) {
+            hour = hoursByLocation[location][h];
+            for (int i = 0; hour != null && i < hour.size(); i++) {
+                index = hour.get(i);
+                if (Math.max(getStartSecond(index) / SECONDS_PER_HOUR, firstHour) == h) {
+                    candidates.add(index);
+                }
+            }
+        }
+        Positions open = openByLocation[location];
+        for (int i = 0; i < open.size(); i++) {
+            if (getStartSecond(open.get(i)) / SECONDS_PER_HOUR < firstHour) {
+                candidates.add(open.get(i));
+            }
+        }
+        candidates.sort();
+        return candidates;
+    }
+
+    /**
+     * Obtém os eventos de uma localização num intervalo temporal, tal como
+     * {@link University#getEventsInLocationInTimeFrame(String, LocalTime, LocalTime)}, percorrendo apenas os eventos
+     * das horas do intervalo
+     *
+     * @param locationId Identificador único da localização
+     * @param start      Hora de início do intervalo temporal (inclusive)
+     * @param end        Hora de fim do intervalo temporal (inclusive)
+     * @return Lista dos eventos da localização no intervalo, por ordem de adição (vazia caso a localização não exista)
+     */
+    public ListADT<Event> getEventsInLocationInTimeFrame(String locationId, LocalTime start, LocalTime end) {
+        Integer locationOrdinal = locationOrdinals.get(locationId);
+        Positions positions = new Positions();
+        if (locationOrdinal == null) {
+            return toEvents(positions);
+        }
+        long startNanos = start.toNanoOfDay(), endNanos = end.toNanoOfDay();
+        Positions candidates = getCandidates(locationOrdinal, start.toSecondOfDay(), end.toSecondOfDay());
+        for (int i = 0; i < candidates.size(); i++) {
+            if (isInTimeFrame(candidates.get(i), startNanos, endNanos) && !isZeroLength(candidates.get(i))) {
+                positions.add(candidates.get(i));
+            }
+        }
+        return toEvents(positions);
+    }
+
+    /**
+     * Obtém os eventos que decorriam numa localização num instante, tal como
+     * {@link University#getEventsInLocationAt(String, LocalTime)}
+     *
+     * @param locationId Identificador único da localização
+     * @param time       Instante a consultar
+     * @return Lista dos eventos da localização no instante (vazia caso a localização não exista)
+     */
+    public ListADT<Event> getEventsInLocationAt(String locationId, LocalTime time) {
+        return getEventsInLocationInTimeFrame(locationId, time, time);
+    }
+
+    /**
+     * Obtém os contactos de uma pessoa num intervalo temporal, tal como
+     * {@link University#getOverlappingEventsOfPersonInTimeFrame(String, LocalTime, LocalTime)}: para cada evento
+     * guardado (por ordem de adição), uma entrada por cada evento da pessoa no intervalo a que se sobrepõe. Os eventos
+     * da pessoa são obtidos por pesquisa binária e, para cada um, apenas são comparados os eventos da mesma localização
+     * nas horas em que decorreu, sendo criados objetos apenas para os contactos.
+     *
+     * @param personId Identificador único da pessoa
+     * @param start    Hora de início do intervalo temporal (inclusive)
+     * @param end      Hora de fim do intervalo temporal (inclusive)
+     * @return Lista com os eventos de contacto
+     */
+    public ListADT<Event> getOverlappingEventsOfPersonInTimeFrame(String personId, LocalTime start, LocalTime end) {
+        long startNanos = start.toNanoOfDay(), endNanos = end.toNanoOfDay();
+        Positions personEvents = getTimelineInTimeFrame(personId, startNanos, endNanos);
+        Positions contacts = new Positions(), candidates;
+        int personEvent, personStart, personEnd, index;
+        for (int i = 0; i < personEvents.size(); i++) {
+            personEvent = personEvents.get(i);
+            personStart = getStartSecond(personEvent);
+            personEnd = get(personEvent, END) == OPEN ? SECONDS_PER_DAY - 1 : get(personEvent, END);
+            //Um evento sem duração termina antes de começar
+            candidates = getCandidates(getLocationOrdinal(personEvent), Math.min(personStart, personEnd),
+                    Math.max(personStart, personEnd));
+            for (int j = 0; j < candidates.size(); j++) {
+                index = candidates.get(j);
+                if (index != personEvent && getStartNanos(personEvent) <= getEndNanos(index) &&
+                        getEndNanos(personEvent) >= getStartNanos(index) && isInTimeFrame(index, startNanos, endNanos)) {
+                    contacts.add(index);
+                }
+            }
+        }
+        //Por ordem de adição, com as repetições (um contacto por cada evento da pessoa) consecutivas
+        contacts.sort();
+        return toEvents(contacts);
+    }
+
+    /**
+     * Obtém as violações de acesso, tal como {@link University#getAccessViolations()}, considerando as pessoas
+     * devolvidas pela função de pessoas no momento da consulta
+     *
+     * @return Lista dos eventos com violações de acesso, por ordem de adição
+     */
+    public ListADT<Event> getAccessViolations() {
+        UnorderedListADT<Event> violations = new ArrayList<>();
+        //Cada pessoa é resolvida uma única vez
+        Person[] peopleByOrdinal = new Person[personIds.size()];
+        boolean[] resolved = new boolean[personIds.size()];
+        int personOrdinal;
+        Person person;
+        for (int index = 0; index < size; index++) {
+            personOrdinal = get(index, PERSON);
+            if (!resolved[personOrdinal]) {
+                peopleByOrdinal[personOrdinal] = people.apply(personIds.get(personOrdinal));
+                resolved[personOrdinal] = true;
+            }
+            person = peopleByOrdinal[personOrdinal];
+            if (person == null || !locationsByOrdinal[getLocationOrdinal(index)].isAccessibleTo(person.getRole())) {
+                violations.addLast(get(index));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Obtém as violações de acesso iniciadas até um instante, tal como {@link University#getAccessViolationsAt}, por
+     * pesquisa binária nas posições das violações
+     *
+     * @param time Instante a consultar
+     * @return Lista dos eventos com violações de acesso iniciados até ao instante, por ordem cronológica
+     */
+    public ListADT<Event> getAccessViolationsAt(LocalTime time) {
+        long nanos = time.toNanoOfDay();
+        int low = 0, high = violations.size(), middle;
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (getStartNanos(violations.get(middle)) <= nanos) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        UnorderedListADT<Event> eventList = new ArrayList<>(low + 1);
+        for (int i = 0; i < low; i++) {
+            eventList.addLast(get(violations.get(i)));
+        }
+        return eventList;
+    }
+
+    /**
+     * Avalia de novo as violações de acesso dos eventos de algumas pessoas, depois de a função de pessoas passar a
+     * devolver outra pessoa (ou nenhuma) para os seus identificadores. As violações das restantes pessoas mantêm-se, e
+     * as novas são juntadas a elas pela ordem cronológica numa única passagem.
+     *
+     * @param changedPersonIds Identificadores das pessoas alteradas
+     */
+    public void reindexViolations(Set<String> changedPersonIds) {
+        boolean[] changed = new boolean[personIds.size()];
+        Integer personOrdinal;
+        int reevaluatedSize = 0;
+        for (String personId : changedPersonIds) {
+            personOrdinal = personOrdinals.get(personId);
+            if (personOrdinal != null) {
+                changed[personOrdinal] = true;
+                reevaluatedSize += timelines[personOrdinal].size();
+            }
+        }
+        Positions kept = new Positions();
+        for (int i = 0; i < violations.size(); i++) {
+            if (!changed[get(violations.get(i), PERSON)]) {
+                kept.add(violations.get(i));
+            }
+        }
+        Integer[] reevaluated = new Integer[reevaluatedSize];
+        int count = 0;
+        Person person;
+        Positions timeline;
+        for (int ordinal = 0; ordinal < changed.length; ordinal++) {
+            if (!changed[ordinal]) {
+                continue;
+            }
+            person = people.apply(personIds.get(ordinal));
+            timeline = timelines[ordinal];
+            for (int i = 0; i < timeline.size(); i++) {
+                if (isAccessViolation(timeline.get(i), person)) {
+                    reevaluated[count++] = timeline.get(i);
+                }
+            }
+        }
+        Arrays.sort(reevaluated, 0, count, this::compareChronologically);
+        Positions merged = new Positions();
+        int i = 0, j = 0;
+        while (i < kept.size() || j < count) {
+            if (j == count || (i < kept.size() && compareChronologically(kept.get(i), reevaluated[j]) <= 0)) {
+                merged.add(kept.get(i++));
+            }
+            else {
+                merged.add(reevaluated[j++]);
+            }
+        }
+        violations = merged;
+    }
+
+    /**
+     * Entrega todos os eventos guardados a um observador, pela ordem de adição e com o evento anterior de cada pessoa,
+     * tal como foram recebidos pela Universidade, para reconstruir um observador sem guardar o histórico na heap: cada
+     * evento é criado apenas durante a sua entrega, mantendo-se apenas o anterior de cada pessoa.
+     *
+     * @param listener Observador a que os eventos são entregues
+     */
+    public void replay(MovementListener listener) {
+        Event[] previousByPerson = new Event[personIds.size()];
+        int personOrdinal;
+        Event event;
+        for (int index = 0; index < size; index++) {
+            personOrdinal = get(index, PERSON);
+            event = get(index);
+            listener.eventAdded(previousByPerson[personOrdinal], event);
+            previousByPerson[personOrdinal] = event;
+        }
+    }
+
+    /**
+     * Obtém um retrato dos eventos guardados que pode ser percorrido depois de libertado o monitor da Universidade (por
+     * exemplo, para escrever um snapshot sem bloquear a adição de eventos). Os registos não são copiados: os registos
+     * existentes nunca mudam de posição e os eventos adicionados depois ficam fora do retrato. As pessoas são
+     * resolvidas no momento da criação do retrato, e os eventos são criados um de cada vez durante a iteração. Apenas a
+     * hora de fim dos eventos em curso pode refletir eventos adicionados depois.
+     *
+     * @return Eventos guardados no momento da chamada, pela ordem de adição
+     */
+    public Iterable<Event> snapshot() {
+        ByteBuffer[] snapshotChunks = chunks;
+        int snapshotSize = size;
+        String[] snapshotPersonIds = new String[personIds.size()];
+        Person[] snapshotPeople = new Person[snapshotPersonIds.length];
+        for (int i = 0; i < snapshotPersonIds.length; i++) {
+            snapshotPersonIds[i] = personIds.get(i);
+            snapshotPeople[i] = people.apply(snapshotPersonIds[i]);
+        }
+        return () -> new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshotSize;
+            }
+
+            @Override
+            public Event next() {
+                if (index >= snapshotSize) {
+                    throw new NoSuchElementException();
+                }
+                ByteBuffer chunk = snapshotChunks[index / RECORDS_PER_CHUNK];
+                int offset = (index++ % RECORDS_PER_CHUNK) * RECORD_SIZE;
+                int personOrdinal = chunk.getInt(offset + PERSON * Integer.BYTES);
+                int locationAndStart = chunk.getInt(offset + LOCATION_AND_START * Integer.BYTES);
+                int end = chunk.getInt(offset + END * Integer.BYTES);
+                Event event = new Event(snapshotPeople[personOrdinal], snapshotPersonIds[personOrdinal],
+                        locationsByOrdinal[locationAndStart >>> SECOND_BITS],
+                        LocalTime.ofSecondOfDay(locationAndStart & SECOND_MASK));
+                if (end != OPEN) {
+                    event.setEndTime(LocalTime.ofSecondOfDay(end));
+                }
+                return event;
+            }
+        };
+    }
+
+    /**
+     * Escreve o {@link DayArchive arquivo} dos eventos guardados, tal como {@link DayArchive#write(String, ListADT)},
+     * diretamente a partir dos registos: as posições são ordenadas pela ordem cronológica (por contagem dos segundos de
+     * início e, em cada segundo, pelo identificador da pessoa) e as colunas do arquivo são arrays de inteiros, sem criar
+     * os eventos.
+     *
+     * @param fileName Caminho do ficheiro do arquivo, substituído caso já exista
+     * @return Número de eventos arquivados
+     * @throws IOException Caso não seja possível escrever o ficheiro
+     */
+    public int archive(String fileName) throws IOException {
+        //Posição de cada pessoa na ordem dos identificadores, para desempatar os eventos do mesmo segundo
+        Integer[] byId = new Integer[personIds.size()];
+        for (int i = 0; i < byId.length; i++) {
+            byId[i] = i;
+        }
+        Arrays.sort(byId, (first, second) -> personIds.get(first).compareTo(personIds.get(second)));
+        int[] personRanks = new int[byId.length];
+        for (int i = 0; i < byId.length; i++) {
+            personRanks[byId[i]] = i;
+        }
+        int[] secondOffsets = new int[SECONDS_PER_DAY + 1];
+        for (int index = 0; index < size; index++) {
+            secondOffsets[getStartSecond(index) + 1]++;
+        }
+        for (int second = 0; second < SECONDS_PER_DAY; second++) {
+            secondOffsets[second + 1] += secondOffsets[second];
+        }
+        int[] order = new int[size];
+        int[] next = Arrays.copyOf(secondOffsets, SECONDS_PER_DAY);
+        for (int index = 0; index < size; index++) {
+            order[next[getStartSecond(index)]++] = index;
+        }
+        //Em cada segundo, pela pessoa e, para a mesma pessoa, pela ordem de adição (ordenação estável)
+        long[] keys = new long[0];
+        int from, to;
+        for (int second = 0; second < SECONDS_PER_DAY; second++) {
+            from = secondOffsets[second];
+            to = secondOffsets[second + 1];
+            if (to - from < 2) {
+                continue;
+            }
+            if (keys.length < to - from) {
+                keys = new long[Math.max(to - from, keys.length * 2)];
+            }
+            for (int i = from; i < to; i++) {
+                keys[i - from] = ((long) personRanks[get(order[i], PERSON)] << Integer.SIZE) | order[i];
+            }
+            Arrays.sort(keys, 0, to - from);
+            for (int i = from; i < to; i++) {
+                order[i] = (int) keys[i - from];
+            }
+        }
+        int[] starts = new int[size], ends = new int[size], persons = new int[size], locations = new int[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = getStartSecond(order[i]);
+            ends[i] = get(order[i], END);
+            persons[i] = get(order[i], PERSON);
+            locations[i] = getLocationOrdinal(order[i]);
+        }
+        UnorderedListADT<String> locationIds = new ArrayList<>(locationsByOrdinal.length + 1);
+        for (Location location : locationsByOrdinal) {
+            locationIds.addLast(location.getId());
+        }
+        return DayArchive.write(fileName, starts, ends, persons, locations, personIds, locationIds);
+    }
+
+    /**
+     * Descarta todos os eventos, libertando os buffers para o garbage collector
+     */
+    public void clear() {
+        chunks = new ByteBuffer[4];
+        personIds.clear();
+        personOrdinals.clear();
+        timelines = new Positions[16];
+        openSlots = new int[16];
+        for (int i = 0; i < locationsByOrdinal.length; i++) {
+            Arrays.fill(hoursByLocation[i], null);
+            openByLocation[i] = new Positions();
+        }
+        violations = new Positions();
+        size = 0;
+    }
+
+    /**
+     * Lista de posições de eventos num array de inteiros
+     */
+    private static class Positions {
+        private int[] values = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int getLast() {
+            return values[size - 1];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void insert(int position, int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            values[position] = value;
+            size++;
+        }
+
+        //Remove a posição de um lugar, substituindo-a pela última (a ordem não é mantida)
+        void removeAt(int i) {
+            values[i] = values[--size];
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.trivialware;
+
+import java.util.Arrays;
+
+/**
+ * Resumo aproximado de uma distribuição de valores não negativos (por exemplo, tempos em segundos), que permite obter
+ * a média, a mediana ou qualquer outro quantil sem guardar os valores.
+ * <p>
+ * Os valores são contados em intervalos de crescimento geométrico: o intervalo {@code i} contém os valores entre
+ * {@code γ^(i-1)} e {@code γ^i}, com {@code γ = (1 + α) / (1 - α)}, pelo que qualquer quantil é estimado com um erro
+ * relativo máximo de {@code α}. O número de intervalos depende apenas da razão entre o maior e o menor valor (algumas
+ * centenas para tempos entre um segundo e um dia com {@code α} de 1%), e não do número de valores, pelo que tanto a
+ * inserção como as consultas têm custo constante. Dois resumos com a mesma precisão podem ser juntados somando as
+ * contagens de cada intervalo, obtendo-se o resumo da união dos valores.
+ */
+public class QuantileSketch {
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private long[] counts;
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double minimum;
+    private double maximum;
+
+    /**
+     * Cria um resumo vazio
+     *
+     * @param relativeAccuracy Erro relativo máximo das estimativas dos quantis (entre 0 e 1, exclusive)
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Precisão relativa inválida: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        this.counts = new long[16];
+        this.minimum = Double.POSITIVE_INFINITY;
+        this.maximum = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Cria uma cópia de um resumo
+     *
+     * @param other Resumo a copiar
+     */
+    public QuantileSketch(QuantileSketch other) {
+        this.relativeAccuracy = other.relativeAccuracy;
+        this.logGamma = other.logGamma;
+        this.counts = Arrays.copyOf(other.counts, other.counts.length);
+        this.zeroCount = other.zeroCount;
+        this.count = other.count;
+        this.sum = other.sum;
+        this.minimum = other.minimum;
+        this.maximum = other.maximum;
+    }
+
+    /*
+    Valores inferiores a 1 são contados no primeiro intervalo
+     */
+    private int indexOf(double value) {
+        return value <= 1 ? 0 : (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Adiciona um valor ao resumo
+     *
+     * @param value Valor não negativo
+     */
+    public void add(double value) {
+        if (value < 0 || Double.isNaN(value)) {
+            throw new IllegalArgumentException("Valor inválido: " + value);
+        }
+        if (value == 0) {
+            zeroCount++;
+        }
+        else {
+            int index = indexOf(value);
+            if (index >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+            }
+            counts[index]++;
+        }
+        count++;
+        sum += value;
+        minimum = Math.min(minimum, value);
+        maximum = Math.max(maximum, value);
+    }
+
+    /**
+     * Junta a este resumo os valores de outro resumo com a mesma precisão
+     *
+     * @param other Resumo a juntar
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Só é possível juntar resumos com a mesma precisão relativa");
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        minimum = Math.min(minimum, other.minimum);
+        maximum = Math.max(maximum, other.maximum);
+    }
+
+    /**
+     * @return Número de valores no resumo
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Média exata dos valores, ou {@link Double#NaN} caso o resumo esteja vazio
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return Menor valor, ou {@link Double#NaN} caso o resumo esteja vazio
+     */
+    public double getMinimum() {
+        return count == 0 ? Double.NaN : minimum;
+    }
+
+    /**
+     * @return Maior valor, ou {@link Double#NaN} caso o resumo esteja vazio
+     */
+    public double getMaximum() {
+        return count == 0 ? Double.NaN : maximum;
+    }
+
+    /**
+     * Estima um quantil dos valores
+     *
+     * @param quantile Quantil entre 0 e 1 (0,5 para a mediana, 0,95 para o percentil 95)
+     * @return Estimativa do quantil, com erro relativo máximo igual à precisão do resumo, ou {@link Double#NaN} caso o
+     * resumo esteja vazio
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantil inválido: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        //Posição (a partir de 0) do valor pretendido na sequência ordenada dos valores
+        long rank = (long) Math.floor(quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        double estimate = maximum;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                //Ponto do intervalo com o mesmo erro relativo para os dois extremos
+                estimate = i == 0 ? 1 : 2 * Math.exp(i * logGamma) / (1 + Math.exp(logGamma));
+                break;
+            }
+        }
+        return Math.max(minimum, Math.min(maximum, estimate));
+    }
+
+    /**
+     * @return Estimativa da mediana
+     */
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+}
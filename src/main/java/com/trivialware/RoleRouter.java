@@ -0,0 +1,136 @@
+package com.trivialware;
+
+/**
+ * Cálculo de percursos que respeitam as restrições de acesso das localizações: o percurso de uma pessoa só atravessa
+ * localizações a que o seu papel pode aceder ({@link Location#isAccessibleTo(Person.Role)}), ao contrário dos percursos
+ * de emergência, que ignoram as restrições.
+ * <p>
+ * As restrições são aplicadas durante a pesquisa, através da função de custo do grafo compacto, que torna
+ * intransitáveis as ligações para localizações proibidas, pelo que não é criada nenhuma cópia da rede por papel. Para
+ * cada par (papel, destino) pedido é calculada uma única árvore de caminhos mínimos com raiz no destino (a rede é não
+ * dirigida), guardada para as consultas seguintes: todas as pessoas com esse papel, a partir de qualquer origem, obtêm o
+ * seu percurso até esse destino percorrendo a árvore. As árvores guardadas são descartadas quando a rede muda
+ * (bloqueios).
+ */
+public class RoleRouter {
+    private static final Person.Role[] ROLES = Person.Role.values();
+    //Posição adicional para pessoas sem papel, que não têm restrições
+    private static final int NO_ROLE = ROLES.length;
+    private final CampusGraph graph;
+    //Árvore de cada (papel, destino), calculada a pedido
+    private final RouteTree[][] trees;
+
+    /**
+     * Cria o calculador de percursos, sem árvores calculadas
+     *
+     * @param graph Representação compacta da rede da Universidade
+     */
+    public RoleRouter(CampusGraph graph) {
+        this.graph = graph;
+        this.trees = new RouteTree[ROLES.length + 1][];
+    }
+
+    /**
+     * Descarta todas as árvores calculadas, devendo ser chamado sempre que a rede é alterada
+     */
+    public void clearCache() {
+        for (int i = 0; i < trees.length; i++) {
+            trees[i] = null;
+        }
+    }
+
+    private RouteTree getTree(Person.Role role, int destination) {
+        int slot = role == null ? NO_ROLE : role.ordinal();
+        if (trees[slot] == null) {
+            trees[slot] = new RouteTree[graph.size()];
+        }
+        if (trees[slot][destination] == null) {
+            RouteTree tree = new RouteTree(graph.size());
+            graph.shortestPaths(new int[]{destination}, null,
+                    (edge, target) -> graph.getLocation(target).isAccessibleTo(role) ? graph.getEdgeWeight(edge) :
+                            Double.POSITIVE_INFINITY,
+                    tree.distances, tree.nextSteps);
+            trees[slot][destination] = tree;
+        }
+        return trees[slot][destination];
+    }
+
+    /**
+     * Calcula o percurso mais curto entre duas localizações que atravessa apenas localizações acessíveis a um papel,
+     * com o mesmo contrato de {@link DirectedNetworkADT#getCheapestPath(Object, Object, StackADT)}: o caminho é
+     * colocado numa pilha com a origem no topo e o destino no fundo. A origem pode ser uma localização proibida (a
+     * pessoa pode sempre sair de onde está), mas o destino tem de ser acessível.
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @param role        Papel da pessoa, ou null para uma pessoa sem papel (sem restrições)
+     * @param path        Pilha onde será colocado o caminho
+     * @return Distância do caminho, -1 caso as localizações sejam iguais ou alguma não exista, ou
+     * {@link Double#MAX_VALUE} caso não exista percurso permitido (ficando a pilha vazia)
+     */
+    public double getPath(Location origin, Location destination, Person.Role role, StackADT<Location> path) {
+        int from = graph.indexOf(origin), to = graph.indexOf(destination);
+        if (from == -1 || to == -1 || from == to) {
+            return -1;
+        }
+        if (!destination.isAccessibleTo(role)) {
+            return Double.MAX_VALUE;
+        }
+        RouteTree tree = getTree(role, to);
+        int firstStep = from;
+        double distance = tree.distances[from];
+        //Uma origem proibida não está na árvore: o primeiro passo é o vizinho permitido que dá o percurso mais curto
+        if (!origin.isAccessibleTo(role)) {
+            firstStep = -1;
+            distance = Double.POSITIVE_INFINITY;
+            if (!graph.isLocationBlocked(from)) {
+                int neighbour;
+                double candidate;
+                for (int edge = graph.getFirstEdge(from); edge < graph.getLastEdge(from); edge++) {
+                    neighbour = graph.getEdgeTarget(edge);
+                    if (graph.isEdgeBlocked(edge)) {
+                        continue;
+                    }
+                    candidate = graph.getEdgeWeight(edge) + tree.distances[neighbour];
+                    if (candidate < distance) {
+                        distance = candidate;
+                        firstStep = neighbour;
+                    }
+                }
+            }
+        }
+        if (distance == Double.POSITIVE_INFINITY) {
+            return Double.MAX_VALUE;
+        }
+        int length = firstStep == from ? 0 : 1;
+        for (int current = firstStep; current != -1; current = tree.nextSteps[current]) {
+            length++;
+        }
+        int[] steps = new int[length];
+        length = 0;
+        if (firstStep != from) {
+            steps[length++] = from;
+        }
+        for (int current = firstStep; current != -1; current = tree.nextSteps[current]) {
+            steps[length++] = current;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            path.push(graph.getLocation(steps[i]));
+        }
+        return distance;
+    }
+
+    /**
+     * Árvore de caminhos mínimos até um destino
+     */
+    private static class RouteTree {
+        private final double[] distances;
+        //Próxima localização no percurso até ao destino (-1 no destino e nas localizações sem percurso)
+        private final int[] nextSteps;
+
+        RouteTree(int size) {
+            this.distances = new double[size];
+            this.nextSteps = new int[size];
+        }
+    }
+}
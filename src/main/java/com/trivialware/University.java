@@ -1,6 +1,16 @@
 package com.trivialware;
 
+import com.trivialware.helpers.Metrics;
+
+import java.io.IOException;
 import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Classe que representa a Universidade. Contém a lista de Localizações, Eventos (indiretamente ligados através das suas
@@ -15,11 +25,60 @@ import java.time.LocalTime;
 public class University {
     //Lista de Pessoas, Localizações e Eventos, métodos para caminhos mais curtos entre X e Ponto Emergência
     public static final String EMERGENCY_SPOT_ID = "EMERGENCY_SPOT";
+    //Número máximo de matrizes origem-destino (com durações de intervalo diferentes) mantidas em simultâneo
+    private static final int MAXIMUM_FLOW_MATRICES = 4;
     private final UnorderedListADT<Location> locations;
     private final UnorderedListADT<Event> events;
+    /*
+    Armazenamento do histórico de eventos fora da heap, null caso os eventos sejam guardados na heap. Com este
+    armazenamento, a lista de eventos, as linhas cronológicas (que guardam apenas o evento atual de cada pessoa) e os
+    índices temporais das localizações ficam vazios, sendo as consultas do histórico respondidas pelo armazenamento.
+     */
+    private final OffHeapEventStore offHeapEvents;
     private UnorderedListADT<Person> people;
 
     private final UndirectedNetworkADT<Location> network;
+    private DistanceMatrix distanceMatrix;
+    private final CampusGraph campusGraph;
+    private final ExitRoutes exitRoutes;
+    private final AnomalyDetector anomalyDetector;
+    private final DwellTimeStatistics dwellTimeStatistics;
+    private final RoleRouter roleRouter;
+    private final ContactCache contactCache;
+    private ContactWindow contactWindow;
+    //Matrizes origem-destino já construídas, por duração dos intervalos, mantidas atualizadas como observadores
+    private final LinkedHashMap<Integer, FlowMatrix> flowMatrices;
+    private final UnorderedListADT<MovementListener> movementListeners;
+    /*
+    Índices auxiliares para evitar percorrer as listas completas em cada pesquisa por identificador. A linha cronológica
+    de cada pessoa contém os seus eventos por ordem de início, sendo que o último é sempre o evento atual da mesma.
+     */
+    private final HashMap<String, UnorderedListADT<Event>> eventsByPerson;
+    private final HashMap<String, Location> locationsById;
+    /*
+    Lista de presenças de cada localização: identificadores das pessoas (incluindo desconhecidas) cujo evento atual é
+    nessa localização, atualizada em cada evento adicionado
+     */
+    private final HashMap<String, HashSet<String>> rosterByLocation;
+    //Índice temporal dos eventos de cada localização, para consultas de quem esteve numa localização a uma dada hora
+    private final HashMap<String, EventIntervalIndex> intervalIndexByLocation;
+    /*
+    Violações de acesso pela ordem cronológica, para consultar as violações até um instante por pesquisa binária. São
+    avaliadas na adição de cada evento e de novo sempre que a pessoa associada aos eventos muda
+     */
+    private Event[] violationsByStart;
+    private int numberOfViolations;
+    private final HashMap<String, Person> peopleById;
+    /*
+    Alterações às pessoas desde a última exportação, para permitir exportar apenas as alterações. Caso a lista completa
+    de pessoas tenha sido substituída, a próxima exportação terá de ser completa.
+     */
+    private final UnorderedListADT<Person> peopleAddedSinceExport;
+    private final UnorderedListADT<Person> peopleRemovedSinceExport;
+    private boolean peopleReplacedSinceExport;
+    //Registo de escrita antecipada das alterações, null caso as alterações não sejam registadas
+    private MovementLog movementLog;
+    private final Metrics metrics;
 
     /**
      * Construtor para a classe Universidade. A classe universidade contém diversos métodos e funções para auxiliar
@@ -50,8 +109,66 @@ public class University {
      */
     public University(UnorderedListADT<Location> locations, UnorderedListADT<Event> events,
                       UnorderedListADT<Person> people, UndirectedNetworkADT<Location> network) {
+        this(locations, events, people, network, false);
+    }
+
+    /**
+     * Construtor para a classe Universidade que permite indicar que os eventos já se encontram ordenados
+     * cronologicamente (por exemplo, quando importados com
+     * {@link FileHelper#importEventsSorted(ListADT, ListADT, String) importEventsSorted}), sendo nesse caso adicionados
+     * pela ordem recebida, sem nova ordenação. Em tudo o resto é igual ao
+     * {@link #University(UnorderedListADT, UnorderedListADT, UnorderedListADT, UndirectedNetworkADT) construtor base}.
+     *
+     * @param locations    Lista de Localizações
+     * @param events       Lista de Eventos
+     * @param people       Lista de Pessoas
+     * @param network      Rede (Grafo Pesado não dirigido) associado às relações das localizações da universidade
+     * @param eventsSorted Verdadeiro caso os eventos já estejam ordenados pela {@link EventSorts#CHRONOLOGICAL_ORDER
+     *                     ordem cronológica}
+     */
+    public University(UnorderedListADT<Location> locations, UnorderedListADT<Event> events,
+                      UnorderedListADT<Person> people, UndirectedNetworkADT<Location> network, boolean eventsSorted) {
+        this(locations, events, people, network, eventsSorted, false);
+    }
+
+    /**
+     * Construtor para a classe Universidade que permite guardar o histórico de eventos fora da heap
+     * ({@link OffHeapEventStore}), para históricos muito grandes: apenas o evento atual de cada pessoa fica na heap, e os
+     * eventos das consultas do histórico são criados a partir dos registos quando são devolvidos. Os resultados das
+     * consultas são os mesmos, mas os eventos devolvidos são cópias, pelo que {@link #getEvents()} cria uma nova lista
+     * em cada chamada. Em tudo o resto é igual ao
+     * {@link #University(UnorderedListADT, UnorderedListADT, UnorderedListADT, UndirectedNetworkADT, boolean)
+     * construtor com eventos ordenados}.
+     *
+     * @param locations     Lista de Localizações
+     * @param events        Lista de Eventos
+     * @param people        Lista de Pessoas
+     * @param network       Rede (Grafo Pesado não dirigido) associado às relações das localizações da universidade
+     * @param eventsSorted  Verdadeiro caso os eventos já estejam ordenados pela {@link EventSorts#CHRONOLOGICAL_ORDER
+     *                      ordem cronológica}
+     * @param offHeapEvents Verdadeiro para guardar o histórico de eventos fora da heap
+     */
+    public University(UnorderedListADT<Location> locations, UnorderedListADT<Event> events,
+                      UnorderedListADT<Person> people, UndirectedNetworkADT<Location> network, boolean eventsSorted,
+                      boolean offHeapEvents) {
         this.locations = locations;
-        this.events = new ArrayList<>(events.size());
+        this.events = new ArrayList<>(offHeapEvents ? 1 : events.size());
+        this.offHeapEvents = offHeapEvents ? new OffHeapEventStore(locations, this::getPersonById) : null;
+        this.metrics = new Metrics();
+        metrics.registerGauge("events", this::getNumberOfEvents);
+        this.eventsByPerson = new HashMap<>();
+        this.locationsById = new HashMap<>(locations.size() * 2);
+        this.rosterByLocation = new HashMap<>(locations.size() * 2);
+        for (Location location : locations) {
+            locationsById.put(location.getId(), location);
+            rosterByLocation.put(location.getId(), new HashSet<>());
+        }
+        this.peopleById = new HashMap<>(people.size() * 2);
+        for (Person person : people) {
+            peopleById.put(person.getId(), person);
+        }
+        this.peopleAddedSinceExport = new ArrayList<>();
+        this.peopleRemovedSinceExport = new ArrayList<>();
         /*
         Após termos um array todas as Localizações no ficheiro, iremos organizar o mesmo a partir da sua data de
         atividade e transferir os mesmos para uma lista não organizada. Iremos posteriormente usar esta mesma lista
@@ -63,12 +180,33 @@ public class University {
         for (Event event : events) {
             eventArray[currentIndex++] = event;
         }
-        ArraySorts.heapSort(eventArray);
-        for (Event event : eventArray) {
-            addEvent(event);
+        if (!eventsSorted) {
+            EventSorts.sort(eventArray);
         }
         this.people = people;
         this.network = network;
+        this.campusGraph = new CampusGraph(locations, network);
+        this.exitRoutes = new ExitRoutes(campusGraph);
+        this.roleRouter = new RoleRouter(campusGraph);
+        //Os observadores internos são registados antes da adição dos eventos, recebendo-os pela ordem cronológica
+        this.anomalyDetector = new AnomalyDetector(campusGraph);
+        this.dwellTimeStatistics = new DwellTimeStatistics(campusGraph);
+        this.contactCache = new ContactCache();
+        this.movementListeners = new ArrayList<>();
+        this.flowMatrices = new LinkedHashMap<>(16, 0.75f, true);
+        movementListeners.addLast(anomalyDetector);
+        movementListeners.addLast(dwellTimeStatistics);
+        movementListeners.addLast(contactCache);
+        this.contactWindow = new ContactWindow(campusGraph, ContactWindow.DEFAULT_WINDOW_HOURS);
+        movementListeners.addLast(contactWindow);
+        this.intervalIndexByLocation = new HashMap<>(locations.size() * 2);
+        this.violationsByStart = new Event[16];
+        for (Event event : eventArray) {
+            addEvent(event);
+        }
+        if (this.offHeapEvents == null) {
+            buildIntervalIndexes(eventArray);
+        }
         setNumberOfPeopleCurrentlyInLocations();
     }
 
@@ -79,21 +217,162 @@ public class University {
      */
     public void setNumberOfPeopleCurrentlyInLocations() {
         /*
-        Esta função poderia criar uma lista de Person e atribuir essa lista em cada objeto Location com os IDs das
-        pessoas (para incluir desconhecidos). Porém, esta funcionalidade não é pedida, mas o modo de funcionamento
-        seria idêntico, filtrar os eventos para eventos entre um intervalo temporal ou cuja data de fim é indefinida
-        ("atuais") e adicionar uma pessoa aos mesmos, limpando sempre a lista no início do processo.
+        Cada localização tem uma lista de presenças com os identificadores das pessoas (incluindo desconhecidos)
+        presentes, mantida a cada evento adicionado, pelo que o número de pessoas é o tamanho dessa lista, não sendo
+        necessário percorrer os eventos.
          */
+        long startNanos = metrics.start();
         for (Location location : getLocations()) {
-            location.setCurrentNumberPeople(0);
+            location.setCurrentNumberPeople(getRoster(location).size());
         }
-        Location location;
-        for (Event event : getEvents()) {
-            if (event.getEndTime() == LocalTime.MAX) {
-                location = event.getLocation();
-                location.setCurrentNumberPeople(location.getCurrentNumberPeople() + 1);
+        metrics.record(Metrics.Query.OCCUPANCY, startNanos, locations.size());
+    }
+
+    /**
+     * Obtém os identificadores de todas as pessoas presentemente numa localização, incluindo pessoas desconhecidas.
+     * O custo é proporcional ao número de pessoas presentes, e não ao número de eventos. A pesquisa inversa
+     * (localização atual de uma pessoa) é feita por {@link #getCurrentLocationOfPerson(String)}, também em tempo
+     * constante.
+     *
+     * @param locationId Identificador único da localização
+     * @return Lista com os identificadores das pessoas presentes (vazia caso a localização não exista)
+     */
+    public ListADT<String> getPersonIdsInLocation(String locationId) {
+        HashSet<String> roster = rosterByLocation.get(locationId);
+        UnorderedListADT<String> personIds = new ArrayList<>(roster == null ? 1 : roster.size() + 1);
+        if (roster != null) {
+            for (String personId : roster) {
+                personIds.addLast(personId);
+            }
+        }
+        return personIds;
+    }
+
+    /**
+     * Obtém a localização atual de todas as pessoas com movimentos registados, conhecidas ou desconhecidas, de uma só
+     * vez. O mapa é construído a partir das listas de presenças das localizações (o evento em curso de cada pessoa),
+     * pelo que o custo é proporcional ao número de pessoas e de localizações, e não ao número de eventos.
+     *
+     * @return Mapa do identificador de cada pessoa para a sua localização atual
+     */
+    public HashMap<String, Location> getCurrentLocationsOfAllPeople() {
+        long startNanos = metrics.start();
+        HashMap<String, Location> currentLocations = new HashMap<>(eventsByPerson.size() * 2);
+        for (Location location : locations) {
+            for (String personId : getRoster(location)) {
+                currentLocations.put(personId, location);
+            }
+        }
+        metrics.record(Metrics.Query.CURRENT_LOCATIONS_OF_ALL_PEOPLE, startNanos, currentLocations.size());
+        return currentLocations;
+    }
+
+    /**
+     * Obtém a localização de todas as pessoas, conhecidas ou desconhecidas, num instante passado (ou presente), a
+     * partir dos índices temporais das localizações, sem alterar o estado atual. O custo é O(log n) por localização
+     * mais o número de pessoas presentes no instante.
+     *
+     * @param time Instante a consultar
+     * @return Mapa do identificador de cada pessoa com movimentos até esse instante para a sua localização nesse
+     * instante
+     */
+    public HashMap<String, Location> getLocationsOfAllPeopleAt(LocalTime time) {
+        long startNanos = metrics.start();
+        HashMap<String, Location> locationsAt = new HashMap<>(eventsByPerson.size() * 2);
+        for (Location location : locations) {
+            for (Event event : getPresencesAt(location, time)) {
+                locationsAt.put(event.getPersonId(), location);
+            }
+        }
+        metrics.record(Metrics.Query.LOCATIONS_OF_ALL_PEOPLE_AT, startNanos, locationsAt.size());
+        return locationsAt;
+    }
+
+    /**
+     * Obtém o número de pessoas presentes em cada localização num instante passado (ou presente), tal como
+     * {@link #setNumberOfPeopleCurrentlyInLocations()} para o instante atual, mas sem alterar a ocupação guardada nas
+     * localizações. Cada localização é consultada no seu índice temporal, em O(log n) mais o número de presenças.
+     *
+     * @param time Instante a consultar
+     * @return Mapa do identificador de cada localização para o número de pessoas nela presentes no instante
+     */
+    public HashMap<String, Integer> getNumberOfPeopleInLocationsAt(LocalTime time) {
+        long startNanos = metrics.start();
+        HashMap<String, Integer> occupancy = new HashMap<>(locations.size() * 2);
+        for (Location location : locations) {
+            occupancy.put(location.getId(), getPresencesAt(location, time).size());
+        }
+        metrics.record(Metrics.Query.OCCUPANCY_AT, startNanos, locations.size());
+        return occupancy;
+    }
+
+    private ListADT<Event> getPresencesAt(Location location, LocalTime time) {
+        return getPresencesInTimeFrame(location.getId(), time, time);
+    }
+
+    /*
+    Eventos de uma localização que decorreram num intervalo temporal. O índice devolve também os eventos terminados no
+    segundo anterior ao seu início (dois eventos da mesma pessoa no mesmo segundo), que nunca estiveram em curso e são
+    descartados, tanto nas consultas de um instante como nas de um intervalo.
+     */
+    private ListADT<Event> getPresencesInTimeFrame(String locationId, LocalTime start, LocalTime end) {
+        if (offHeapEvents != null) {
+            return offHeapEvents.getEventsInLocationInTimeFrame(locationId, start, end);
+        }
+        UnorderedListADT<Event> presences = new ArrayList<>();
+        EventIntervalIndex intervalIndex = intervalIndexByLocation.get(locationId);
+        if (intervalIndex != null) {
+            intervalIndex.getEventsInTimeFrame(start, end, presences);
+        }
+        UnorderedListADT<Event> current = new ArrayList<>(presences.size() + 1);
+        for (Event event : presences) {
+            if (event.getEndTime().compareTo(event.getStartTime()) >= 0) {
+                current.addLast(event);
             }
         }
+        return current;
+    }
+
+    /**
+     * Obtém os eventos (presenças) que decorriam numa localização num dado instante, ou seja, quem estava na
+     * localização a essa hora, usando o índice temporal da localização.
+     *
+     * @param locationId Identificador único da localização
+     * @param time       Instante a consultar
+     * @return Lista com os eventos que decorriam na localização no instante indicado (vazia caso a localização não
+     * exista)
+     */
+    public ListADT<Event> getEventsInLocationAt(String locationId, LocalTime time) {
+        return getEventsInLocationInTimeFrame(locationId, time, time);
+    }
+
+    /**
+     * Obtém os eventos (presenças) que decorreram, mesmo que parcialmente, numa localização num dado intervalo
+     * temporal, usando o índice temporal da localização. Tal como nas consultas de um instante, os eventos sem duração
+     * (terminados por outro evento da mesma pessoa no mesmo segundo) não são incluídos.
+     *
+     * @param locationId Identificador único da localização
+     * @param start      Hora de início do intervalo temporal (inclusive)
+     * @param end        Hora de fim do intervalo temporal (inclusive)
+     * @return Lista com os eventos da localização no intervalo temporal (vazia caso a localização não exista)
+     */
+    public ListADT<Event> getEventsInLocationInTimeFrame(String locationId, LocalTime start, LocalTime end) {
+        long startNanos = metrics.start();
+        ListADT<Event> eventList = getPresencesInTimeFrame(locationId, start, end);
+        metrics.record(Metrics.Query.LOCATION_HISTORY, startNanos, eventList.size());
+        return eventList;
+    }
+
+    /**
+     * Verifica se uma pessoa está presentemente numa localização
+     *
+     * @param personId   Identificador único da pessoa
+     * @param locationId Identificador único da localização
+     * @return Verdadeiro caso o evento atual da pessoa seja na localização indicada
+     */
+    public boolean isPersonInLocation(String personId, String locationId) {
+        HashSet<String> roster = rosterByLocation.get(locationId);
+        return roster != null && roster.contains(personId);
     }
 
     /**
@@ -115,13 +394,22 @@ public class University {
         na lista de eventos do sistema já estão ordenados pela sua data de início, portanto não é necessário o overhead
         de verificação de ordenação adicional).
          */
-        UnorderedListADT<Event> eventList = new ArrayList<>(events.size());
-        for (Event event : getEvents()) {
-            if (event.getPersonId().equals(personId) && (start.compareTo(event.getEndTime()) <= 0 &&
-                    end.compareTo(event.getStartTime()) >= 0)) {
-                eventList.addLast(event);
+        long startNanos = metrics.start();
+        if (offHeapEvents != null) {
+            ListADT<Event> eventList = offHeapEvents.getEventsOfPersonInTimeFrame(personId, start, end);
+            metrics.record(Metrics.Query.EVENTS_OF_PERSON_IN_TIME_FRAME, startNanos, eventList.size());
+            return eventList;
+        }
+        UnorderedListADT<Event> eventList = new ArrayList<>();
+        UnorderedListADT<Event> timeline = eventsByPerson.get(personId);
+        if (timeline != null) {
+            for (Event event : timeline) {
+                if (start.compareTo(event.getEndTime()) <= 0 && end.compareTo(event.getStartTime()) >= 0) {
+                    eventList.addLast(event);
+                }
             }
         }
+        metrics.record(Metrics.Query.EVENTS_OF_PERSON_IN_TIME_FRAME, startNanos, eventList.size());
         return eventList;
     }
 
@@ -132,12 +420,20 @@ public class University {
      * @return Lista de eventos/movimentos registados da pessoa
      */
     public ListADT<Event> getEventsOfPerson(String personId) {
-        UnorderedListADT<Event> eventList = new ArrayList<>(events.size());
-        for (Event event : getEvents()) {
-            if (event.getPersonId().equals(personId)) {
+        long startNanos = metrics.start();
+        if (offHeapEvents != null) {
+            ListADT<Event> eventList = offHeapEvents.getEventsOfPerson(personId);
+            metrics.record(Metrics.Query.EVENTS_OF_PERSON, startNanos, eventList.size());
+            return eventList;
+        }
+        UnorderedListADT<Event> timeline = eventsByPerson.get(personId);
+        UnorderedListADT<Event> eventList = new ArrayList<>(timeline == null ? 1 : timeline.size());
+        if (timeline != null) {
+            for (Event event : timeline) {
                 eventList.addLast(event);
             }
         }
+        metrics.record(Metrics.Query.EVENTS_OF_PERSON, startNanos, eventList.size());
         return eventList;
     }
 
@@ -151,7 +447,7 @@ public class University {
      * @return Lista de eventos sobrepostos aos eventos passados na lista de eventos por argumento
      */
     public ListADT<Event> getOverlappingEventsInTimeFrame(ListADT<Event> personEvents, LocalTime start, LocalTime end) {
-        UnorderedListADT<Event> eventList = new ArrayList<>(events.size());
+        UnorderedListADT<Event> eventList = new ArrayList<>(getNumberOfEvents() + 1);
         //O(n*m)
         for (Event event : getEvents()) {
             for (Event personEvent : personEvents) {
@@ -171,6 +467,10 @@ public class University {
      * {@link #getOverlappingEventsInTimeFrame(ListADT, LocalTime, LocalTime) getOverlappingEventsInTimeFrame}
      * para obter todos os eventos (contactos) que estão sobrepostos a estes mesmos eventos, determinando os contactos
      * que a pessoa realizou nos vários movimentos efetuados em várias localizações da universidade.
+     * <p>
+     * Os resultados são guardados numa {@link ContactCache cache}, pelo que repetir uma consulta não volta a percorrer
+     * os eventos enquanto não forem adicionados eventos nem alteradas pessoas que a afetem. A cache guarda a sua própria
+     * cópia do resultado, pelo que a lista devolvida pode ser alterada.
      *
      * @param personId Identificador único da pessoa no sistema
      * @param start    Hora de início do intervalo temporal (inclusive)
@@ -178,8 +478,97 @@ public class University {
      * @return Lista com Eventos (Contactos) efetuados pela pessoa num dado intervalo temporal
      */
     public ListADT<Event> getOverlappingEventsOfPersonInTimeFrame(String personId, LocalTime start, LocalTime end) {
-        ListADT<Event> eventsOfPersonInTimeFrame = getEventsOfPersonInTimeFrame(personId, start, end);
-        return getOverlappingEventsInTimeFrame(eventsOfPersonInTimeFrame, start, end);
+        long startNanos = metrics.start();
+        ListADT<Event> overlappingEvents = contactCache.get(personId, start, end);
+        if (overlappingEvents != null) {
+            metrics.increment(Metrics.Counter.CONTACT_CACHE_HITS, 1);
+        }
+        else {
+            ListADT<Event> eventsOfPersonInTimeFrame = getEventsOfPersonInTimeFrame(personId, start, end);
+            overlappingEvents = offHeapEvents != null ?
+                    offHeapEvents.getOverlappingEventsOfPersonInTimeFrame(personId, start, end) :
+                    getOverlappingEventsInTimeFrame(eventsOfPersonInTimeFrame, start, end);
+            contactCache.put(personId, start, end, eventsOfPersonInTimeFrame, overlappingEvents);
+        }
+        metrics.record(Metrics.Query.CONTACTS, startNanos, overlappingEvents.size());
+        return overlappingEvents;
+    }
+
+    /**
+     * Obtém os contactos recentes de uma pessoa, ou seja, os contactos na janela deslizante das últimas horas mantida
+     * pelo {@link ContactWindow motor de contactos recentes}, sem percorrer os eventos anteriores à janela
+     *
+     * @param personId Identificador único da pessoa no sistema
+     * @return Lista com os Eventos (Contactos) da pessoa na janela, sem repetições
+     */
+    public ListADT<Event> getRecentContacts(String personId) {
+        long startNanos = metrics.start();
+        ListADT<Event> contacts = contactWindow.getContacts(personId);
+        metrics.record(Metrics.Query.RECENT_CONTACTS, startNanos, contacts.size());
+        return contacts;
+    }
+
+    /**
+     * Obtém os contactos de uma pessoa num intervalo temporal contido na janela deslizante do
+     * {@link ContactWindow motor de contactos recentes} ({@link ContactWindow#covers(LocalTime)}), sem percorrer os
+     * eventos anteriores à janela
+     *
+     * @param personId Identificador único da pessoa no sistema
+     * @param start    Hora de início do intervalo temporal (inclusive)
+     * @param end      Hora de fim do intervalo temporal (inclusive)
+     * @return Lista com os Eventos (Contactos) da pessoa no intervalo, sem repetições
+     * @throws IllegalArgumentException Caso o intervalo comece antes do início da janela
+     */
+    public ListADT<Event> getRecentContacts(String personId, LocalTime start, LocalTime end) {
+        long startNanos = metrics.start();
+        ListADT<Event> contacts = contactWindow.getContacts(personId, start, end);
+        metrics.record(Metrics.Query.RECENT_CONTACTS, startNanos, contacts.size());
+        return contacts;
+    }
+
+    /**
+     * Obtém o motor de contactos recentes, por exemplo para avançar a janela sem novos eventos
+     *
+     * @return Motor de contactos recentes
+     */
+    public ContactWindow getContactWindow() {
+        return contactWindow;
+    }
+
+    /**
+     * Altera a duração da janela dos contactos recentes. O motor é reconstruído a partir dos eventos do sistema, pela
+     * ordem em que foram adicionados, pelo que esta operação percorre todos os eventos uma vez.
+     *
+     * @param windowHours Duração da janela em horas
+     */
+    public void setContactWindowHours(int windowHours) {
+        if (windowHours == contactWindow.getWindowHours()) {
+            return;
+        }
+        ContactWindow window = new ContactWindow(campusGraph, windowHours);
+        if (offHeapEvents != null) {
+            //Os eventos do histórico são cópias, mas os eventos em curso têm de ser os que os próximos eventos terminam
+            offHeapEvents.replay((previousEvent, event) -> window.eventAdded(previousEvent,
+                    event.getEndTime().equals(LocalTime.MAX) ? getCurrentEventByPerson(event.getPersonId()) : event));
+        }
+        else {
+            HashMap<String, Event> previousByPerson = new HashMap<>(eventsByPerson.size() * 2);
+            for (Event event : events) {
+                window.eventAdded(previousByPerson.put(event.getPersonId(), event), event);
+            }
+        }
+        movementListeners.remove(contactWindow);
+        movementListeners.addLast(window);
+        contactWindow = window;
+    }
+
+    /**
+     * Obtém a cache dos resultados das consultas de contactos, por exemplo para alterar a sua capacidade
+     *
+     * @return Cache dos contactos
+     */
+    public ContactCache getContactCache() {
+        return contactCache;
     }
 
     /**
@@ -211,11 +600,50 @@ public class University {
      * @return Última localização da pessoa temporalmente, se esta pessoa tiver algum evento/movimento registado
      */
     public Location getCurrentLocationOfPerson(String personId) {
+        long startNanos = metrics.start();
         Event currentEvent = getCurrentEventByPerson(personId);
+        metrics.record(Metrics.Query.CURRENT_LOCATION, startNanos, currentEvent == null ? 0 : 1);
         return currentEvent == null ? null : currentEvent.getLocation();
     }
 
 
+    /**
+     * Obtém a localização de uma pessoa num instante passado (ou presente), ou seja, a localização do último evento da
+     * pessoa iniciado até esse instante. A linha cronológica da pessoa está ordenada pela hora de início, pelo que o
+     * evento é encontrado por pesquisa binária, em tempo logarítmico.
+     *
+     * @param personId Identificador único da pessoa no sistema
+     * @param time     Instante a consultar
+     * @return Localização da pessoa no instante indicado, ou null caso a pessoa ainda não tivesse movimentos nesse
+     * instante
+     */
+    public Location getLocationOfPersonAt(String personId, LocalTime time) {
+        long startNanos = metrics.start();
+        UnorderedListADT<Event> timeline = eventsByPerson.get(personId);
+        Location location = null;
+        if (offHeapEvents != null) {
+            location = offHeapEvents.getLocationOfPersonAt(personId, time);
+        }
+        else if (timeline != null) {
+            //Primeiro evento iniciado depois do instante
+            int low = 0, high = timeline.size(), middle;
+            while (low < high) {
+                middle = (low + high) >>> 1;
+                if (timeline.get(middle).getStartTime().compareTo(time) <= 0) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+            if (low > 0) {
+                location = timeline.get(low - 1).getLocation();
+            }
+        }
+        metrics.record(Metrics.Query.LOCATION_AT, startNanos, location == null ? 0 : 1);
+        return location;
+    }
+
     /**
      * Obtém uma localização no sistema a partir do seu identificador único, caso exista
      *
@@ -224,12 +652,7 @@ public class University {
      * caso contrário
      */
     public Location getLocationById(String locationId) {
-        for (Location location : locations) {
-            if (location.getId().equals(locationId)) {
-                return location;
-            }
-        }
-        return null;
+        return locationsById.get(locationId);
     }
 
     /**
@@ -240,11 +663,16 @@ public class University {
      * identificador único
      */
     public boolean addPerson(Person person) {
-        if (people.contains(person)) {
+        if (peopleById.containsKey(person.getId())) {
             return false;
         }
+        long sequence = movementLog == null ? 0 : movementLog.logAddPerson(person);
         people.addLast(person);
+        peopleById.put(person.getId(), person);
+        peopleAddedSinceExport.addLast(person);
         addPersonToEvents(person);
+        reindexViolations(Set.of(person.getId()));
+        awaitMovementLog(sequence);
         return true;
     }
 
@@ -257,8 +685,14 @@ public class University {
      * @return true se a pessoa existia e foi removida do sistema, false em caso contrário
      */
     public boolean removePerson(Person person) {
+        long sequence = movementLog != null && peopleById.containsKey(person.getId()) ?
+                movementLog.logRemovePerson(person) : 0;
         if (people.remove(person)) {
+            peopleById.remove(person.getId());
+            markPersonRemoved(person);
             removePersonFromEvents(person);
+            reindexViolations(Set.of(person.getId()));
+            awaitMovementLog(sequence);
             return true;
         }
         return false;
@@ -271,12 +705,7 @@ public class University {
      * @return Objeto que representa essa pessoa ou null caso a mesma não exista no sistema
      */
     public Person getPersonById(String personId) {
-        for (Person person : people) {
-            if (person.getId().equals(personId)) {
-                return person;
-            }
-        }
-        return null;
+        return peopleById.get(personId);
     }
 
     /**
@@ -286,12 +715,66 @@ public class University {
      * @return O último evento de uma pessoa ou null caso a pessoa não tenha eventos nesse dia
      */
     public Event getCurrentEventByPerson(String personId) {
-        for (Event event : events) {
-            if (event.getPersonId().equals(personId) && event.getEndTime().equals(LocalTime.MAX)) {
-                return event;
+        UnorderedListADT<Event> timeline = eventsByPerson.get(personId);
+        if (timeline == null) {
+            return null;
+        }
+        Event lastEvent = timeline.getLast();
+        return lastEvent.getEndTime().equals(LocalTime.MAX) ? lastEvent : null;
+    }
+
+    /**
+     * Verifica se uma pessoa tem um evento numa localização com uma dada hora de início, em qualquer ponto da sua linha
+     * cronológica (incluindo eventos terminados por outro evento no mesmo segundo), por pesquisa binária
+     *
+     * @param personId  Identificador único da pessoa
+     * @param location  Localização do evento
+     * @param startTime Hora de início do evento
+     * @return true se a pessoa tem um evento igual, false caso contrário
+     */
+    public boolean hasEvent(String personId, Location location, LocalTime startTime) {
+        if (offHeapEvents != null) {
+            return offHeapEvents.hasEvent(personId, location.getId(), startTime.toSecondOfDay());
+        }
+        UnorderedListADT<Event> timeline = eventsByPerson.get(personId);
+        if (timeline == null) {
+            return false;
+        }
+        //Primeiro evento iniciado depois da hora, sendo os eventos com a mesma hora os imediatamente anteriores
+        int low = 0, high = timeline.size(), middle;
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (timeline.get(middle).getStartTime().compareTo(startTime) <= 0) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        for (int i = low - 1; i >= 0 && timeline.get(i).getStartTime().equals(startTime); i--) {
+            if (timeline.get(i).getLocation().equals(location)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtém o evento atual (cuja data de fim é indefinida) de todas as pessoas presentes na Universidade, incluindo
+     * as pessoas desconhecidas
+     *
+     * @return Lista com o evento atual de cada pessoa presente
+     */
+    public ListADT<Event> getCurrentEvents() {
+        UnorderedListADT<Event> currentEvents = new ArrayList<>(eventsByPerson.size());
+        Event lastEvent;
+        for (UnorderedListADT<Event> timeline : eventsByPerson.values()) {
+            lastEvent = timeline.getLast();
+            if (lastEvent.getEndTime().equals(LocalTime.MAX)) {
+                currentEvents.addLast(lastEvent);
             }
         }
-        return null;
+        return currentEvents;
     }
 
     /**
@@ -310,11 +793,54 @@ public class University {
      * capturado por um sensor (gerado), a hora de início (hora em que foi capturado) do mesmo e a hora de fim,
      * correspondente à data de início do evento que temporalmente sucede este, associado à pessoa que gerou
      * o mesmo
+     * <p>
+     * Com o histórico fora da heap, a lista é criada em cada chamada a partir do armazenamento, pelo que as alterações
+     * à mesma não afetam o sistema.
      *
      * @return Lista de Eventos no Sistema
      */
     public UnorderedListADT<Event> getEvents() {
-        return events;
+        if (offHeapEvents == null) {
+            return events;
+        }
+        UnorderedListADT<Event> eventList = new ArrayList<>(offHeapEvents.size() + 1);
+        for (int i = 0; i < offHeapEvents.size(); i++) {
+            eventList.addLast(offHeapEvents.get(i));
+        }
+        return eventList;
+    }
+
+    /**
+     * Obtém um retrato dos eventos do sistema que pode ser percorrido depois de libertado o monitor da Universidade,
+     * por exemplo para exportar os eventos sem bloquear a adição de novos eventos. Na heap é uma cópia da lista dos
+     * eventos; fora da heap ({@link OffHeapEventStore#snapshot()}) os eventos são criados durante a iteração, sem
+     * copiar o histórico.
+     *
+     * @return Eventos do sistema no momento da chamada, pela ordem de adição
+     */
+    public Iterable<Event> getEventsSnapshot() {
+        if (offHeapEvents != null) {
+            return offHeapEvents.snapshot();
+        }
+        UnorderedListADT<Event> eventList = new ArrayList<>(events.size() + 1);
+        for (Event event : events) {
+            eventList.addLast(event);
+        }
+        return eventList;
+    }
+
+    /**
+     * @return Número de eventos no sistema
+     */
+    public int getNumberOfEvents() {
+        return offHeapEvents == null ? events.size() : offHeapEvents.size();
+    }
+
+    /**
+     * @return Verdadeiro caso o histórico de eventos seja guardado fora da heap ({@link OffHeapEventStore})
+     */
+    public boolean isOffHeapEvents() {
+        return offHeapEvents != null;
     }
 
     /**
@@ -333,8 +859,171 @@ public class University {
      * @param people Lista das pessoas a substituir a lista presente
      */
     public void setPeople(UnorderedListADT<Person> people) {
+        long sequence = movementLog == null ? 0 : movementLog.logPeopleReset(people);
         this.people.clear();
         this.people = people;
+        peopleReplacedSinceExport = true;
+        peopleAddedSinceExport.clear();
+        peopleRemovedSinceExport.clear();
+        peopleById.clear();
+        for (Person person : people) {
+            peopleById.put(person.getId(), person);
+        }
+        //Os contactos guardados podem referir pessoas que deixaram de existir
+        contactCache.clear();
+        if (offHeapEvents != null) {
+            //Fora da heap, as pessoas dos eventos são obtidas em cada consulta, pelo que as violações mudam de imediato
+            reindexViolations(eventsByPerson.keySet());
+        }
+        awaitMovementLog(sequence);
+    }
+
+    /**
+     * Junta uma nova lista de pessoas (por exemplo, importada do ficheiro das pessoas) às pessoas do sistema, pelo
+     * identificador: no fim, as pessoas do sistema são as da nova lista, tal como em
+     * {@link #setPeople(UnorderedListADT) setPeople}, mas apenas as pessoas adicionadas, alteradas (nome ou papel) ou
+     * removidas são tratadas. Só os eventos dessas pessoas são associados novamente, através da linha cronológica de
+     * cada uma, em vez de percorrer todos os eventos ({@link #updateEventsPeople()}), e as alterações ficam registadas
+     * para a exportação incremental (uma pessoa alterada é exportada como uma remoção seguida de uma adição). Caso um
+     * identificador se repita na nova lista, apenas a primeira ocorrência é considerada.
+     *
+     * @param people Nova lista de pessoas
+     * @return Pessoas adicionadas, alteradas e removidas
+     */
+    public PeopleMerge mergePeople(ListADT<Person> people) {
+        long sequence = movementLog == null ? 0 : movementLog.logPeopleReset(people);
+        HashMap<String, Person> incomingById = new HashMap<>(people.size() * 2);
+        UnorderedListADT<Person> mergedPeople = new ArrayList<>(people.size() + 1);
+        PeopleMerge merge = new PeopleMerge();
+        Person existing;
+        for (Person person : people) {
+            if (incomingById.putIfAbsent(person.getId(), person) != null) {
+                continue;
+            }
+            existing = peopleById.get(person.getId());
+            if (existing == null) {
+                merge.added.addLast(person);
+            }
+            else if (existing.getRole() != person.getRole() || !Objects.equals(existing.getName(), person.getName())) {
+                merge.updated.addLast(person);
+            }
+            else {
+                //Pessoa inalterada: o objeto atual continua associado aos seus eventos
+                person = existing;
+            }
+            mergedPeople.addLast(person);
+        }
+        for (Person person : this.people) {
+            if (!incomingById.containsKey(person.getId())) {
+                merge.removed.addLast(person);
+            }
+        }
+        for (Person person : merge.removed) {
+            peopleById.remove(person.getId());
+            markPersonRemoved(person);
+            removePersonFromEvents(person);
+        }
+        for (Person person : merge.updated) {
+            markPersonRemoved(peopleById.put(person.getId(), person));
+            peopleAddedSinceExport.addLast(person);
+            addPersonToEvents(person);
+        }
+        for (Person person : merge.added) {
+            peopleById.put(person.getId(), person);
+            peopleAddedSinceExport.addLast(person);
+            addPersonToEvents(person);
+        }
+        HashSet<String> changedPersonIds = new HashSet<>();
+        for (ListADT<Person> changed : Arrays.asList(merge.removed, merge.updated, merge.added)) {
+            for (Person person : changed) {
+                changedPersonIds.add(person.getId());
+            }
+        }
+        reindexViolations(changedPersonIds);
+        this.people.clear();
+        for (Person person : mergedPeople) {
+            this.people.addLast(person);
+        }
+        awaitMovementLog(sequence);
+        return merge;
+    }
+
+    /*
+    Uma pessoa adicionada e removida desde a última exportação não precisa de ser exportada
+     */
+    private void markPersonRemoved(Person person) {
+        if (!peopleAddedSinceExport.remove(person)) {
+            peopleRemovedSinceExport.addLast(person);
+        }
+    }
+
+    /**
+     * Obtém as pessoas adicionadas ao sistema desde a última exportação das pessoas
+     *
+     * @return Lista das pessoas adicionadas desde a última exportação, pela ordem em que foram adicionadas
+     */
+    public ListADT<Person> getPeopleAddedSinceExport() {
+        return peopleAddedSinceExport;
+    }
+
+    /**
+     * Obtém as pessoas removidas do sistema desde a última exportação das pessoas (excluindo as que foram adicionadas
+     * e removidas nesse período)
+     *
+     * @return Lista das pessoas removidas desde a última exportação
+     */
+    public ListADT<Person> getPeopleRemovedSinceExport() {
+        return peopleRemovedSinceExport;
+    }
+
+    /**
+     * Verifica se a lista completa de pessoas foi substituída desde a última exportação, caso em que não é possível
+     * exportar apenas as alterações
+     *
+     * @return true se a lista de pessoas foi substituída desde a última exportação, false caso contrário
+     */
+    public boolean isPeopleReplacedSinceExport() {
+        return peopleReplacedSinceExport;
+    }
+
+    /**
+     * Marca as pessoas do sistema como exportadas, esquecendo as alterações registadas desde a última exportação
+     */
+    public void markPeopleExported() {
+        peopleAddedSinceExport.clear();
+        peopleRemovedSinceExport.clear();
+        peopleReplacedSinceExport = false;
+    }
+
+    /**
+     * Associa um registo de escrita antecipada à Universidade. A partir deste momento, todos os movimentos adicionados
+     * e todas as pessoas adicionadas, removidas ou substituídas são registadas antes de serem aplicadas, e os métodos
+     * que as aplicam só retornam quando o registo estiver persistido. A exceção é quando são chamados com o monitor da
+     * Universidade adquirido: nesse caso, quem o adquiriu deve esperar pelo registo depois de o libertar
+     * ({@link MovementLog#sync()}), para que as consultas não fiquem bloqueadas durante a sincronização do ficheiro.
+     * Deve ser chamado depois de reaplicar o registo ({@link MovementLog#replay(String, University)}), para que as
+     * alterações reaplicadas não sejam registadas novamente.
+     *
+     * @param movementLog Registo onde as alterações serão escritas, ou null para deixar de registar alterações
+     */
+    public void setMovementLog(MovementLog movementLog) {
+        this.movementLog = movementLog;
+    }
+
+    /**
+     * @return Registo de escrita antecipada associado à Universidade, ou null caso as alterações não sejam registadas
+     */
+    public MovementLog getMovementLog() {
+        return movementLog;
+    }
+
+    /*
+    Com o monitor da Universidade adquirido, a espera fica a cargo de quem o adquiriu, depois de o libertar
+     */
+    private void awaitMovementLog(long sequence) {
+        if (movementLog != null && !Thread.holdsLock(this)) {
+            movementLog.awaitDurable(sequence);
+        }
     }
 
     /**
@@ -346,6 +1035,293 @@ public class University {
         return network;
     }
 
+    /**
+     * Obtém a representação compacta da rede das localizações, usada pelos algoritmos de encaminhamento
+     *
+     * @return Representação compacta da rede
+     */
+    public CampusGraph getCampusGraph() {
+        return campusGraph;
+    }
+
+    /**
+     * Bloqueia a ligação entre duas localizações (por exemplo, um corredor obstruído numa emergência). Os percursos de
+     * emergência que passavam pela ligação são reparados imediatamente, sendo recalculados apenas os das localizações
+     * afetadas. A rede original não é alterada.
+     *
+     * @param from Uma das localizações da ligação
+     * @param to   A outra localização da ligação
+     * @return Verdadeiro caso a ligação exista e não estivesse bloqueada
+     */
+    public boolean blockEdge(Location from, Location to) {
+        int fromIndex = campusGraph.indexOf(from), toIndex = campusGraph.indexOf(to);
+        if (fromIndex == -1 || toIndex == -1 || !campusGraph.setEdgeBlocked(fromIndex, toIndex, true)) {
+            return false;
+        }
+        exitRoutes.edgeBlocked(fromIndex, toIndex);
+        roleRouter.clearCache();
+        return true;
+    }
+
+    /**
+     * Desbloqueia a ligação entre duas localizações, encurtando os percursos de emergência que beneficiem dela
+     *
+     * @param from Uma das localizações da ligação
+     * @param to   A outra localização da ligação
+     * @return Verdadeiro caso a ligação exista e estivesse bloqueada
+     */
+    public boolean unblockEdge(Location from, Location to) {
+        int fromIndex = campusGraph.indexOf(from), toIndex = campusGraph.indexOf(to);
+        if (fromIndex == -1 || toIndex == -1 || !campusGraph.setEdgeBlocked(fromIndex, toIndex, false)) {
+            return false;
+        }
+        exitRoutes.edgeUnblocked(fromIndex, toIndex);
+        roleRouter.clearCache();
+        return true;
+    }
+
+    /**
+     * Bloqueia uma localização, impedindo que seja atravessada pelos percursos. As pessoas que se encontram nela
+     * deixam de ter percurso de emergência até a localização ser desbloqueada.
+     *
+     * @param location Localização a bloquear
+     * @return Verdadeiro caso a localização exista e não estivesse bloqueada
+     */
+    public boolean blockLocation(Location location) {
+        int index = campusGraph.indexOf(location);
+        if (index == -1 || !campusGraph.setLocationBlocked(index, true)) {
+            return false;
+        }
+        exitRoutes.locationBlocked(index);
+        roleRouter.clearCache();
+        return true;
+    }
+
+    /**
+     * Desbloqueia uma localização
+     *
+     * @param location Localização a desbloquear
+     * @return Verdadeiro caso a localização exista e estivesse bloqueada
+     */
+    public boolean unblockLocation(Location location) {
+        int index = campusGraph.indexOf(location);
+        if (index == -1 || !campusGraph.setLocationBlocked(index, false)) {
+            return false;
+        }
+        exitRoutes.locationUnblocked(index);
+        roleRouter.clearCache();
+        return true;
+    }
+
+    /**
+     * Obtém a matriz origem-destino dos movimentos entre localizações, contando, em cada intervalo de tempo, quantas
+     * vezes uma pessoa passou de uma localização para outra (pares de eventos consecutivos da mesma pessoa).
+     * A matriz é construída a partir de todas as linhas cronológicas apenas na primeira consulta de cada duração de
+     * intervalo, sendo depois mantida atualizada com os novos movimentos ({@link MovementListener}). São mantidas no
+     * máximo {@value #MAXIMUM_FLOW_MATRICES} durações diferentes, sendo descartada a menos recentemente consultada.
+     *
+     * @param bucketMinutes Duração de cada intervalo em minutos (por exemplo, 60 para contagens por hora)
+     * @return Matriz com os movimentos registados até ao momento
+     */
+    public FlowMatrix getFlowMatrix(int bucketMinutes) {
+        FlowMatrix flowMatrix = flowMatrices.get(bucketMinutes);
+        if (flowMatrix == null) {
+            flowMatrix = buildFlowMatrix(bucketMinutes);
+            flowMatrices.put(bucketMinutes, flowMatrix);
+            movementListeners.addLast(flowMatrix);
+            if (flowMatrices.size() > MAXIMUM_FLOW_MATRICES) {
+                Map.Entry<Integer, FlowMatrix> eldest = flowMatrices.entrySet().iterator().next();
+                flowMatrices.remove(eldest.getKey());
+                movementListeners.remove(eldest.getValue());
+            }
+        }
+        return flowMatrix;
+    }
+
+    private FlowMatrix buildFlowMatrix(int bucketMinutes) {
+        if (offHeapEvents != null) {
+            //Fora da heap, a matriz recebe os movimentos do histórico um de cada vez, sem copiar as linhas cronológicas
+            FlowMatrix flowMatrix = new FlowMatrix(campusGraph, new ArrayList<>(), bucketMinutes);
+            offHeapEvents.replay(flowMatrix);
+            return flowMatrix;
+        }
+        UnorderedListADT<UnorderedListADT<Event>> timelines = new ArrayList<>(eventsByPerson.size());
+        for (UnorderedListADT<Event> timeline : eventsByPerson.values()) {
+            timelines.addLast(timeline);
+        }
+        return new FlowMatrix(campusGraph, timelines, bucketMinutes);
+    }
+
+    /**
+     * Regista um observador que passa a ser notificado por cada evento adicionado ao sistema
+     *
+     * @param listener Observador a registar
+     */
+    public void addMovementListener(MovementListener listener) {
+        movementListeners.addLast(listener);
+    }
+
+    /**
+     * Remove um observador previamente registado
+     *
+     * @param listener Observador a remover
+     * @return Verdadeiro caso o observador estivesse registado
+     */
+    public boolean removeMovementListener(MovementListener listener) {
+        return movementListeners.remove(listener);
+    }
+
+    /**
+     * Obtém as transições fisicamente impossíveis detetadas: pares de eventos consecutivos de uma pessoa cujas
+     * localizações não estão ligadas ou estão demasiado afastadas para o tempo decorrido entre eles.
+     *
+     * @return Lista das anomalias, pela ordem em que os eventos foram adicionados
+     */
+    public ListADT<AnomalyDetector.Anomaly> getTransitionAnomalies() {
+        return anomalyDetector.getAnomalies();
+    }
+
+    /**
+     * Obtém as estatísticas dos tempos de permanência em cada localização por papel, atualizadas à medida que os
+     * eventos são adicionados
+     *
+     * @return Estatísticas dos tempos de permanência
+     */
+    public DwellTimeStatistics getDwellTimeStatistics() {
+        return dwellTimeStatistics;
+    }
+
+    /**
+     * Calcula o percurso mais curto entre duas localizações que uma pessoa com um dado papel pode percorrer, ou seja,
+     * que não atravessa localizações restritas a outros papéis (ao contrário dos percursos de emergência). O percurso
+     * é colocado numa pilha com a origem no topo e o destino no fundo.
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino (acessível ao papel)
+     * @param role        Papel da pessoa, ou null para uma pessoa sem papel
+     * @param path        Pilha onde será colocado o caminho
+     * @return Distância do caminho, -1 caso as localizações sejam iguais ou alguma não exista, ou
+     * {@link Double#MAX_VALUE} caso não exista percurso permitido
+     */
+    public double getCheapestPathForRole(Location origin, Location destination, Person.Role role,
+                                         StackADT<Location> path) {
+        metrics.increment(Metrics.Counter.PATH_COMPUTATIONS, 1);
+        return roleRouter.getPath(origin, destination, role, path);
+    }
+
+    /**
+     * Obtém o percurso mais curto que uma pessoa pode percorrer desde a sua localização atual até um destino,
+     * respeitando as restrições de acesso do seu papel. Pessoas desconhecidas são tratadas como não tendo papel.
+     *
+     * @param personId    Identificador único da pessoa
+     * @param destination Localização de destino
+     * @return Pilha com o percurso (origem no topo), vazia caso a pessoa não tenha movimentos, já esteja no destino ou
+     * não exista percurso permitido
+     */
+    public StackADT<Location> getPathForPerson(String personId, Location destination) {
+        StackADT<Location> path = new LinkedStack<>();
+        Location origin = getCurrentLocationOfPerson(personId);
+        if (origin == null) {
+            return path;
+        }
+        Person person = getPersonById(personId);
+        if (getCheapestPathForRole(origin, destination, person == null ? null : person.getRole(), path) ==
+                Double.MAX_VALUE) {
+            path = new LinkedStack<>();
+        }
+        return path;
+    }
+
+    /**
+     * Obtém a saída de emergência mais próxima de uma localização
+     *
+     * @param location Localização
+     * @return Saída de emergência mais próxima, ou null caso não exista saída alcançável
+     */
+    public Location getNearestExit(Location location) {
+        return exitRoutes.getNearestExit(location);
+    }
+
+    /**
+     * Define a matriz de distâncias pré-calculadas entre todas as localizações. Quando definida, as consultas de
+     * distâncias e caminhos deixam de executar o algoritmo de Dijkstra na rede em cada consulta.
+     *
+     * @param distanceMatrix Matriz de distâncias calculada sobre a rede desta Universidade, ou null para deixar de a usar
+     */
+    public void setDistanceMatrix(DistanceMatrix distanceMatrix) {
+        this.distanceMatrix = distanceMatrix;
+        anomalyDetector.setDistanceMatrix(distanceMatrix);
+    }
+
+    /**
+     * Obtém a matriz de distâncias pré-calculadas entre todas as localizações
+     *
+     * @return Matriz de distâncias, ou null caso não tenha sido calculada
+     */
+    public DistanceMatrix getDistanceMatrix() {
+        return distanceMatrix;
+    }
+
+    /**
+     * Calcula o caminho mais curto (em termos de distância) entre duas localizações, usando a matriz de distâncias
+     * caso esteja definida. Enquanto existirem ligações ou localizações bloqueadas, o caminho é calculado sobre a rede
+     * compacta, que as ignora.
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @param path        Pilha onde será colocado o caminho, com a localização de origem no topo
+     * @return Distância total do caminho, -1 caso a origem e o destino sejam iguais ou não existam, ou
+     * {@link Double#MAX_VALUE} caso não exista caminho
+     */
+    public double getCheapestPath(Location origin, Location destination, StackADT<Location> path) {
+        metrics.increment(Metrics.Counter.PATH_COMPUTATIONS, 1);
+        if (campusGraph.hasBlocked()) {
+            return getCheapestPathAvoidingBlocked(origin, destination, path);
+        }
+        if (distanceMatrix != null) {
+            return distanceMatrix.getPath(origin, destination, path);
+        }
+        return network.getCheapestPath(origin, destination, path);
+    }
+
+    private double getCheapestPathAvoidingBlocked(Location origin, Location destination, StackADT<Location> path) {
+        int from = campusGraph.indexOf(origin), to = campusGraph.indexOf(destination);
+        if (from == -1 || to == -1 || from == to) {
+            return -1;
+        }
+        double[] distances = new double[campusGraph.size()];
+        int[] predecessors = new int[campusGraph.size()];
+        boolean[] targets = new boolean[campusGraph.size()];
+        targets[to] = true;
+        if (campusGraph.shortestPaths(new int[]{from}, targets, null, distances, predecessors) == -1) {
+            path.push(destination);
+            return Double.MAX_VALUE;
+        }
+        for (int current = to; current != -1; current = predecessors[current]) {
+            path.push(campusGraph.getLocation(current));
+        }
+        return distances[to];
+    }
+
+    /**
+     * Obtém a distância mínima entre duas localizações. Com a matriz de distâncias definida, a consulta é feita em O(1).
+     *
+     * @param origin      Localização de origem
+     * @param destination Localização de destino
+     * @return Distância mínima entre as localizações, 0 caso sejam iguais, ou {@link Double#MAX_VALUE} caso não exista
+     * caminho
+     */
+    public double getDistance(Location origin, Location destination) {
+        if (origin != null && origin.equals(destination)) {
+            return 0;
+        }
+        if (distanceMatrix != null && !campusGraph.hasBlocked()) {
+            return distanceMatrix.getDistance(origin, destination);
+        }
+        double distance = getCheapestPath(origin, destination, new LinkedStack<>());
+        return distance < 0 ? Double.MAX_VALUE : distance;
+    }
+
     /**
      * Adiciona um evento ao Sistema. Cada evento contém uma Localização (obrigatoriamente existente), uma Pessoa
      * (que pode ser inexistente ou nula, mas cujo ID tem de existir caso o mesmo seja futuramente associado a uma pessoa
@@ -355,13 +1331,176 @@ public class University {
      */
     private void addEvent(Event event) {
         Event currentEventByPerson = getCurrentEventByPerson(event.getPersonId());
+        UnorderedListADT<Event> timeline;
         if (currentEventByPerson == null) {
-            events.addLast(event);
+            timeline = new ArrayList<>(4);
+            eventsByPerson.put(event.getPersonId(), timeline);
         }
         else {
             currentEventByPerson.setEndTime(event.getStartTime().minusSeconds(1));
+            timeline = eventsByPerson.get(event.getPersonId());
+            getRoster(currentEventByPerson.getLocation()).remove(event.getPersonId());
+        }
+        if (offHeapEvents != null) {
+            offHeapEvents.add(event);
+            //Fora da heap, a linha cronológica guarda apenas o evento atual
+            timeline.clear();
+        }
+        else {
             events.addLast(event);
         }
+        timeline.addLast(event);
+        getRoster(event.getLocation()).add(event.getPersonId());
+        //Durante a construção os índices ainda não existem, sendo construídos de uma só vez no fim
+        EventIntervalIndex intervalIndex = intervalIndexByLocation.get(event.getLocation().getId());
+        if (intervalIndex != null) {
+            intervalIndex.add(event);
+        }
+        //Fora da heap, as violações são indexadas pelo próprio armazenamento, com a pessoa atual do evento
+        if (offHeapEvents == null && isAccessViolation(event)) {
+            addViolation(event);
+        }
+        for (MovementListener listener : movementListeners) {
+            listener.eventAdded(currentEventByPerson, event);
+        }
+    }
+
+    /*
+    Os eventos chegam por ordem cronológica de cada pessoa, mas não necessariamente por ordem cronológica global, pelo
+    que uma violação anterior à última é inserida na sua posição (deslocando as posteriores, tipicamente poucas)
+     */
+    private void addViolation(Event event) {
+        if (numberOfViolations == violationsByStart.length) {
+            violationsByStart = Arrays.copyOf(violationsByStart, numberOfViolations * 2);
+        }
+        int position = numberOfViolations;
+        while (position > 0 && EventSorts.CHRONOLOGICAL_ORDER.compare(violationsByStart[position - 1], event) > 0) {
+            violationsByStart[position] = violationsByStart[position - 1];
+            position--;
+        }
+        violationsByStart[position] = event;
+        numberOfViolations++;
+    }
+
+    /*
+    Depois de mudar a pessoa associada aos eventos de algumas pessoas (adicionadas, removidas ou alteradas), as
+    violações dessas pessoas são retiradas do índice e os seus eventos avaliados de novo, sendo as novas violações
+    ordenadas e juntadas às restantes numa única passagem, qualquer que seja o número de pessoas alteradas
+     */
+    private void reindexViolations(Set<String> personIds) {
+        if (personIds.isEmpty()) {
+            return;
+        }
+        if (offHeapEvents != null) {
+            offHeapEvents.reindexViolations(personIds);
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < numberOfViolations; i++) {
+            if (!personIds.contains(violationsByStart[i].getPersonId())) {
+                violationsByStart[kept++] = violationsByStart[i];
+            }
+        }
+        UnorderedListADT<Event> reevaluated = new ArrayList<>();
+        for (String personId : personIds) {
+            if (!eventsByPerson.containsKey(personId)) {
+                continue;
+            }
+            for (Event event : eventsByPerson.get(personId)) {
+                if (isAccessViolation(event)) {
+                    reevaluated.addLast(event);
+                }
+            }
+        }
+        Event[] added = new Event[reevaluated.size()];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = reevaluated.get(i);
+        }
+        Arrays.sort(added, EventSorts.CHRONOLOGICAL_ORDER);
+        Event[] merged = new Event[Math.max(16, kept + added.length)];
+        int i = 0, j = 0, size = 0;
+        while (i < kept || j < added.length) {
+            if (j == added.length ||
+                    (i < kept && EventSorts.CHRONOLOGICAL_ORDER.compare(violationsByStart[i], added[j]) <= 0)) {
+                merged[size++] = violationsByStart[i++];
+            }
+            else {
+                merged[size++] = added[j++];
+            }
+        }
+        violationsByStart = merged;
+        numberOfViolations = size;
+    }
+
+    /*
+    Agrupa os eventos já ordenados por localização (mantendo a ordem) e constrói o índice temporal de cada uma
+     */
+    private void buildIntervalIndexes(Event[] sortedEvents) {
+        HashMap<String, Integer> countByLocation = new HashMap<>(locations.size() * 2);
+        for (Event event : sortedEvents) {
+            countByLocation.merge(event.getLocation().getId(), 1, Integer::sum);
+        }
+        HashMap<String, Event[]> eventsByLocation = new HashMap<>(countByLocation.size() * 2);
+        HashMap<String, Integer> positionByLocation = new HashMap<>(countByLocation.size() * 2);
+        String locationId;
+        int position;
+        for (Event event : sortedEvents) {
+            locationId = event.getLocation().getId();
+            position = positionByLocation.getOrDefault(locationId, 0);
+            eventsByLocation.computeIfAbsent(locationId, id -> new Event[countByLocation.get(id)])[position] = event;
+            positionByLocation.put(locationId, position + 1);
+        }
+        for (Location location : locations) {
+            Event[] locationEvents = eventsByLocation.getOrDefault(location.getId(), new Event[0]);
+            intervalIndexByLocation.put(location.getId(), new EventIntervalIndex(locationEvents, locationEvents.length));
+        }
+    }
+
+    private HashSet<String> getRoster(Location location) {
+        return rosterByLocation.computeIfAbsent(location.getId(), locationId -> new HashSet<>());
+    }
+
+    /**
+     * Adiciona ao sistema eventos capturados após a construção da Universidade (por exemplo, recebidos diretamente dos
+     * leitores de cartões). Ao contrário dos eventos recebidos no construtor, estes não são reordenados, sendo que é
+     * esperado que cheguem pela ordem em que foram capturados. Um evento cuja hora de início seja anterior à hora de
+     * início do evento atual da mesma pessoa é rejeitado, visto que quebraria a linha cronológica dessa pessoa.
+     * O número de pessoas presentemente em cada localização é atualizado incrementalmente.
+     *
+     * @param newEvents Lista de eventos a adicionar, pela ordem em que foram capturados
+     * @return Número de eventos efetivamente adicionados
+     */
+    public int addEvents(ListADT<Event> newEvents) {
+        int added = 0;
+        Event currentEvent;
+        Location location;
+        /*
+        São registados todos os eventos recebidos, incluindo os que vão ser rejeitados, visto que na reaplicação do
+        registo os mesmos serão rejeitados exatamente da mesma forma.
+         */
+        long sequence = movementLog == null ? 0 : movementLog.logEvents(newEvents);
+        int anomaliesBefore = anomalyDetector.getAnomalies().size();
+        for (Event event : newEvents) {
+            currentEvent = getCurrentEventByPerson(event.getPersonId());
+            if (currentEvent != null) {
+                if (event.getStartTime().compareTo(currentEvent.getStartTime()) < 0) {
+                    continue;
+                }
+                location = currentEvent.getLocation();
+                location.setCurrentNumberPeople(location.getCurrentNumberPeople() - 1);
+            }
+            addEvent(event);
+            location = event.getLocation();
+            location.setCurrentNumberPeople(location.getCurrentNumberPeople() + 1);
+            if (metrics.isEnabled() && isAccessViolation(event)) {
+                metrics.increment(Metrics.Counter.VIOLATIONS_RAISED, 1);
+            }
+            added++;
+        }
+        metrics.increment(Metrics.Counter.EVENTS_INGESTED, added);
+        metrics.increment(Metrics.Counter.ANOMALIES_RAISED, anomalyDetector.getAnomalies().size() - anomaliesBefore);
+        awaitMovementLog(sequence);
+        return added;
     }
 
     /**
@@ -370,9 +1509,14 @@ public class University {
      * eventos diferentes de null ou não.
      */
     public void updateEventsPeople() {
-        for (Event event : getEvents()) {
-            event.setPerson(getPersonById(event.getPersonId()));
+        //Fora da heap, as pessoas dos eventos do histórico são obtidas em cada consulta
+        contactCache.clear();
+        for (UnorderedListADT<Event> timeline : eventsByPerson.values()) {
+            for (Event event : timeline) {
+                event.setPerson(getPersonById(event.getPersonId()));
+            }
         }
+        reindexViolations(eventsByPerson.keySet());
     }
 
     /**
@@ -383,8 +1527,10 @@ public class University {
      * @param person Pessoa que acabou de ser adicionada ao sistema a associar aos eventos em que o seu ID está presente
      */
     private void addPersonToEvents(Person person) {
-        for (Event event : getEvents()) {
-            if (event.getPersonId().equals(person.getId())) {
+        contactCache.invalidatePerson(person.getId());
+        UnorderedListADT<Event> timeline = eventsByPerson.get(person.getId());
+        if (timeline != null) {
+            for (Event event : timeline) {
                 event.setPerson(person);
             }
         }
@@ -399,8 +1545,10 @@ public class University {
      * @param person Pessoa que acabou de ser removida do sistema a desassociar aos eventos em que o seu ID está presente
      */
     private void removePersonFromEvents(Person person) {
-        for (Event event : getEvents()) {
-            if (event.getPersonId().equals(person.getId())) {
+        contactCache.invalidatePerson(person.getId());
+        UnorderedListADT<Event> timeline = eventsByPerson.get(person.getId());
+        if (timeline != null) {
+            for (Event event : timeline) {
                 event.setPerson(null);
             }
         }
@@ -419,33 +1567,139 @@ public class University {
         Irá haver dois tipos de notificações, pessoas não existentes e falta de autorização. Detetar no runtime se
         a pessoa do evento é nula, caso contrário é uma violação do tipo papel
          */
-        UnorderedListADT<Event> violations = new ArrayList<>(events.size());
-        for (Event event : getEvents()) {
-            if (event.getPerson() == null) {
-                violations.addLast(event);
+        long startNanos = metrics.start();
+        ListADT<Event> violations;
+        if (offHeapEvents != null) {
+            //Cria apenas os eventos com violações, em vez de todo o histórico
+            violations = offHeapEvents.getAccessViolations();
+        }
+        else {
+            UnorderedListADT<Event> eventList = new ArrayList<>(getNumberOfEvents() + 1);
+            for (Event event : events) {
+                if (isAccessViolation(event)) {
+                    eventList.addLast(event);
+                }
+            }
+            violations = eventList;
+        }
+        metrics.record(Metrics.Query.ACCESS_VIOLATIONS, startNanos, violations.size());
+        return violations;
+    }
+
+    /**
+     * Obtém a lista de violações de acesso registadas até um instante passado (ou presente), ou seja, as violações que
+     * tinham sido registadas nesse instante. As violações são avaliadas no momento da adição de cada evento e de novo
+     * quando uma pessoa é adicionada, removida ou alterada (tal como em {@link #getAccessViolations()}, é considerada a
+     * pessoa atual de cada evento), e guardadas por ordem cronológica, pelo que a consulta é uma pesquisa binária
+     * seguida da cópia do resultado, sem percorrer os eventos.
+     *
+     * @param time Instante a consultar
+     * @return Lista de Eventos com violações de acesso iniciados até ao instante, por ordem cronológica
+     */
+    public ListADT<Event> getAccessViolationsAt(LocalTime time) {
+        long startNanos = metrics.start();
+        if (offHeapEvents != null) {
+            ListADT<Event> violations = offHeapEvents.getAccessViolationsAt(time);
+            metrics.record(Metrics.Query.ACCESS_VIOLATIONS_AT, startNanos, violations.size());
+            return violations;
+        }
+        //Primeira violação iniciada depois do instante
+        int low = 0, high = numberOfViolations, middle;
+        while (low < high) {
+            middle = (low + high) >>> 1;
+            if (violationsByStart[middle].getStartTime().compareTo(time) <= 0) {
+                low = middle + 1;
             }
             else {
-                if (event.getLocation().getRestrictedTo() != null) {
-                    switch (event.getLocation().getRestrictedTo()) {
-                        case TEACHER -> {
-                            if (event.getPerson().getRole() == Person.Role.WORKER ||
-                                    event.getPerson().getRole() == Person.Role.STUDENT) {
-                                violations.addLast(event);
-                            }
-                        }
-                        case WORKER -> {
-                            if (event.getPerson().getRole() == Person.Role.TEACHER ||
-                                    event.getPerson().getRole() == Person.Role.STUDENT) {
-                                violations.addLast(event);
-                            }
-                        }
-                    }
-                }
+                high = middle;
             }
         }
+        UnorderedListADT<Event> violations = new ArrayList<>(low + 1);
+        for (int i = 0; i < low; i++) {
+            violations.addLast(violationsByStart[i]);
+        }
+        metrics.record(Metrics.Query.ACCESS_VIOLATIONS_AT, startNanos, low);
         return violations;
     }
 
+    /**
+     * Arquiva os eventos do dia num {@link DayArchive arquivo colunar comprimido}, tipicamente depois de o dia terminar,
+     * podendo o dia ser depois consultado ({@link #getArchivedEventsInTimeFrame(String, String, LocalTime, LocalTime)})
+     * ou carregado ({@link FileHelper#importArchivedDay(ListADT, ListADT, String)}) sem ler os restantes dias
+     *
+     * @param fileName Caminho do ficheiro do arquivo do dia, substituído caso já exista
+     * @return Número de eventos arquivados
+     * @throws IOException Caso não seja possível escrever o ficheiro
+     */
+    public int archiveDay(String fileName) throws IOException {
+        //Fora da heap, o arquivo é escrito diretamente a partir dos registos
+        return offHeapEvents != null ? offHeapEvents.archive(fileName) : DayArchive.write(fileName, events);
+    }
+
+    /**
+     * Obtém os eventos de um dia arquivado que decorreram, mesmo que parcialmente, num intervalo temporal, opcionalmente
+     * apenas numa localização. Apenas o arquivo indicado é aberto, e dele só são descomprimidos os blocos que podem
+     * conter eventos da consulta. Os eventos são associados às pessoas e localizações atuais do sistema.
+     *
+     * @param fileName   Caminho do ficheiro do arquivo do dia
+     * @param locationId Identificador único da localização, ou null para todas as localizações
+     * @param start      Hora de início do intervalo temporal (inclusive)
+     * @param end        Hora de fim do intervalo temporal (inclusive)
+     * @return Lista com os eventos arquivados no intervalo, por ordem cronológica
+     * @throws IOException Caso não seja possível ler o arquivo ou este refira uma localização inexistente
+     */
+    public ListADT<Event> getArchivedEventsInTimeFrame(String fileName, String locationId, LocalTime start,
+                                                       LocalTime end) throws IOException {
+        long startNanos = metrics.start();
+        ListADT<Event> archivedEvents;
+        try (DayArchive archive = new DayArchive(fileName)) {
+            archivedEvents = archive.scan(locationId, start, end, people, locations);
+        }
+        metrics.record(Metrics.Query.ARCHIVE_SCAN, startNanos, archivedEvents.size());
+        return archivedEvents;
+    }
+
+    /**
+     * Verifica se um evento é uma violação de acesso, seja por a pessoa ser desconhecida ou por o seu papel não lhe
+     * permitir aceder à localização do evento
+     *
+     * @param event Evento a verificar
+     * @return true se o evento é uma violação de acesso, false caso contrário
+     */
+    private static boolean isAccessViolation(Event event) {
+        if (event.getPerson() == null) {
+            return true;
+        }
+        return !event.getLocation().isAccessibleTo(event.getPerson().getRole());
+    }
+
+    /**
+     * Calcula o caminho mais curto (em termos de distância) de uma localização até à saída de emergência mais próxima.
+     * As saídas de cada localização são pré-calculadas ({@link ExitRoutes}), pelo que o custo desta consulta é apenas o
+     * do tamanho do caminho.
+     *
+     * @param location Localização de origem
+     * @param path     Pilha onde será colocado o caminho, com a localização de origem no topo
+     * @return Distância total do caminho, -1 caso a origem seja ela própria uma saída de emergência ou
+     * {@link Double#MAX_VALUE} caso não exista caminho
+     */
+    public double getCheapestPathToEmergency(Location location, StackADT<Location> path) {
+        long startNanos = metrics.start();
+        metrics.increment(Metrics.Counter.PATH_COMPUTATIONS, 1);
+        double cost = exitRoutes.getPath(location, path);
+        metrics.record(Metrics.Query.EMERGENCY_PATH, startNanos, path.size());
+        return cost;
+    }
+
+    /**
+     * Obtém as métricas de desempenho das consultas desta Universidade (desativadas por omissão)
+     *
+     * @return Métricas desta Universidade
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Retorna uma pilha de localizações da localização atual da pessoa até ao ponto de emergência. Não irá ser usado
      * no contexto do programa em si, visto que não retorna a distância, serve apenas para testar o comportamento
@@ -457,7 +1711,44 @@ public class University {
      */
     public StackADT<Location> getShortestPathToEmergencyPerson(String personId) {
         StackADT<Location> stack = new LinkedStack<>();
-        network.getCheapestPath(getCurrentLocationOfPerson(personId), getLocationById(EMERGENCY_SPOT_ID), stack);
+        getCheapestPathToEmergency(getCurrentLocationOfPerson(personId), stack);
         return stack;
     }
+
+    /**
+     * Resultado da junção de uma lista de pessoas às pessoas do sistema
+     * ({@link #mergePeople(ListADT) mergePeople})
+     */
+    public static class PeopleMerge {
+        private final UnorderedListADT<Person> added;
+        private final UnorderedListADT<Person> updated;
+        private final UnorderedListADT<Person> removed;
+
+        PeopleMerge() {
+            this.added = new ArrayList<>();
+            this.updated = new ArrayList<>();
+            this.removed = new ArrayList<>();
+        }
+
+        /**
+         * @return Pessoas que não existiam no sistema
+         */
+        public ListADT<Person> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return Novas versões das pessoas cujo nome ou papel mudou
+         */
+        public ListADT<Person> getUpdated() {
+            return updated;
+        }
+
+        /**
+         * @return Pessoas do sistema que não constam da nova lista
+         */
+        public ListADT<Person> getRemoved() {
+            return removed;
+        }
+    }
 }
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
+import java.util.HashMap;
 import java.util.Scanner;
 
 /**
@@ -15,7 +16,10 @@ import java.util.Scanner;
 public class UniversityMenu {
     private final University university;
     private final String peopleFileName;
+    private final String movementsFileName;
+    private final String movementsBinaryFileName;
     private final Scanner scanner;
+    private EvacuationPlanner evacuationPlanner;
 
     /**
      * Construtor para a classe de Menu da Universidade, que recebe um Objeto Universidade, e o caminho do ficheiro
@@ -25,11 +29,33 @@ public class UniversityMenu {
      * @param peopleFileName Caminho do ficheiro das pessoas
      */
     public UniversityMenu(University university, String peopleFileName) {
+        this(university, peopleFileName, null, null);
+    }
+
+    /**
+     * Construtor para a classe de Menu da Universidade que recebe também os caminhos dos ficheiros de movimentos. Caso
+     * a Universidade tenha um {@link MovementLog registo de movimentos} associado, a exportação guarda um snapshot
+     * completo (pessoas e movimentos) e esvazia o registo ({@link MovementLog#checkpoint(University, String, String,
+     * String)}).
+     *
+     * @param university              Objeto que representa a universidade
+     * @param peopleFileName          Caminho do ficheiro das pessoas
+     * @param movementsFileName       Caminho do ficheiro dos movimentos JSON
+     * @param movementsBinaryFileName Caminho do ficheiro de movimentos binário, ou null (ou vazio) caso não seja usado
+     */
+    public UniversityMenu(University university, String peopleFileName, String movementsFileName,
+                          String movementsBinaryFileName) {
         this.university = university;
         this.peopleFileName = peopleFileName;
+        this.movementsFileName = movementsFileName;
+        this.movementsBinaryFileName = movementsBinaryFileName;
         scanner = new Scanner(System.in, StandardCharsets.UTF_8);
     }
 
+    private boolean isCheckpointEnabled() {
+        return university.getMovementLog() != null && movementsFileName != null;
+    }
+
     private String getPersonIdMenu() {
         System.out.println("Introduza o Identificador da Pessoa ou deixe em branco para cancelar a operação:");
         System.out.print("ID: ");
@@ -40,6 +66,20 @@ public class UniversityMenu {
         return personId;
     }
 
+    private Location getLocationMenu() {
+        System.out.println("Introduza o Identificador da Localização ou deixe em branco para cancelar a operação:");
+        System.out.print("ID: ");
+        String locationId = scanner.nextLine();
+        if (locationId.isBlank()) {
+            return null;
+        }
+        Location location = university.getLocationById(locationId);
+        if (location == null) {
+            System.out.println(ConsoleColors.RED + "Não existe nenhuma localização com esse identificador." + ConsoleColors.RESET);
+        }
+        return location;
+    }
+
     private LocalTime getTimeMenu() {
         LocalTime time = null;
         String timeString;
@@ -112,12 +152,36 @@ public class UniversityMenu {
 
     }
 
+    private void exportPeopleMenu() throws IOException {
+        if (isCheckpointEnabled()) {
+            university.getMovementLog().checkpoint(university, peopleFileName, movementsFileName,
+                    movementsBinaryFileName);
+            System.out.println("Foram exportadas todas as pessoas e movimentos do sistema e o registo de movimentos " +
+                    "foi esvaziado.");
+            return;
+        }
+        if (university.isPeopleReplacedSinceExport()) {
+            FileHelper.exportPeople(university.getPeople(), peopleFileName);
+            System.out.println("Foram exportadas todas as pessoas do sistema.");
+        }
+        else if (FileHelper.exportPeopleDelta(university.getPeopleAddedSinceExport(),
+                university.getPeopleRemovedSinceExport(), university.getPeople(), peopleFileName)) {
+            System.out.println("Foram exportadas todas as pessoas do sistema (ficheiro de alterações compactado).");
+        }
+        else {
+            System.out.printf("Foram exportadas %d adições e %d remoções de pessoas.%n",
+                    university.getPeopleAddedSinceExport().size(), university.getPeopleRemovedSinceExport().size());
+        }
+        university.markPeopleExported();
+    }
+
     private void peopleMenu() {
         int menuOption;
         do {
             System.out.println("0-Voltar para o Menu Principal");
             System.out.println("1-Importar Pessoas de Ficheiro");
-            System.out.println("2-Exportar Pessoas para Ficheiro");
+            System.out.println(isCheckpointEnabled() ? "2-Exportar Pessoas e Movimentos para Ficheiro" :
+                    "2-Exportar Pessoas para Ficheiro");
             System.out.println("3-Listar Pessoas no Sistema");
             System.out.println("4-Adicionar Pessoa");
             System.out.println("5-Remover Pessoa");
@@ -126,10 +190,11 @@ public class UniversityMenu {
                 menuOption = Integer.parseInt(scanner.nextLine());
                 switch (menuOption) {
                     case 1 -> {
-                        university.setPeople(FileHelper.importPeople(peopleFileName));
-                        university.updateEventsPeople();
+                        University.PeopleMerge merge = university.mergePeople(FileHelper.importPeople(peopleFileName));
+                        System.out.printf("Foram adicionadas %d, alteradas %d e removidas %d pessoas.%n",
+                                merge.getAdded().size(), merge.getUpdated().size(), merge.getRemoved().size());
                     }
-                    case 2 -> FileHelper.exportPeople(university.getPeople(), peopleFileName);
+                    case 2 -> exportPeopleMenu();
                     case 3 -> listPeople();
                     case 4 -> addPersonMenu();
                     case 5 -> removePersonMenu();
@@ -223,15 +288,98 @@ public class UniversityMenu {
     }
 
     private void currentLocationAllPeopleMenu() {
+        HashMap<String, Location> currentLocations = university.getCurrentLocationsOfAllPeople();
         Location location;
         for (Person person : university.getPeople()) {
-            location = university.getCurrentLocationOfPerson(person.getId());
+            location = currentLocations.get(person.getId());
             if (location != null) {
                 System.out.printf("Localização Atual %s: %s%n", person, location);
             }
         }
     }
 
+    private void peopleInLocationMenu() {
+        Location location = getLocationMenu();
+        if (location == null) {
+            return;
+        }
+        ListADT<String> personIds = university.getPersonIdsInLocation(location.getId());
+        if (personIds.isEmpty()) {
+            System.out.printf("Não existem pessoas presentemente em %s.%n", location);
+            return;
+        }
+        System.out.printf("Pessoas presentemente em %s (%d):%n", location, personIds.size());
+        Person person;
+        for (String personId : personIds) {
+            person = university.getPersonById(personId);
+            System.out.printf("| %s |%n", person != null ? person : "Pessoa Desconhecida (" + personId + ")");
+        }
+    }
+
+    private void locationHistoryMenu() {
+        Location location = getLocationMenu();
+        if (location == null) {
+            return;
+        }
+        System.out.println("Introduza a Hora de Início (HH:MM:SS)");
+        LocalTime startTime = getTimeMenu();
+        System.out.println("Introduza a Hora de Fim (HH:MM:SS), igual à de início para um único instante");
+        LocalTime endTime = getTimeMenu();
+        if (endTime.compareTo(startTime) < 0) {
+            System.out.println("A hora de início não pode ser superior à hora de fim.");
+            return;
+        }
+        ListADT<Event> events = university.getEventsInLocationInTimeFrame(location.getId(), startTime, endTime);
+        if (events.isEmpty()) {
+            System.out.printf("Não esteve ninguém em %s nesse período.%n", location);
+            return;
+        }
+        for (Event event : events) {
+            System.out.printf("| ID Pessoa: %s | Entrada: %s | Saída: %s |%n", event.getPersonId(),
+                    event.getStartTime(), event.getEndTime().equals(LocalTime.MAX) ? "-" : event.getEndTime());
+        }
+    }
+
+    private void personPathMenu() {
+        String personId = getPersonIdMenu();
+        if (personId == null) {
+            return;
+        }
+        Location origin = university.getCurrentLocationOfPerson(personId);
+        if (origin == null) {
+            System.out.println("A pessoa com o identificador inserido não tem movimentos registados.");
+            return;
+        }
+        Location destination = getLocationMenu();
+        if (destination == null) {
+            return;
+        }
+        Person person = university.getPersonById(personId);
+        StackADT<Location> path = new LinkedStack<>();
+        double cost = university.getCheapestPathForRole(origin, destination, person == null ? null : person.getRole(),
+                path);
+        if (cost == -1) {
+            System.out.printf("A pessoa já se encontra em %s.%n", destination);
+        }
+        else if (cost == Double.MAX_VALUE) {
+            System.out.printf(ConsoleColors.RED + "Não existe percurso permitido de %s até %s%n" + ConsoleColors.RESET,
+                    origin, destination);
+        }
+        else {
+            StringBuilder sb = new StringBuilder();
+            String separator = "";
+            sb.append(ConsoleColors.GREEN).append("Percurso Permitido: ").append(ConsoleColors.RESET);
+            while (!path.empty()) {
+                sb.append(ConsoleColors.BLUE).append(separator).append(ConsoleColors.RESET);
+                sb.append(path.pop());
+                separator = "→";
+            }
+            sb.append(". ");
+            sb.append(ConsoleColors.GREEN).append("Distância: ").append(ConsoleColors.RESET).append(cost).append(" metros.");
+            System.out.println(sb);
+        }
+    }
+
     private void peopleLocationMenu() {
         if (university.getPeople().isEmpty()) {
             System.out.println("Não existem pessoas no sistema, por favor, registe ou importe pessoas.");
@@ -246,6 +394,9 @@ public class UniversityMenu {
             System.out.println("4-Ver os Movimentos de uma Pessoa num Intervalo de Tempo");
             System.out.println("5-Ver todos os Movimentos de uma Pessoa");
             System.out.println("6-Listar todas as Pessoas no Sistema");
+            System.out.println("7-Ver as Pessoas Presentes numa Localização");
+            System.out.println("8-Ver quem Esteve numa Localização num Instante ou Intervalo de Tempo");
+            System.out.println("9-Ver o Percurso Permitido de uma Pessoa até uma Localização");
             try {
                 System.out.print("Escolha: ");
                 menuOption = Integer.parseInt(scanner.nextLine());
@@ -256,6 +407,9 @@ public class UniversityMenu {
                     case 4 -> personHistoricalMovementsMenu();
                     case 5 -> personAllMovementsMenu();
                     case 6 -> listPeople();
+                    case 7 -> peopleInLocationMenu();
+                    case 8 -> locationHistoryMenu();
+                    case 9 -> personPathMenu();
                 }
             }
             catch (NumberFormatException e) {
@@ -264,6 +418,154 @@ public class UniversityMenu {
         } while (menuOption != 0);
     }
 
+    private void flowMenu() {
+        System.out.println("Introduza uma Hora (HH:MM:SS) para ver os fluxos dessa hora, ou 00:00:00 para o dia inteiro");
+        LocalTime time = getTimeMenu();
+        FlowMatrix flowMatrix = university.getFlowMatrix(60);
+        ListADT<FlowMatrix.Flow> flows;
+        if (time.equals(LocalTime.MIDNIGHT)) {
+            flows = flowMatrix.getTotalFlows();
+        }
+        else {
+            int bucket = flowMatrix.getBucket(time);
+            flows = flowMatrix.getFlows(bucket);
+            System.out.printf("Fluxos entre %s e %s:%n", flowMatrix.getBucketStart(bucket),
+                    flowMatrix.getBucketStart(bucket).plusMinutes(59).plusSeconds(59));
+        }
+        if (flows.isEmpty()) {
+            System.out.println("Não existem movimentos entre localizações nesse período.");
+            return;
+        }
+        for (FlowMatrix.Flow flow : flows) {
+            System.out.printf("| %s -> %s | Movimentos: %d |%n", flow.getOrigin(), flow.getDestination(),
+                    flow.getCount());
+        }
+    }
+
+    private void printDwellTime(String label, QuantileSketch sketch) {
+        if (sketch.getCount() > 0) {
+            System.out.printf("| %s | Permanências: %d | Média: %.0fs | Mediana: %.0fs | P95: %.0fs |%n", label,
+                    sketch.getCount(), sketch.getMean(), sketch.getMedian(), sketch.getQuantile(0.95));
+        }
+    }
+
+    private void dwellTimeMenu() {
+        Location location = getLocationMenu();
+        if (location == null) {
+            return;
+        }
+        DwellTimeStatistics statistics = university.getDwellTimeStatistics();
+        if (statistics.getSketch(location).getCount() == 0) {
+            System.out.printf("Não existem permanências terminadas em %s.%n", location);
+            return;
+        }
+        System.out.printf("Tempos de Permanência em %s:%n", location);
+        printDwellTime("Todas as Pessoas", statistics.getSketch(location));
+        for (Person.Role role : Person.Role.values()) {
+            printDwellTime(role.toString(), statistics.getSketch(location, role));
+        }
+        printDwellTime("Desconhecidos", statistics.getSketch(location, null));
+    }
+
+    private void snapshotMenu() {
+        System.out.println("Introduza o Instante a Consultar (HH:MM:SS)");
+        LocalTime time = getTimeMenu();
+        HashMap<String, Integer> occupancy = university.getNumberOfPeopleInLocationsAt(time);
+        System.out.printf("Ocupação às %s:%n", time);
+        for (Location location : university.getLocations()) {
+            System.out.printf("| %s | Ocupação: %d | Capacidade Máxima: %d |%n", location,
+                    occupancy.get(location.getId()), location.getMaximumCapacity());
+        }
+        ListADT<Event> violations = university.getAccessViolationsAt(time);
+        System.out.printf("Violações de Acesso até às %s: %d%n", time, violations.size());
+        for (Event event : violations) {
+            System.out.printf("| ID Pessoa: %s | Hora: %s | Localização: %s |%n", event.getPersonId(),
+                    event.getStartTime(), event.getLocation());
+        }
+        System.out.println("Introduza o Identificador de uma Pessoa para ver a sua Localização nesse Instante " +
+                "(vazio para terminar)");
+        String personId = scanner.nextLine().strip();
+        if (!personId.isEmpty()) {
+            Location location = university.getLocationOfPersonAt(personId, time);
+            if (location == null) {
+                System.out.println("A pessoa não tinha movimentos registados nesse instante.");
+            }
+            else {
+                System.out.printf("Localização às %s: %s%n", time, location);
+            }
+        }
+    }
+
+    private String getArchiveFileNameMenu() {
+        System.out.println("Introduza o Caminho do Ficheiro do Arquivo do Dia ou deixe em branco para cancelar a " +
+                "operação:");
+        System.out.print("Ficheiro: ");
+        String fileName = scanner.nextLine().strip();
+        return fileName.isEmpty() ? null : fileName;
+    }
+
+    private void archiveDayMenu() throws IOException {
+        String fileName = getArchiveFileNameMenu();
+        if (fileName == null) {
+            return;
+        }
+        System.out.printf("Foram arquivados %d movimentos em %s.%n", university.archiveDay(fileName), fileName);
+    }
+
+    private void archivedDayHistoryMenu() throws IOException {
+        String fileName = getArchiveFileNameMenu();
+        if (fileName == null) {
+            return;
+        }
+        System.out.println("Introduza o Identificador da Localização ou deixe em branco para todas as localizações:");
+        System.out.print("ID: ");
+        String locationId = scanner.nextLine().strip();
+        System.out.println("Introduza a Hora de Início (HH:MM:SS)");
+        LocalTime startTime = getTimeMenu();
+        System.out.println("Introduza a Hora de Fim (HH:MM:SS), igual à de início para um único instante");
+        LocalTime endTime = getTimeMenu();
+        if (endTime.compareTo(startTime) < 0) {
+            System.out.println("A hora de início não pode ser superior à hora de fim.");
+            return;
+        }
+        ListADT<Event> events = university.getArchivedEventsInTimeFrame(fileName,
+                locationId.isEmpty() ? null : locationId, startTime, endTime);
+        if (events.isEmpty()) {
+            System.out.println("Não existem movimentos arquivados nesse período.");
+            return;
+        }
+        for (Event event : events) {
+            System.out.printf("| ID Pessoa: %s | Localização: %s | Entrada: %s | Saída: %s |%n", event.getPersonId(),
+                    event.getLocation(), event.getStartTime(),
+                    event.getEndTime().equals(LocalTime.MAX) ? "-" : event.getEndTime());
+        }
+    }
+
+    private void archiveMenu() {
+        int menuOption;
+        do {
+            System.out.println("0-Voltar para o Menu Principal");
+            System.out.println("1-Arquivar os Movimentos do Dia");
+            System.out.println("2-Consultar Movimentos de um Dia Arquivado");
+            try {
+                System.out.print("Escolha: ");
+                menuOption = Integer.parseInt(scanner.nextLine());
+                switch (menuOption) {
+                    case 1 -> archiveDayMenu();
+                    case 2 -> archivedDayHistoryMenu();
+                }
+            }
+            catch (NumberFormatException e) {
+                menuOption = -1;
+            }
+            catch (IOException e) {
+                System.out.println(ConsoleColors.RED + "Erro no acesso ao arquivo: " + e.getMessage() +
+                        ConsoleColors.RESET);
+                menuOption = -1;
+            }
+        } while (menuOption != 0);
+    }
+
     private void messageMenu() {
         for (Event event : university.getAccessViolations()) {
             //Pessoa Desconhecida
@@ -285,6 +587,16 @@ public class UniversityMenu {
                 );
             }
         }
+        for (AnomalyDetector.Anomaly anomaly : university.getTransitionAnomalies()) {
+            System.out.println(ConsoleColors.RED + "[Alerta Movimento Impossível]:" + ConsoleColors.RESET +
+                    " | ID Pessoa: " + anomaly.getPersonId() +
+                    " | De: " + anomaly.getFrom().getLocation() + " (" + anomaly.getFrom().getStartTime() + ")" +
+                    " | Para: " + anomaly.getTo().getLocation() + " (" + anomaly.getTo().getStartTime() + ")" +
+                    (anomaly.getDistance() == Double.POSITIVE_INFINITY ? " | Localizações sem Ligação |" :
+                            String.format(" | Tempo Decorrido: %.0fs | Tempo Mínimo: %.0fs |",
+                                    anomaly.getAvailableTime(), anomaly.getRequiredTime()))
+            );
+        }
         int currentNumberPeople, maximumCapacity;
         for (Location location : university.getLocations()) {
             currentNumberPeople = location.getCurrentNumberPeople();
@@ -356,12 +668,27 @@ public class UniversityMenu {
                 numberHours = -1;
             }
         } while (numberHours < 0 || lastEventsHours - numberHours < 0);
-        ListADT<Event> events = university.getOverlappingEventsOfPersonInTimeFrame(personId,
-                LocalTime.of(lastEventsHours - numberHours, event.getStartTime().getMinute(), event.getStartTime().getSecond()),
-                event.getStartTime());
+        LocalTime start = LocalTime.of(lastEventsHours - numberHours, event.getStartTime().getMinute(),
+                event.getStartTime().getSecond());
+        //Intervalos dentro da janela de contactos recentes não precisam de percorrer os eventos anteriores
+        ListADT<Event> events = university.getContactWindow().covers(start) ?
+                university.getRecentContacts(personId, start, event.getStartTime()) :
+                university.getOverlappingEventsOfPersonInTimeFrame(personId, start, event.getStartTime());
         printPersonContacts(events, personId);
     }
 
+    private void recentContactsAllPeople() {
+        ContactWindow window = university.getContactWindow();
+        System.out.printf("Contactos entre %s e %s:%n", window.getStart(), window.getEnd());
+        ListADT<Event> events;
+        for (String personId : window.getPersonIds()) {
+            events = university.getRecentContacts(personId);
+            if (!events.isEmpty()) {
+                printPersonContacts(events, personId);
+            }
+        }
+    }
+
     private void printPersonContacts(ListADT<Event> events, String personId) {
         UnorderedListADT<String> uniquePeople = new ArrayList<>(events.size());
         if (events.isEmpty()) {
@@ -411,6 +738,8 @@ public class UniversityMenu {
             System.out.println("1-Apresentar Contactos de uma pessoa num Intervalo Temporal");
             System.out.println("2-Apresentar Todos os Contactos de uma Pessoa durante o Dia");
             System.out.println("3-Apresentar Contactos de uma pessoa nas últimas x Horas");
+            System.out.printf("4-Apresentar Contactos Recentes de Todas as Pessoas (últimas %d Horas)%n",
+                    university.getContactWindow().getWindowHours());
             try {
                 System.out.print("Escolha: ");
                 menuOption = Integer.parseInt(scanner.nextLine());
@@ -418,6 +747,7 @@ public class UniversityMenu {
                     case 1 -> contactsPersonTimeRange();
                     case 2 -> contactsPersonAll();
                     case 3 -> contactsPersonLastHours();
+                    case 4 -> recentContactsAllPeople();
 
                 }
             }
@@ -428,15 +758,18 @@ public class UniversityMenu {
     }
 
     private void emergencyForPerson(String personId) {
+        emergencyForPerson(personId, university.getCurrentLocationOfPerson(personId));
+    }
+
+    private void emergencyForPerson(String personId, Location currentLocation) {
         StackADT<Location> path;
         double cost;
-        UndirectedNetworkADT<Location> network = university.getNetwork();
         StringBuilder sb;
         String separator;
         path = new LinkedStack<>();
         separator = "";
         sb = new StringBuilder();
-        cost = network.getCheapestPath(university.getCurrentLocationOfPerson(personId), university.getLocationById(University.EMERGENCY_SPOT_ID), path);
+        cost = university.getCheapestPathToEmergency(currentLocation, path);
         if (cost > 0 && cost != Double.MAX_VALUE) {
             sb.append(ConsoleColors.GREEN).append(String.format("Percurso de Emergência para Pessoa com Identificador %s: ", personId)).append(ConsoleColors.RESET);
             while (!path.empty()) {
@@ -454,9 +787,70 @@ public class UniversityMenu {
     }
 
     private void emergencyForAllPeople() {
+        HashMap<String, Location> currentLocations = university.getCurrentLocationsOfAllPeople();
         for (Person person : university.getPeople()) {
-            emergencyForPerson(person.getId());
+            emergencyForPerson(person.getId(), currentLocations.get(person.getId()));
+
+        }
+    }
+
+    private void evacuationPlanForAllPeople() {
+        if (evacuationPlanner == null) {
+            evacuationPlanner = new EvacuationPlanner(university);
+        }
+        EvacuationPlan plan = evacuationPlanner.plan();
+        StringBuilder sb;
+        String separator;
+        for (EvacuationPlan.Route route : plan.getRoutes()) {
+            sb = new StringBuilder();
+            separator = "";
+            sb.append(ConsoleColors.GREEN).append(String.format("Percurso de Evacuação para Pessoa com Identificador %s: ", route.getPersonId())).append(ConsoleColors.RESET);
+            for (Location location : route.getPath()) {
+                sb.append(ConsoleColors.BLUE).append(separator).append(ConsoleColors.RESET);
+                sb.append(location);
+                separator = "→";
+            }
+            sb.append(". ");
+            sb.append(ConsoleColors.GREEN).append("Distância: ").append(ConsoleColors.RESET).append(route.getDistance()).append(" metros. ");
+            sb.append(ConsoleColors.GREEN).append("Tempo Estimado: ").append(ConsoleColors.RESET).append(String.format("%.0f", route.getTime())).append(" segundos.");
+            System.out.println(sb);
+        }
+        for (EvacuationPlan.Route route : plan.getUnreachable()) {
+            System.out.printf(ConsoleColors.RED + "Não existe percurso de emergência para pessoa com identificador %s%n" + ConsoleColors.RESET, route.getPersonId());
+        }
+        System.out.printf(ConsoleColors.GREEN + "Tempo Total Estimado da Evacuação: " + ConsoleColors.RESET + "%.0f segundos.%n", plan.getTotalTime());
+    }
 
+    private void toggleBlockedEdgeMenu() {
+        Location from = getLocationMenu();
+        if (from == null) {
+            return;
+        }
+        Location to = getLocationMenu();
+        if (to == null) {
+            return;
+        }
+        if (university.blockEdge(from, to)) {
+            System.out.println(ConsoleColors.GREEN + "Ligação bloqueada. Os percursos de emergência foram atualizados." + ConsoleColors.RESET);
+        }
+        else if (university.unblockEdge(from, to)) {
+            System.out.println(ConsoleColors.GREEN + "Ligação desbloqueada. Os percursos de emergência foram atualizados." + ConsoleColors.RESET);
+        }
+        else {
+            System.out.println(ConsoleColors.RED + "Não existe ligação entre as localizações indicadas." + ConsoleColors.RESET);
+        }
+    }
+
+    private void toggleBlockedLocationMenu() {
+        Location location = getLocationMenu();
+        if (location == null) {
+            return;
+        }
+        if (university.blockLocation(location)) {
+            System.out.println(ConsoleColors.GREEN + "Localização bloqueada. Os percursos de emergência foram atualizados." + ConsoleColors.RESET);
+        }
+        else if (university.unblockLocation(location)) {
+            System.out.println(ConsoleColors.GREEN + "Localização desbloqueada. Os percursos de emergência foram atualizados." + ConsoleColors.RESET);
         }
     }
 
@@ -473,12 +867,18 @@ public class UniversityMenu {
             System.out.println("0-Voltar para o Menu Anterior");
             System.out.println("1-Simular Emergência para Todas as Pessoas no Sistema");
             System.out.println("2-Simular Emergência para uma Pessoa com o seu Identificador");
+            System.out.println("3-Plano de Evacuação de Todas as Pessoas Presentes (Considerando a Capacidade das Localizações)");
+            System.out.println("4-Bloquear/Desbloquear uma Ligação entre Localizações");
+            System.out.println("5-Bloquear/Desbloquear uma Localização");
             try {
                 System.out.print("Escolha: ");
                 menuOption = Integer.parseInt(scanner.nextLine());
                 switch (menuOption) {
                     case 1 -> emergencyForAllPeople();
                     case 2 -> emergencyForOnePersonMenu();
+                    case 3 -> evacuationPlanForAllPeople();
+                    case 4 -> toggleBlockedEdgeMenu();
+                    case 5 -> toggleBlockedLocationMenu();
                 }
             }
             catch (NumberFormatException e) {
@@ -511,7 +911,8 @@ public class UniversityMenu {
      *     <li>Gerir Pessoas:
      *     <ul>
      *         <li>Importar Pessoas de um ficheiro para o sistema corrente</li>
-     *         <li>Exportar Pessoas do sistema corrente para o ficheiro definido</li>
+     *         <li>Exportar Pessoas do sistema corrente para o ficheiro definido (apenas as alterações desde a última
+     *         exportação são acrescentadas a um ficheiro de alterações, que é compactado periodicamente)</li>
      *         <li>Listar as Pessoas no Sistema</li>
      *         <li>Adicionar uma Pessoa ao Sistema, com o seu respetivo identificador único, nome e papel</li>
      *         <li>Remover uma Pessoa Existente no sistema a partir do seu identificador único</li>
@@ -576,6 +977,10 @@ public class UniversityMenu {
             System.out.println("4-Consultar Contactos Efectuados por Pessoa");
             System.out.println("5-Simular Emergência");
             System.out.println("6-Ver Mapa Universidade");
+            System.out.println("7-Ver Fluxos de Pessoas entre Localizações");
+            System.out.println("8-Ver Tempos de Permanência por Localização");
+            System.out.println("9-Ver o Estado da Universidade num Instante Passado");
+            System.out.println("10-Arquivar ou Consultar Dias de Movimentos");
             try {
                 System.out.print("Escolha: ");
                 /*
@@ -590,6 +995,10 @@ public class UniversityMenu {
                     case 4 -> contactsMenu();
                     case 5 -> emergencyMenu();
                     case 6 -> printMap();
+                    case 7 -> flowMenu();
+                    case 8 -> dwellTimeMenu();
+                    case 9 -> snapshotMenu();
+                    case 10 -> archiveMenu();
                 }
             }
             catch (NumberFormatException e) {
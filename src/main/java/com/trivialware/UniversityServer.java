@@ -0,0 +1,503 @@
+package com.trivialware;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servidor HTTP embebido que expõe as consultas da Universidade em formato JSON, permitindo que outros sistemas
+ * consultem os dados sem recorrer ao menu de terminal. Os dados são os mesmos que foram importados no arranque do
+ * programa (nenhum ficheiro é lido novamente por pedido), e cada pedido é atendido por uma pool de threads com uma fila
+ * de pedidos limitada. Quando a fila está cheia, o pedido é rejeitado com o código 503 por uma thread à parte, que não
+ * adquire o monitor da Universidade, para que a thread que aceita as ligações nunca fique à espera de uma consulta
+ * (contrapressão). Caso também essa thread tenha demasiados pedidos em espera, a ligação é simplesmente fechada.
+ * <p>
+ * Recursos disponíveis (todos por GET):
+ * <ul>
+ *     <li>{@code /location?person=ID} - Localização atual de uma pessoa</li>
+ *     <li>{@code /timeline?person=ID[&start=HH:MM:SS&end=HH:MM:SS]} - Movimentos de uma pessoa</li>
+ *     <li>{@code /contacts?person=ID[&start=HH:MM:SS&end=HH:MM:SS]} - Contactos de uma pessoa</li>
+ *     <li>{@code /violations} - Violações de acesso</li>
+ *     <li>{@code /anomalies} - Transições fisicamente impossíveis entre eventos consecutivos de uma pessoa</li>
+ *     <li>{@code /evacuation?person=ID} - Percurso de emergência de uma pessoa</li>
+ *     <li>{@code /route?person=ID&to=ID} - Percurso que uma pessoa pode percorrer até uma localização, respeitando as
+ *     restrições de acesso do seu papel</li>
+ *     <li>{@code /occupancy} - Ocupação atual de cada localização</li>
+ *     <li>{@code /flows[?time=HH:MM:SS&bucket_minutes=60]} - Movimentos entre localizações no intervalo que contém a
+ *     hora indicada, ou no dia inteiro</li>
+ *     <li>{@code /roster?location=ID} - Pessoas presentes numa localização</li>
+ *     <li>{@code /dwell?location=ID} - Tempos de permanência numa localização (média, mediana e percentil 95) por
+ *     papel</li>
+ *     <li>{@code /history?location=ID[&time=HH:MM:SS|&start=HH:MM:SS&end=HH:MM:SS]} - Quem esteve numa localização
+ *     num instante ou intervalo de tempo</li>
+ *     <li>{@code /metrics[?format=text]} - Métricas de desempenho das consultas, em JSON ou texto</li>
+ * </ul>
+ * Todas as consultas são feitas com o monitor do objeto Universidade adquirido, visto que a mesma não é thread-safe.
+ */
+public class UniversityServer {
+    //Verdadeiro na thread que responde aos pedidos rejeitados por a fila estar cheia
+    private static final ThreadLocal<Boolean> REJECTED = ThreadLocal.withInitial(() -> false);
+    private final University university;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor rejectionExecutor;
+
+    /**
+     * Construtor do servidor HTTP da Universidade. O servidor só começa a aceitar pedidos após a chamada a
+     * {@link #start() start}.
+     *
+     * @param university    Objeto que representa a universidade a consultar
+     * @param address       Endereço e porta onde o servidor irá escutar (porta 0 para uma porta livre qualquer)
+     * @param threads       Número de threads que atendem pedidos
+     * @param queueCapacity Número máximo de pedidos em espera na fila
+     * @throws IOException Caso não seja possível escutar no endereço indicado
+     */
+    public UniversityServer(University university, InetSocketAddress address, int threads, int queueCapacity)
+            throws IOException {
+        this.university = university;
+        this.server = HttpServer.create(address, queueCapacity);
+        this.rejectionExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), (exchange, pool) -> rejectionExecutor.execute(() -> {
+            REJECTED.set(true);
+            try {
+                exchange.run();
+            }
+            finally {
+                REJECTED.set(false);
+            }
+        }));
+        server.setExecutor(executor);
+        server.createContext("/location", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String personId = getRequiredParameter(exchange, "person");
+                LocalTime time = getTimeParameter(exchange, "time", null);
+                Location location = time == null ? university.getCurrentLocationOfPerson(personId) :
+                        university.getLocationOfPersonAt(personId, time);
+                if (location == null) {
+                    throw new NotFoundException("A pessoa não tem movimentos registados: " + personId);
+                }
+                JSONObject response = new JSONObject();
+                response.put("person_id", personId);
+                response.put("location", locationToJSON(location));
+                return response;
+            }
+        });
+        server.createContext("/timeline", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String personId = getRequiredParameter(exchange, "person");
+                return eventsToJSON(university.getEventsOfPersonInTimeFrame(personId,
+                        getTimeParameter(exchange, "start", LocalTime.MIN),
+                        getTimeParameter(exchange, "end", LocalTime.MAX)));
+            }
+        });
+        server.createContext("/contacts", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String personId = getRequiredParameter(exchange, "person");
+                return eventsToJSON(university.getOverlappingEventsOfPersonInTimeFrame(personId,
+                        getTimeParameter(exchange, "start", LocalTime.MIN),
+                        getTimeParameter(exchange, "end", LocalTime.MAX)));
+            }
+        });
+        server.createContext("/recent_contacts", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                return eventsToJSON(university.getRecentContacts(getRequiredParameter(exchange, "person")));
+            }
+        });
+        server.createContext("/violations", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                LocalTime time = getTimeParameter(exchange, "time", null);
+                return eventsToJSON(time == null ? university.getAccessViolations() :
+                        university.getAccessViolationsAt(time));
+            }
+        });
+        server.createContext("/anomalies", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                JSONArray anomaliesJSON = new JSONArray();
+                JSONObject anomalyJSON;
+                for (AnomalyDetector.Anomaly anomaly : university.getTransitionAnomalies()) {
+                    anomalyJSON = new JSONObject();
+                    anomalyJSON.put("person_id", anomaly.getPersonId());
+                    anomalyJSON.put("from", locationToJSON(anomaly.getFrom().getLocation()));
+                    anomalyJSON.put("from_time", anomaly.getFrom().getStartTime().toString());
+                    anomalyJSON.put("to", locationToJSON(anomaly.getTo().getLocation()));
+                    anomalyJSON.put("to_time", anomaly.getTo().getStartTime().toString());
+                    anomalyJSON.put("connected", anomaly.getDistance() != Double.POSITIVE_INFINITY);
+                    if (anomaly.getDistance() != Double.POSITIVE_INFINITY) {
+                        anomalyJSON.put("distance", anomaly.getDistance());
+                        anomalyJSON.put("required_seconds", anomaly.getRequiredTime());
+                    }
+                    anomalyJSON.put("elapsed_seconds", anomaly.getAvailableTime());
+                    anomaliesJSON.put(anomalyJSON);
+                }
+                return anomaliesJSON;
+            }
+        });
+        server.createContext("/evacuation", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String personId = getRequiredParameter(exchange, "person");
+                LocalTime time = getTimeParameter(exchange, "time", null);
+                Location location = time == null ? university.getCurrentLocationOfPerson(personId) :
+                        university.getLocationOfPersonAt(personId, time);
+                if (location == null) {
+                    throw new NotFoundException("A pessoa não tem movimentos registados: " + personId);
+                }
+                StackADT<Location> path = new LinkedStack<>();
+                double cost = university.getCheapestPathToEmergency(location, path);
+                if (cost < 0 || cost == Double.MAX_VALUE) {
+                    throw new NotFoundException("Não existe percurso de emergência para a pessoa: " + personId);
+                }
+                JSONArray pathJSON = new JSONArray();
+                while (!path.empty()) {
+                    pathJSON.put(locationToJSON(path.pop()));
+                }
+                JSONObject response = new JSONObject();
+                response.put("person_id", personId);
+                response.put("path", pathJSON);
+                response.put("distance", cost);
+                return response;
+            }
+        });
+        server.createContext("/route", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String personId = getRequiredParameter(exchange, "person");
+                String destinationId = getRequiredParameter(exchange, "to");
+                Location destination = university.getLocationById(destinationId);
+                if (destination == null) {
+                    throw new NotFoundException("A localização não existe: " + destinationId);
+                }
+                Location origin = university.getCurrentLocationOfPerson(personId);
+                if (origin == null) {
+                    throw new NotFoundException("A pessoa não tem movimentos registados: " + personId);
+                }
+                Person person = university.getPersonById(personId);
+                StackADT<Location> path = new LinkedStack<>();
+                double distance = university.getCheapestPathForRole(origin, destination,
+                        person == null ? null : person.getRole(), path);
+                if (distance == Double.MAX_VALUE) {
+                    throw new NotFoundException("Não existe percurso permitido até " + destinationId);
+                }
+                JSONArray pathJSON = new JSONArray();
+                while (!path.empty()) {
+                    pathJSON.put(locationToJSON(path.pop()));
+                }
+                if (pathJSON.length() == 0) {
+                    pathJSON.put(locationToJSON(origin));
+                }
+                JSONObject response = new JSONObject();
+                response.put("person_id", personId);
+                response.put("path", pathJSON);
+                response.put("distance", Math.max(0, distance));
+                return response;
+            }
+        });
+        server.createContext("/occupancy", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                LocalTime time = getTimeParameter(exchange, "time", null);
+                HashMap<String, Integer> occupancy = time == null ? null :
+                        university.getNumberOfPeopleInLocationsAt(time);
+                JSONArray response = new JSONArray();
+                JSONObject locationJSON;
+                for (Location location : university.getLocations()) {
+                    locationJSON = locationToJSON(location);
+                    locationJSON.put("current_number_people", occupancy == null ? location.getCurrentNumberPeople() :
+                            occupancy.get(location.getId()));
+                    locationJSON.put("maximum_capacity", location.getMaximumCapacity());
+                    response.put(locationJSON);
+                }
+                return response;
+            }
+        });
+        server.createContext("/flows", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String bucketMinutes = getParameter(exchange, "bucket_minutes");
+                FlowMatrix flowMatrix;
+                try {
+                    flowMatrix = university.getFlowMatrix(bucketMinutes == null ? 60 : Integer.parseInt(bucketMinutes));
+                }
+                catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Duração de intervalo inválida: " + bucketMinutes);
+                }
+                LocalTime time = getTimeParameter(exchange, "time", null);
+                ListADT<FlowMatrix.Flow> flows = time == null ? flowMatrix.getTotalFlows() :
+                        flowMatrix.getFlows(flowMatrix.getBucket(time));
+                JSONArray flowsJSON = new JSONArray();
+                JSONObject flowJSON;
+                for (FlowMatrix.Flow flow : flows) {
+                    flowJSON = new JSONObject();
+                    flowJSON.put("from", locationToJSON(flow.getOrigin()));
+                    flowJSON.put("to", locationToJSON(flow.getDestination()));
+                    flowJSON.put("count", flow.getCount());
+                    flowsJSON.put(flowJSON);
+                }
+                JSONObject response = new JSONObject();
+                if (time != null) {
+                    response.put("bucket_start", flowMatrix.getBucketStart(flowMatrix.getBucket(time)).toString());
+                }
+                response.put("flows", flowsJSON);
+                return response;
+            }
+        });
+        server.createContext("/roster", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String locationId = getRequiredParameter(exchange, "location");
+                Location location = university.getLocationById(locationId);
+                if (location == null) {
+                    throw new NotFoundException("A localização não existe: " + locationId);
+                }
+                JSONArray peopleJSON = new JSONArray();
+                JSONObject personJSON;
+                Person person;
+                for (String personId : university.getPersonIdsInLocation(locationId)) {
+                    person = university.getPersonById(personId);
+                    personJSON = new JSONObject();
+                    personJSON.put("person_id", personId);
+                    personJSON.put("person_name", person == null ? JSONObject.NULL : person.getName());
+                    peopleJSON.put(personJSON);
+                }
+                JSONObject response = new JSONObject();
+                response.put("location", locationToJSON(location));
+                response.put("people", peopleJSON);
+                return response;
+            }
+        });
+        server.createContext("/dwell", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String locationId = getRequiredParameter(exchange, "location");
+                Location location = university.getLocationById(locationId);
+                if (location == null) {
+                    throw new NotFoundException("A localização não existe: " + locationId);
+                }
+                DwellTimeStatistics statistics = university.getDwellTimeStatistics();
+                JSONObject rolesJSON = new JSONObject();
+                for (Person.Role role : Person.Role.values()) {
+                    rolesJSON.put(Person.Role.fromRole(role), sketchToJSON(statistics.getSketch(location, role)));
+                }
+                rolesJSON.put("UNKNOWN", sketchToJSON(statistics.getSketch(location, null)));
+                JSONObject response = new JSONObject();
+                response.put("location", locationToJSON(location));
+                response.put("all", sketchToJSON(statistics.getSketch(location)));
+                response.put("roles", rolesJSON);
+                return response;
+            }
+        });
+        server.createContext("/history", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                String locationId = getRequiredParameter(exchange, "location");
+                if (university.getLocationById(locationId) == null) {
+                    throw new NotFoundException("A localização não existe: " + locationId);
+                }
+                LocalTime time = getTimeParameter(exchange, "time", null);
+                if (time != null) {
+                    return eventsToJSON(university.getEventsInLocationAt(locationId, time));
+                }
+                LocalTime start = getTimeParameter(exchange, "start", LocalTime.MIN);
+                LocalTime end = getTimeParameter(exchange, "end", LocalTime.MAX);
+                if (end.isBefore(start)) {
+                    throw new IllegalArgumentException("A hora de início não pode ser superior à hora de fim");
+                }
+                return eventsToJSON(university.getEventsInLocationInTimeFrame(locationId, start, end));
+            }
+        });
+        server.createContext("/metrics", new QueryHandler() {
+            @Override
+            Object query(HttpExchange exchange) {
+                if ("text".equals(getParameter(exchange, "format"))) {
+                    return university.getMetrics().toText();
+                }
+                return university.getMetrics().toJSON();
+            }
+        });
+    }
+
+    /**
+     * Começa a aceitar pedidos HTTP
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Pára o servidor, esperando no máximo o número de segundos indicado para que os pedidos em curso terminem
+     *
+     * @param delay Número máximo de segundos a esperar pelos pedidos em curso
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+        rejectionExecutor.shutdown();
+    }
+
+    /**
+     * Obtém o endereço onde o servidor está a escutar, útil quando é usada a porta 0
+     *
+     * @return Endereço e porta do servidor
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private static JSONObject locationToJSON(Location location) {
+        JSONObject locationJSON = new JSONObject();
+        locationJSON.put("id", location.getId());
+        locationJSON.put("name", location.getName());
+        return locationJSON;
+    }
+
+    private static JSONObject sketchToJSON(QuantileSketch sketch) {
+        JSONObject sketchJSON = new JSONObject();
+        sketchJSON.put("count", sketch.getCount());
+        if (sketch.getCount() > 0) {
+            sketchJSON.put("mean_seconds", sketch.getMean());
+            sketchJSON.put("median_seconds", sketch.getMedian());
+            sketchJSON.put("p95_seconds", sketch.getQuantile(0.95));
+        }
+        return sketchJSON;
+    }
+
+    private static JSONArray eventsToJSON(ListADT<Event> events) {
+        JSONArray eventsJSON = new JSONArray();
+        JSONObject eventJSON;
+        for (Event event : events) {
+            eventJSON = new JSONObject();
+            eventJSON.put("person_id", event.getPersonId());
+            eventJSON.put("person_name", event.getPerson() == null ? JSONObject.NULL : event.getPerson().getName());
+            eventJSON.put("location", locationToJSON(event.getLocation()));
+            eventJSON.put("start_time", event.getStartTime().toString());
+            if (event.getEndTime() != LocalTime.MAX) {
+                eventJSON.put("end_time", event.getEndTime().toString());
+            }
+            eventsJSON.put(eventJSON);
+        }
+        return eventsJSON;
+    }
+
+    private static String getParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        int separatorIndex;
+        for (String pair : query.split("&")) {
+            separatorIndex = pair.indexOf('=');
+            if (separatorIndex > 0 && URLDecoder.decode(pair.substring(0, separatorIndex), StandardCharsets.UTF_8).equals(name)) {
+                return URLDecoder.decode(pair.substring(separatorIndex + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String getRequiredParameter(HttpExchange exchange, String name) {
+        String value = getParameter(exchange, name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Parâmetro em falta: " + name);
+        }
+        return value;
+    }
+
+    private static LocalTime getTimeParameter(HttpExchange exchange, String name, LocalTime defaultTime) {
+        String value = getParameter(exchange, name);
+        if (value == null || value.isBlank()) {
+            return defaultTime;
+        }
+        try {
+            return LocalTime.parse(value);
+        }
+        catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Hora inválida no parâmetro " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Exceção usada pelas consultas para indicar que o recurso pedido não existe (HTTP 404)
+     */
+    private static class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Handler base das consultas. Trata da validação do método, da serialização da resposta e da conversão das
+     * exceções das consultas em códigos de estado HTTP (400 para parâmetros inválidos, 404 para recursos inexistentes
+     * e 500 para qualquer outro erro). Os pedidos rejeitados por a fila estar cheia recebem o código 503 sem que a
+     * consulta seja feita.
+     */
+    private abstract class QueryHandler implements HttpHandler {
+        abstract Object query(HttpExchange exchange);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int status;
+            Object response;
+            try {
+                if (REJECTED.get()) {
+                    status = 503;
+                    response = new JSONObject().put("error", "Servidor sobrecarregado, tente novamente mais tarde");
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                }
+                else if (!exchange.getRequestMethod().equals("GET")) {
+                    status = 405;
+                    response = new JSONObject().put("error", "Método não suportado");
+                }
+                else {
+                    synchronized (university) {
+                        response = query(exchange);
+                    }
+                    status = 200;
+                }
+            }
+            catch (IllegalArgumentException e) {
+                status = 400;
+                response = new JSONObject().put("error", e.getMessage());
+            }
+            catch (NotFoundException e) {
+                status = 404;
+                response = new JSONObject().put("error", e.getMessage());
+            }
+            catch (RuntimeException e) {
+                //Erro inesperado da consulta (por exemplo, do registo de movimentos): o cliente recebe sempre uma resposta
+                e.printStackTrace();
+                status = 500;
+                response = new JSONObject().put("error", "Erro interno: " + e);
+            }
+            byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", response instanceof String ?
+                    "text/plain; charset=utf-8" : "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+}
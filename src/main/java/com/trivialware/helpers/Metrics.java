@@ -0,0 +1,275 @@
+package com.trivialware.helpers;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas de desempenho das consultas da Universidade: histogramas de latência e do tamanho dos resultados por
+ * consulta, contadores de acontecimentos relevantes e medidores (gauges) calculados no momento da exportação.
+ * <p>
+ * Os histogramas usam intervalos em potências de 2 (o intervalo {@code i} contém os valores entre {@code 2^(i-1)} e
+ * {@code 2^i - 1}), o que permite registar um valor com uma única operação atómica e sem alocações. Quando as métricas
+ * estão desativadas, {@link #start() start} devolve 0 e todas as operações de registo terminam logo na primeira
+ * comparação, pelo que o custo nos caminhos críticos se resume a uma leitura de um campo.
+ */
+public class Metrics {
+    private static final int BUCKETS = 64;
+
+    /**
+     * Consultas instrumentadas
+     */
+    public enum Query {
+        EVENTS_OF_PERSON_IN_TIME_FRAME,
+        EVENTS_OF_PERSON,
+        CONTACTS,
+        RECENT_CONTACTS,
+        CURRENT_LOCATION,
+        CURRENT_LOCATIONS_OF_ALL_PEOPLE,
+        LOCATION_AT,
+        LOCATIONS_OF_ALL_PEOPLE_AT,
+        ACCESS_VIOLATIONS,
+        ACCESS_VIOLATIONS_AT,
+        OCCUPANCY,
+        OCCUPANCY_AT,
+        EMERGENCY_PATH,
+        LOCATION_HISTORY,
+        ARCHIVE_SCAN
+    }
+
+    /**
+     * Contadores de acontecimentos
+     */
+    public enum Counter {
+        EVENTS_INGESTED,
+        VIOLATIONS_RAISED,
+        ANOMALIES_RAISED,
+        CONTACT_CACHE_HITS,
+        PATH_COMPUTATIONS
+    }
+
+    private volatile boolean enabled;
+    private final AtomicLongArray latencyBuckets;
+    private final AtomicLongArray resultSizeBuckets;
+    private final LongAdder[] latencySums;
+    private final LongAdder[] resultSizeSums;
+    private final LongAdder[] counters;
+    private final String[] gaugeNames;
+    private final LongSupplier[] gauges;
+    private int numberOfGauges;
+
+    /**
+     * Cria um conjunto de métricas vazio e desativado
+     */
+    public Metrics() {
+        int queries = Query.values().length;
+        this.latencyBuckets = new AtomicLongArray(queries * BUCKETS);
+        this.resultSizeBuckets = new AtomicLongArray(queries * BUCKETS);
+        this.latencySums = new LongAdder[queries];
+        this.resultSizeSums = new LongAdder[queries];
+        for (int i = 0; i < queries; i++) {
+            latencySums[i] = new LongAdder();
+            resultSizeSums[i] = new LongAdder();
+        }
+        this.counters = new LongAdder[Counter.values().length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        this.gaugeNames = new String[8];
+        this.gauges = new LongSupplier[8];
+        registerGauge("heap_used_bytes", () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Regista um medidor, cujo valor é calculado apenas quando as métricas são exportadas
+     *
+     * @param name  Nome do medidor
+     * @param gauge Função que calcula o valor do medidor
+     */
+    public synchronized void registerGauge(String name, LongSupplier gauge) {
+        if (numberOfGauges == gauges.length) {
+            throw new IllegalStateException("Número máximo de medidores atingido");
+        }
+        gaugeNames[numberOfGauges] = name;
+        gauges[numberOfGauges++] = gauge;
+    }
+
+    /**
+     * Marca o início de uma consulta
+     *
+     * @return Instante de início em nanossegundos, ou 0 caso as métricas estejam desativadas
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Regista o fim de uma consulta iniciada com {@link #start() start}
+     *
+     * @param query      Consulta realizada
+     * @param startNanos Valor devolvido por {@link #start() start}
+     * @param resultSize Tamanho do resultado da consulta
+     */
+    public void record(Query query, long startNanos, int resultSize) {
+        if (startNanos == 0) {
+            return;
+        }
+        long latency = System.nanoTime() - startNanos;
+        int offset = query.ordinal() * BUCKETS;
+        latencyBuckets.incrementAndGet(offset + bucket(latency));
+        resultSizeBuckets.incrementAndGet(offset + bucket(resultSize));
+        latencySums[query.ordinal()].add(latency);
+        resultSizeSums[query.ordinal()].add(resultSize);
+    }
+
+    /**
+     * Incrementa um contador, caso as métricas estejam ativadas
+     *
+     * @param counter Contador a incrementar
+     * @param amount  Valor a somar ao contador
+     */
+    public void increment(Counter counter, long amount) {
+        if (enabled) {
+            counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    /**
+     * @param counter Contador a consultar
+     * @return Valor atual do contador
+     */
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * @param query Consulta
+     * @return Número de vezes que a consulta foi registada
+     */
+    public long getCount(Query query) {
+        long count = 0;
+        int offset = query.ordinal() * BUCKETS;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += latencyBuckets.get(offset + i);
+        }
+        return count;
+    }
+
+    /**
+     * Limpa todos os histogramas e contadores
+     */
+    public void reset() {
+        for (int i = 0; i < latencyBuckets.length(); i++) {
+            latencyBuckets.set(i, 0);
+            resultSizeBuckets.set(i, 0);
+        }
+        for (LongAdder adder : latencySums) {
+            adder.reset();
+        }
+        for (LongAdder adder : resultSizeSums) {
+            adder.reset();
+        }
+        for (LongAdder adder : counters) {
+            adder.reset();
+        }
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /*
+    Limite superior do intervalo onde se encontra o quantil pedido, visto que o histograma não guarda os valores exatos
+     */
+    private long quantile(AtomicLongArray buckets, int offset, long count, double quantile) {
+        long rank = (long) Math.ceil(quantile * count), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(offset + i);
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : (i == 63 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Exporta as métricas em formato JSON
+     *
+     * @return Objeto JSON com as consultas, contadores e medidores
+     */
+    public JSONObject toJSON() {
+        JSONObject metricsJSON = new JSONObject();
+        metricsJSON.put("enabled", enabled);
+        JSONArray queriesJSON = new JSONArray();
+        JSONObject queryJSON;
+        long count;
+        int offset;
+        for (Query query : Query.values()) {
+            count = getCount(query);
+            offset = query.ordinal() * BUCKETS;
+            queryJSON = new JSONObject();
+            queryJSON.put("query", query.name().toLowerCase());
+            queryJSON.put("count", count);
+            queryJSON.put("mean_latency_ns", count == 0 ? 0 : latencySums[query.ordinal()].sum() / count);
+            queryJSON.put("p50_latency_ns", quantile(latencyBuckets, offset, count, 0.5));
+            queryJSON.put("p99_latency_ns", quantile(latencyBuckets, offset, count, 0.99));
+            queryJSON.put("mean_result_size", count == 0 ? 0 : resultSizeSums[query.ordinal()].sum() / count);
+            queryJSON.put("p99_result_size", quantile(resultSizeBuckets, offset, count, 0.99));
+            queriesJSON.put(queryJSON);
+        }
+        metricsJSON.put("queries", queriesJSON);
+        JSONObject countersJSON = new JSONObject();
+        for (Counter counter : Counter.values()) {
+            countersJSON.put(counter.name().toLowerCase(), getCount(counter));
+        }
+        metricsJSON.put("counters", countersJSON);
+        JSONObject gaugesJSON = new JSONObject();
+        synchronized (this) {
+            for (int i = 0; i < numberOfGauges; i++) {
+                gaugesJSON.put(gaugeNames[i], gauges[i].getAsLong());
+            }
+        }
+        metricsJSON.put("gauges", gaugesJSON);
+        return metricsJSON;
+    }
+
+    /**
+     * Exporta as métricas em formato de texto, uma métrica por linha ({@code nome valor})
+     *
+     * @return Representação textual das métricas
+     */
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        JSONObject metricsJSON = toJSON();
+        JSONArray queriesJSON = metricsJSON.getJSONArray("queries");
+        JSONObject queryJSON;
+        for (int i = 0; i < queriesJSON.length(); i++) {
+            queryJSON = queriesJSON.getJSONObject(i);
+            for (String key : new String[]{"count", "mean_latency_ns", "p50_latency_ns", "p99_latency_ns",
+                    "mean_result_size", "p99_result_size"}) {
+                sb.append("query_").append(key).append("{query=\"").append(queryJSON.getString("query"))
+                        .append("\"} ").append(queryJSON.getLong(key)).append('\n');
+            }
+        }
+        for (Counter counter : Counter.values()) {
+            sb.append(counter.name().toLowerCase()).append("_total ").append(getCount(counter)).append('\n');
+        }
+        synchronized (this) {
+            for (int i = 0; i < numberOfGauges; i++) {
+                sb.append(gaugeNames[i]).append(' ').append(gauges[i].getAsLong()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnomalyDetectorTest {
+    UnorderedListADT<Location> locations;
+    UndirectedNetworkADT<Location> network;
+
+    /*
+    SAIDA -5- A1 -2- A2 -20- B2 -2- B1        ISOLADA
+     */
+    @BeforeEach
+    void setUp() {
+        locations = new ArrayList<>();
+        String[] ids = new String[]{"EMERGENCY_SPOT", "A1", "A2", "B2", "B1", "ISOLADA"};
+        for (String id : ids) {
+            locations.addLast(new Location(id, "Localização " + id, 10, null));
+        }
+        network = new AdjacencyListUndirectedNetwork<>();
+        for (Location location : locations) {
+            network.addVertex(location);
+        }
+        double[] distances = new double[]{5, 2, 20, 2};
+        for (int i = 0; i < distances.length; i++) {
+            network.addEdge(locations.get(i), locations.get(i + 1), distances[i]);
+        }
+    }
+
+    private Event event(String personId, int locationIndex, int hour, int minute, int second) {
+        return new Event(null, personId, locations.get(locationIndex), LocalTime.of(hour, minute, second));
+    }
+
+    @Test
+    void detectsImpossibleTransitions() {
+        UnorderedListADT<Event> events = new ArrayList<>();
+        //A2 -> B1 (22 metros) em 5 segundos: mínimo de 7,3 segundos a 3 m/s, acima da tolerância de 2 segundos
+        events.addLast(event("1", 2, 9, 0, 0));
+        events.addLast(event("1", 4, 9, 0, 5));
+        //A1 -> ISOLADA: sem caminho, impossível independentemente do tempo
+        events.addLast(event("2", 1, 9, 0, 0));
+        events.addLast(event("2", 5, 10, 0, 0));
+        //A1 -> A2 (2 metros) em 1 segundo e A2 -> B2 (20 metros) em 5 segundos: dentro da tolerância
+        events.addLast(event("3", 1, 9, 0, 0));
+        events.addLast(event("3", 2, 9, 0, 1));
+        events.addLast(event("3", 3, 9, 0, 6));
+        University university = new University(locations, events, new ArrayList<>(), network);
+        ListADT<AnomalyDetector.Anomaly> anomalies = university.getTransitionAnomalies();
+        assertEquals(2, anomalies.size());
+        for (AnomalyDetector.Anomaly anomaly : anomalies) {
+            if (anomaly.getPersonId().equals("1")) {
+                assertEquals(22, anomaly.getDistance());
+                assertEquals(5, anomaly.getAvailableTime());
+                assertEquals(22 / AnomalyDetector.DEFAULT_MAXIMUM_SPEED, anomaly.getRequiredTime(), 1e-9);
+            }
+            else {
+                assertEquals("2", anomaly.getPersonId());
+                assertEquals(Double.POSITIVE_INFINITY, anomaly.getDistance());
+                assertEquals("ISOLADA", anomaly.getTo().getLocation().getId());
+            }
+        }
+    }
+
+    @Test
+    void streamingIngestion() {
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(event("1", 1, 9, 0, 0));
+        University university = new University(locations, events, new ArrayList<>(), network);
+        university.setDistanceMatrix(new DistanceMatrix(locations, network));
+        UnorderedListADT<Event> newEvents = new ArrayList<>();
+        newEvents.addLast(event("1", 3, 9, 0, 3));
+        university.addEvents(newEvents);
+        assertEquals(1, university.getTransitionAnomalies().size());
+        //Com a ligação A2-B2 bloqueada deixa de existir caminho sugerido entre B1 e A2, mas a distância física mantém-se
+        assertTrue(university.blockEdge(locations.get(2), locations.get(3)));
+        newEvents = new ArrayList<>();
+        newEvents.addLast(event("1", 4, 12, 0, 0));
+        newEvents.addLast(event("1", 2, 13, 0, 0));
+        newEvents.addLast(event("1", 4, 13, 0, 5));
+        university.addEvents(newEvents);
+        assertEquals(2, university.getTransitionAnomalies().size());
+        assertEquals(22, university.getTransitionAnomalies().getLast().getDistance());
+        assertTrue(university.unblockEdge(locations.get(2), locations.get(3)));
+        newEvents = new ArrayList<>();
+        newEvents.addLast(event("1", 3, 14, 0, 0));
+        university.addEvents(newEvents);
+        assertEquals(2, university.getTransitionAnomalies().size());
+    }
+
+    @Test
+    void blockedLocationsUseUnblockedDistances() {
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(event("1", 2, 9, 0, 0));
+        University university = new University(locations, events, new ArrayList<>(), network);
+        //Sem matriz de distâncias: as distâncias são calculadas a pedido com a localização de origem bloqueada
+        assertTrue(university.blockLocation(locations.get(2)));
+        UnorderedListADT<Event> newEvents = new ArrayList<>();
+        newEvents.addLast(event("1", 1, 9, 10, 0));
+        newEvents.addLast(event("1", 2, 9, 20, 0));
+        newEvents.addLast(event("1", 3, 9, 30, 0));
+        university.addEvents(newEvents);
+        assertTrue(university.getTransitionAnomalies().isEmpty());
+        //A2 -> B1 (22 metros) em 1 segundo continua impossível
+        newEvents = new ArrayList<>();
+        newEvents.addLast(event("1", 2, 9, 40, 0));
+        newEvents.addLast(event("1", 4, 9, 40, 1));
+        university.addEvents(newEvents);
+        assertEquals(1, university.getTransitionAnomalies().size());
+        assertEquals(22, university.getTransitionAnomalies().get(0).getDistance());
+    }
+}
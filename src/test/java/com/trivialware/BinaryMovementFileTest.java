@@ -0,0 +1,108 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryMovementFileTest {
+    Properties prop;
+    Path binaryFile;
+    UnorderedListADT<Person> people;
+    UnorderedListADT<Location> locations;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = BinaryMovementFileTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            prop = new Properties();
+            prop.load(input);
+        }
+        people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+        locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+        binaryFile = Files.createTempFile("movements", ".bin");
+        Files.delete(binaryFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(binaryFile);
+        Files.deleteIfExists(Paths.get(BinaryMovementFile.getDictionaryFileName(binaryFile.toString())));
+    }
+
+    private static void assertSameEvents(ListADT<Event> expected, ListADT<Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertSame(expected.get(i).getPerson(), actual.get(i).getPerson());
+        }
+    }
+
+    @Test
+    void conversionMatchesJSON() throws IOException {
+        String jsonFile = prop.getProperty("app.movements_file_name");
+        UnorderedListADT<Event> jsonEvents = FileHelper.importEvents(people, locations, jsonFile);
+        assertEquals(jsonEvents.size(), FileHelper.convertEventsToBinary(locations, jsonFile, binaryFile.toString()));
+        assertSameEvents(jsonEvents, FileHelper.importBinaryEvents(people, locations, binaryFile.toString()));
+        assertEquals(8 + 8L * jsonEvents.size(), Files.size(binaryFile));
+        assertTrue(Files.size(binaryFile) * 5 < Files.size(Paths.get(jsonFile)));
+    }
+
+    @Test
+    void appendAcrossReopens() throws IOException {
+        UnorderedListADT<Event> expected = new ArrayList<>();
+        for (int batch = 0; batch < 3; batch++) {
+            UnorderedListADT<Event> events = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                //Inclui pessoas desconhecidas, que só passam a existir no dicionário neste lote
+                String personId = batch == 2 && i % 10 == 0 ? "novo" + i : String.valueOf(1 + i % 7);
+                Person person = null;
+                for (Person candidate : people) {
+                    if (candidate.getId().equals(personId)) {
+                        person = candidate;
+                    }
+                }
+                events.addLast(new Event(person, personId, locations.get((batch + i) % locations.size()),
+                        LocalTime.ofSecondOfDay(batch * 20000 + i * 150 + 86399 % (i + 1))));
+                expected.addLast(events.getLast());
+            }
+            try (BinaryMovementFile movementFile = new BinaryMovementFile(binaryFile.toString())) {
+                assertEquals(batch * 100L, movementFile.size());
+                movementFile.append(events);
+            }
+        }
+        assertSameEvents(expected, FileHelper.importBinaryEvents(people, locations, binaryFile.toString()));
+        //Um registo incompleto no fim do ficheiro é ignorado e reescrito pelo próximo acréscimo
+        Files.write(binaryFile, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        assertSameEvents(expected, FileHelper.importBinaryEvents(people, locations, binaryFile.toString()));
+        UnorderedListADT<Event> last = new ArrayList<>();
+        last.addLast(new Event(null, "ultimo", locations.getFirst(), LocalTime.MAX.withNano(0)));
+        expected.addLast(last.getFirst());
+        try (BinaryMovementFile movementFile = new BinaryMovementFile(binaryFile.toString())) {
+            movementFile.append(last);
+        }
+        assertSameEvents(expected, FileHelper.importBinaryEvents(people, locations, binaryFile.toString()));
+    }
+
+    @Test
+    void rejectsInvalidFiles() throws IOException {
+        Files.write(binaryFile, new byte[]{'{', '"', 'a', '"', ':', '1', '}', ' ', ' '});
+        assertThrows(IOException.class, () -> FileHelper.importBinaryEvents(people, locations, binaryFile.toString()));
+        Files.delete(binaryFile);
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, "1", new Location("FORA", "Fora do Mapa", 1, null), LocalTime.NOON));
+        try (BinaryMovementFile movementFile = new BinaryMovementFile(binaryFile.toString())) {
+            movementFile.append(events);
+        }
+        assertThrows(IOException.class, () -> FileHelper.importBinaryEvents(people, locations, binaryFile.toString()));
+    }
+}
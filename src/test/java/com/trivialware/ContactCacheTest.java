@@ -0,0 +1,142 @@
+package com.trivialware;
+
+import com.trivialware.helpers.Metrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactCacheTest {
+    UnorderedListADT<Location> locations;
+    University university;
+
+    /*
+    SAIDA -5- A1 -2- A2 -2- B1
+     */
+    @BeforeEach
+    void setUp() {
+        locations = new ArrayList<>();
+        String[] ids = new String[]{"EMERGENCY_SPOT", "A1", "A2", "B1"};
+        for (String id : ids) {
+            locations.addLast(new Location(id, "Localização " + id, 10, null));
+        }
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (Location location : locations) {
+            network.addVertex(location);
+        }
+        for (int i = 0; i < locations.size() - 1; i++) {
+            network.addEdge(locations.get(i), locations.get(i + 1), i == 0 ? 5 : 2);
+        }
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(event("1", 1, 10, 0));
+        events.addLast(event("2", 1, 10, 5));
+        events.addLast(event("1", 2, 11, 0));
+        events.addLast(event("3", 3, 10, 0));
+        university = new University(locations, events, new ArrayList<>(), network);
+        university.getMetrics().setEnabled(true);
+    }
+
+    private Event event(String personId, int locationIndex, int hour, int minute) {
+        return new Event(null, personId, locations.get(locationIndex), LocalTime.of(hour, minute));
+    }
+
+    private void add(Event event) {
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(event);
+        university.addEvents(events);
+    }
+
+    private ListADT<Event> contacts(String personId) {
+        return university.getOverlappingEventsOfPersonInTimeFrame(personId, LocalTime.MIN, LocalTime.MAX);
+    }
+
+    /*
+    A cache devolve cópias, pelo que um resultado vindo da cache é reconhecido pelo contador de acertos
+     */
+    private boolean cached(String personId) {
+        long hits = university.getMetrics().getCount(Metrics.Counter.CONTACT_CACHE_HITS);
+        contacts(personId);
+        return university.getMetrics().getCount(Metrics.Counter.CONTACT_CACHE_HITS) > hits;
+    }
+
+    private static void assertSameContacts(ListADT<Event> expected, ListADT<Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    void invalidatesOnlyAffectedQueries() {
+        ListADT<Event> first = contacts("1");
+        assertEquals(1, first.size());
+        assertTrue(cached("1"));
+        assertSameContacts(first, contacts("1"));
+        contacts("3");
+        //Um evento numa localização que a pessoa 1 não visitou não afeta os seus contactos
+        add(event("4", 3, 12, 0));
+        assertTrue(cached("1"));
+        assertFalse(cached("3"));
+        //A pessoa 2 sai de A1 (visitada pela pessoa 1), encurtando o evento anterior
+        add(event("2", 3, 10, 30));
+        assertFalse(cached("1"));
+        assertSameContacts(university.getOverlappingEventsInTimeFrame(
+                university.getEventsOfPersonInTimeFrame("1", LocalTime.MIN, LocalTime.MAX), LocalTime.MIN,
+                LocalTime.MAX), contacts("1"));
+        //Um novo evento da própria pessoa invalida os seus resultados
+        add(event("1", 3, 12, 30));
+        assertFalse(cached("1"));
+        assertEquals(4, contacts("1").size());
+    }
+
+    @Test
+    void returnsCopies() {
+        ListADT<Event> first = contacts("1");
+        first.removeFirst();
+        assertEquals(1, contacts("1").size());
+        contacts("1").removeFirst();
+        assertEquals(1, contacts("1").size());
+        assertTrue(cached("1"));
+    }
+
+    @Test
+    void invalidatesOnPeopleChanges() {
+        contacts("1");
+        contacts("3");
+        //A pessoa 2 é um dos contactos da pessoa 1, cujos eventos passam a referir a nova pessoa
+        Person person = new Person("2", Person.Role.STUDENT, "Contacto");
+        university.addPerson(person);
+        assertFalse(cached("1"));
+        assertTrue(cached("3"));
+        assertSame(person, contacts("1").getFirst().getPerson());
+        university.removePerson(person);
+        assertFalse(cached("1"));
+        assertNull(contacts("1").getFirst().getPerson());
+        UnorderedListADT<Person> people = new ArrayList<>();
+        people.addLast(new Person("2", Person.Role.TEACHER, "Contacto"));
+        university.mergePeople(people);
+        assertFalse(cached("1"));
+        assertEquals(Person.Role.TEACHER, contacts("1").getFirst().getPerson().getRole());
+        university.setPeople(new ArrayList<>());
+        assertFalse(cached("1"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        ContactCache cache = university.getContactCache();
+        cache.setCapacity(2);
+        contacts("1");
+        contacts("2");
+        assertTrue(cached("1"));
+        contacts("3");
+        assertEquals(2, cache.size());
+        assertTrue(cached("1"));
+        assertFalse(cached("2"));
+        cache.setCapacity(0);
+        assertEquals(0, cache.size());
+        contacts("1");
+        assertFalse(cached("1"));
+    }
+}
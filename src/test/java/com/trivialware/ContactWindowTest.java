@@ -0,0 +1,79 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactWindowTest {
+    @Test
+    void matchesOverlapQueryOverWindow() {
+        UnorderedListADT<Location> locations = new ArrayList<>();
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (String id : new String[]{"EMERGENCY_SPOT", "A1", "A2", "A3"}) {
+            Location location = new Location(id, "Localização " + id, 10, null);
+            locations.addLast(location);
+            network.addVertex(location);
+        }
+        for (int i = 0; i < locations.size() - 1; i++) {
+            network.addEdge(locations.get(i), locations.get(i + 1), 2);
+        }
+        University university = new University(locations, new ArrayList<>(), new ArrayList<>(), network);
+        ContactWindow window = university.getContactWindow();
+        assertEquals(ContactWindow.DEFAULT_WINDOW_HOURS, window.getWindowHours());
+        Random random = new Random(17);
+        int second = 6 * 60 * 60;
+        for (int step = 0; step < 400; step++) {
+            second += random.nextInt(120);
+            UnorderedListADT<Event> events = new ArrayList<>(1);
+            events.addLast(new Event(null, String.valueOf(random.nextInt(12)), locations.get(1 + random.nextInt(3)),
+                    LocalTime.ofSecondOfDay(second)));
+            university.addEvents(events);
+            if (step % 25 == 0) {
+                assertMatchesOverlapQuery(university, window);
+            }
+        }
+        //Avançar a janela sem eventos descarta as presenças terminadas
+        window.advanceTo(window.getEnd().plusHours(3));
+        assertMatchesOverlapQuery(university, window);
+        university.setContactWindowHours(6);
+        assertEquals(6, university.getContactWindow().getWindowHours());
+        assertMatchesOverlapQuery(university, university.getContactWindow());
+    }
+
+    private static void assertMatchesOverlapQuery(University university, ContactWindow window) {
+        for (int person = 0; person < 12; person++) {
+            String personId = String.valueOf(person);
+            Set<Event> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Event event : university.getOverlappingEventsOfPersonInTimeFrame(personId, window.getStart(),
+                    window.getEnd())) {
+                expected.add(event);
+            }
+            ListADT<Event> contacts = university.getRecentContacts(personId);
+            assertEquals(expected.size(), contacts.size());
+            for (Event event : contacts) {
+                assertTrue(expected.contains(event));
+            }
+            //Intervalo contido na janela
+            LocalTime start = window.getEnd().minusMinutes(45), end = window.getEnd().minusMinutes(10);
+            assertTrue(window.covers(start));
+            expected.clear();
+            for (Event event : university.getOverlappingEventsOfPersonInTimeFrame(personId, start, end)) {
+                expected.add(event);
+            }
+            contacts = university.getRecentContacts(personId, start, end);
+            assertEquals(expected.size(), contacts.size());
+            for (Event event : contacts) {
+                assertTrue(expected.contains(event));
+            }
+        }
+        LocalTime beforeWindow = window.getStart().minusSeconds(1);
+        assertFalse(window.covers(beforeWindow));
+        assertThrows(IllegalArgumentException.class, () -> window.getContacts("1", beforeWindow, window.getEnd()));
+    }
+}
@@ -0,0 +1,174 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayArchiveTest {
+    University university;
+    UnorderedListADT<Person> people;
+    UnorderedListADT<Location> locations;
+    UndirectedNetworkADT<Location> network;
+    Path archiveFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = DayArchiveTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            Properties prop = new Properties();
+            prop.load(input);
+            String mapFileName = prop.getProperty("app.map_file_name");
+            people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+            locations = FileHelper.importLocations(mapFileName);
+            network = FileHelper.buildNetwork(locations, mapFileName);
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations,
+                    prop.getProperty("app.movements_file_name"));
+            university = new University(locations, events, people, network);
+        }
+        archiveFile = Files.createTempFile("day", ".archive");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(archiveFile);
+    }
+
+    private static void assertSameEvents(ListADT<Event> expected, ListADT<Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertEquals(expected.get(i).getEndTime(), actual.get(i).getEndTime());
+            assertSame(expected.get(i).getPerson(), actual.get(i).getPerson());
+        }
+    }
+
+    private static ListADT<Event> sorted(ListADT<Event> events) {
+        Event[] eventArray = new Event[events.size()];
+        int position = 0;
+        for (Event event : events) {
+            eventArray[position++] = event;
+        }
+        EventSorts.sort(eventArray);
+        UnorderedListADT<Event> sortedEvents = new ArrayList<>(eventArray.length + 1);
+        for (Event event : eventArray) {
+            sortedEvents.addLast(event);
+        }
+        return sortedEvents;
+    }
+
+    @Test
+    void archiveAndLoadDay() throws IOException {
+        String fileName = archiveFile.toString();
+        assertEquals(university.getEvents().size(), university.archiveDay(fileName));
+        UnorderedListADT<Event> archived = FileHelper.importArchivedDay(people, locations, fileName);
+        ListADT<Event> expected = sorted(university.getEvents());
+        assertEquals(expected.size(), archived.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), archived.get(i));
+            assertEquals(LocalTime.MAX, archived.get(i).getEndTime());
+        }
+        University archivedUniversity = new University(locations, archived, people, network, true);
+        for (Event event : university.getCurrentEvents()) {
+            assertSameEvents(university.getEventsOfPerson(event.getPersonId()),
+                    archivedUniversity.getEventsOfPerson(event.getPersonId()));
+        }
+    }
+
+    @Test
+    void queryArchivedDay() throws IOException {
+        String fileName = archiveFile.toString();
+        university.archiveDay(fileName);
+        LocalTime start = LocalTime.of(9, 0), end = LocalTime.of(12, 0);
+        for (Location location : locations) {
+            ListADT<Event> expected = university.getEventsInLocationInTimeFrame(location.getId(), start, end);
+            ListADT<Event> archived = university.getArchivedEventsInTimeFrame(fileName, location.getId(), start, end);
+            assertEquals(expected.size(), archived.size());
+            for (Event event : expected) {
+                assertTrue(archived.contains(event));
+            }
+        }
+        assertTrue(university.getArchivedEventsInTimeFrame(fileName, "inexistente", start, end).isEmpty());
+    }
+
+    @Test
+    void truncatedArchive() throws IOException {
+        String fileName = archiveFile.toString();
+        university.archiveDay(fileName);
+        byte[] bytes = Files.readAllBytes(archiveFile);
+        int dataStart = 12 + ByteBuffer.wrap(bytes).getInt(8);
+        //Ficheiro cortado a meio dos dados: a leitura do bloco falha
+        Files.write(archiveFile, Arrays.copyOf(bytes, dataStart + (bytes.length - dataStart) / 2));
+        try (DayArchive archive = new DayArchive(fileName)) {
+            assertThrows(IOException.class, () -> archive.scan(null, LocalTime.MIN, LocalTime.MAX, people, locations));
+        }
+        /*
+        Bloco cortado com o diretório coerente: o único bloco (posição 0) passa a ter metade do tamanho comprimido e o
+        fluxo comprimido termina antes do fim
+         */
+        ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(bytes, dataStart + (bytes.length - dataStart) / 2));
+        int compressedLength = bytes.length - dataStart, patched = 0;
+        for (int position = 20; position + 4 <= dataStart; position++) {
+            if (truncated.getLong(position - 8) == 0 && truncated.getInt(position) == compressedLength) {
+                truncated.putInt(position, compressedLength / 2);
+                patched++;
+            }
+        }
+        assertEquals(1, patched);
+        Files.write(archiveFile, truncated.array());
+        try (DayArchive archive = new DayArchive(fileName)) {
+            assertEquals(1, archive.getNumberOfBlocks());
+            assertThrows(IOException.class, () -> archive.scan(null, LocalTime.MIN, LocalTime.MAX, people, locations));
+            assertThrows(IOException.class, () -> archive.readAll(people, locations));
+        }
+        Files.write(archiveFile, Arrays.copyOf(bytes, 6));
+        assertThrows(IOException.class, () -> new DayArchive(fileName));
+    }
+
+    @Test
+    void zoneMapsSkipBlocks() throws IOException {
+        int numberOfEvents = 100_000, numberOfPeople = 500;
+        UnorderedListADT<Event> events = new ArrayList<>(numberOfEvents);
+        //Cada localização é usada num único período do dia, pelo que só alguns blocos a contêm
+        for (int i = 0; i < numberOfEvents; i++) {
+            events.addLast(new Event(null, String.valueOf(i % numberOfPeople),
+                    locations.get((int) ((long) i * locations.size() / numberOfEvents)),
+                    LocalTime.ofSecondOfDay((long) i * (24 * 60 * 60 - 1) / numberOfEvents)));
+        }
+        University day = new University(locations, events, new ArrayList<>(), network);
+        String fileName = archiveFile.toString();
+        day.archiveDay(fileName);
+        //Muito menor que o ficheiro binário de movimentos (8 bytes por movimento)
+        assertTrue(Files.size(archiveFile) < 4L * numberOfEvents);
+        LocalTime start = LocalTime.of(14, 0), end = LocalTime.of(14, 10);
+        Location location = locations.get(0);
+        try (DayArchive archive = new DayArchive(fileName)) {
+            assertEquals(numberOfEvents, archive.size());
+            assertTrue(archive.getNumberOfBlocks() > 10);
+            ListADT<Event> scanned = archive.scan(null, start, end, new ArrayList<>(), locations);
+            ListADT<Event> expected = new ArrayList<>();
+            for (Event event : sorted(day.getEvents())) {
+                if (start.compareTo(event.getEndTime()) <= 0 && end.compareTo(event.getStartTime()) >= 0) {
+                    ((UnorderedListADT<Event>) expected).addLast(event);
+                }
+            }
+            assertSameEvents(expected, scanned);
+            assertTrue(archive.getBlocksRead() <= 3);
+            int blocksRead = archive.getBlocksRead();
+            ListADT<Event> inLocation = archive.scan(location.getId(), LocalTime.MIN, LocalTime.MAX, new ArrayList<>(),
+                    locations);
+            assertEquals(day.getEventsInLocationInTimeFrame(location.getId(), LocalTime.MIN, LocalTime.MAX).size(),
+                    inLocation.size());
+            assertTrue(archive.getBlocksRead() - blocksRead < archive.getNumberOfBlocks());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixTest {
+    UnorderedListADT<Location> locations;
+    UndirectedNetworkADT<Location> network;
+    University university;
+    DistanceMatrix matrix;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = DistanceMatrixTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            Properties prop = new Properties();
+            prop.load(input);
+            UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+            locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations,
+                    prop.getProperty("app.movements_file_name"));
+            network = FileHelper.buildNetwork(locations, prop.getProperty("app.map_file_name"));
+            university = new University(locations, events, people, network);
+        }
+        matrix = new DistanceMatrix(locations, network);
+    }
+
+    @Test
+    void distancesMatchNetwork() {
+        StackADT<Location> path;
+        double expected, distance;
+        Location previous, current;
+        for (Location origin : locations) {
+            assertEquals(0, matrix.getDistance(origin, origin));
+            for (Location destination : locations) {
+                if (origin.equals(destination)) {
+                    continue;
+                }
+                expected = network.getCheapestPath(origin, destination, new LinkedStack<>());
+                assertEquals(expected, matrix.getDistance(origin, destination), 1e-9);
+                path = new LinkedStack<>();
+                assertEquals(expected, matrix.getPath(origin, destination, path), 1e-9);
+                if (expected == Double.MAX_VALUE) {
+                    continue;
+                }
+                //O caminho reconstruído tem de começar na origem, terminar no destino e ter a distância indicada
+                distance = 0;
+                previous = path.pop();
+                assertEquals(origin, previous);
+                while (!path.empty()) {
+                    current = path.pop();
+                    distance += network.getEdgeWeight(previous, current);
+                    previous = current;
+                }
+                assertEquals(destination, previous);
+                assertEquals(expected, distance, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void emergencyPathWithMatrix() {
+        university.setDistanceMatrix(matrix);
+        String[] expectedLocations = new String[]{"A4", "A3", "A2", "A1", "SA", "EMERGENCY_SPOT"};
+        int currentIndex = 0;
+        StackADT<Location> pathToEmergency = university.getShortestPathToEmergencyPerson("1");
+        assertEquals(expectedLocations.length, pathToEmergency.size());
+        while (!pathToEmergency.empty()) {
+            assertEquals(expectedLocations[currentIndex++], pathToEmergency.pop().getId());
+        }
+        Location a4 = university.getLocationById("A4");
+        Location emergency = university.getLocationById(University.EMERGENCY_SPOT_ID);
+        assertEquals(network.getCheapestPath(a4, emergency, new LinkedStack<>()), university.getDistance(a4, emergency));
+        assertEquals(-1, university.getCheapestPath(emergency, emergency, new LinkedStack<>()));
+    }
+}
@@ -0,0 +1,83 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvacuationPlannerTest {
+    University university;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = EvacuationPlannerTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            Properties prop = new Properties();
+            prop.load(input);
+            UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+            UnorderedListADT<Location> locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations,
+                    prop.getProperty("app.movements_file_name"));
+            UndirectedNetworkADT<Location> network = FileHelper.buildNetwork(locations,
+                    prop.getProperty("app.map_file_name"));
+            university = new University(locations, events, people, network);
+        }
+        //Enche a sala A4 (capacidade 10), cujo caminho mais curto passa pela sala A3 (capacidade 2)
+        UnorderedListADT<Event> crowd = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            crowd.addLast(new Event(null, "crowd" + i, university.getLocationById("A4"), LocalTime.of(20, 0, 0)));
+        }
+        university.addEvents(crowd);
+    }
+
+    private static String pathToString(ListADT<Location> path) {
+        StringBuilder sb = new StringBuilder();
+        for (Location location : path) {
+            sb.append(location.getId()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void everyoneHasRoute() {
+        EvacuationPlan plan = new EvacuationPlanner(university).plan();
+        assertEquals(university.getCurrentEvents().size(), plan.getRoutes().size());
+        assertTrue(plan.getUnreachable().isEmpty());
+        EvacuationPlan.Route route;
+        for (Event event : university.getCurrentEvents()) {
+            route = plan.getRoute(event.getPersonId());
+            assertNotNull(route);
+            assertEquals(event.getLocation(), route.getPath().getFirst());
+            assertEquals(University.EMERGENCY_SPOT_ID, route.getPath().getLast().getId());
+            assertTrue(route.getTime() <= plan.getTotalTime());
+        }
+    }
+
+    @Test
+    void congestionSpreadsRoutes() {
+        //Sem tempo de espera, toda a gente segue o caminho mais curto
+        EvacuationPlan uncongested = new EvacuationPlanner(university, 1, 0, 10, 4).plan();
+        assertEquals("A4 A3 A2 A1 SA EMERGENCY_SPOT ", pathToString(uncongested.getRoute("crowd0").getPath()));
+        assertEquals("A4 A3 A2 A1 SA EMERGENCY_SPOT ", pathToString(uncongested.getRoute("crowd39").getPath()));
+        assertEquals(20, uncongested.getTotalTime(), 1e-9);
+        EvacuationPlan congested = new EvacuationPlanner(university, 1, 5, 10, 4).plan();
+        boolean throughA3 = false, avoidingA3 = false;
+        for (int i = 0; i < 40; i++) {
+            if (pathToString(congested.getRoute("crowd" + i).getPath()).startsWith("A4 A3 ")) {
+                throughA3 = true;
+            }
+            else {
+                avoidingA3 = true;
+            }
+        }
+        assertTrue(throughA3);
+        assertTrue(avoidingA3);
+        //Todas as 40 pessoas pela sala A3 demorariam pelo menos 19 grupos de espera de 5 segundos
+        assertTrue(congested.getTotalTime() < 20 + 19 * 5);
+        assertTrue(congested.getTotalTime() > 20);
+    }
+}
@@ -0,0 +1,198 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventIngestionServerTest {
+    University university;
+    EventIngestionServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = EventIngestionServerTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            Properties prop = new Properties();
+            prop.load(input);
+            UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+            UnorderedListADT<Location> locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations,
+                    prop.getProperty("app.movements_file_name"));
+            UndirectedNetworkADT<Location> network = FileHelper.buildNetwork(locations,
+                    prop.getProperty("app.map_file_name"));
+            university = new University(locations, events, people, network);
+        }
+        server = new EventIngestionServer(university, new InetSocketAddress("localhost", 0), 8192, 1024);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop();
+    }
+
+    private void send(String... lines) throws IOException {
+        try (Socket socket = new Socket("localhost", server.getAddress().getPort());
+             BufferedWriter writer = new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private void awaitProcessed(long total) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (server.getAcceptedEvents() + server.getRejectedEvents() < total &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void ingestSingleReader() throws IOException, InterruptedException {
+        int eventsBefore = university.getEvents().size();
+        int peopleInA1 = university.getLocationById("A1").getCurrentNumberPeople();
+        int peopleInA2 = university.getLocationById("A2").getCurrentNumberPeople();
+        send("{\"location_id\": \"A1\", \"person_id\": \"2\", \"time\": \"20:00:00\"}",
+                "not json",
+                "{\"location_id\": \"NOWHERE\", \"person_id\": \"2\", \"time\": \"20:00:05\"}",
+                "{\"location_id\": \"A3\", \"person_id\": \"2\", \"time\": \"10:00:00\"}",
+                "{\"location_id\": \"A1\", \"person_id\": \"99\", \"time\": \"20:00:10\"}");
+        awaitProcessed(5);
+        assertEquals(2, server.getAcceptedEvents());
+        assertEquals(3, server.getRejectedEvents());
+        synchronized (university) {
+            assertEquals(eventsBefore + 2, university.getEvents().size());
+            assertEquals("A1", university.getCurrentLocationOfPerson("2").getId());
+            assertEquals(LocalTime.of(19, 59, 59), university.getEventsOfPerson("2").get(
+                    university.getEventsOfPerson("2").size() - 2).getEndTime());
+            assertEquals(peopleInA1 + 2, university.getLocationById("A1").getCurrentNumberPeople());
+            assertEquals(peopleInA2 - 1, university.getLocationById("A2").getCurrentNumberPeople());
+            assertNull(university.getCurrentEventByPerson("99").getPerson());
+        }
+    }
+
+    @Test
+    void failedBatchIsRejected() throws IOException, InterruptedException {
+        Path logFile = Files.createTempFile("ingestion", ".log");
+        try {
+            MovementLog movementLog = new MovementLog(logFile.toString());
+            movementLog.close();
+            synchronized (university) {
+                university.setMovementLog(movementLog);
+            }
+            send("{\"location_id\": \"A1\", \"person_id\": \"2\", \"time\": \"20:00:00\"}",
+                    "{\"location_id\": \"A2\", \"person_id\": \"3\", \"time\": \"20:00:00\"}");
+            awaitProcessed(2);
+            assertEquals(0, server.getAcceptedEvents());
+            assertEquals(2, server.getRejectedEvents());
+            synchronized (university) {
+                university.setMovementLog(null);
+            }
+            //A thread consumidora continua a adicionar os lotes seguintes
+            send("{\"location_id\": \"A1\", \"person_id\": \"2\", \"time\": \"20:00:05\"}");
+            awaitProcessed(3);
+            assertEquals(1, server.getAcceptedEvents());
+            synchronized (university) {
+                assertEquals("A1", university.getCurrentLocationOfPerson("2").getId());
+            }
+        }
+        finally {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    @Test
+    void stopClosesConnections() throws IOException, InterruptedException {
+        try (Socket socket = new Socket("localhost", server.getAddress().getPort())) {
+            BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            writer.write("{\"location_id\": \"A1\", \"person_id\": \"2\", \"time\": \"20:00:00\"}");
+            writer.newLine();
+            writer.flush();
+            awaitProcessed(1);
+            server.stop();
+            assertEquals(1, server.getAcceptedEvents());
+            //A ligação do leitor, que continuava aberta, é fechada pelo servidor
+            socket.setSoTimeout(5000);
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    /*
+    Vários leitores em simultâneo, cada um com o seu próprio conjunto de pessoas e horas crescentes, de modo a que
+    nenhum movimento seja rejeitado por estar fora de ordem.
+     */
+    private void ingestFromReaders(int readers, int swipesPerReader, int peoplePerReader) throws InterruptedException {
+        String[] locationIds = new String[]{"A1", "A2", "A3", "A4", "SA", "G1"};
+        Thread[] clients = new Thread[readers];
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            clients[r] = new Thread(() -> {
+                String[] lines = new String[swipesPerReader];
+                for (int i = 0; i < swipesPerReader; i++) {
+                    lines[i] = String.format("{\"location_id\": \"%s\", \"person_id\": \"reader%d-%d\", \"time\": \"%s\"}",
+                            locationIds[i % locationIds.length], reader, i % peoplePerReader,
+                            LocalTime.ofSecondOfDay(i * 8L / peoplePerReader));
+                }
+                try {
+                    send(lines);
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            clients[r].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        awaitProcessed((long) readers * swipesPerReader);
+        assertEquals((long) readers * swipesPerReader, server.getAcceptedEvents());
+        assertEquals(0, server.getRejectedEvents());
+        synchronized (university) {
+            assertEquals(swipesPerReader / peoplePerReader, university.getEventsOfPerson("reader3-7").size());
+            int currentPeople = 0;
+            for (Location location : university.getLocations()) {
+                currentPeople += location.getCurrentNumberPeople();
+            }
+            //8 pessoas com movimentos no ficheiro de teste + todas as pessoas dos leitores
+            assertEquals(8 + readers * peoplePerReader, currentPeople);
+        }
+    }
+
+    @Test
+    void ingestManyReaders() throws InterruptedException {
+        ingestFromReaders(4, 200, 10);
+    }
+
+    /*
+    Teste de carga, excluído da execução normal dos testes (gradle benchmark)
+     */
+    @Test
+    @Tag("benchmark")
+    void ingestionThroughput() throws InterruptedException {
+        int readers = 8, swipesPerReader = 10000;
+        long startNanos = System.nanoTime();
+        ingestFromReaders(readers, swipesPerReader, 50);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        System.out.printf("Ingested %d swipes in %.1f ms (%.0f swipes/s)%n", server.getAcceptedEvents(),
+                elapsedNanos / 1e6, server.getAcceptedEvents() / (elapsedNanos / 1e9));
+    }
+}
@@ -0,0 +1,71 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventIntervalIndexTest {
+    private static boolean overlaps(Event event, LocalTime start, LocalTime end) {
+        LocalTime eventEnd = event.getEndTime().isBefore(event.getStartTime()) ? event.getStartTime() : event.getEndTime();
+        return !event.getStartTime().isAfter(end) && !eventEnd.isBefore(start);
+    }
+
+    private static void assertSameEvents(ListADT<Event> expected, ListADT<Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (Event event : expected) {
+            assertTrue(actual.contains(event));
+        }
+    }
+
+    /*
+    Compara as consultas do índice com uma pesquisa exaustiva, antes e depois de serem adicionados eventos suficientes
+    para obrigar à reconstrução da árvore
+     */
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        Location location = new Location("A1", "Sala A1", 10, null);
+        int numberOfEvents = 2000;
+        Event[] events = new Event[numberOfEvents];
+        LocalTime start;
+        for (int i = 0; i < numberOfEvents; i++) {
+            start = LocalTime.ofSecondOfDay(random.nextInt(80000));
+            events[i] = new Event(null, String.valueOf(i), location, start);
+            //Alguns eventos ficam em curso
+            if (i % 50 != 0) {
+                events[i].setEndTime(start.plusSeconds(random.nextInt(3600)));
+            }
+        }
+        ArraySorts.heapSort(events);
+        EventIntervalIndex index = new EventIntervalIndex(events, numberOfEvents);
+        UnorderedListADT<Event> all = new ArrayList<>();
+        for (Event event : events) {
+            all.addLast(event);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (int query = 0; query < 300; query++) {
+                LocalTime from = LocalTime.ofSecondOfDay(random.nextInt(86000));
+                LocalTime to = query % 3 == 0 ? from : from.plusSeconds(random.nextInt(400));
+                UnorderedListADT<Event> expected = new ArrayList<>(), actual = new ArrayList<>();
+                for (Event event : all) {
+                    if (overlaps(event, from, to)) {
+                        expected.addLast(event);
+                    }
+                }
+                index.getEventsInTimeFrame(from, to, actual);
+                assertSameEvents(expected, actual);
+            }
+            for (int i = 0; i < 1000; i++) {
+                start = LocalTime.ofSecondOfDay(random.nextInt(80000));
+                Event event = new Event(null, "r" + i, location, start);
+                event.setEndTime(start.plusSeconds(random.nextInt(600)));
+                index.add(event);
+                all.addLast(event);
+            }
+        }
+        assertEquals(all.size(), index.size());
+    }
+}
@@ -0,0 +1,83 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSortsTest {
+    private static final Location[] LOCATIONS = new Location[]{
+            new Location("A1", "A1", 10, null),
+            new Location("A2", "A2", 10, null)
+    };
+
+    /*
+    Poucas pessoas e poucos segundos distintos, para existirem muitos empates, incluindo da mesma pessoa
+     */
+    private static Event[] generate(int numberOfEvents, long seed) {
+        Random random = new Random(seed);
+        Event[] events = new Event[numberOfEvents];
+        for (int i = 0; i < numberOfEvents; i++) {
+            events[i] = new Event(null, String.valueOf(random.nextInt(40)), LOCATIONS[random.nextInt(2)],
+                    LocalTime.ofSecondOfDay(random.nextInt(600) * 97));
+        }
+        return events;
+    }
+
+    @Test
+    void sortIsStableWithPersonTieBreak() {
+        Event[] events = generate(20000, 5);
+        Event[] expected = Arrays.copyOf(events, events.length);
+        //A ordenação de referência (TimSort) é estável
+        Arrays.sort(expected, EventSorts.CHRONOLOGICAL_ORDER);
+        for (int chunks : new int[]{1, 2, 7, 64}) {
+            Event[] sorted = Arrays.copyOf(events, events.length);
+            EventSorts.sort(sorted, chunks);
+            for (int i = 0; i < expected.length; i++) {
+                assertSame(expected[i], sorted[i]);
+            }
+        }
+        //A ordem do resultado não depende da ordem de entrada (exceto entre eventos iguais)
+        Event[] reversed = new Event[events.length];
+        for (int i = 0; i < events.length; i++) {
+            reversed[i] = events[events.length - 1 - i];
+        }
+        EventSorts.sort(reversed);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(0, EventSorts.CHRONOLOGICAL_ORDER.compare(expected[i], reversed[i]));
+            assertEquals(expected[i].getPersonId(), reversed[i].getPersonId());
+        }
+        Event[] empty = new Event[0];
+        EventSorts.sort(empty);
+        assertEquals(0, empty.length);
+    }
+
+    /*
+    Comparação com a ordenação anterior do construtor da Universidade (heapsort sobre a hora de início), excluída da
+    execução normal dos testes (gradle benchmark)
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstHeapSort() {
+        Event[] events = generate(500000, 11);
+        for (int round = 0; round < 3; round++) {
+            Event[] heapSorted = Arrays.copyOf(events, events.length);
+            Event[] sorted = Arrays.copyOf(events, events.length);
+            long startNanos = System.nanoTime();
+            ArraySorts.heapSort(heapSorted);
+            long heapSortNanos = System.nanoTime() - startNanos;
+            startNanos = System.nanoTime();
+            EventSorts.sort(sorted);
+            long sortNanos = System.nanoTime() - startNanos;
+            System.out.printf("Sorted %d events: heapSort %.1f ms, EventSorts %.1f ms (%d processors)%n",
+                    events.length, heapSortNanos / 1e6, sortNanos / 1e6, Runtime.getRuntime().availableProcessors());
+            for (int i = 0; i < events.length; i++) {
+                assertEquals(heapSorted[i].getStartTime(), sorted[i].getStartTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExitRoutesTest {
+    UnorderedListADT<Location> locations;
+    University university;
+
+    /*
+    Dois edifícios ligados por um corredor, cada um com a sua saída, e uma sala isolada sem ligações:
+    SAIDA_A -5- A1 -2- A2 -20- B2 -2- B1 -5- SAIDA_B        ISOLADA
+     */
+    @BeforeEach
+    void setUp() {
+        locations = new ArrayList<>();
+        String[] ids = new String[]{"SAIDA_A", "A1", "A2", "B2", "B1", "SAIDA_B", "ISOLADA"};
+        for (String id : ids) {
+            locations.addLast(new Location(id, "Localização " + id, 10, null, id.startsWith("SAIDA")));
+        }
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (Location location : locations) {
+            network.addVertex(location);
+        }
+        double[] distances = new double[]{5, 2, 20, 2, 5};
+        for (int i = 0; i < distances.length; i++) {
+            network.addEdge(locations.get(i), locations.get(i + 1), distances[i]);
+        }
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, "1", locations.get(2), LocalTime.of(9, 0)));
+        events.addLast(new Event(null, "2", locations.get(3), LocalTime.of(9, 0)));
+        university = new University(locations, events, new ArrayList<>(), network);
+    }
+
+    private static String pathToString(StackADT<Location> path) {
+        StringBuilder sb = new StringBuilder();
+        while (!path.empty()) {
+            sb.append(path.pop().getId()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void nearestExit() {
+        assertEquals("SAIDA_A", university.getNearestExit(university.getLocationById("A2")).getId());
+        assertEquals("SAIDA_B", university.getNearestExit(university.getLocationById("B2")).getId());
+        assertEquals("SAIDA_B", university.getNearestExit(university.getLocationById("SAIDA_B")).getId());
+        assertNull(university.getNearestExit(university.getLocationById("ISOLADA")));
+        assertEquals("A2 A1 SAIDA_A ", pathToString(university.getShortestPathToEmergencyPerson("1")));
+        assertEquals("B2 B1 SAIDA_B ", pathToString(university.getShortestPathToEmergencyPerson("2")));
+        StackADT<Location> path = new LinkedStack<>();
+        assertEquals(7, university.getCheapestPathToEmergency(university.getLocationById("B2"), path));
+        assertEquals(-1, university.getCheapestPathToEmergency(university.getLocationById("SAIDA_A"), new LinkedStack<>()));
+        path = new LinkedStack<>();
+        assertEquals(Double.MAX_VALUE, university.getCheapestPathToEmergency(university.getLocationById("ISOLADA"), path));
+        assertTrue(path.empty());
+    }
+
+    @Test
+    void evacuationUsesBothExits() {
+        EvacuationPlan plan = new EvacuationPlanner(university).plan();
+        assertEquals("SAIDA_A", plan.getRoute("1").getPath().getLast().getId());
+        assertEquals("SAIDA_B", plan.getRoute("2").getPath().getLast().getId());
+    }
+
+    @Test
+    void blockAndUnblock() {
+        Location a1 = university.getLocationById("A1"), a2 = university.getLocationById("A2");
+        assertTrue(university.blockEdge(a1, a2));
+        assertFalse(university.blockEdge(a1, a2));
+        assertFalse(university.blockEdge(a1, university.getLocationById("B1")));
+        assertEquals("A2 B2 B1 SAIDA_B ", pathToString(university.getShortestPathToEmergencyPerson("1")));
+        assertEquals("SAIDA_B", university.getNearestExit(a2).getId());
+        assertEquals(27, university.getDistance(a2, university.getLocationById("SAIDA_B")));
+        assertTrue(university.blockLocation(university.getLocationById("B2")));
+        assertNull(university.getNearestExit(a2));
+        assertEquals(Double.MAX_VALUE, university.getDistance(a2, university.getLocationById("SAIDA_A")));
+        assertTrue(university.unblockEdge(a1, a2));
+        assertEquals("A2 A1 SAIDA_A ", pathToString(university.getShortestPathToEmergencyPerson("1")));
+        assertTrue(university.unblockLocation(university.getLocationById("B2")));
+        assertEquals("B2 B1 SAIDA_B ", pathToString(university.getShortestPathToEmergencyPerson("2")));
+        assertEquals(7, university.getDistance(a2, university.getLocationById("SAIDA_A")));
+    }
+
+    /*
+    Compara a reparação incremental com o recálculo completo numa rede aleatória, após cada bloqueio ou desbloqueio
+     */
+    @Test
+    void incrementalRepairMatchesRecomputation() {
+        Random random = new Random(42);
+        int n = 80;
+        UnorderedListADT<Location> randomLocations = new ArrayList<>();
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (int i = 0; i < n; i++) {
+            randomLocations.addLast(new Location("L" + i, "Localização " + i, 10, null, i % 25 == 0));
+            network.addVertex(randomLocations.getLast());
+        }
+        for (int i = 1; i < n; i++) {
+            network.addEdge(randomLocations.get(i), randomLocations.get(random.nextInt(i)), 1 + random.nextInt(20));
+        }
+        for (int i = 0; i < n; i++) {
+            network.addEdge(randomLocations.get(random.nextInt(n)), randomLocations.get(random.nextInt(n)),
+                    1 + random.nextInt(20));
+        }
+        CampusGraph graph = new CampusGraph(randomLocations, network);
+        ExitRoutes routes = new ExitRoutes(graph);
+        ExitRoutes recomputed;
+        int from, to;
+        boolean blocked;
+        for (int operation = 0; operation < 400; operation++) {
+            from = random.nextInt(n);
+            blocked = random.nextInt(3) > 0;
+            if (random.nextBoolean()) {
+                if (graph.getFirstEdge(from) == graph.getLastEdge(from)) {
+                    continue;
+                }
+                to = graph.getEdgeTarget(graph.getFirstEdge(from) +
+                        random.nextInt(graph.getLastEdge(from) - graph.getFirstEdge(from)));
+                if (graph.setEdgeBlocked(from, to, blocked)) {
+                    if (blocked) {
+                        routes.edgeBlocked(from, to);
+                    }
+                    else {
+                        routes.edgeUnblocked(from, to);
+                    }
+                }
+            }
+            else if (graph.setLocationBlocked(from, blocked)) {
+                if (blocked) {
+                    routes.locationBlocked(from);
+                }
+                else {
+                    routes.locationUnblocked(from);
+                }
+            }
+            recomputed = new ExitRoutes(graph);
+            for (Location location : randomLocations) {
+                assertEquals(recomputed.getDistance(location), routes.getDistance(location), 1e-9);
+                if (recomputed.getNearestExit(location) == null) {
+                    assertNull(routes.getNearestExit(location));
+                }
+                else {
+                    assertEquals(recomputed.getDistance(recomputed.getNearestExit(location)),
+                            routes.getDistance(routes.getNearestExit(location)));
+                }
+            }
+        }
+    }
+}
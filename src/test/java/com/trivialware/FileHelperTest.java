@@ -0,0 +1,121 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileHelperTest {
+    Properties prop;
+    Path peopleFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = FileHelperTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            prop = new Properties();
+            prop.load(input);
+        }
+        peopleFile = Files.createTempFile("people", ".json");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(peopleFile);
+        Files.deleteIfExists(Paths.get(FileHelper.getPeopleDeltaFileName(peopleFile.toString())));
+    }
+
+    @Test
+    void exportPeopleRoundTrip() throws IOException {
+        UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+        people.addLast(new Person("9", null, "Nome com \"aspas\" e \\ barra"));
+        FileHelper.exportPeople(people, peopleFile.toString());
+        UnorderedListADT<Person> imported = FileHelper.importPeople(peopleFile.toString());
+        assertEquals(people.size(), imported.size());
+        for (int i = 0; i < people.size(); i++) {
+            assertEquals(people.get(i).getId(), imported.get(i).getId());
+            assertEquals(people.get(i).getName(), imported.get(i).getName());
+            assertEquals(people.get(i).getRole(), imported.get(i).getRole());
+        }
+    }
+
+    @Test
+    void exportPeopleDeltaAndCompaction() throws IOException {
+        UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+        FileHelper.exportPeople(people, peopleFile.toString());
+        Path deltaFile = Paths.get(FileHelper.getPeopleDeltaFileName(peopleFile.toString()));
+
+        UnorderedListADT<Person> added = new ArrayList<>();
+        UnorderedListADT<Person> removed = new ArrayList<>();
+        added.addLast(new Person("8", Person.Role.TEACHER, "Mário Leigo"));
+        removed.addLast(people.getFirst());
+        people.addLast(added.getFirst());
+        people.removeFirst();
+        assertFalse(FileHelper.exportPeopleDelta(added, removed, people, peopleFile.toString()));
+        assertTrue(Files.exists(deltaFile));
+        UnorderedListADT<Person> imported = FileHelper.importPeople(peopleFile.toString());
+        assertEquals(people.size(), imported.size());
+        assertEquals("Mário Leigo", imported.getLast().getName());
+        for (Person person : imported) {
+            assertNotEquals(removed.getFirst().getId(), person.getId());
+        }
+
+        //Alterações suficientes para o ficheiro de alterações ultrapassar metade do ficheiro das pessoas
+        added = new ArrayList<>();
+        for (int i = 10; i < 20; i++) {
+            added.addLast(new Person(String.valueOf(i), Person.Role.STUDENT, "Aluno " + i));
+            people.addLast(added.getLast());
+        }
+        assertTrue(FileHelper.exportPeopleDelta(added, new ArrayList<>(), people, peopleFile.toString()));
+        assertFalse(Files.exists(deltaFile));
+        assertEquals(people.size(), FileHelper.importPeople(peopleFile.toString()).size());
+    }
+
+    @Test
+    void parallelImportMatchesSequential() throws IOException {
+        UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+        UnorderedListADT<Location> locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+        Random random = new Random(13);
+        UnorderedListADT<Event> generated = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            //Alguns identificadores contêm a sequência que separa os movimentos
+            String personId = i == 2500 ? "x}, {y" : String.valueOf(random.nextInt(60));
+            generated.addLast(new Event(null, personId, locations.get(random.nextInt(locations.size())),
+                    LocalTime.ofSecondOfDay(random.nextInt(3600))));
+        }
+        Path movementsFile = Files.createTempFile("movements", ".json");
+        try {
+            FileHelper.exportEvents(generated, movementsFile.toString());
+            Event[] expected = new Event[generated.size()];
+            int position = 0;
+            for (Event event : FileHelper.importEvents(people, locations, movementsFile.toString())) {
+                expected[position++] = event;
+            }
+            EventSorts.sort(expected);
+            for (int chunks : new int[]{1, 3, 16, 64}) {
+                UnorderedListADT<Event> imported = FileHelper.importEventsSorted(people, locations,
+                        movementsFile.toString(), chunks);
+                assertEquals(expected.length, imported.size());
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i], imported.get(i));
+                    assertSame(expected[i].getPerson(), imported.get(i).getPerson());
+                }
+            }
+            Files.writeString(movementsFile, "[{\"location_id\": \"NOWHERE\", \"person_id\": \"1\", \"time\": \"10:00:00\"}]");
+            assertThrows(IOException.class, () -> FileHelper.importEventsSorted(people, locations,
+                    movementsFile.toString(), 4));
+        }
+        finally {
+            Files.deleteIfExists(movementsFile);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowMatrixTest {
+    /*
+    Compara a matriz com uma contagem exaustiva, com linhas cronológicas suficientes para serem processadas em paralelo
+     */
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(11);
+        int n = 12, bucketMinutes = 90;
+        UnorderedListADT<Location> locations = new ArrayList<>();
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (int i = 0; i < n; i++) {
+            locations.addLast(new Location("L" + i, "Localização " + i, 10, null));
+            network.addVertex(locations.getLast());
+        }
+        for (int i = 1; i < n; i++) {
+            network.addEdge(locations.get(i), locations.get(i - 1), 1);
+        }
+        CampusGraph graph = new CampusGraph(locations, network);
+        int numberOfBuckets = 24 * 60 / bucketMinutes;
+        int[][][] expected = new int[numberOfBuckets][n][n];
+        int[][] expectedTotals = new int[n][n];
+        UnorderedListADT<UnorderedListADT<Event>> timelines = new ArrayList<>();
+        UnorderedListADT<Event> timeline;
+        int second, location, previousLocation, bucket;
+        for (int person = 0; person < 6000; person++) {
+            timeline = new ArrayList<>();
+            second = random.nextInt(3600);
+            previousLocation = -1;
+            for (int j = random.nextInt(8); j > 0 && second < 86400; j--) {
+                location = random.nextInt(n);
+                timeline.addLast(new Event(null, String.valueOf(person), locations.get(location),
+                        LocalTime.ofSecondOfDay(second)));
+                if (previousLocation != -1 && previousLocation != location) {
+                    bucket = second / (bucketMinutes * 60);
+                    expected[bucket][previousLocation][location]++;
+                    expectedTotals[previousLocation][location]++;
+                }
+                previousLocation = location;
+                second += 1 + random.nextInt(20000);
+            }
+            timelines.addLast(timeline);
+        }
+        FlowMatrix flowMatrix = new FlowMatrix(graph, timelines, bucketMinutes);
+        assertEquals(numberOfBuckets, flowMatrix.getNumberOfBuckets());
+        for (int b = 0; b < numberOfBuckets; b++) {
+            int pairs = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    assertEquals(expected[b][i][j], flowMatrix.getFlow(locations.get(i), locations.get(j), b));
+                    if (expected[b][i][j] > 0) {
+                        pairs++;
+                    }
+                }
+            }
+            ListADT<FlowMatrix.Flow> flows = flowMatrix.getFlows(b);
+            assertEquals(pairs, flows.size());
+            int previousCount = Integer.MAX_VALUE;
+            for (FlowMatrix.Flow flow : flows) {
+                assertTrue(flow.getCount() <= previousCount);
+                previousCount = flow.getCount();
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                assertEquals(expectedTotals[i][j], flowMatrix.getTotalFlow(locations.get(i), locations.get(j)));
+            }
+        }
+        assertEquals(LocalTime.of(1, 30), flowMatrix.getBucketStart(flowMatrix.getBucket(LocalTime.of(2, 59))));
+    }
+
+    /*
+    Uma matriz construída com parte dos eventos e atualizada com os restantes coincide com a construída com todos
+     */
+    @Test
+    void incrementalMatchesRebuild() {
+        Random random = new Random(5);
+        int n = 8, bucketMinutes = 60;
+        UnorderedListADT<Location> locations = new ArrayList<>();
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (int i = 0; i < n; i++) {
+            locations.addLast(new Location("L" + i, "Localização " + i, 10, null));
+            network.addVertex(locations.getLast());
+        }
+        CampusGraph graph = new CampusGraph(locations, network);
+        UnorderedListADT<UnorderedListADT<Event>> timelines = new ArrayList<>();
+        UnorderedListADT<UnorderedListADT<Event>> prefixes = new ArrayList<>();
+        UnorderedListADT<Event> timeline, prefix;
+        for (int person = 0; person < 500; person++) {
+            timeline = new ArrayList<>();
+            prefix = new ArrayList<>();
+            int second = random.nextInt(3600);
+            for (int j = random.nextInt(10); j > 0 && second < 86400; j--) {
+                timeline.addLast(new Event(null, String.valueOf(person), locations.get(random.nextInt(n)),
+                        LocalTime.ofSecondOfDay(second)));
+                if (second < 43200) {
+                    prefix.addLast(timeline.getLast());
+                }
+                second += 1 + random.nextInt(15000);
+            }
+            timelines.addLast(timeline);
+            prefixes.addLast(prefix);
+        }
+        FlowMatrix incremental = new FlowMatrix(graph, prefixes, bucketMinutes);
+        //Intercala consultas com os novos movimentos, para que as contagens pendentes sejam juntadas várias vezes
+        for (int i = 0; i < timelines.size(); i++) {
+            timeline = timelines.get(i);
+            for (int j = prefixes.get(i).size(); j < timeline.size(); j++) {
+                incremental.eventAdded(j == 0 ? null : timeline.get(j - 1), timeline.get(j));
+            }
+            if (i % 100 == 0) {
+                incremental.getTotalFlows();
+            }
+        }
+        FlowMatrix rebuilt = new FlowMatrix(graph, timelines, bucketMinutes);
+        for (int b = 0; b < rebuilt.getNumberOfBuckets(); b++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    assertEquals(rebuilt.getFlow(locations.get(i), locations.get(j), b),
+                            incremental.getFlow(locations.get(i), locations.get(j), b));
+                }
+            }
+            assertEquals(rebuilt.getFlows(b).size(), incremental.getFlows(b).size());
+        }
+        assertEquals(rebuilt.getTotalFlows().size(), incremental.getTotalFlows().size());
+    }
+}
@@ -0,0 +1,258 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovementLogTest {
+    Properties prop;
+    Path logFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = MovementLogTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            prop = new Properties();
+            prop.load(input);
+        }
+        logFile = Files.createTempFile("movements", ".log");
+        Files.delete(logFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(logFile);
+    }
+
+    private University loadSnapshot() throws IOException {
+        return loadSnapshot(prop.getProperty("app.people_file_name"), prop.getProperty("app.movements_file_name"));
+    }
+
+    private University loadSnapshot(String peopleFileName, String movementsFileName) throws IOException {
+        UnorderedListADT<Person> people = FileHelper.importPeople(peopleFileName);
+        UnorderedListADT<Location> locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+        UnorderedListADT<Event> events = FileHelper.importEvents(people, locations, movementsFileName);
+        UndirectedNetworkADT<Location> network = FileHelper.buildNetwork(locations,
+                prop.getProperty("app.map_file_name"));
+        return new University(locations, events, people, network);
+    }
+
+    private static UnorderedListADT<Event> newEvent(University university, String personId, String locationId,
+                                                    LocalTime time) {
+        UnorderedListADT<Event> events = new ArrayList<>(1);
+        events.addLast(new Event(university.getPersonById(personId), personId, university.getLocationById(locationId),
+                time));
+        return events;
+    }
+
+    @Test
+    void replayAfterRestart() throws IOException {
+        University university = loadSnapshot();
+        assertEquals(0, MovementLog.replay(logFile.toString(), university));
+        try (MovementLog log = new MovementLog(logFile.toString())) {
+            university.setMovementLog(log);
+            assertTrue(university.addPerson(new Person("8", Person.Role.TEACHER, "Mário Leigo")));
+            assertTrue(university.removePerson(university.getPersonById("1")));
+            university.addEvents(newEvent(university, "8", "A1", LocalTime.of(20, 0, 0)));
+            university.addEvents(newEvent(university, "2", "A3", LocalTime.of(20, 5, 0)));
+        }
+
+        University recovered = loadSnapshot();
+        assertEquals(4, MovementLog.replay(logFile.toString(), recovered));
+        assertEquals("Mário Leigo", recovered.getPersonById("8").getName());
+        assertNull(recovered.getPersonById("1"));
+        assertNull(recovered.getCurrentEventByPerson("1").getPerson());
+        assertEquals("A1", recovered.getCurrentLocationOfPerson("8").getId());
+        assertEquals("Mário Leigo", recovered.getCurrentEventByPerson("8").getPerson().getName());
+        assertEquals("A3", recovered.getCurrentLocationOfPerson("2").getId());
+        assertEquals(university.getEvents().size(), recovered.getEvents().size());
+        assertEquals(university.getLocationById("A2").getCurrentNumberPeople(),
+                recovered.getLocationById("A2").getCurrentNumberPeople());
+    }
+
+    @Test
+    void replayStopsAtTornRecord() throws IOException {
+        University university = loadSnapshot();
+        try (MovementLog log = new MovementLog(logFile.toString())) {
+            university.setMovementLog(log);
+            university.addEvents(newEvent(university, "2", "A3", LocalTime.of(20, 5, 0)));
+        }
+        long validSize = Files.size(logFile);
+        //Registo escrito parcialmente no momento de uma falha
+        Files.write(logFile, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        University recovered = loadSnapshot();
+        assertEquals(1, MovementLog.replay(logFile.toString(), recovered));
+        assertEquals(validSize, Files.size(logFile));
+        assertEquals("A3", recovered.getCurrentLocationOfPerson("2").getId());
+    }
+
+    @Test
+    void replayStopsAtCorruptedRecord() throws IOException {
+        University university = loadSnapshot();
+        try (MovementLog log = new MovementLog(logFile.toString())) {
+            university.setMovementLog(log);
+            university.addEvents(newEvent(university, "2", "A3", LocalTime.of(20, 5, 0)));
+            university.addEvents(newEvent(university, "2", "A4", LocalTime.of(20, 10, 0)));
+        }
+        byte[] bytes = Files.readAllBytes(logFile);
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(logFile, bytes);
+
+        University recovered = loadSnapshot();
+        assertEquals(1, MovementLog.replay(logFile.toString(), recovered));
+        assertEquals("A3", recovered.getCurrentLocationOfPerson("2").getId());
+    }
+
+    @Test
+    void checkpointEmptiesLog() throws IOException {
+        Path peopleFile = Files.createTempFile("people", ".json");
+        Path movementsFile = Files.createTempFile("movements", ".json");
+        try {
+            University university = loadSnapshot();
+            try (MovementLog log = new MovementLog(logFile.toString())) {
+                university.setMovementLog(log);
+                university.addPerson(new Person("8", Person.Role.TEACHER, "Mário Leigo"));
+                university.addEvents(newEvent(university, "8", "A1", LocalTime.of(20, 0, 0)));
+                log.checkpoint(university, peopleFile.toString(), movementsFile.toString());
+            }
+            assertEquals(0, Files.size(logFile));
+            UnorderedListADT<Person> people = FileHelper.importPeople(peopleFile.toString());
+            UnorderedListADT<Location> locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations, movementsFile.toString());
+            assertEquals(university.getPeople().size(), people.size());
+            assertEquals(university.getEvents().size(), events.size());
+        }
+        finally {
+            Files.deleteIfExists(peopleFile);
+            Files.deleteIfExists(movementsFile);
+        }
+    }
+
+    @Test
+    void lockedCallerSyncsAfterReleasing() throws IOException {
+        University university = loadSnapshot();
+        try (MovementLog log = new MovementLog(logFile.toString())) {
+            university.setMovementLog(log);
+            synchronized (university) {
+                university.addEvents(newEvent(university, "2", "A3", LocalTime.of(20, 5, 0)));
+            }
+            log.sync();
+            University recovered = loadSnapshot();
+            assertEquals(1, MovementLog.replay(logFile.toString(), recovered));
+            assertEquals("A3", recovered.getCurrentLocationOfPerson("2").getId());
+        }
+    }
+
+    /*
+    Os movimentos adicionados enquanto o snapshot é escrito (sem o monitor da Universidade) ficam no registo, e o
+    snapshot com o registo reconstroem o estado completo
+     */
+    @Test
+    void checkpointKeepsLaterChanges() throws IOException, InterruptedException {
+        Path peopleFile = Files.createTempFile("people", ".json");
+        Path movementsFile = Files.createTempFile("movements", ".json");
+        try {
+            University university = loadSnapshot();
+            try (MovementLog log = new MovementLog(logFile.toString())) {
+                university.setMovementLog(log);
+                Thread writer = new Thread(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        synchronized (university) {
+                            university.addEvents(newEvent(university, "writer" + i % 10, i % 2 == 0 ? "A1" : "A2",
+                                    LocalTime.ofSecondOfDay(60000 + i)));
+                        }
+                        log.sync();
+                    }
+                });
+                writer.start();
+                for (int i = 0; i < 5; i++) {
+                    log.checkpoint(university, peopleFile.toString(), movementsFile.toString());
+                }
+                writer.join();
+            }
+            University recovered = loadSnapshot(peopleFile.toString(), movementsFile.toString());
+            MovementLog.replay(logFile.toString(), recovered);
+            assertEquals(university.getEvents().size(), recovered.getEvents().size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(university.getEventsOfPerson("writer" + i).size(),
+                        recovered.getEventsOfPerson("writer" + i).size());
+            }
+        }
+        finally {
+            Files.deleteIfExists(peopleFile);
+            Files.deleteIfExists(movementsFile);
+        }
+    }
+
+    /*
+    Falha depois de o snapshot substituir os ficheiros e antes da compactação do registo: os movimentos reaplicados já
+    estão no snapshot, incluindo os que deixaram de ser o movimento atual da pessoa
+     */
+    @Test
+    void replayAfterCheckpointSkipsExistingEvents() throws IOException {
+        Path peopleFile = Files.createTempFile("people", ".json");
+        Path movementsFile = Files.createTempFile("movements", ".json");
+        try {
+            University university = loadSnapshot();
+            byte[] logBeforeCheckpoint;
+            try (MovementLog log = new MovementLog(logFile.toString())) {
+                university.setMovementLog(log);
+                //Dois movimentos no mesmo segundo em localizações diferentes
+                university.addEvents(newEvent(university, "2", "A3", LocalTime.of(20, 5, 0)));
+                university.addEvents(newEvent(university, "2", "A4", LocalTime.of(20, 5, 0)));
+                logBeforeCheckpoint = Files.readAllBytes(logFile);
+                log.checkpoint(university, peopleFile.toString(), movementsFile.toString());
+            }
+            Files.write(logFile, logBeforeCheckpoint);
+            University recovered = loadSnapshot(peopleFile.toString(), movementsFile.toString());
+            assertEquals(2, MovementLog.replay(logFile.toString(), recovered));
+            assertEquals(university.getEvents().size(), recovered.getEvents().size());
+            assertEquals("A4", recovered.getCurrentLocationOfPerson("2").getId());
+        }
+        finally {
+            Files.deleteIfExists(peopleFile);
+            Files.deleteIfExists(movementsFile);
+        }
+    }
+
+    @Test
+    void largePeopleResetIsSplit() throws IOException {
+        University university = loadSnapshot();
+        UnorderedListADT<Person> people = new ArrayList<>();
+        String name = "Pessoa com um nome suficientemente comprido para ocupar espaço ".repeat(4);
+        for (int i = 0; i < 20000; i++) {
+            people.addLast(new Person(String.valueOf(i), Person.Role.STUDENT, name + i));
+        }
+        try (MovementLog log = new MovementLog(logFile.toString())) {
+            university.setMovementLog(log);
+            university.mergePeople(people);
+            university.addEvents(newEvent(university, "2", "A3", LocalTime.of(20, 5, 0)));
+        }
+        University recovered = loadSnapshot();
+        //Uma substituição com várias partes, seguida do movimento
+        assertTrue(MovementLog.replay(logFile.toString(), recovered) > 2);
+        assertEquals(20000, recovered.getPeople().size());
+        assertEquals(name + 19999, recovered.getPersonById("19999").getName());
+        assertEquals("A3", recovered.getCurrentLocationOfPerson("2").getId());
+
+        //Uma substituição escrita apenas parcialmente é ignorada
+        long size = Files.size(logFile);
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(size / 2);
+        }
+        recovered = loadSnapshot();
+        MovementLog.replay(logFile.toString(), recovered);
+        assertEquals(loadSnapshot().getPeople().size(), recovered.getPeople().size());
+    }
+}
@@ -0,0 +1,331 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapEventStoreTest {
+    University university;
+    UndirectedNetworkADT<Location> network;
+    OffHeapEventStore store;
+    Properties prop;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = OffHeapEventStoreTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            prop = new Properties();
+            prop.load(input);
+            String mapFileName = prop.getProperty("app.map_file_name");
+            UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+            UnorderedListADT<Location> locations = FileHelper.importLocations(mapFileName);
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations,
+                    prop.getProperty("app.movements_file_name"));
+            network = FileHelper.buildNetwork(locations, mapFileName);
+            university = new University(locations, events, people, network);
+        }
+        store = new OffHeapEventStore(university.getLocations(), university::getPersonById);
+        assertEquals(university.getEvents().size(), store.addEvents(university.getEvents()));
+    }
+
+    private static void assertSameEvents(ListADT<Event> expected, ListADT<Event> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+            assertEquals(expected.get(i).getEndTime(), actual.get(i).getEndTime());
+            assertSame(expected.get(i).getPerson(), actual.get(i).getPerson());
+        }
+    }
+
+    @Test
+    void matchesUniversity() {
+        assertSameEvents(university.getEvents(), toList(store));
+        LocalTime start = LocalTime.of(9, 0), end = LocalTime.of(12, 0);
+        for (Event event : university.getCurrentEvents()) {
+            String personId = event.getPersonId();
+            assertSameEvents(university.getEventsOfPerson(personId), store.getEventsOfPerson(personId));
+            assertSameEvents(university.getEventsOfPersonInTimeFrame(personId, start, end),
+                    store.getEventsOfPersonInTimeFrame(personId, start, end));
+            assertSameEvents(university.getOverlappingEventsOfPersonInTimeFrame(personId, LocalTime.MIN,
+                    LocalTime.MAX), store.getOverlappingEventsOfPersonInTimeFrame(personId, LocalTime.MIN,
+                    LocalTime.MAX));
+            assertEquals(university.getCurrentLocationOfPerson(personId), store.getCurrentLocationOfPerson(personId));
+            assertEquals(university.getLocationOfPersonAt(personId, start), store.getLocationOfPersonAt(personId,
+                    start));
+            assertEquals(event, store.getCurrentEventByPerson(personId));
+        }
+        //O índice temporal das localizações não devolve os eventos por ordem de adição
+        for (Location location : university.getLocations()) {
+            ListADT<Event> expected = university.getEventsInLocationInTimeFrame(location.getId(), start, end);
+            ListADT<Event> actual = store.getEventsInLocationInTimeFrame(location.getId(), start, end);
+            assertEquals(expected.size(), actual.size());
+            for (Event event : expected) {
+                assertTrue(actual.contains(event));
+            }
+            assertEquals(university.getEventsInLocationAt(location.getId(), end).size(),
+                    store.getEventsInLocationAt(location.getId(), end).size());
+        }
+        assertSameEvents(university.getAccessViolations(), store.getAccessViolations());
+        assertNull(store.getCurrentEventByPerson("inexistente"));
+        assertTrue(store.getEventsInLocationAt("inexistente", start).isEmpty());
+    }
+
+    @Test
+    void addFollowsUniversityRules() {
+        Event current = university.getCurrentEvents().get(0);
+        Location location = current.getLocation();
+        int second = current.getStartTime().toSecondOfDay();
+        assertFalse(store.add(current.getPersonId(), location.getId(), second - 1));
+        assertTrue(store.add(current.getPersonId(), location.getId(), second + 60));
+        ListADT<Event> personEvents = store.getEventsOfPerson(current.getPersonId());
+        assertEquals(current.getStartTime().plusSeconds(59), personEvents.get(personEvents.size() - 2).getEndTime());
+        assertEquals(LocalTime.MAX, personEvents.getLast().getEndTime());
+        assertThrows(IllegalArgumentException.class, () -> store.add("1", "inexistente", 0));
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.getCurrentLocationOfPerson(current.getPersonId()));
+    }
+
+    @Test
+    void randomHistoryMatchesUniversity() {
+        UnorderedListADT<Location> locations = university.getLocations();
+        University day = new University(locations, new ArrayList<>(), new ArrayList<>(), network);
+        OffHeapEventStore dayStore = new OffHeapEventStore(locations, day::getPersonById);
+        //Eventos por ordem de captura, com vários eventos no mesmo segundo e permanências de várias horas
+        Random random = new Random(23);
+        UnorderedListADT<Event> events = new ArrayList<>();
+        int second = 0;
+        for (int i = 0; i < 3000; i++) {
+            second = Math.min(24 * 60 * 60 - 1, second + (random.nextInt(4) == 0 ? 0 : random.nextInt(60)));
+            events.addLast(new Event(null, String.valueOf(random.nextInt(30)), locations.get(random.nextInt(3)),
+                    LocalTime.ofSecondOfDay(second)));
+        }
+        day.addEvents(events);
+        assertEquals(day.getEvents().size(), dayStore.addEvents(events));
+        for (int hour = 0; hour < 24; hour += 3) {
+            LocalTime start = LocalTime.of(hour, 17, 5), end = start.plusMinutes(hour * 7L);
+            for (int person = 0; person < 30; person++) {
+                String personId = String.valueOf(person);
+                assertSameEvents(day.getEventsOfPersonInTimeFrame(personId, start, end),
+                        dayStore.getEventsOfPersonInTimeFrame(personId, start, end));
+                assertSameEvents(day.getOverlappingEventsOfPersonInTimeFrame(personId, start, end),
+                        dayStore.getOverlappingEventsOfPersonInTimeFrame(personId, start, end));
+                assertEquals(day.getLocationOfPersonAt(personId, start), dayStore.getLocationOfPersonAt(personId,
+                        start));
+            }
+            for (int location = 0; location < 3; location++) {
+                String locationId = locations.get(location).getId();
+                ListADT<Event> expected = day.getEventsInLocationInTimeFrame(locationId, start, end);
+                ListADT<Event> actual = dayStore.getEventsInLocationInTimeFrame(locationId, start, end);
+                assertEquals(expected.size(), actual.size());
+                for (Event event : expected) {
+                    assertTrue(actual.contains(event));
+                }
+            }
+        }
+    }
+
+    @Test
+    void universityWithOffHeapEvents() throws IOException {
+        UnorderedListADT<Location> locations = university.getLocations();
+        UnorderedListADT<Person> people = university.getPeople();
+        University offHeap = new University(locations, FileHelper.importEvents(people, locations,
+                prop.getProperty("app.movements_file_name")), people, network, false, true);
+        assertTrue(offHeap.isOffHeapEvents());
+        assertFalse(university.isOffHeapEvents());
+        assertEquals(university.getNumberOfEvents(), offHeap.getNumberOfEvents());
+        assertSameEvents(university.getEvents(), offHeap.getEvents());
+        LocalTime start = LocalTime.of(9, 0), end = LocalTime.of(14, 0);
+        for (Event event : university.getCurrentEvents()) {
+            String personId = event.getPersonId();
+            assertEquals(event, offHeap.getCurrentEventByPerson(personId));
+            assertSameEvents(university.getEventsOfPerson(personId), offHeap.getEventsOfPerson(personId));
+            assertSameEvents(university.getEventsOfPersonInTimeFrame(personId, start, end),
+                    offHeap.getEventsOfPersonInTimeFrame(personId, start, end));
+            assertSameEvents(university.getOverlappingEventsOfPersonInTimeFrame(personId, start, end),
+                    offHeap.getOverlappingEventsOfPersonInTimeFrame(personId, start, end));
+            assertEquals(university.getLocationOfPersonAt(personId, end), offHeap.getLocationOfPersonAt(personId, end));
+        }
+        for (Location location : locations) {
+            assertEquals(university.getEventsInLocationInTimeFrame(location.getId(), start, end).size(),
+                    offHeap.getEventsInLocationInTimeFrame(location.getId(), start, end).size());
+            assertEquals(university.getNumberOfPeopleInLocationsAt(end).get(location.getId()),
+                    offHeap.getNumberOfPeopleInLocationsAt(end).get(location.getId()));
+        }
+        assertSameEvents(university.getAccessViolations(), offHeap.getAccessViolations());
+        assertSameEvents(university.getAccessViolationsAt(end), offHeap.getAccessViolationsAt(end));
+        //A janela de contactos reconstruída continua a terminar os eventos em curso com os eventos seguintes
+        university.setContactWindowHours(1);
+        offHeap.setContactWindowHours(1);
+        for (LocalTime time : new LocalTime[]{LocalTime.of(18, 0), LocalTime.of(20, 0)}) {
+            UnorderedListADT<Event> heapEvents = new ArrayList<>(), offHeapNewEvents = new ArrayList<>();
+            for (Event event : university.getCurrentEvents()) {
+                heapEvents.addLast(new Event(null, event.getPersonId(), university.getLocationById("A2"), time));
+                offHeapNewEvents.addLast(new Event(null, event.getPersonId(), university.getLocationById("A2"), time));
+            }
+            university.addEvents(heapEvents);
+            offHeap.addEvents(offHeapNewEvents);
+        }
+        for (Event event : university.getCurrentEvents()) {
+            assertEquals(university.getRecentContacts(event.getPersonId()).size(),
+                    offHeap.getRecentContacts(event.getPersonId()).size());
+        }
+        //Os eventos adicionados depois da construção seguem as mesmas regras
+        UnorderedListADT<Event> newEvents = new ArrayList<>();
+        newEvents.addLast(new Event(null, "77", university.getLocationById("A1"), LocalTime.of(22, 0)));
+        newEvents.addLast(new Event(null, "77", university.getLocationById("A2"), LocalTime.of(21, 0)));
+        assertEquals(1, offHeap.addEvents(newEvents));
+        assertEquals(university.getNumberOfEvents() + 1, offHeap.getNumberOfEvents());
+        assertNull(offHeap.getEventsOfPerson("77").get(0).getPerson());
+        //As pessoas dos eventos do histórico são as atuais
+        assertTrue(offHeap.addPerson(new Person("77", Person.Role.STUDENT, "Registada Depois")));
+        assertEquals("77", offHeap.getEventsOfPerson("77").get(0).getPerson().getId());
+        assertEquals("A1", offHeap.getCurrentLocationOfPerson("77").getId());
+        //Tal como as violações, as violações até um instante consideram as pessoas atuais
+        assertSameViolations(offHeap);
+        assertTrue(offHeap.removePerson(offHeap.getPersonById("1")));
+        assertSameViolations(offHeap);
+    }
+
+    @Test
+    void historyTraversalsMatchUniversity() throws IOException {
+        UnorderedListADT<Location> locations = university.getLocations();
+        UnorderedListADT<Person> people = university.getPeople();
+        University offHeap = new University(locations, FileHelper.importEvents(people, locations,
+                prop.getProperty("app.movements_file_name")), people, network, false, true);
+        //Matriz origem-destino construída a partir dos registos
+        FlowMatrix expectedFlows = university.getFlowMatrix(60), actualFlows = offHeap.getFlowMatrix(60);
+        for (Location origin : locations) {
+            for (Location destination : locations) {
+                assertEquals(expectedFlows.getTotalFlow(origin, destination),
+                        actualFlows.getTotalFlow(origin, destination));
+            }
+        }
+        assertEquals(expectedFlows.getTotalFlows().size(), actualFlows.getTotalFlows().size());
+        //Janela de contactos reconstruída a partir dos registos
+        university.setContactWindowHours(3);
+        offHeap.setContactWindowHours(3);
+        ListADT<Event> expectedContacts, actualContacts;
+        for (Event event : university.getCurrentEvents()) {
+            expectedContacts = university.getRecentContacts(event.getPersonId());
+            actualContacts = offHeap.getRecentContacts(event.getPersonId());
+            assertEquals(expectedContacts.size(), actualContacts.size());
+            for (Event contact : expectedContacts) {
+                assertTrue(actualContacts.contains(contact));
+            }
+        }
+        //O retrato não inclui os eventos adicionados depois
+        Iterable<Event> snapshot = offHeap.getEventsSnapshot();
+        UnorderedListADT<Event> newEvents = new ArrayList<>();
+        newEvents.addLast(new Event(null, "2", university.getLocationById("A1"), LocalTime.of(23, 0)));
+        assertEquals(1, offHeap.addEvents(newEvents));
+        UnorderedListADT<Event> snapshotEvents = new ArrayList<>();
+        for (Event event : snapshot) {
+            snapshotEvents.addLast(event);
+        }
+        assertEquals(university.getNumberOfEvents(), snapshotEvents.size());
+        for (int i = 0; i < snapshotEvents.size(); i++) {
+            assertEquals(university.getEvents().get(i), snapshotEvents.get(i));
+            assertSame(university.getEvents().get(i).getPerson(), snapshotEvents.get(i).getPerson());
+        }
+        //Arquivo escrito a partir dos registos
+        newEvents = new ArrayList<>();
+        newEvents.addLast(new Event(null, "2", university.getLocationById("A1"), LocalTime.of(23, 0)));
+        assertEquals(1, university.addEvents(newEvents));
+        Path expectedFile = Files.createTempFile("expected", ".archive");
+        Path actualFile = Files.createTempFile("actual", ".archive");
+        try {
+            assertEquals(university.archiveDay(expectedFile.toString()), offHeap.archiveDay(actualFile.toString()));
+            try (DayArchive expected = new DayArchive(expectedFile.toString());
+                 DayArchive actual = new DayArchive(actualFile.toString())) {
+                assertSameEvents(expected.readAll(people, locations), actual.readAll(people, locations));
+                for (Location location : locations) {
+                    assertSameEvents(expected.scan(location.getId(), LocalTime.of(12, 0), LocalTime.MAX, people,
+                            locations), actual.scan(location.getId(), LocalTime.of(12, 0), LocalTime.MAX, people,
+                            locations));
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(expectedFile);
+            Files.deleteIfExists(actualFile);
+        }
+    }
+
+    //As violações até ao fim do dia são as mesmas, por ordem cronológica em vez da ordem de adição
+    private static void assertSameViolations(University university) {
+        ListADT<Event> violations = university.getAccessViolations();
+        ListADT<Event> violationsAt = university.getAccessViolationsAt(LocalTime.MAX);
+        assertEquals(violations.size(), violationsAt.size());
+        for (Event event : violations) {
+            assertTrue(violationsAt.contains(event));
+        }
+    }
+
+    @Test
+    void largeHistory() {
+        UnorderedListADT<Location> locations = university.getLocations();
+        OffHeapEventStore large = new OffHeapEventStore(locations, university::getPersonById);
+        int numberOfEvents = 500_000, numberOfPeople = 1000;
+        for (int i = 0; i < numberOfEvents; i++) {
+            large.add(String.valueOf(i % numberOfPeople), locations.get(i % locations.size()).getId(),
+                    (int) ((long) i * (24 * 60 * 60 - 1) / numberOfEvents));
+        }
+        assertEquals(numberOfEvents, large.size());
+        assertTrue(large.getOffHeapBytes() >= 12L * numberOfEvents);
+        assertEquals(numberOfEvents / numberOfPeople, large.getEventsOfPerson("7").size());
+        Event last = large.get(numberOfEvents - 1);
+        assertEquals(String.valueOf((numberOfEvents - 1) % numberOfPeople), last.getPersonId());
+        assertEquals(LocalTime.MAX, last.getEndTime());
+        assertSame(large.get(7).getLocation(), large.getLocationOfPersonAt("7", large.get(7).getStartTime()));
+        assertEquals(1, large.getEventsOfPersonInTimeFrame("7", LocalTime.of(12, 0), LocalTime.of(12, 0)).size());
+    }
+
+    /*
+    Muitas pessoas nas mesmas localizações, cujos eventos em curso terminam por uma ordem qualquer, pelo que as
+    posições removidas da lista de eventos em curso estão em qualquer lugar da lista
+     */
+    @Test
+    void openEventsMatchBruteForce() {
+        UnorderedListADT<Location> locations = university.getLocations();
+        OffHeapEventStore store = new OffHeapEventStore(locations, university::getPersonById);
+        Random random = new Random(3);
+        for (int second = 0; second < 20000; second += 1 + random.nextInt(3)) {
+            store.add(String.valueOf(random.nextInt(300)), locations.get(random.nextInt(3)).getId(), second);
+        }
+        ListADT<Event> events = toList(store);
+        for (int i = 0; i < 3; i++) {
+            String locationId = locations.get(i).getId();
+            for (LocalTime time : new LocalTime[]{LocalTime.of(2, 0), LocalTime.of(5, 30), LocalTime.of(12, 0)}) {
+                int expected = 0;
+                for (Event event : events) {
+                    if (event.getLocation().getId().equals(locationId) && !event.getStartTime().isAfter(time) &&
+                            !event.getEndTime().isBefore(time)) {
+                        expected++;
+                    }
+                }
+                ListADT<Event> actual = store.getEventsInLocationAt(locationId, time);
+                assertEquals(expected, actual.size());
+                for (Event event : actual) {
+                    assertTrue(events.contains(event));
+                }
+            }
+        }
+    }
+
+    private static ListADT<Event> toList(OffHeapEventStore store) {
+        UnorderedListADT<Event> events = new ArrayList<>(store.size() + 1);
+        for (int i = 0; i < store.size(); i++) {
+            events.addLast(store.get(i));
+        }
+        return events;
+    }
+}
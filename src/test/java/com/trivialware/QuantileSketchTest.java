@@ -0,0 +1,56 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+    @Test
+    void quantilesWithinRelativeAccuracy() {
+        Random random = new Random(3);
+        double accuracy = 0.01;
+        QuantileSketch first = new QuantileSketch(accuracy), second = new QuantileSketch(accuracy);
+        int numberOfValues = 20000;
+        double[] values = new double[numberOfValues];
+        for (int i = 0; i < numberOfValues; i++) {
+            //Distribuição de cauda longa, com alguns zeros
+            values[i] = i % 100 == 0 ? 0 : Math.floor(Math.exp(random.nextDouble() * 11));
+            if (i % 2 == 0) {
+                first.add(values[i]);
+            }
+            else {
+                second.add(values[i]);
+            }
+        }
+        QuantileSketch merged = new QuantileSketch(first);
+        merged.merge(second);
+        assertEquals(numberOfValues / 2, first.getCount());
+        assertEquals(numberOfValues, merged.getCount());
+        Arrays.sort(values);
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        assertEquals(sum / numberOfValues, merged.getMean(), 1e-6);
+        assertEquals(values[0], merged.getMinimum());
+        assertEquals(values[numberOfValues - 1], merged.getMaximum());
+        double exact;
+        for (double quantile : new double[]{0, 0.005, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1}) {
+            exact = values[(int) Math.floor(quantile * (numberOfValues - 1))];
+            assertEquals(exact, merged.getQuantile(quantile), exact * accuracy + 1e-9);
+        }
+    }
+
+    @Test
+    void emptySketch() {
+        QuantileSketch sketch = new QuantileSketch(0.01);
+        assertEquals(0, sketch.getCount());
+        assertTrue(Double.isNaN(sketch.getMedian()));
+        assertTrue(Double.isNaN(sketch.getMean()));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new QuantileSketch(0.05)));
+        assertThrows(IllegalArgumentException.class, () -> sketch.add(-1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoleRouterTest {
+    private static String pathToString(StackADT<Location> path) {
+        StringBuilder sb = new StringBuilder();
+        while (!path.empty()) {
+            sb.append(path.pop().getId()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /*
+    A -1- GABINETE (docentes) -1- B, e o corredor A -5- C -5- B
+     */
+    @Test
+    void restrictedLocationsAreAvoided() {
+        UnorderedListADT<Location> locations = new ArrayList<>();
+        locations.addLast(new Location("A", "Sala A", 10, null));
+        locations.addLast(new Location("GABINETE", "Gabinete", 10, Person.Role.TEACHER));
+        locations.addLast(new Location("B", "Sala B", 10, null));
+        locations.addLast(new Location("C", "Corredor", 10, null));
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (Location location : locations) {
+            network.addVertex(location);
+        }
+        network.addEdge(locations.get(0), locations.get(1), 1);
+        network.addEdge(locations.get(1), locations.get(2), 1);
+        network.addEdge(locations.get(0), locations.get(3), 5);
+        network.addEdge(locations.get(3), locations.get(2), 5);
+        RoleRouter router = new RoleRouter(new CampusGraph(locations, network));
+        Location a = locations.get(0), office = locations.get(1), b = locations.get(2);
+        StackADT<Location> path = new LinkedStack<>();
+        assertEquals(2, router.getPath(a, b, Person.Role.TEACHER, path));
+        assertEquals("A GABINETE B ", pathToString(path));
+        assertEquals(10, router.getPath(a, b, Person.Role.STUDENT, path));
+        assertEquals("A C B ", pathToString(path));
+        assertEquals(2, router.getPath(a, b, null, path));
+        assertEquals("A GABINETE B ", pathToString(path));
+        //Um aluno dentro do gabinete pode sair dele
+        assertEquals(1, router.getPath(office, b, Person.Role.STUDENT, path));
+        assertEquals("GABINETE B ", pathToString(path));
+        assertEquals(Double.MAX_VALUE, router.getPath(a, office, Person.Role.WORKER, path));
+        assertTrue(path.empty());
+        assertEquals(-1, router.getPath(a, a, Person.Role.STUDENT, path));
+    }
+
+    /*
+    Compara as distâncias com o algoritmo de Dijkstra numa cópia da rede sem as localizações proibidas
+     */
+    @Test
+    void matchesFilteredNetwork() {
+        Random random = new Random(5);
+        int n = 40;
+        Person.Role[] restrictions = new Person.Role[]{null, null, null, Person.Role.TEACHER, Person.Role.WORKER};
+        UnorderedListADT<Location> locations = new ArrayList<>();
+        UndirectedNetworkADT<Location> network = new AdjacencyListUndirectedNetwork<>();
+        for (int i = 0; i < n; i++) {
+            locations.addLast(new Location("L" + i, "Localização " + i, 10,
+                    restrictions[random.nextInt(restrictions.length)]));
+            network.addVertex(locations.getLast());
+        }
+        int[][] edges = new int[2 * n][];
+        double[] weights = new double[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = i < n - 1 ? new int[]{i + 1, random.nextInt(i + 1)} :
+                    new int[]{random.nextInt(n), random.nextInt(n)};
+            weights[i] = 1 + random.nextInt(10);
+            network.addEdge(locations.get(edges[i][0]), locations.get(edges[i][1]), weights[i]);
+        }
+        RoleRouter router = new RoleRouter(new CampusGraph(locations, network));
+        for (Person.Role role : Person.Role.values()) {
+            for (int destination = 0; destination < n; destination++) {
+                Location target = locations.get(destination);
+                if (!target.isAccessibleTo(role)) {
+                    continue;
+                }
+                for (int origin = 0; origin < n; origin++) {
+                    if (origin == destination) {
+                        continue;
+                    }
+                    Location source = locations.get(origin);
+                    UndirectedNetworkADT<Location> filtered = new AdjacencyListUndirectedNetwork<>();
+                    for (Location location : locations) {
+                        if (location == source || location.isAccessibleTo(role)) {
+                            filtered.addVertex(location);
+                        }
+                    }
+                    for (int i = 0; i < edges.length; i++) {
+                        Location first = locations.get(edges[i][0]), second = locations.get(edges[i][1]);
+                        if (first != second && (first == source || first.isAccessibleTo(role)) &&
+                                (second == source || second.isAccessibleTo(role)) &&
+                                (filtered.getEdgeWeight(first, second) < 0 ||
+                                        weights[i] < filtered.getEdgeWeight(first, second))) {
+                            filtered.addEdge(first, second, weights[i]);
+                        }
+                    }
+                    assertEquals(filtered.getCheapestPath(source, target, new LinkedStack<>()),
+                            router.getPath(source, target, role, new LinkedStack<>()), 1e-9);
+                }
+            }
+        }
+    }
+}
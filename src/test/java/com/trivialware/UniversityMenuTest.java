@@ -0,0 +1,88 @@
+package com.trivialware;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniversityMenuTest {
+    Properties prop;
+    Path directory;
+    Path peopleFile;
+    Path movementsFile;
+    Path logFile;
+    InputStream standardInput;
+    PrintStream standardOutput;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = UniversityMenuTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            prop = new Properties();
+            prop.load(input);
+        }
+        directory = Files.createTempDirectory("snapshot");
+        peopleFile = directory.resolve("people.json");
+        movementsFile = directory.resolve("movements.json");
+        logFile = directory.resolve("movements.log");
+        Files.copy(Paths.get(prop.getProperty("app.people_file_name")), peopleFile);
+        Files.copy(Paths.get(prop.getProperty("app.movements_file_name")), movementsFile,
+                StandardCopyOption.REPLACE_EXISTING);
+        standardInput = System.in;
+        standardOutput = System.out;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        System.setIn(standardInput);
+        System.setOut(standardOutput);
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void exportEmptiesMovementLog() throws IOException {
+        String mapFileName = prop.getProperty("app.map_file_name");
+        UnorderedListADT<Person> people = FileHelper.importPeople(peopleFile.toString());
+        UnorderedListADT<Location> locations = FileHelper.importLocations(mapFileName);
+        UnorderedListADT<Event> events = FileHelper.importEvents(people, locations, movementsFile.toString());
+        University university = new University(locations, events, people, FileHelper.buildNetwork(locations,
+                mapFileName));
+        try (MovementLog log = new MovementLog(logFile.toString())) {
+            university.setMovementLog(log);
+            UnorderedListADT<Event> newEvents = new ArrayList<>(1);
+            newEvents.addLast(new Event(university.getPersonById("2"), "2", university.getLocationById("A1"),
+                    LocalTime.of(20, 0)));
+            assertEquals(1, university.addEvents(newEvents));
+            assertTrue(Files.size(logFile) > 0);
+            //Gerir Pessoas -> Exportar -> Voltar -> Sair
+            System.setIn(new ByteArrayInputStream("1\n2\n0\n0\n".getBytes(StandardCharsets.UTF_8)));
+            System.setOut(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+            new UniversityMenu(university, peopleFile.toString(), movementsFile.toString(), null).mainMenu();
+        }
+        assertEquals(0, Files.size(logFile));
+        UnorderedListADT<Event> saved = FileHelper.importEvents(people, locations, movementsFile.toString());
+        assertEquals(university.getEvents().size(), saved.size());
+        University restarted = new University(locations, saved, FileHelper.importPeople(peopleFile.toString()),
+                FileHelper.buildNetwork(locations, mapFileName));
+        assertEquals(0, MovementLog.replay(logFile.toString(), restarted));
+        assertEquals("A1", restarted.getCurrentLocationOfPerson("2").getId());
+    }
+}
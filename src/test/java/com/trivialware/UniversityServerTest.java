@@ -0,0 +1,155 @@
+package com.trivialware;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniversityServerTest {
+    UniversityServer server;
+    University university;
+    HttpClient client;
+    String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        startServer(false);
+    }
+
+    private void startServer(boolean failingViolations) throws IOException {
+        startServer(failingViolations, 2, 16);
+    }
+
+    private void startServer(boolean failingViolations, int threads, int queueCapacity) throws IOException {
+        try (InputStream input = UniversityServerTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            Properties prop = new Properties();
+            prop.load(input);
+            UnorderedListADT<Person> people = FileHelper.importPeople(prop.getProperty("app.people_file_name"));
+            UnorderedListADT<Location> locations = FileHelper.importLocations(prop.getProperty("app.map_file_name"));
+            UnorderedListADT<Event> events = FileHelper.importEvents(people, locations,
+                    prop.getProperty("app.movements_file_name"));
+            UndirectedNetworkADT<Location> network = FileHelper.buildNetwork(locations,
+                    prop.getProperty("app.map_file_name"));
+            university = failingViolations ? new University(locations, events, people, network) {
+                @Override
+                public ListADT<Event> getAccessViolations() {
+                    throw new IllegalStateException("Falha simulada");
+                }
+            } : new University(locations, events, people, network);
+            server = new UniversityServer(university, new InetSocketAddress("localhost", 0), threads, queueCapacity);
+            server.start();
+        }
+        client = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void currentLocation() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/location?person=5");
+        assertEquals(200, response.statusCode());
+        assertEquals("G1", new JSONObject(response.body()).getJSONObject("location").getString("id"));
+        assertEquals(404, get("/location?person=999").statusCode());
+        assertEquals(400, get("/location").statusCode());
+    }
+
+    @Test
+    void timeline() throws IOException, InterruptedException {
+        String[] expectedOrder = new String[]{"SA", "A1", "A3"};
+        HttpResponse<String> response = get("/timeline?person=1&start=12:00:00&end=13:55:30");
+        assertEquals(200, response.statusCode());
+        JSONArray events = new JSONArray(response.body());
+        assertEquals(expectedOrder.length, events.length());
+        for (int i = 0; i < events.length(); i++) {
+            assertEquals(expectedOrder[i], events.getJSONObject(i).getJSONObject("location").getString("id"));
+        }
+        assertEquals(400, get("/timeline?person=1&start=12h").statusCode());
+    }
+
+    @Test
+    void contacts() throws IOException, InterruptedException {
+        String[] expectedOrder = new String[]{"55", "6", "4"};
+        JSONArray events = new JSONArray(get("/contacts?person=2&start=15:50:55&end=16:30:00").body());
+        assertEquals(expectedOrder.length, events.length());
+        for (int i = 0; i < events.length(); i++) {
+            assertEquals(expectedOrder[i], events.getJSONObject(i).getString("person_id"));
+        }
+    }
+
+    @Test
+    void violationsAndOccupancy() throws IOException, InterruptedException {
+        assertEquals(6, new JSONArray(get("/violations").body()).length());
+        JSONArray occupancy = new JSONArray(get("/occupancy").body());
+        for (int i = 0; i < occupancy.length(); i++) {
+            if (occupancy.getJSONObject(i).getString("id").equals("A2")) {
+                assertEquals(3, occupancy.getJSONObject(i).getInt("current_number_people"));
+            }
+        }
+    }
+
+    @Test
+    void evacuation() throws IOException, InterruptedException {
+        String[] expectedLocations = new String[]{"A4", "A3", "A2", "A1", "SA", "EMERGENCY_SPOT"};
+        JSONArray path = new JSONObject(get("/evacuation?person=1").body()).getJSONArray("path");
+        assertEquals(expectedLocations.length, path.length());
+        for (int i = 0; i < path.length(); i++) {
+            assertEquals(expectedLocations[i], path.getJSONObject(i).getString("id"));
+        }
+    }
+
+    @Test
+    void unexpectedError() throws IOException, InterruptedException {
+        server.stop(0);
+        startServer(true);
+        HttpResponse<String> response = get("/violations");
+        assertEquals(500, response.statusCode());
+        assertTrue(new JSONObject(response.body()).getString("error").contains("Falha simulada"));
+        assertEquals(200, get("/location?person=5").statusCode());
+    }
+
+    @Test
+    void overloaded() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        server.stop(0);
+        startServer(false, 1, 1);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/location?person=5")).GET().build();
+        CompletableFuture<HttpResponse<String>> running, queued, rejected;
+        //Com o monitor adquirido, o primeiro pedido ocupa a única thread e o segundo a fila
+        synchronized (university) {
+            running = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            Thread.sleep(200);
+            queued = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            Thread.sleep(200);
+            rejected = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, rejected.get(10, TimeUnit.SECONDS).statusCode());
+            assertFalse(running.isDone());
+        }
+        assertEquals(200, running.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, queued.get(10, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, get("/location?person=5").statusCode());
+    }
+}
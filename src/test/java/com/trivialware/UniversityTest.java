@@ -1,5 +1,6 @@
 package com.trivialware;
 
+import com.trivialware.helpers.Metrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -8,6 +9,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalTime;
+import java.util.HashMap;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -44,6 +46,25 @@ class UniversityTest {
         }
     }
 
+    @Test
+    void flowMatrixIsKeptUpToDate() {
+        FlowMatrix flowMatrix = university.getFlowMatrix(60);
+        assertSame(flowMatrix, university.getFlowMatrix(60));
+        String personId = university.getPersonIdsInLocation("A2").getFirst();
+        Location a2 = university.getLocationById("A2"), a3 = university.getLocationById("A3");
+        int bucket = flowMatrix.getBucket(LocalTime.of(21, 0, 0));
+        int flow = flowMatrix.getFlow(a2, a3, bucket), totalFlow = flowMatrix.getTotalFlow(a2, a3);
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, personId, a3, LocalTime.of(21, 0, 0)));
+        university.addEvents(events);
+        assertSame(flowMatrix, university.getFlowMatrix(60));
+        assertEquals(flow + 1, flowMatrix.getFlow(a2, a3, bucket));
+        assertEquals(totalFlow + 1, flowMatrix.getTotalFlow(a2, a3));
+        //Uma matriz construída de novo conta os mesmos movimentos
+        FlowMatrix rebuilt = university.getFlowMatrix(30);
+        assertEquals(totalFlow + 1, rebuilt.getTotalFlow(a2, a3));
+    }
+
     @Test
     void addPerson() {
         Person person;
@@ -105,6 +126,78 @@ class UniversityTest {
         assertEquals(2, university.getLocationById("G1").getCurrentNumberPeople());
     }
 
+    @Test
+    void rosterFollowsEvents() {
+        int total = 0;
+        for (Location location : university.getLocations()) {
+            assertEquals(location.getCurrentNumberPeople(), university.getPersonIdsInLocation(location.getId()).size());
+            for (String personId : university.getPersonIdsInLocation(location.getId())) {
+                assertEquals(location, university.getCurrentLocationOfPerson(personId));
+                assertTrue(university.isPersonInLocation(personId, location.getId()));
+            }
+            total += location.getCurrentNumberPeople();
+        }
+        assertEquals(8, total);
+        String personId = university.getPersonIdsInLocation("A2").getFirst();
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, personId, university.getLocationById("A3"), LocalTime.of(21, 0, 0)));
+        events.addLast(new Event(null, "77", university.getLocationById("A3"), LocalTime.of(21, 0, 0)));
+        university.addEvents(events);
+        assertFalse(university.isPersonInLocation(personId, "A2"));
+        assertTrue(university.isPersonInLocation(personId, "A3"));
+        assertTrue(university.isPersonInLocation("77", "A3"));
+        assertEquals(2, university.getPersonIdsInLocation("A2").size());
+        assertEquals(3, university.getPersonIdsInLocation("A3").size());
+        assertTrue(university.getPersonIdsInLocation("NOWHERE").isEmpty());
+    }
+
+    @Test
+    void locationHistory() {
+        LocalTime start = LocalTime.of(8, 0, 0), end = LocalTime.of(12, 0, 0);
+        for (Location location : university.getLocations()) {
+            ListADT<Event> history = university.getEventsInLocationInTimeFrame(location.getId(), start, end);
+            int expected = 0;
+            for (Event event : university.getEvents()) {
+                LocalTime eventEnd = event.getEndTime().isBefore(event.getStartTime()) ?
+                        event.getStartTime() : event.getEndTime();
+                if (event.getLocation().equals(location) && !event.getStartTime().isAfter(end) &&
+                        !eventEnd.isBefore(start)) {
+                    expected++;
+                    assertTrue(history.contains(event));
+                }
+            }
+            assertEquals(expected, history.size());
+            assertEquals(location.getCurrentNumberPeople(),
+                    university.getEventsInLocationAt(location.getId(), LocalTime.MAX).size());
+        }
+        assertTrue(university.getEventsInLocationAt("NOWHERE", start).isEmpty());
+    }
+
+    @Test
+    void dwellTimeStatistics() {
+        DwellTimeStatistics statistics = university.getDwellTimeStatistics();
+        for (Location location : university.getLocations()) {
+            int count = 0;
+            double sum = 0;
+            for (Event event : university.getEvents()) {
+                if (event.getLocation().equals(location) && !event.getEndTime().equals(LocalTime.MAX)) {
+                    count++;
+                    sum += Math.max(0, event.getEndTime().toSecondOfDay() - event.getStartTime().toSecondOfDay() + 1);
+                }
+            }
+            QuantileSketch sketch = statistics.getSketch(location);
+            assertEquals(count, sketch.getCount());
+            if (count > 0) {
+                assertEquals(sum / count, sketch.getMean(), 1e-9);
+            }
+            long byRole = statistics.getSketch(location, null).getCount();
+            for (Person.Role role : Person.Role.values()) {
+                byRole += statistics.getSketch(location, role).getCount();
+            }
+            assertEquals(count, byRole);
+        }
+    }
+
     @Test
     void getEventsOfPersonInTimeFrame() {
         ListADT<Event> events;
@@ -172,6 +265,25 @@ class UniversityTest {
         assertEquals("A2", university.getCurrentLocationOfPerson("55").getId());
     }
 
+    @Test
+    void getCurrentLocationsOfAllPeople() {
+        HashMap<String, Location> currentLocations = university.getCurrentLocationsOfAllPeople();
+        assertEquals(8, currentLocations.size());
+        for (String personId : currentLocations.keySet()) {
+            assertSame(university.getCurrentLocationOfPerson(personId), currentLocations.get(personId));
+        }
+        assertEquals("G1", currentLocations.get("5").getId());
+        assertEquals("A2", currentLocations.get("55").getId());
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, "5", university.getLocationById("A3"), LocalTime.of(21, 0, 0)));
+        events.addLast(new Event(null, "77", university.getLocationById("A3"), LocalTime.of(21, 0, 0)));
+        university.addEvents(events);
+        currentLocations = university.getCurrentLocationsOfAllPeople();
+        assertEquals(9, currentLocations.size());
+        assertEquals("A3", currentLocations.get("5").getId());
+        assertEquals("A3", currentLocations.get("77").getId());
+    }
+
     @Test
     void emergencyTest() {
         StackADT<Location> pathToEmergency;
@@ -185,4 +297,209 @@ class UniversityTest {
             assertEquals(expectedLocations[currentIndex++], pathToEmergency.pop().getId());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void asOfQueries() {
+        //Pessoa 1: SA 12:05 → A1 12:30:31 → A3 13:30:40 → A4 13:55:31
+        assertNull(university.getLocationOfPersonAt("1", LocalTime.of(12, 0)));
+        assertEquals("SA", university.getLocationOfPersonAt("1", LocalTime.of(12, 5)).getId());
+        assertEquals("SA", university.getLocationOfPersonAt("1", LocalTime.of(12, 30, 30)).getId());
+        assertEquals("A1", university.getLocationOfPersonAt("1", LocalTime.of(12, 30, 31)).getId());
+        assertEquals("A4", university.getLocationOfPersonAt("1", LocalTime.MAX).getId());
+        assertNull(university.getLocationOfPersonAt("999", LocalTime.MAX));
+        //No fim do dia, o estado passado coincide com o estado atual
+        HashMap<String, Location> locationsAtEnd = university.getLocationsOfAllPeopleAt(LocalTime.MAX);
+        HashMap<String, Location> currentLocations = university.getCurrentLocationsOfAllPeople();
+        assertEquals(currentLocations.size(), locationsAtEnd.size());
+        for (String personId : currentLocations.keySet()) {
+            assertSame(currentLocations.get(personId), locationsAtEnd.get(personId));
+        }
+        HashMap<String, Integer> occupancyAtEnd = university.getNumberOfPeopleInLocationsAt(LocalTime.MAX);
+        for (Location location : university.getLocations()) {
+            assertEquals(location.getCurrentNumberPeople(), (int) occupancyAtEnd.get(location.getId()));
+        }
+        assertEquals(university.getAccessViolations().size(), university.getAccessViolationsAt(LocalTime.MAX).size());
+        LocalTime time = LocalTime.of(13, 0);
+        HashMap<String, Location> locationsAt = university.getLocationsOfAllPeopleAt(time);
+        HashMap<String, Integer> occupancyAt = university.getNumberOfPeopleInLocationsAt(time);
+        int total = 0;
+        for (Location location : university.getLocations()) {
+            total += occupancyAt.get(location.getId());
+        }
+        assertEquals(locationsAt.size(), total);
+        for (String personId : locationsAt.keySet()) {
+            assertSame(university.getLocationOfPersonAt(personId, time), locationsAt.get(personId));
+        }
+        assertEquals("A1", locationsAt.get("1").getId());
+        int expectedViolations = 0;
+        for (Event event : university.getAccessViolations()) {
+            if (event.getStartTime().compareTo(time) <= 0) {
+                expectedViolations++;
+            }
+        }
+        ListADT<Event> violations = university.getAccessViolationsAt(time);
+        assertEquals(expectedViolations, violations.size());
+        for (int i = 1; i < violations.size(); i++) {
+            assertTrue(violations.get(i - 1).getStartTime().compareTo(violations.get(i).getStartTime()) <= 0);
+        }
+        //O estado atual das localizações não é alterado
+        for (Location location : university.getLocations()) {
+            assertEquals(location.getCurrentNumberPeople(), (int) occupancyAtEnd.get(location.getId()));
+        }
+    }
+
+    /*
+    As violações até ao fim do dia coincidem com as violações calculadas a partir de todos os eventos
+     */
+    private void assertViolationsAgree() {
+        ListADT<Event> violations = university.getAccessViolations();
+        ListADT<Event> violationsAt = university.getAccessViolationsAt(LocalTime.MAX);
+        assertEquals(violations.size(), violationsAt.size());
+        for (Event event : violations) {
+            assertTrue(violationsAt.contains(event));
+        }
+        for (int i = 1; i < violationsAt.size(); i++) {
+            assertTrue(violationsAt.get(i - 1).getStartTime().compareTo(violationsAt.get(i).getStartTime()) <= 0);
+        }
+    }
+
+    @Test
+    void asOfViolationsFollowPeopleChanges() {
+        LocalTime time = LocalTime.of(20, 0);
+        int violationsBefore = university.getAccessViolationsAt(time).size();
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, "77", university.getLocationById("A1"), time));
+        university.addEvents(events);
+        assertEquals(violationsBefore + 1, university.getAccessViolationsAt(time).size());
+        assertTrue(university.getAccessViolationsAt(time).contains(events.get(0)));
+        assertEquals(violationsBefore, university.getAccessViolationsAt(time.minusSeconds(1)).size());
+        assertViolationsAgree();
+        //A pessoa registada depois do movimento deixa de ser desconhecida
+        Person registered = new Person("77", Person.Role.STUDENT, "Registada Depois");
+        assertTrue(university.addPerson(registered));
+        assertEquals(violationsBefore, university.getAccessViolationsAt(time).size());
+        assertViolationsAgree();
+        assertTrue(university.removePerson(registered));
+        assertEquals(violationsBefore + 1, university.getAccessViolationsAt(time).size());
+        assertViolationsAgree();
+        //Alterações de papel, adições e remoções juntadas de uma só vez
+        UnorderedListADT<Person> people = new ArrayList<>();
+        for (Person person : university.getPeople()) {
+            if (!person.getId().equals("1")) {
+                people.addLast(new Person(person.getId(), person.getRole() == Person.Role.STUDENT ?
+                        Person.Role.TEACHER : Person.Role.STUDENT, person.getName()));
+            }
+        }
+        people.addLast(registered);
+        university.mergePeople(people);
+        assertViolationsAgree();
+        university.setPeople(new ArrayList<>());
+        university.updateEventsPeople();
+        assertViolationsAgree();
+    }
+
+    @Test
+    void zeroLengthEventsAreNotPresences() {
+        //Dois movimentos da mesma pessoa no mesmo segundo: o primeiro termina antes de começar
+        LocalTime time = LocalTime.of(21, 0);
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, "88", university.getLocationById("A1"), time));
+        events.addLast(new Event(null, "88", university.getLocationById("A2"), time));
+        university.addEvents(events);
+        assertTrue(events.get(0).getEndTime().isBefore(events.get(0).getStartTime()));
+        assertFalse(university.getEventsInLocationAt("A1", time).contains(events.get(0)));
+        assertFalse(university.getEventsInLocationInTimeFrame("A1", time.minusMinutes(1), time.plusMinutes(1))
+                .contains(events.get(0)));
+        assertEquals((int) university.getNumberOfPeopleInLocationsAt(time).get("A1"),
+                university.getEventsInLocationAt("A1", time).size());
+        assertTrue(university.getEventsInLocationAt("A2", time).contains(events.get(1)));
+    }
+
+    @Test
+    void mergePeople() {
+        Person unchanged = university.getPersonById("2");
+        UnorderedListADT<Person> people = new ArrayList<>();
+        for (Person person : university.getPeople()) {
+            switch (person.getId()) {
+                case "1" -> {
+                }
+                case "3" -> people.addLast(new Person("3", Person.Role.TEACHER, person.getName()));
+                default -> people.addLast(person);
+            }
+        }
+        people.addLast(new Person("55", Person.Role.STUDENT, "Mário Existente"));
+        people.addLast(new Person("55", Person.Role.WORKER, "Repetido"));
+        University.PeopleMerge merge = university.mergePeople(people);
+        assertEquals(1, merge.getAdded().size());
+        assertEquals(1, merge.getUpdated().size());
+        assertEquals(1, merge.getRemoved().size());
+        assertEquals(7, university.getPeople().size());
+        assertSame(unchanged, university.getPersonById("2"));
+        assertNull(university.getPersonById("1"));
+        assertNull(university.getEventsOfPerson("1").getFirst().getPerson());
+        assertEquals(Person.Role.TEACHER, university.getPersonById("3").getRole());
+        for (Event event : university.getEvents()) {
+            assertSame(university.getPersonById(event.getPersonId()), event.getPerson());
+        }
+        assertEquals(Person.Role.STUDENT, university.getCurrentEventByPerson("55").getPerson().getRole());
+        //Uma alteração é exportada como remoção seguida de adição
+        assertEquals(2, university.getPeopleAddedSinceExport().size());
+        assertEquals(2, university.getPeopleRemovedSinceExport().size());
+        assertFalse(university.isPeopleReplacedSinceExport());
+        merge = university.mergePeople(university.getPeople());
+        assertTrue(merge.getAdded().isEmpty() && merge.getUpdated().isEmpty() && merge.getRemoved().isEmpty());
+        assertEquals(7, university.getPeople().size());
+    }
+
+    @Test
+    void peopleChangesSinceExport() {
+        Person added = new Person("8", Person.Role.STUDENT, "Mário Leigo");
+        Person addedAndRemoved = new Person("9", Person.Role.STUDENT, "Inês Istente");
+        assertTrue(university.addPerson(added));
+        assertTrue(university.addPerson(addedAndRemoved));
+        assertTrue(university.removePerson(addedAndRemoved));
+        assertTrue(university.removePerson(university.getPersonById("1")));
+        assertEquals(1, university.getPeopleAddedSinceExport().size());
+        assertEquals(added, university.getPeopleAddedSinceExport().getFirst());
+        assertEquals(1, university.getPeopleRemovedSinceExport().size());
+        assertEquals("1", university.getPeopleRemovedSinceExport().getFirst().getId());
+        assertFalse(university.isPeopleReplacedSinceExport());
+        university.markPeopleExported();
+        assertTrue(university.getPeopleAddedSinceExport().isEmpty());
+        assertTrue(university.getPeopleRemovedSinceExport().isEmpty());
+    }
+
+    @Test
+    void metrics() {
+        Metrics metrics = university.getMetrics();
+        university.getAccessViolations();
+        assertEquals(0, metrics.getCount(Metrics.Query.ACCESS_VIOLATIONS));
+        metrics.setEnabled(true);
+        university.getAccessViolations();
+        university.getOverlappingEventsOfPersonInTimeFrame("2", LocalTime.of(15, 50, 55), LocalTime.of(16, 30, 0));
+        university.getShortestPathToEmergencyPerson("1");
+        UnorderedListADT<Event> events = new ArrayList<>();
+        events.addLast(new Event(null, "77", university.getLocationById("A1"), LocalTime.of(20, 0, 0)));
+        university.addEvents(events);
+        assertEquals(1, metrics.getCount(Metrics.Query.ACCESS_VIOLATIONS));
+        assertEquals(1, metrics.getCount(Metrics.Query.CONTACTS));
+        //Cada consulta de localização/ocupação tem as suas próprias métricas
+        long currentLocationCount = metrics.getCount(Metrics.Query.CURRENT_LOCATION);
+        university.getCurrentLocationOfPerson("1");
+        university.getCurrentLocationsOfAllPeople();
+        university.getLocationsOfAllPeopleAt(LocalTime.NOON);
+        university.getLocationOfPersonAt("1", LocalTime.NOON);
+        university.getNumberOfPeopleInLocationsAt(LocalTime.NOON);
+        assertEquals(currentLocationCount + 1, metrics.getCount(Metrics.Query.CURRENT_LOCATION));
+        assertEquals(1, metrics.getCount(Metrics.Query.CURRENT_LOCATIONS_OF_ALL_PEOPLE));
+        assertEquals(1, metrics.getCount(Metrics.Query.LOCATIONS_OF_ALL_PEOPLE_AT));
+        assertEquals(1, metrics.getCount(Metrics.Query.LOCATION_AT));
+        assertEquals(1, metrics.getCount(Metrics.Query.OCCUPANCY_AT));
+        assertEquals(0, metrics.getCount(Metrics.Query.OCCUPANCY));
+        assertEquals(1, metrics.getCount(Metrics.Counter.PATH_COMPUTATIONS));
+        assertEquals(1, metrics.getCount(Metrics.Counter.EVENTS_INGESTED));
+        assertEquals(1, metrics.getCount(Metrics.Counter.VIOLATIONS_RAISED));
+        assertEquals(university.getEvents().size(), metrics.toJSON().getJSONObject("gauges").getLong("events"));
+        assertTrue(metrics.toText().contains("events_ingested_total 1"));
+    }
+}